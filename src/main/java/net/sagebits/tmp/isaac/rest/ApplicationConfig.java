@@ -68,6 +68,8 @@ import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.concurrent.Task;
@@ -75,6 +77,8 @@ import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.RestSystemInfo;
 import net.sagebits.tmp.isaac.rest.api1.data.classifier.ClassifierRunStorage;
 import net.sagebits.tmp.isaac.rest.api1.data.release.ReleaseJobStorage;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.MyJacksonMapperConfig;
+import net.sagebits.tmp.isaac.rest.session.RequestPools;
 import net.sagebits.tmp.isaac.rest.session.RestConfig;
 import sh.isaac.MetaData;
 import sh.isaac.api.ConfigurationService;
@@ -129,7 +133,10 @@ public class ApplicationConfig extends ResourceConfig implements ContainerLifecy
 		// If we leave everything to annotations, is picks up the eclipse moxy gson writer, which doesn't handle abstract classes properly.
 		// The goal here is to force it to use Jackson, but it seems that registering jackson disables scanning, so also have to re-enable
 		// scanning. It also seems to forget to scan this class... so register itself..
+		// The binary providers are handed our mappers, so they honor the same annotations as the json responses.
 		super(new ResourceConfig().packages("net.sagebits.tmp.isaac.rest").register(JacksonFeature.class).register(ApplicationConfig.class)
+				.register(new JacksonSmileProvider(MyJacksonMapperConfig.getSmileMapper()))
+				.register(new JacksonCBORProvider(MyJacksonMapperConfig.getCborMapper()))
 				.register(RolesAllowedDynamicFeature.class)
 				.register(new LoggingFeature(java.util.logging.Logger.getLogger("Headers"), Level.FINE, Verbosity.HEADERS_ONLY, LoggingFeature.DEFAULT_MAX_ENTITY_SIZE)));
 		
@@ -156,6 +163,7 @@ public class ApplicationConfig extends ResourceConfig implements ContainerLifecy
 	public void onShutdown(Container arg0)
 	{
 		shutdown = true;
+		RequestPools.shutdown();
 		log.info("Stopping ISAAC");
 		LookupService.shutdownIsaac();
 		log.info("ISAAC stopped");
@@ -252,6 +260,9 @@ public class ApplicationConfig extends ResourceConfig implements ContainerLifecy
 		});
 
 		issacInit();
+
+		// Do the annotation introspection of the returned types now, rather than on the first requests
+		Get.workExecutors().getExecutor().execute(() -> MyJacksonMapperConfig.precomputeSerializers(container.getConfiguration().getClasses()));
 	}
 
 	public boolean isIsaacReady()
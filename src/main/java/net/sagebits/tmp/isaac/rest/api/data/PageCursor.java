@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+
+/**
+ * {@link PageCursor}
+ * 
+ * An opaque position in a result set that is ordered by nid, for methods that support {@link RequestParameters#cursor} paging.  
+ * Rather than counting through all of the prior pages, the next page resumes directly after the last nid that was returned.
+ * 
+ * The cursor also carries a hash of the context it was created in (the assemblages, coordinates, etc) so that a cursor isn't 
+ * accidentally reused for a different query.
+ */
+public class PageCursor
+{
+	private static final byte VERSION = 1;
+	private static final int LENGTH = 13;
+
+	private final int lastNid;
+	private final int pageNum;
+	private final int contextHash;
+
+	/**
+	 * @param lastNid the last nid that was returned on the page
+	 * @param pageNum the page number of the page that was returned
+	 * @param contextHash the hash of the query that produced the page
+	 */
+	public PageCursor(int lastNid, int pageNum, int contextHash)
+	{
+		this.lastNid = lastNid;
+		this.pageNum = pageNum;
+		this.contextHash = contextHash;
+	}
+
+	/**
+	 * @param cursor a cursor produced by {@link #serialize()}
+	 * @param expectedContextHash the hash of the query the cursor is being used with
+	 * @return the cursor
+	 * @throws RestException if the cursor is malformed, or was created for a different query
+	 */
+	public static PageCursor read(String cursor, int expectedContextHash) throws RestException
+	{
+		PageCursor pc;
+		try
+		{
+			ByteBuffer bb = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor.trim()));
+			if (bb.remaining() != LENGTH || bb.get() != VERSION)
+			{
+				throw new RestException(RequestParameters.cursor, cursor, "Invalid cursor");
+			}
+			pc = new PageCursor(bb.getInt(), bb.getInt(), bb.getInt());
+		}
+		catch (IllegalArgumentException | BufferUnderflowException e)
+		{
+			throw new RestException(RequestParameters.cursor, cursor, "Invalid cursor");
+		}
+		if (pc.contextHash != expectedContextHash)
+		{
+			throw new RestException(RequestParameters.cursor, cursor, "The cursor was created for a different query, or different coordinates");
+		}
+		return pc;
+	}
+
+	/**
+	 * @return the URL safe form of the cursor
+	 */
+	public String serialize()
+	{
+		ByteBuffer bb = ByteBuffer.allocate(LENGTH);
+		bb.put(VERSION);
+		bb.putInt(lastNid);
+		bb.putInt(pageNum);
+		bb.putInt(contextHash);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bb.array());
+	}
+
+	/**
+	 * @return the last nid that was returned on the prior page
+	 */
+	public int getLastNid()
+	{
+		return lastNid;
+	}
+
+	/**
+	 * @return the page number of the prior page
+	 */
+	public int getPageNum()
+	{
+		return pageNum;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PageCursor [lastNid=" + lastNid + ", pageNum=" + pageNum + ", contextHash=" + contextHash + "]";
+	}
+}
@@ -78,6 +78,14 @@ public class Pagination
 	@XmlElement
 	public boolean totalIsExact;
 
+	/**
+	 * An opaque cursor that may be passed as the 'cursor' parameter to retrieve the next page, when the method supports cursor paging.  
+	 * Retrieving pages by cursor is much faster than by pageNum, for pages deep into a large result set.  Not provided if no next page 
+	 * exists, or if the method doesn't support cursors.  When provided, the nextUrl also makes use of the cursor.
+	 */
+	@XmlElement
+	public String nextCursor;
+
 	protected Pagination()
 	{
 		//For jaxb
@@ -124,6 +132,26 @@ public class Pagination
 		}
 	}
 
+	/**
+	 * @param pageNum page number index > 0
+	 * @param maxPageSize The maximum number of results to return per page, must be greater than 0
+	 * @param approximateTotal total size of set of which this page is a subset. May be affected by filtering.
+	 * @param totalIsExact 
+	 * @param nextCursor the cursor for the next page, or null, if there are no more pages
+	 * @param baseUrl base URL used to construct and return example previous and next URLs
+	 * @throws RestException
+	 */
+	public Pagination(int pageNum, int maxPageSize, int approximateTotal, boolean totalIsExact, String nextCursor, String baseUrl) throws RestException
+	{
+		this(pageNum, maxPageSize, approximateTotal, totalIsExact, nextCursor != null, baseUrl);
+		this.nextCursor = nextCursor;
+		if (nextCursor != null)
+		{
+			this.nextUrl = baseUrl + (baseUrl.contains("?") ? "&" : "?") + RequestParameters.cursor + "=" + nextCursor + "&" + RequestParameters.maxPageSize
+					+ "=" + maxPageSize;
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -131,6 +159,6 @@ public class Pagination
 	public String toString()
 	{
 		return "Pagination [previousUrl=" + previousUrl + ", nextUrl=" + nextUrl + ", pageNum=" + pageNum + ", approximateTotal=" + approximateTotal
-				+ ", totalIsExact=" + totalIsExact + "]";
+				+ ", totalIsExact=" + totalIsExact + ", nextCursor=" + nextCursor + "]";
 	}
 }
\ No newline at end of file
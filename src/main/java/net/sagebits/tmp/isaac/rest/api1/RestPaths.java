@@ -61,6 +61,7 @@ public class RestPaths
 	public static final String componentComponent = "component/";
 	public static final String semanticsComponent = "semantics/";
 	public static final String prefixComponent = "prefix/";
+	public static final String batchComponent = "batch/";
 	public static final String forAssemblageComponent = "forAssemblage/";
 	public static final String forReferencedComponentComponent = "forReferencedComponent/";
 	public static final String semanticDefinitionComponent = "semanticDefinition/";
@@ -181,6 +182,9 @@ public class RestPaths
 	public static final String systemAPIsClearQAData = "clearQAData/";
 	public static final String systemAPIsClearTokens = "clearTokens/";
 	public static final String systemAPIsDefaultEditModule = "defaultEditModule/";
+	public static final String systemAPIsCacheStats = "cacheStats/";
+	public static final String systemAPIsRequestPoolStats = "requestPoolStats/";
+	public static final String systemAPIsUserLookupStats = "userLookupStats/";
 	public static final String commentAPIsPathComponent = apiVersionComponent + "comment/";
 	public static final String contentRequestAPIsPathComponent = apiVersionComponent + "request/";
 	public static final String exportAPIsPathComponent = apiVersionComponent + "export/";
@@ -36,7 +36,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletionStage;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -46,6 +46,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import net.sagebits.tmp.isaac.rest.ExpandUtil;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
@@ -53,11 +54,17 @@ import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.association.RestAssociationItemVersion;
 import net.sagebits.tmp.isaac.rest.api1.data.association.RestAssociationItemVersionPage;
 import net.sagebits.tmp.isaac.rest.api1.data.association.RestAssociationTypeVersion;
+import net.sagebits.tmp.isaac.rest.api1.semantic.SemanticAPIs;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService.LatestPresent;
+import net.sagebits.tmp.isaac.rest.session.NdJsonOutput;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.component.semantic.version.DynamicVersion;
 import sh.isaac.api.util.AlphanumComparator;
@@ -199,31 +206,29 @@ public class AssociationAPIs
 		try
 		{
 			results = new ArrayList<>();
-			AtomicInteger total = new AtomicInteger(0);
 			int start = (pageNum * maxPageSize) - maxPageSize;
-			Get.assemblageService().getSemanticChronologyStream(RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id)).forEach(associationC -> {
-				total.incrementAndGet();
+			// The index knows which associations are present on the stamp, so we only need to read the ones on the page
+			LatestPresent latestPresent = LookupService.getService(AssemblageIndexService.class).getLatestPresent(
+					RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id), RequestInfo.get().getStampCoordinate());
+			int total = latestPresent.getPresentCount();
+			for (int i = latestPresent.indexAfterPresent(start); i >= 0 && i < latestPresent.getNids().length && results.size() < maxPageSize; 
+					i = latestPresent.nextPresent(i + 1))
+			{
 				try
 				{
-					LatestVersion<DynamicVersion> latest = associationC.getLatestVersion(RequestInfo.get().getStampCoordinate());
+					LatestVersion<DynamicVersion> latest = Get.assemblageService().getSemanticChronology(latestPresent.getNids()[i])
+							.getLatestVersion(RequestInfo.get().getStampCoordinate());
 					if (latest.isPresent())
 					{
-						if (total.get() <= start || results.size() >= maxPageSize)
-						{
-							// noop - can't short-circuit (plus want the count)
-						}
-						else
-						{
-							results.add(new RestAssociationItemVersion(AssociationInstance.read(latest.get(), RequestInfo.get().getStampCoordinate())));
-						}
+						results.add(new RestAssociationItemVersion(AssociationInstance.read(latest.get(), RequestInfo.get().getStampCoordinate())));
 					}
 				}
 				catch (Exception e)
 				{
 					throw new RuntimeException(e);
 				}
-			});
-			return new RestAssociationItemVersionPage(pageNum, maxPageSize, total.get(), true, total.get() > (pageNum * maxPageSize),
+			}
+			return new RestAssociationItemVersionPage(pageNum, maxPageSize, total, true, total > (pageNum * maxPageSize),
 					RestPaths.associationAPIsPathComponent + RestPaths.associationsWithTypeComponent + id,
 					results.toArray(new RestAssociationItemVersion[results.size()]));
 		}
@@ -240,6 +245,51 @@ public class AssociationAPIs
 		}
 	}
 
+	/**
+	 * The streamed variant of {@link #getAssociationsOfType(String, int, int, String, String, String)}, selected by sending 
+	 * <code>Accept: application/x-ndjson</code>.  Rather than a page, every instance of the association type is returned, one 
+	 * RestAssociationItemVersion per line, each written as soon as it is read.  Paging parameters are not supported.
+	 * 
+	 * @param id - A UUID or nid of a concept that defines an association type
+	 * @param coordToken specifies an explicit serialized CoordinatesToken string specifying all coordinate parameters. A CoordinatesToken may
+	 *            be obtained by a separate (prior) call to getCoordinatesToken().
+	 * @param expand - the optional items to be expanded. Supports 'source', 'target', 'nestedSemantics', as for getAssociationsOfType
+	 * @param altId - (optional) the altId type(s) to populate in any returned RestIdentifiedObject structures.
+	 * @return the latest version of each unique association instance of type associationType, as newline delimited JSON
+	 * 
+	 * @throws RestException
+	 */
+	@GET
+	@Produces(NdJsonOutput.PRODUCES)
+	@Path(RestPaths.associationsWithTypeComponent + "{" + RequestParameters.id + "}")
+	public CompletionStage<Response> getAssociationsOfTypeStream(@PathParam(RequestParameters.id) String id,
+			@QueryParam(RequestParameters.coordToken) String coordToken, @QueryParam(RequestParameters.expand) String expand,
+			@QueryParam(RequestParameters.altId) String altId) throws RestException
+	{
+		return AsyncRequests.supply(AssociationAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.expand,
+					RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.source, ExpandUtil.target, ExpandUtil.nestedSemanticsExpandable,  
+					ExpandUtil.versionsLatestOnlyExpandable, ExpandUtil.referencedDetails, ExpandUtil.chronologyExpandable);
+
+			int associationTypeNid = RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id);
+
+			return NdJsonOutput.stream(writer -> SemanticAPIs.forEachInAssemblage(associationTypeNid, false, null, sv -> 
+			{
+				try
+				{
+					writer.write(new RestAssociationItemVersion(AssociationInstance.read((DynamicVersion) sv, RequestInfo.get().getStampCoordinate())));
+				}
+				catch (RestException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}));
+		});
+	}
+
 	/**
 	 * Return all association instances that involve the specified source component.
 	 * 
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -31,6 +32,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import org.apache.commons.lang3.StringUtils;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
@@ -38,6 +40,8 @@ import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.classifier.ClassifierResult;
 import net.sagebits.tmp.isaac.rest.api1.data.classifier.ClassifierRunStorage;
 import net.sagebits.tmp.isaac.rest.api1.data.classifier.RestClassifierResult;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.NdJsonOutput;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
@@ -136,4 +140,46 @@ public class ClassifierReadAPIs
 		}
 		return rcr;
 	}
+
+	/**
+	 * The streamed variant of {@link #readAll(String, String, String, String)}, selected by sending <code>Accept: application/x-ndjson</code>.
+	 * Each classifier run is returned as one RestClassifierResult per line, written as soon as it is built, so that a request with 
+	 * largeResults=true does not need to hold every (potentially very large) run result in memory at once.
+	 * @param largeResults - If false, or unspecified, all parts of the result that return lists or arrays will be limited to 100.  
+	 *     To include all details,set this to true.
+	 * @param skipResults - If false, or unspecified, has no impact.  If true, largeResults is ignored, and all parts of the result that return lists 
+	 *     or arrays will not be included at all.
+	 * @param coordToken specifies an explicit serialized CoordinatesToken string specifying all coordinate parameters. A CoordinatesToken may be
+	 *            obtained by a separate (prior) call to getCoordinatesToken().
+	 * @param altId - (optional) the altId type(s) to populate in any returned RestIdentifiedObject structures.
+	 * @return The details on all of the classifications that have occurred, most recent first, as newline delimited JSON
+	 * @throws RestException
+	 */
+	@GET
+	@Produces(NdJsonOutput.PRODUCES)
+	@Path(RestPaths.classifications)
+	public CompletionStage<Response> readAllStream(@QueryParam(RequestParameters.largeResults) @DefaultValue("false") String largeResults,
+			@QueryParam(RequestParameters.skipResults) @DefaultValue("false") String skipResults,
+			@QueryParam(RequestParameters.coordToken) String coordToken,
+			@QueryParam(RequestParameters.altId) String altId) throws RestException
+	{
+		return AsyncRequests.supply(ClassifierReadAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), 
+					RequestParameters.largeResults, RequestParameters.skipResults, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+
+			List<ClassifierResult> cr = ClassifierRunStorage.getClassificationResults();
+			Collections.sort(cr);
+			boolean limitResults = !Boolean.parseBoolean(largeResults.trim());
+			boolean skipResultsB = Boolean.parseBoolean(skipResults.trim());
+
+			return NdJsonOutput.stream(writer -> 
+			{
+				for (ClassifierResult result : cr)
+				{
+					writer.write(new RestClassifierResult(result, limitResults, skipResultsB));
+				}
+			});
+		});
+	}
 }
\ No newline at end of file
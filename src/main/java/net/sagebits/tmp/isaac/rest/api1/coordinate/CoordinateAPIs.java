@@ -58,6 +58,7 @@ import net.sagebits.tmp.isaac.rest.api1.data.coordinate.RestStampCoordinate;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RestUserService;
 import net.sagebits.tmp.isaac.rest.tokens.EditToken;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import net.sagebits.uts.auth.rest.api1.data.RestUser;
@@ -429,7 +430,7 @@ public class CoordinateAPIs
 				throw new RestException("Edit token cannot be constructed without user information!");
 			}
 			
-			return new RestEditToken(new EditToken(Get.identifierService().getNidForUuids(user.get().userId), module, path));
+			return new RestEditToken(new EditToken(Get.service(RestUserService.class).getAuthorNid(user.get()), module, path));
 		}
 		else
 		{
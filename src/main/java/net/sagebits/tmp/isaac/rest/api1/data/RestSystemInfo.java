@@ -94,7 +94,7 @@ public class RestSystemInfo
 	 * data structure.
 	 */
 	@XmlElement
-	String[] supportedAPIVersions = new String[] { "1.24.5" };
+	String[] supportedAPIVersions = new String[] { "1.24.6" };
 
 	/**
 	 * REST API Implementation Version - aka the version number of the software running here.
@@ -33,11 +33,8 @@ package net.sagebits.tmp.isaac.rest.api1.data.concept;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Consumer;
-import java.util.stream.Stream;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
@@ -55,13 +52,14 @@ import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.RestIdentifiedObject;
 import net.sagebits.tmp.isaac.rest.api1.data.RestStampedVersion;
 import net.sagebits.tmp.isaac.rest.api1.taxonomy.TaxonomyAPIs;
+import net.sagebits.tmp.isaac.rest.session.ConceptSummaryService;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import sh.isaac.MetaData;
 import sh.isaac.api.ConceptProxy;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.TaxonomySnapshot;
 import sh.isaac.api.chronicle.LatestVersion;
-import sh.isaac.api.chronicle.VersionType;
 import sh.isaac.api.collections.NidSet;
 import sh.isaac.api.component.concept.ConceptSpecification;
 import sh.isaac.api.component.concept.ConceptVersion;
@@ -285,35 +283,22 @@ public class RestConceptVersion implements Comparable<RestConceptVersion>
 			}
 		}
 
+		ConceptSummaryService summaries = (includeSemanticMembership || includeTerminologyType) ? LookupService.getService(ConceptSummaryService.class) : null;
+
 		if (includeSemanticMembership)
 		{
-			HashSet<Integer> semanticMembershipNids = new HashSet<>();
-			Consumer<SemanticChronology> consumer = new Consumer<SemanticChronology>()
+			int[] semanticMembershipNids = null;
+			try
 			{
-				@Override
-				public void accept(SemanticChronology sc)
-				{
-					try
-					{
-						if (!semanticMembershipNids.contains(sc.getAssemblageNid()) && sc.getVersionType() != VersionType.LOGIC_GRAPH
-								&& sc.getVersionType() != VersionType.DESCRIPTION
-								&& sc.getLatestVersion(stampToUse).isPresent())
-						{
-							semanticMembershipNids.add(sc.getAssemblageNid());
-						}
-					}
-					catch (RuntimeException e)
-					{
-						exceptionMessages.add("Error checking semantic membership " + sc.getPrimordialUuid() + ": " + e.getLocalizedMessage());
-						throw e;
-					}
-				}
-			};
-
-			Stream<SemanticChronology> semantics = Get.assemblageService().getSemanticChronologyStreamForComponent(cv.getNid());
-			semantics.forEach(consumer);
+				semanticMembershipNids = summaries.getSemanticMembership(cv.getNid(), stampToUse);
+			}
+			catch (RuntimeException e)
+			{
+				exceptionMessages.add("Error checking semantic membership of concept " + cv.getChronology().getPrimordialUuid() + ": " + e.getLocalizedMessage());
+				throw e;
+			}
 
-			semanticMembership = new RestIdentifiedObject[semanticMembershipNids.size()];
+			semanticMembership = new RestIdentifiedObject[semanticMembershipNids.length];
 			int i = 0;
 			for (int nid : semanticMembershipNids)
 			{
@@ -335,10 +320,10 @@ public class RestConceptVersion implements Comparable<RestConceptVersion>
 
 		if (includeTerminologyType)
 		{
-			HashSet<Integer> terminologyTypeNids = null;
+			int[] terminologyTypeNids = null;
 			try
 			{
-				terminologyTypeNids = Frills.getTerminologyTypes(cv.getChronology(), stampToUse);
+				terminologyTypeNids = summaries.getTerminologyTypes(cv.getNid(), stampToUse);
 			}
 			catch (RuntimeException e)
 			{
@@ -346,7 +331,7 @@ public class RestConceptVersion implements Comparable<RestConceptVersion>
 				throw e;
 			}
 
-			terminologyTypes = new RestIdentifiedObject[terminologyTypeNids.size()];
+			terminologyTypes = new RestIdentifiedObject[terminologyTypeNids.length];
 			int i = 0;
 			for (int nid : terminologyTypeNids)
 			{
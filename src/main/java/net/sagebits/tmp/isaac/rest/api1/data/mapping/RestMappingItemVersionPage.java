@@ -85,6 +85,23 @@ public class RestMappingItemVersionPage
 		this.paginationData = new Pagination(pageNum, maxPageSize, approximateTotal, totalIsExact, hasMoreData, baseUrl);
 	}
 
+	/**
+	 * @param pageNum The pagination page number >= 1 that is being returned
+	 * @param maxPageSize The maximum number of results to return per page, must be greater than 0
+	 * @param approximateTotal approximate size of full matching set of which this paginated result is a subset
+	 * @param totalIsExact 
+	 * @param nextCursor the cursor for the next page, or null, if there are no more pages
+	 * @param baseUrl url used to construct example previous and next urls
+	 * @param results
+	 * @throws RestException
+	 */
+	public RestMappingItemVersionPage(int pageNum, int maxPageSize, int approximateTotal, boolean totalIsExact, String nextCursor, String baseUrl,
+			RestMappingItemVersion[] results) throws RestException
+	{
+		this.results = results;
+		this.paginationData = new Pagination(pageNum, maxPageSize, approximateTotal, totalIsExact, nextCursor, baseUrl);
+	}
+
 	/**
 	 * @param results
 	 * @throws RestException
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api1.data.search;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * {@link RestSearchQuery}
+ * 
+ * A single description query, as posted to the batch description search.  The coordinates, expansions and user are shared by all of 
+ * the queries of a batch, and are passed as the usual query parameters of the batch call.
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.NONE)
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, defaultImpl = RestSearchQuery.class)
+public class RestSearchQuery
+{
+	/**
+	 * The query to be evaluated, which will be parsed by the Lucene Query Parser, the same as the query of the description search.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String query;
+
+	/**
+	 * Optional - 'fqn', 'regular', or 'definition', or the UUIDs or nids of description type concepts, to restrict the query to 
+	 * particular description types.  The same as the descriptionTypes parameter of the description search.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String[] descriptionTypes;
+
+	/**
+	 * Optional - the identifiers of extended description type concepts to restrict the query to.  The same as the extendedDescriptionTypes 
+	 * parameter of the description search.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String[] extendedDescriptionTypes;
+
+	/**
+	 * Optional - restrict the results to descriptions of concepts that define an 'association', 'mapset', 'refset', 'property' or 'semantic', 
+	 * or to 'metadata' concepts.  The same as the restrictTo parameter of the prefix search.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public String restrictTo;
+
+	/**
+	 * Optional - the page number >= 1 to return.  Defaults to 1.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Integer pageNum;
+
+	/**
+	 * Optional - the maximum number of results to return for the page, which must be greater than 0.  Defaults to 10.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Integer maxPageSize;
+}
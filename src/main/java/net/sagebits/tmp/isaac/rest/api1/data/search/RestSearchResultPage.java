@@ -35,6 +35,7 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import net.sagebits.tmp.isaac.rest.api.data.Pagination;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
@@ -64,6 +65,22 @@ public class RestSearchResultPage
 	@XmlElement
 	RestSearchResult[] results;
 
+	/**
+	 * The position of the query that this page answers, in the queries posted to the batch search.  Only populated by the batch search, 
+	 * which returns the pages in the order the queries complete, rather than the order they were posted.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	Integer queryIndex;
+
+	/**
+	 * The reason the query failed.  Only populated by the batch search, where a failure of one query doesn't fail the other queries.  When 
+	 * populated, there is no paginationData or results.
+	 */
+	@XmlElement
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	String error;
+
 	protected RestSearchResultPage()
 	{
 		// For jaxb
@@ -86,6 +103,24 @@ public class RestSearchResultPage
 		this.paginationData = new Pagination(pageNum, maxPageSize, approximateTotal, totalIsExact, hasMoreData, baseUrl);
 	}
 
+	/**
+	 * @param queryIndex the position of the query that failed, in the queries posted to the batch search
+	 * @param error the reason the query failed
+	 */
+	public RestSearchResultPage(int queryIndex, String error)
+	{
+		this.queryIndex = queryIndex;
+		this.error = error;
+	}
+
+	/**
+	 * @param queryIndex the position of the query that this page answers, in the queries posted to the batch search
+	 */
+	public void setQueryIndex(int queryIndex)
+	{
+		this.queryIndex = queryIndex;
+	}
+
 	/**
 	 * @return the results
 	 */
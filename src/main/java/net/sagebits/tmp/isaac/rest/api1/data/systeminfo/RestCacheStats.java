@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api1.data.systeminfo;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * {@link RestCacheStats}
+ * 
+ * This class carries the usage counters of one of the internal server caches.  The counters are cumulative since server start.
+ */
+@XmlRootElement
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
+public class RestCacheStats
+{
+	/**
+	 * The name of the cache
+	 */
+	@XmlElement
+	public String name;
+
+	/**
+	 * The (approximate) number of entries currently held in the cache
+	 */
+	@XmlElement
+	public long size;
+
+	/**
+	 * The configured maximum number of entries for the cache, or -1, if the cache isn't bounded by size
+	 */
+	@XmlElement
+	public long maximumSize;
+
+	/**
+	 * The number of lookups that were satisfied by the cache
+	 */
+	@XmlElement
+	public long hitCount;
+
+	/**
+	 * The number of lookups that were not satisfied by the cache
+	 */
+	@XmlElement
+	public long missCount;
+
+	/**
+	 * The number of entries that were evicted to keep the cache within its bounds
+	 */
+	@XmlElement
+	public long evictionCount;
+
+	public RestCacheStats()
+	{
+		// For jaxb
+	}
+
+	/**
+	 * @param name The name of the cache
+	 * @param size the current size
+	 * @param maximumSize the max size, or -1
+	 * @param hitCount hits since start
+	 * @param missCount misses since start
+	 * @param evictionCount evictions since start
+	 */
+	public RestCacheStats(String name, long size, long maximumSize, long hitCount, long missCount, long evictionCount)
+	{
+		this.name = name;
+		this.size = size;
+		this.maximumSize = maximumSize;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return "RestCacheStats [name=" + name + ", size=" + size + ", maximumSize=" + maximumSize + ", hitCount=" + hitCount + ", missCount=" + missCount
+				+ ", evictionCount=" + evictionCount + "]";
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api1.data.systeminfo;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * {@link RestRequestPoolStats}
+ * 
+ * This class carries the state of one of the thread pools that the long running API calls are executed on.  The counters are cumulative 
+ * since server start, the thread and queue values are a snapshot.
+ */
+@XmlRootElement
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
+public class RestRequestPoolStats
+{
+	/**
+	 * The name of the pool - this is the name of the API class whose requests run on the pool
+	 */
+	@XmlElement
+	public String name;
+
+	/**
+	 * The number of threads currently executing requests
+	 */
+	@XmlElement
+	public int activeThreads;
+
+	/**
+	 * The configured maximum number of threads for the pool
+	 */
+	@XmlElement
+	public int maximumThreads;
+
+	/**
+	 * The number of requests currently waiting for a thread
+	 */
+	@XmlElement
+	public int queueDepth;
+
+	/**
+	 * The configured maximum number of requests that may wait for a thread, before further requests are rejected
+	 */
+	@XmlElement
+	public int queueCapacity;
+
+	/**
+	 * The number of requests that have completed on the pool
+	 */
+	@XmlElement
+	public long completedCount;
+
+	/**
+	 * The number of requests that were rejected with a 503 (service unavailable), because the queue was full
+	 */
+	@XmlElement
+	public long rejectedCount;
+
+	public RestRequestPoolStats()
+	{
+		// For jaxb
+	}
+
+	/**
+	 * @param name The name of the pool
+	 * @param activeThreads threads currently busy
+	 * @param maximumThreads the max threads
+	 * @param queueDepth requests currently queued
+	 * @param queueCapacity the max queued requests
+	 * @param completedCount completions since start
+	 * @param rejectedCount rejections since start
+	 */
+	public RestRequestPoolStats(String name, int activeThreads, int maximumThreads, int queueDepth, int queueCapacity, long completedCount, 
+			long rejectedCount)
+	{
+		this.name = name;
+		this.activeThreads = activeThreads;
+		this.maximumThreads = maximumThreads;
+		this.queueDepth = queueDepth;
+		this.queueCapacity = queueCapacity;
+		this.completedCount = completedCount;
+		this.rejectedCount = rejectedCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return "RestRequestPoolStats [name=" + name + ", activeThreads=" + activeThreads + ", maximumThreads=" + maximumThreads + ", queueDepth=" 
+				+ queueDepth + ", queueCapacity=" + queueCapacity + ", completedCount=" + completedCount + ", rejectedCount=" + rejectedCount + "]";
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api1.data.systeminfo;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * {@link RestUserLookupStats}
+ * 
+ * This class carries the call count and timing of one kind of lookup in the local user store.  The values are cumulative since server start.
+ */
+@XmlRootElement
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
+public class RestUserLookupStats
+{
+	/**
+	 * The name of the lookup
+	 */
+	@XmlElement
+	public String name;
+
+	/**
+	 * The number of lookups performed
+	 */
+	@XmlElement
+	public long count;
+
+	/**
+	 * The total time spent in the lookups, in nanoseconds
+	 */
+	@XmlElement
+	public long totalNanos;
+
+	/**
+	 * The longest single lookup, in nanoseconds
+	 */
+	@XmlElement
+	public long maxNanos;
+
+	public RestUserLookupStats()
+	{
+		// For jaxb
+	}
+
+	/**
+	 * @param name The name of the lookup
+	 * @param count lookups since start
+	 * @param totalNanos total lookup time since start
+	 * @param maxNanos longest lookup since start
+	 */
+	public RestUserLookupStats(String name, long count, long totalNanos, long maxNanos)
+	{
+		this.name = name;
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return "RestUserLookupStats [name=" + name + ", count=" + count + ", totalNanos=" + totalNanos + ", maxNanos=" + maxNanos + "]";
+	}
+}
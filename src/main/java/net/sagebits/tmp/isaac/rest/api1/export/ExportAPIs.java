@@ -41,6 +41,7 @@ import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -61,6 +62,7 @@ import org.apache.logging.log4j.Logger;
 import net.sagebits.tmp.isaac.rest.Util;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
 import net.sagebits.tmp.isaac.rest.api1.RestPaths;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
@@ -111,71 +113,74 @@ public class ExportAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_XML })
 	@Path(RestPaths.vetsXMLComponent)
-	public Response exportVetsXML(@QueryParam(RequestParameters.changedAfter) String changedAfter, 
+	public CompletionStage<Response> exportVetsXML(@QueryParam(RequestParameters.changedAfter) String changedAfter, 
 			@QueryParam(RequestParameters.changedBefore) String changedBefore)
 			throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.changedAfter,
-				RequestParameters.changedBefore, RequestParameters.COORDINATE_PARAM_NAMES);
-
-		long changedAfterL;
-		long changedBeforeL;
-		try
-		{
-			changedAfterL = Util.parseDate(changedAfter);
-		}
-		catch (DateTimeParseException e)
-		{
-			throw new RestException("changedAfter", "Could not be parsed as ISO-8601");
-		}
-		try
-		{
-			changedBeforeL = Util.parseDate(changedBefore);
-		}
-		catch (DateTimeParseException e)
-		{
-			throw new RestException("changedBefore", "Could not be parsed as ISO-8601");
-		}
-		if (changedAfterL == Long.MAX_VALUE)
+		return AsyncRequests.supply(ExportAPIs.class, () ->
 		{
-			throw new RestException("changedAfter", "Cannot be set to 'latest'");
-		}
-		if (changedAfterL > System.currentTimeMillis())
-		{
-			throw new RestException("changedAfter", "Cannot be set to a future time");
-		}
-		if (changedBeforeL < changedAfterL)
-		{
-			throw new RestException("changedAfter", "Cannot be set to a time greater than changedBefore");
-		}
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.changedAfter,
+					RequestParameters.changedBefore, RequestParameters.COORDINATE_PARAM_NAMES);
 
-		log.info("Export VETs XML with the filter " + (changedAfterL > 0 ? "After: " + new Date(changedAfterL).toString() + " " : "")
-				+ (changedBeforeL > 0 ? "Before: " + new Date(changedBeforeL).toString() + " " : ""));
+			long changedAfterL;
+			long changedBeforeL;
+			try
+			{
+				changedAfterL = Util.parseDate(changedAfter);
+			}
+			catch (DateTimeParseException e)
+			{
+				throw new RestException("changedAfter", "Could not be parsed as ISO-8601");
+			}
+			try
+			{
+				changedBeforeL = Util.parseDate(changedBefore);
+			}
+			catch (DateTimeParseException e)
+			{
+				throw new RestException("changedBefore", "Could not be parsed as ISO-8601");
+			}
+			if (changedAfterL == Long.MAX_VALUE)
+			{
+				throw new RestException("changedAfter", "Cannot be set to 'latest'");
+			}
+			if (changedAfterL > System.currentTimeMillis())
+			{
+				throw new RestException("changedAfter", "Cannot be set to a future time");
+			}
+			if (changedBeforeL < changedAfterL)
+			{
+				throw new RestException("changedAfter", "Cannot be set to a time greater than changedBefore");
+			}
 
-		StreamingOutput stream = new StreamingOutput()
-		{
-			@Override
-			public void write(OutputStream output) throws IOException, WebApplicationException
+			log.info("Export VETs XML with the filter " + (changedAfterL > 0 ? "After: " + new Date(changedAfterL).toString() + " " : "")
+					+ (changedBeforeL > 0 ? "Before: " + new Date(changedBeforeL).toString() + " " : ""));
+
+			StreamingOutput stream = new StreamingOutput()
+			{
+				@Override
+				public void write(OutputStream output) throws IOException, WebApplicationException
+				{
+					VetsExporter ve = new VetsExporter();
+					ve.export(output, changedAfterL, changedBeforeL, false);
+				}
+			};
+			// In order to make the file download compliant with the needed file download javascript library
+			// https://github.com/johnculviner/jquery.fileDownload
+			// We must set the cookie fileDownload, this enables the GUI to provide feedback to the user telling them the file download
+			// was a success or a failure.
+			try
 			{
-				VetsExporter ve = new VetsExporter();
-				ve.export(output, changedAfterL, changedBeforeL, false);
+				return Response.ok(stream).header("content-disposition", "attachment; filename = export.xml")
+						.cookie(new NewCookie(new Cookie("fileDownload", "true", "/", null))).build();
 			}
-		};
-		// In order to make the file download compliant with the needed file download javascript library
-		// https://github.com/johnculviner/jquery.fileDownload
-		// We must set the cookie fileDownload, this enables the GUI to provide feedback to the user telling them the file download
-		// was a success or a failure.
-		try
-		{
-			return Response.ok(stream).header("content-disposition", "attachment; filename = export.xml")
-					.cookie(new NewCookie(new Cookie("fileDownload", "true", "/", null))).build();
-		}
-		catch (Exception e)
-		{
-			log.warn("Error streaming the XML file back", e);
-			// ClassNotFoundException should not happen in a well built system.
-			throw new IllegalStateException(e);
-		}
+			catch (Exception e)
+			{
+				log.warn("Error streaming the XML file back", e);
+				// ClassNotFoundException should not happen in a well built system.
+				throw new IllegalStateException(e);
+			}
+		});
 	}
 	
 	/**
@@ -226,7 +231,7 @@ public class ExportAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_OCTET_STREAM})
 	@Path(RestPaths.rf2Component)
-	public Response exportRF2(@QueryParam(RequestParameters.releaseDate) String releaseDate, 
+	public CompletionStage<Response> exportRF2(@QueryParam(RequestParameters.releaseDate) String releaseDate, 
 			@QueryParam(RequestParameters.releaseTime) String releaseTime, 
 			@QueryParam(RequestParameters.releaseTimeZone) String releaseTimeZone, 
 			@QueryParam(RequestParameters.versionDate) String versionDate, 
@@ -236,40 +241,43 @@ public class ExportAPIs
 			@QueryParam(RequestParameters.publish) @DefaultValue("false") String publish)
 			throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),  RequestParameters.releaseDate,  RequestParameters.releaseTime, 
-				 RequestParameters.releaseTimeZone,  RequestParameters.versionDate,  RequestParameters.solorRF2,  RequestParameters.exportType, RequestParameters.changedAfter,
-				 RequestParameters.publish, RequestParameters.COORDINATE_PARAM_NAMES);
+		return AsyncRequests.supply(ExportAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),  RequestParameters.releaseDate,  RequestParameters.releaseTime, 
+					 RequestParameters.releaseTimeZone,  RequestParameters.versionDate,  RequestParameters.solorRF2,  RequestParameters.exportType, RequestParameters.changedAfter,
+					 RequestParameters.publish, RequestParameters.COORDINATE_PARAM_NAMES);
 
 		
-		//TODO [1]add params for product, contryNamespace, and releaseStatus
-		InputStream is = exportRF2Internal(releaseDate, releaseTime, releaseTimeZone, versionDate, solorRF2, exportType, changedAfter, 
-				publish == null ? false : Boolean.parseBoolean(publish.trim()), 
-				RequestInfo.get().getStampCoordinate(), "testExtension", "test", RF2ReleaseStatus.ALPHA);
+			//TODO [1]add params for product, contryNamespace, and releaseStatus
+			InputStream is = exportRF2Internal(releaseDate, releaseTime, releaseTimeZone, versionDate, solorRF2, exportType, changedAfter, 
+					publish == null ? false : Boolean.parseBoolean(publish.trim()), 
+					RequestInfo.get().getStampCoordinate(), "testExtension", "test", RF2ReleaseStatus.ALPHA);
 		
-		StreamingOutput stream = new StreamingOutput()
-		{
-			@Override
-			public void write(OutputStream output) throws IOException, WebApplicationException
+			StreamingOutput stream = new StreamingOutput()
 			{
-				is.transferTo(output);
-				is.close();
+				@Override
+				public void write(OutputStream output) throws IOException, WebApplicationException
+				{
+					is.transferTo(output);
+					is.close();
+				}
+			};
+			// In order to make the file download compliant with the needed file download javascript library
+			// https://github.com/johnculviner/jquery.fileDownload
+			// We must set the cookie fileDownload, this enables the GUI to provide feedback to the user telling them the file download
+			// was a success or a failure.
+			try
+			{
+				return Response.ok(stream).header("content-disposition", "attachment; filename = export.zip")
+						.cookie(new NewCookie(new Cookie("fileDownload", "true", "/", null))).build();
 			}
-		};
-		// In order to make the file download compliant with the needed file download javascript library
-		// https://github.com/johnculviner/jquery.fileDownload
-		// We must set the cookie fileDownload, this enables the GUI to provide feedback to the user telling them the file download
-		// was a success or a failure.
-		try
-		{
-			return Response.ok(stream).header("content-disposition", "attachment; filename = export.zip")
-					.cookie(new NewCookie(new Cookie("fileDownload", "true", "/", null))).build();
-		}
-		catch (Exception e)
-		{
-			log.warn("Error streaming the XML file back", e);
-			// ClassNotFoundException should not happen in a well built system.
-			throw new IllegalStateException(e);
-		}
+			catch (Exception e)
+			{
+				log.warn("Error streaming the XML file back", e);
+				// ClassNotFoundException should not happen in a well built system.
+				throw new IllegalStateException(e);
+			}
+		});
 	}
 	
 	/**
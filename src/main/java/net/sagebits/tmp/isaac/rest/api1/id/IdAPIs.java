@@ -38,7 +38,6 @@ import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Stream;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -59,18 +58,19 @@ import net.sagebits.tmp.isaac.rest.api1.data.RestId;
 import net.sagebits.tmp.isaac.rest.api1.data.concept.RestConceptChronology;
 import net.sagebits.tmp.isaac.rest.api1.data.enumerations.IdType;
 import net.sagebits.tmp.isaac.rest.api1.data.enumerations.RestSupportedIdType;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService.LatestPresent;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.MetaData;
-import sh.isaac.api.AssemblageService;
 import sh.isaac.api.ConceptProxy;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.bootstrap.TermAux;
 import sh.isaac.api.chronicle.Chronology;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.component.concept.ConceptChronology;
-import sh.isaac.api.component.semantic.SemanticChronology;
 import sh.isaac.api.component.semantic.version.SemanticVersion;
 import sh.isaac.api.coordinate.LanguageCoordinate;
 import sh.isaac.api.coordinate.PremiseType;
@@ -264,23 +264,26 @@ public class IdAPIs
 		
 		boolean inUseB = Boolean.parseBoolean(inUse.trim());
 
-		AssemblageService as = Get.assemblageService();
-		Stream<SemanticChronology> identifierAnnotationSemanticChronologyStream = as.getSemanticChronologyStream(MetaData.IDENTIFIER_SOURCE____SOLOR.getNid());
-		identifierAnnotationSemanticChronologyStream.sequential().forEach(identifierAnnotationSemanticChronology -> {
-			LatestVersion<SemanticVersion> identifierAnnotationSemanticLatestOptional = identifierAnnotationSemanticChronology
-					.getLatestVersion(RequestInfo.get().getStampCoordinate());
+		// Only read the identifier annotations which are present on the stamp.  Usage only needs the first member of the identifier 
+		// assemblage, so it isn't checked with the index, which would load and sort every member.
+		AssemblageIndexService index = LookupService.getService(AssemblageIndexService.class);
+		LatestPresent latestPresent = index.getLatestPresent(MetaData.IDENTIFIER_SOURCE____SOLOR.getNid(), RequestInfo.get().getStampCoordinate());
+		for (int i = latestPresent.nextPresent(0); i >= 0; i = latestPresent.nextPresent(i + 1))
+		{
+			LatestVersion<SemanticVersion> identifierAnnotationSemanticLatestOptional = Get.assemblageService()
+					.getSemanticChronology(latestPresent.getNids()[i]).getLatestVersion(RequestInfo.get().getStampCoordinate());
 			if (identifierAnnotationSemanticLatestOptional.isPresent())
 			{
 				Util.logContradictions(log, identifierAnnotationSemanticLatestOptional);
 				SemanticVersion identifierAnnotationSemantic = identifierAnnotationSemanticLatestOptional.get();
 				int idNid = identifierAnnotationSemantic.getReferencedComponentNid();
 				
-				if (!inUseB || as.getSemanticChronologyStream(idNid).findFirst().isPresent())
+				if (!inUseB || Get.assemblageService().getSemanticChronologyStream(idNid).findFirst().isPresent())
 				{
 					identifierAnnotatedConcepts.add(Get.conceptService().getConceptChronology(idNid));
 				}
 			}
-		});
+		}
 
 		RestConceptChronology[] arrayToReturn = new RestConceptChronology[identifierAnnotatedConcepts.size()];
 
@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -45,6 +46,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -63,7 +65,9 @@ import net.sagebits.tmp.isaac.rest.api1.data.mapping.RestMappingSetVersion;
 import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestDynamicSemanticColumnInfo;
 import net.sagebits.tmp.isaac.rest.api1.semantic.SemanticAPIs;
 import net.sagebits.tmp.isaac.rest.api1.semantic.SemanticAPIs.SemanticVersions;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
 import net.sagebits.tmp.isaac.rest.session.MapSetDisplayFieldsService;
+import net.sagebits.tmp.isaac.rest.session.NdJsonOutput;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
@@ -246,8 +250,11 @@ public class MappingAPIs
 	/**
 	 * @param id - A UUID or nid of the concept that identifies the map set to list items for. Should be from
 	 *            {@link RestMappingSetVersion#identifiers}}
-	 * @param pageNum The pagination page number >= 1 to return
+	 * @param pageNum The pagination page number >= 1 to return.  Ignored, if a cursor is provided.
 	 * @param maxPageSize The maximum number of results to return per page, must be greater than 0, defaults to 250
+	 * @param cursor - optional - the nextCursor value from the paginationData of the prior page.  When provided, the next page is read 
+	 *            directly after the end of the prior page, rather than by skipping pageNum pages.  The cursor must be used with the same 
+	 *            coordinates as the prior page.
 	 * @param expand - A comma separated list of fields to expand. Supports 'referencedDetails,comments'. When referencedDetails is passed,
 	 *            descriptions will be included for all referenced concepts which align with your current coordinates. When comments is passed, all
 	 *            comments attached to each mapItem are included.
@@ -265,12 +272,15 @@ public class MappingAPIs
 	@Path(RestPaths.mappingItemsComponent + "{" + RequestParameters.id + "}")
 	public RestMappingItemVersionPage getMappingItemPage(@PathParam(RequestParameters.id) String id,
 			@QueryParam(RequestParameters.pageNum) @DefaultValue(RequestParameters.pageNumDefault) int pageNum,
-			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(250 + "") int maxPageSize, @QueryParam(RequestParameters.expand) String expand,
+			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(250 + "") int maxPageSize, 
+			@QueryParam(RequestParameters.cursor) String cursor,
+			@QueryParam(RequestParameters.expand) String expand,
 			@QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
 		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id,
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.cursor, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, 
+				RequestParameters.altId);
 		
 		RequestInfo.get().validateMethodExpansions(ExpandUtil.referencedDetails, ExpandUtil.comments);
 
@@ -285,7 +295,7 @@ public class MappingAPIs
 
 		Set<Integer> allowedAssemblages = new HashSet<>();
 		allowedAssemblages.add(semanticConceptNid);
-		SemanticVersions semantics = SemanticAPIs.get(null, allowedAssemblages, pageNum, maxPageSize, false, false, null);
+		SemanticVersions semantics = SemanticAPIs.get(null, allowedAssemblages, pageNum, maxPageSize, false, false, null, cursor);
 
 		for (SemanticVersion semanticVersion : semantics.getValues())
 		{
@@ -293,11 +303,56 @@ public class MappingAPIs
 					RequestInfo.get().shouldExpand(ExpandUtil.referencedDetails), RequestInfo.get().shouldExpand(ExpandUtil.comments),
 					displayFields));
 		}
-		RestMappingItemVersionPage results = new RestMappingItemVersionPage(pageNum, maxPageSize, semantics.getTotal(), true,
-				semantics.getTotal() > (pageNum * maxPageSize), RestPaths.mappingItemsComponent + id, items.toArray(new RestMappingItemVersion[items.size()]));
+		RestMappingItemVersionPage results = new RestMappingItemVersionPage(semantics.getPageNum(), maxPageSize, semantics.getTotal(), true,
+				semantics.getNextCursor(), RestPaths.mappingItemsComponent + id, items.toArray(new RestMappingItemVersion[items.size()]));
 		return results;
 	}
 
+	/**
+	 * The streamed variant of {@link #getMappingItemPage(String, int, int, String, String, String, String)}, selected by sending 
+	 * <code>Accept: application/x-ndjson</code>.  Rather than a page, every item of the map set is returned, one RestMappingItemVersion 
+	 * per line, in the same order as the pages, each written as soon as it is read.  Paging parameters are not supported.
+	 * 
+	 * @param id - A UUID or nid of the concept that identifies the map set to list items for. Should be from
+	 *            {@link RestMappingSetVersion#identifiers}}
+	 * @param expand - A comma separated list of fields to expand. Supports 'referencedDetails,comments'.
+	 * @param coordToken specifies an explicit serialized CoordinatesToken string specifying all coordinate parameters. A CoordinatesToken may
+	 *            be obtained by a separate (prior) call to getCoordinatesToken().
+	 * @param altId - (optional) the altId type(s) to populate in any returned RestIdentifiedObject structures.
+	 * @return the mapping item versions, as newline delimited JSON
+	 * 
+	 * @throws RestException
+	 */
+	@GET
+	@Produces(NdJsonOutput.PRODUCES)
+	@Path(RestPaths.mappingItemsComponent + "{" + RequestParameters.id + "}")
+	public CompletionStage<Response> getMappingItemStream(@PathParam(RequestParameters.id) String id,
+			@QueryParam(RequestParameters.expand) String expand,
+			@QueryParam(RequestParameters.coordToken) String coordToken,
+			@QueryParam(RequestParameters.altId) String altId) throws RestException
+	{
+		return AsyncRequests.supply(MappingAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id,
+					RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.referencedDetails, ExpandUtil.comments);
+
+			int semanticConceptNid = RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id);
+
+			Positions positions = Positions.getPositions(semanticConceptNid);
+
+			List<RestMappingSetDisplayField> displayFields = MappingAPIs.getMappingSetDisplayFieldsFromMappingSet(semanticConceptNid,
+					RequestInfo.get().getStampCoordinate());
+			boolean expandReferenced = RequestInfo.get().shouldExpand(ExpandUtil.referencedDetails);
+			boolean expandComments = RequestInfo.get().shouldExpand(ExpandUtil.comments);
+
+			return NdJsonOutput.stream(writer -> SemanticAPIs.forEachInAssemblage(semanticConceptNid, false, null, 
+					semanticVersion -> writer.write(new RestMappingItemVersion(((DynamicVersion) semanticVersion), positions.targetPos, 
+							positions.qualfierPos, expandReferenced, expandComments, displayFields))));
+		});
+	}
+
 	/**
 	 * @param id - A UUID or nid of a semantic that identifies a map item.
 	 * @param expand - A comma separated list of fields to expand. Supports 'referencedDetails,comments'. When referencedDetails is passed,
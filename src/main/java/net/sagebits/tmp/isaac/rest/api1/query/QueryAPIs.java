@@ -22,6 +22,7 @@ import java.io.StringReader;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
@@ -31,6 +32,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.xml.bind.JAXBException;
 import org.apache.logging.log4j.LogManager;
@@ -40,6 +42,8 @@ import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
 import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.query.RestQueryResult;
 import net.sagebits.tmp.isaac.rest.api1.data.query.RestQueryResultPage;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.NdJsonOutput;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
@@ -166,73 +170,115 @@ public class QueryAPIs
 	@Path(RestPaths.flworComponent)
 	@Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
 	@Consumes({MediaType.APPLICATION_XML})
-	public RestQueryResultPage flworQuery(
+	public CompletionStage<RestQueryResultPage> flworQuery(
 			@QueryParam(RequestParameters.pageNum) @DefaultValue(RequestParameters.pageNumDefault) int pageNum,
 			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(RequestParameters.maxPageSizeDefault) int maxPageSize,
 			String flworQueryXml) throws RestException {
 
-		// Each API method should validate that passed query parameters are appropriate for this request
-		RequestParameters.validateParameterNamesAgainstSupportedNames(
-				RequestInfo.get().getParameters(),
-				RequestParameters.PAGINATION_PARAM_NAMES);
-
-		try
+		return AsyncRequests.supply(QueryAPIs.class, () ->
 		{
-			if (pageNum < 1) {
-				throw new RestException(RequestParameters.pageNum, pageNum + "", "Parameter " + RequestParameters.pageNum + " value must be > 0");
-			}
+			// Each API method should validate that passed query parameters are appropriate for this request
+			RequestParameters.validateParameterNamesAgainstSupportedNames(
+					RequestInfo.get().getParameters(),
+					RequestParameters.PAGINATION_PARAM_NAMES);
 
-			if (maxPageSize < 1) {
-				throw new RestException(RequestParameters.maxPageSize, maxPageSize + "", "Parameter " + RequestParameters.maxPageSize + " value must be > 0");
-			}
+			try
+			{
+				if (pageNum < 1) {
+					throw new RestException(RequestParameters.pageNum, pageNum + "", "Parameter " + RequestParameters.pageNum + " value must be > 0");
+				}
 
-			log.debug("Executing FLWOR query (pageNum=" + pageNum + ", maxPageSize=" + maxPageSize + "):\n" + flworQueryXml);
-
-			Query queryFromXml = null;
-			try {
-				QueryFromXmlProvider queryParserService = Get.service(QueryFromXmlProvider.class);
-				queryFromXml = queryParserService.fromXml(new StringReader(flworQueryXml));
-			} catch (JAXBException e) {
-				log.warn("Bad query XML: " + e.getLocalizedMessage() + "\n" + flworQueryXml, e);
-				throw new RestException("Bad query XML: ", e.getLocalizedMessage());
-			} catch (Exception e) {
-				log.error("Unexpected error parsing FLWOR query XML:\n" + flworQueryXml, e);
-				throw new RuntimeException("Unexpected error parsing FLWOR query XML", e);
-			}
+				if (maxPageSize < 1) {
+					throw new RestException(RequestParameters.maxPageSize, maxPageSize + "", "Parameter " + RequestParameters.maxPageSize + " value must be > 0");
+				}
 
-			// ISAAC FLWOR query executeQuery() returns rows as arrays of column arrays
-			@SuppressWarnings("unchecked")
-			List<List<String>> queryResultFromIsaacAsRows = Collections.EMPTY_LIST;
-			try {
-				queryResultFromIsaacAsRows = queryFromXml.executeQuery();
-				log.info("Retrieved " + queryResultFromIsaacAsRows.size() + " unpaginated rows from FLWOR query:\n" + flworQueryXml);
+				log.debug("Executing FLWOR query (pageNum=" + pageNum + ", maxPageSize=" + maxPageSize + "):\n" + flworQueryXml);
 
-			} catch (Exception e) {
-				log.error(e.getClass().getSimpleName() + " executing FLWOR query with XML:\n" + flworQueryXml, e);
-				throw new RuntimeException(e.getLocalizedMessage() + " executing FLWOR query " + flworQueryXml, e);
-			}
+				List<List<String>> queryResultFromIsaacAsRows = executeFlworQuery(flworQueryXml);
 
-			final List<List<String>> paginatedResult = PaginationUtils.getResults(queryResultFromIsaacAsRows, pageNum, maxPageSize);
-			log.trace("Retrieved pageNum=\"" + pageNum + "\", maxPageSize=\"" + maxPageSize + "\"):\n" + paginatedResult);
+				final List<List<String>> paginatedResult = PaginationUtils.getResults(queryResultFromIsaacAsRows, pageNum, maxPageSize);
+				log.trace("Retrieved pageNum=\"" + pageNum + "\", maxPageSize=\"" + maxPageSize + "\"):\n" + paginatedResult);
 
-			log.trace("Retrieved " + paginatedResult.size() + " paginated rows (pageNum=\"" + pageNum + "\", maxPageSize=\"" + maxPageSize + "\") FLWOR query:\n" + flworQueryXml);
+				log.trace("Retrieved " + paginatedResult.size() + " paginated rows (pageNum=\"" + pageNum + "\", maxPageSize=\"" + maxPageSize + "\") FLWOR query:\n" + flworQueryXml);
 
-			final RestQueryResult[] results = getRestQueryResultsFromFlworQueryResult(paginatedResult);
+				final RestQueryResult[] results = getRestQueryResultsFromFlworQueryResult(paginatedResult);
 
-			final String restPath = RestPaths.queryAppPathComponent + RestPaths.flworComponent;
+				final String restPath = RestPaths.queryAppPathComponent + RestPaths.flworComponent;
 
-			return new RestQueryResultPage(pageNum, maxPageSize, results.length, true, results.length == maxPageSize, restPath, results); 
+				return new RestQueryResultPage(pageNum, maxPageSize, results.length, true, results.length == maxPageSize, restPath, results); 
 
-		}
-		catch (RestException e)
+			}
+			catch (RestException e)
+			{
+				throw e;
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Unexpected internal error performing query", e);
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * The streamed variant of {@link #flworQuery(int, int, String)}, selected by sending <code>Accept: application/x-ndjson</code>.
+	 * Rather than a page, every row of the query result is returned, one RestQueryResult per line, each converted and written as it 
+	 * is reached, instead of building the whole result array first.  Paging parameters are not supported.
+	 * 
+	 * @param flworQueryXml the FLWOR query, as for flworQuery
+	 * @return the rows of the query result, as newline delimited JSON
+	 * @throws RestException 
+	 */
+	@POST
+	@Path(RestPaths.flworComponent)
+	@Produces(NdJsonOutput.PRODUCES)
+	@Consumes({MediaType.APPLICATION_XML})
+	public CompletionStage<Response> flworQueryStream(String flworQueryXml) throws RestException {
+
+		return AsyncRequests.supply(QueryAPIs.class, () ->
 		{
-			throw e;
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters());
+
+			log.debug("Executing streamed FLWOR query:\n" + flworQueryXml);
+
+			// Run the query before the response is started, so that a bad query still gets an error status
+			final List<List<String>> queryResultFromIsaacAsRows = executeFlworQuery(flworQueryXml);
+
+			return NdJsonOutput.stream(writer ->
+			{
+				for (List<String> row : queryResultFromIsaacAsRows) {
+					writer.write(new RestQueryResult(row.toArray(new String[row.size()])));
+				}
+			});
+		});
+	}
+
+	private static List<List<String>> executeFlworQuery(String flworQueryXml) throws RestException {
+		Query queryFromXml = null;
+		try {
+			QueryFromXmlProvider queryParserService = Get.service(QueryFromXmlProvider.class);
+			queryFromXml = queryParserService.fromXml(new StringReader(flworQueryXml));
+		} catch (JAXBException e) {
+			log.warn("Bad query XML: " + e.getLocalizedMessage() + "\n" + flworQueryXml, e);
+			throw new RestException("Bad query XML: ", e.getLocalizedMessage());
+		} catch (Exception e) {
+			log.error("Unexpected error parsing FLWOR query XML:\n" + flworQueryXml, e);
+			throw new RuntimeException("Unexpected error parsing FLWOR query XML", e);
 		}
-		catch (RuntimeException e)
-		{
-			log.error("Unexpected internal error performing query", e);
-			throw e;
+
+		// ISAAC FLWOR query executeQuery() returns rows as arrays of column arrays
+		@SuppressWarnings("unchecked")
+		List<List<String>> queryResultFromIsaacAsRows = Collections.EMPTY_LIST;
+		try {
+			queryResultFromIsaacAsRows = queryFromXml.executeQuery();
+			log.info("Retrieved " + queryResultFromIsaacAsRows.size() + " unpaginated rows from FLWOR query:\n" + flworQueryXml);
+
+		} catch (Exception e) {
+			log.error(e.getClass().getSimpleName() + " executing FLWOR query with XML:\n" + flworQueryXml, e);
+			throw new RuntimeException(e.getLocalizedMessage() + " executing FLWOR query " + flworQueryXml, e);
 		}
+
+		return queryResultFromIsaacAsRows;
 	}
 
 	private static RestQueryResult[] getRestQueryResultsFromFlworQueryResult(List<List<String>> queryResultFromIsaacAsRowsOfStrings) {
@@ -18,16 +18,20 @@
  */
 package net.sagebits.tmp.isaac.rest.api1.search;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Predicate;
 import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -36,39 +40,49 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.queryparser.classic.ParseException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import net.sagebits.tmp.isaac.rest.ExpandUtil;
 import net.sagebits.tmp.isaac.rest.Util;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
 import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.data.enumerations.SemanticStyle;
+import net.sagebits.tmp.isaac.rest.api1.data.search.RestSearchQuery;
 import net.sagebits.tmp.isaac.rest.api1.data.search.RestSearchResult;
 import net.sagebits.tmp.isaac.rest.api1.data.search.RestSearchResultPage;
 import net.sagebits.tmp.isaac.rest.api1.semantic.SemanticAPIs;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.MyJacksonMapperConfig;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.PresenceMemoService;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RequestPools;
+import net.sagebits.tmp.isaac.rest.session.RestConfig;
+import net.sagebits.tmp.isaac.rest.session.SearchResultCache;
+import net.sagebits.tmp.isaac.rest.session.TypeAheadIndexService;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.MetaData;
-import sh.isaac.api.AssemblageService;
 import sh.isaac.api.Get;
 import sh.isaac.api.IdentifiedObjectService;
 import sh.isaac.api.LookupService;
 import sh.isaac.api.Status;
-import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.TaxonomySnapshot;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.chronicle.Version;
 import sh.isaac.api.component.concept.ConceptChronology;
-import sh.isaac.api.component.concept.ConceptService;
 import sh.isaac.api.component.semantic.SemanticChronology;
 import sh.isaac.api.component.semantic.version.DescriptionVersion;
 import sh.isaac.api.component.semantic.version.DynamicVersion;
 import sh.isaac.api.component.semantic.version.LongVersion;
 import sh.isaac.api.component.semantic.version.StringVersion;
+import sh.isaac.api.component.semantic.version.dynamic.DynamicData;
 import sh.isaac.api.coordinate.StampCoordinate;
 import sh.isaac.api.externalizable.IsaacObjectType;
 import sh.isaac.api.index.AuthorModulePathRestriction;
@@ -103,18 +117,20 @@ public class SearchAPIs
 			String restPath, String query) throws RestException
 	{
 		List<RestSearchResult> restSearchResults = new ArrayList<>();
-		for (SearchResult ochreSearchResult : ochreSearchResults)
+		//The expansions read a number of chronologies per result, so the results are converted in parallel
+		List<Optional<RestSearchResult>> converted = RequestPools.parallelMap(ochreSearchResults, 
+				ochreSearchResult -> createRestSearchResult(ochreSearchResult, query));
+		for (int i = 0; i < converted.size(); i++)
 		{
-			Optional<RestSearchResult> restSearchResultOptional = createRestSearchResult(ochreSearchResult, query);
-			if (restSearchResultOptional.isPresent())
+			if (converted.get(i).isPresent())
 			{
-				restSearchResults.add(restSearchResultOptional.get());
+				restSearchResults.add(converted.get(i).get());
 			}
 			else
 			{
 				//This shouldn't happen, because all of the same filtering critera should happen at query time - we should 
 				//no longer be post-filtering anything here.
-				log.warn("Conversion to RestSearchResult was unsuccessful for SearchResult {}", ochreSearchResult.getNid());
+				log.warn("Conversion to RestSearchResult was unsuccessful for SearchResult {}", ochreSearchResults.get(i).getNid());
 			}
 		}
 		boolean hasMoreData = ochreSearchResults.size() == maxPageSize; 
@@ -191,7 +207,7 @@ public class SearchAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.descriptionsComponent)
-	public RestSearchResultPage descriptionSearch(@QueryParam(RequestParameters.query) String query,
+	public CompletionStage<RestSearchResultPage> descriptionSearch(@QueryParam(RequestParameters.query) String query,
 			@QueryParam(RequestParameters.descriptionTypes) Set<String> descriptionTypes,
 			@QueryParam(RequestParameters.extendedDescriptionTypes) Set<String> extendedDescriptionTypes,
 			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
@@ -201,43 +217,29 @@ public class SearchAPIs
 			@QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
-				RequestParameters.descriptionTypes, RequestParameters.extendedDescriptionTypes, RequestParameters.applyStampToConcept, RequestParameters.PAGINATION_PARAM_NAMES,
-				RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
-		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
-
-		if (StringUtils.isBlank(query))
+		return AsyncRequests.supply(SearchAPIs.class, () ->
 		{
-			throw new RestException("The parameter 'query' must contain at least one character");
-		}
-		int[] parsedDescriptionTypes = parseDescriptionTypes(descriptionTypes);
-		int[] parsedExtendedDescriptionTypes = parseExtendedDescriptionTypes(extendedDescriptionTypes);
-
-		final String restPath = RestPaths.searchAppPathComponent + RestPaths.descriptionsComponent + "?" + RequestParameters.query + "=" + query;
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
+					RequestParameters.descriptionTypes, RequestParameters.extendedDescriptionTypes, RequestParameters.applyStampToConcept, RequestParameters.PAGINATION_PARAM_NAMES,
+					RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 
-		log.debug("Performing description search for '" + query + "'");
-		try {
-			List<SearchResult> ochreSearchResults = LookupService.get().getService(DescriptionIndexer.class).query(query, false, null, 
-					createStatusTimeFilter(
-							StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
-							RequestInfo.get().getStampCoordinate()),
-					AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), false, parsedDescriptionTypes, parsedExtendedDescriptionTypes, pageNum,
-					maxPageSize, Long.MAX_VALUE);
-			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
-		}
-		catch (Exception e)
-		{
-			if (e.getCause() != null && e.getCause() instanceof ParseException)
+			if (StringUtils.isBlank(query))
 			{
-				throw new RestException(query, "Query Syntax Error: " + ((ParseException)e.getCause()).getMessage());
-			}
-			else
-			{
-				throw e;
+				throw new RestException("The parameter 'query' must contain at least one character");
 			}
-		}
+			int[] parsedDescriptionTypes = parseDescriptionTypes(descriptionTypes);
+			int[] parsedExtendedDescriptionTypes = parseExtendedDescriptionTypes(extendedDescriptionTypes);
+
+			final String restPath = RestPaths.searchAppPathComponent + RestPaths.descriptionsComponent + "?" + RequestParameters.query + "=" + query;
+
+			boolean applyStampToConceptB = StringUtils.isBlank(applyStampToConcept) ? true : 
+				RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept);
+			return descriptionSearchInternal(query, parsedDescriptionTypes, parsedExtendedDescriptionTypes, null, applyStampToConceptB, 
+					pageNum, maxPageSize, restPath);
+		});
 	}
 	
 	/**
@@ -303,7 +305,7 @@ public class SearchAPIs
 	@POST
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.descriptionsComponent)
-	public RestSearchResultPage descriptionSearchPost(String query,
+	public CompletionStage<RestSearchResultPage> descriptionSearchPost(String query,
 			@QueryParam(RequestParameters.descriptionTypes) Set<String> descriptionTypes,
 			@QueryParam(RequestParameters.extendedDescriptionTypes) Set<String> extendedDescriptionTypes,
 			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
@@ -312,31 +314,46 @@ public class SearchAPIs
 			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),
-				RequestParameters.descriptionTypes, RequestParameters.extendedDescriptionTypes, RequestParameters.PAGINATION_PARAM_NAMES,
-				RequestParameters.applyStampToConcept, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),
+					RequestParameters.descriptionTypes, RequestParameters.extendedDescriptionTypes, RequestParameters.PAGINATION_PARAM_NAMES,
+					RequestParameters.applyStampToConcept, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 
-		if (StringUtils.isBlank(query))
-		{
-			throw new RestException("The parameter 'query' must contain at least one character");
-		}
-		int[] parsedDescriptionTypes = parseDescriptionTypes(descriptionTypes);
-		int[] parsedExtendedDescriptionTypes = parseExtendedDescriptionTypes(extendedDescriptionTypes);
+			if (StringUtils.isBlank(query))
+			{
+				throw new RestException("The parameter 'query' must contain at least one character");
+			}
+			int[] parsedDescriptionTypes = parseDescriptionTypes(descriptionTypes);
+			int[] parsedExtendedDescriptionTypes = parseExtendedDescriptionTypes(extendedDescriptionTypes);
+
+			final String restPath = RestPaths.searchAppPathComponent + RestPaths.descriptionsComponent + "?" + RequestParameters.query + "=" + query;
 
-		final String restPath = RestPaths.searchAppPathComponent + RestPaths.descriptionsComponent + "?" + RequestParameters.query + "=" + query;
+			boolean applyStampToConceptB = StringUtils.isBlank(applyStampToConcept) ? true : 
+				RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept);
+			return descriptionSearchInternal(query, parsedDescriptionTypes, parsedExtendedDescriptionTypes, null, applyStampToConceptB, 
+					pageNum, maxPageSize, restPath);
+		});
+	}
 
+	private RestSearchResultPage descriptionSearchInternal(String query, int[] parsedDescriptionTypes, int[] parsedExtendedDescriptionTypes, 
+			String restrictTo, boolean applyStampToConcept, int pageNum, int maxPageSize, String restPath) throws RestException
+	{
 		log.debug("Performing description search for '" + query + "'");
+		boolean metadataRestrict = StringUtils.isNotBlank(restrictTo);
+		Predicate<Integer> filter = combineFilters(createRestrictToFilter(restrictTo), 
+				createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()));
 		try
 		{
-			List<SearchResult> ochreSearchResults = LookupService.get().getService(DescriptionIndexer.class).query(query, false, null, 
-					createStatusTimeFilter(
-							StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
-							RequestInfo.get().getStampCoordinate()),
-					AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), false, parsedDescriptionTypes, parsedExtendedDescriptionTypes, pageNum,
-					maxPageSize, Long.MAX_VALUE);
+			List<SearchResult> ochreSearchResults = getSearchResultCache().getPage(new Object[] {"description", query, parsedDescriptionTypes, 
+					parsedExtendedDescriptionTypes, metadataRestrict ? restrictTo.toLowerCase(Locale.ENGLISH).trim() : null, applyStampToConcept, 
+					RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+					(page, pageSize) -> LookupService.get().getService(DescriptionIndexer.class).query(query, false, null, filter,
+							AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), metadataRestrict, parsedDescriptionTypes, 
+							parsedExtendedDescriptionTypes, page, pageSize, Long.MAX_VALUE));
 			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
 		}
 		catch (Exception e)
@@ -352,6 +369,144 @@ public class SearchAPIs
 		}
 	}
 
+	/**
+	 * Evaluate many description queries in one call.  This is the equivalent of calling the POST variation of the description search once per 
+	 * query, but the request is authenticated, and the coordinates are read, once for the whole batch, and the queries are evaluated concurrently.
+	 * 
+	 * The response is a JSON array of {@link RestSearchResultPage}, which is streamed back as each query completes - so the pages are in the 
+	 * order the queries complete, not the order they were posted.  The queryIndex of each page gives the position of its query in the posted 
+	 * array.  A query that fails (for example, with a syntax error) returns a page with only the queryIndex and the error populated, rather 
+	 * than failing the rest of the batch.  The queries are spread across the same bounded pool as the other search calls.
+	 * 
+	 * A batch may contain at most 'search_batch_max_queries' (uts-rest-api.properties, 100 by default) queries - a larger batch is rejected.
+	 * 
+	 * @param queries the queries to evaluate - a JSON array of {@link RestSearchQuery}, each of which carries its own query, description types, 
+	 *            restrictTo and page options.
+	 * @param applyStampToConcept if true (the default) then the supplied STAMP restrictions will also apply to the concept most closely related to the 
+	 *            description match, for every query of the batch.  See {@link #descriptionSearch(String, Set, Set, String, int, int, String, String, String)}
+	 * @param expand Optional Comma separated list of fields to expand or include directly in the results of every query.  Supports the same 
+	 *            values as {@link #descriptionSearch(String, Set, Set, String, int, int, String, String, String)}
+	 * @param coordToken specifies an explicit serialized CoordinatesToken string specifying all coordinate parameters, which apply to every query.
+	 *            A CoordinatesToken may be obtained by a separate (prior) call to getCoordinatesToken().
+	 * @param altId - (optional) the altId type(s) to populate in any returned RestIdentifiedObject structures.  By default, no alternate IDs are 
+	 *     returned.  This can be set to one or more names or ids from the /1/id/types or the value 'ANY'.  Requesting IDs that are unneeded will harm 
+	 *     performance. 
+	 * 
+	 * @return the streamed JSON array of result pages, one per query
+	 * @throws RestException
+	 */
+	@POST
+	@Consumes({ MediaType.APPLICATION_JSON })
+	@Produces({ MediaType.APPLICATION_JSON })
+	@Path(RestPaths.descriptionsComponent + RestPaths.batchComponent)
+	public CompletionStage<Response> descriptionSearchBatch(RestSearchQuery[] queries,
+			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
+			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
+			@QueryParam(RequestParameters.altId) String altId) throws RestException
+	{
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.applyStampToConcept, 
+					RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+
+			if (queries == null || queries.length == 0)
+			{
+				throw new RestException("The batch must contain at least one query");
+			}
+			if (queries.length > RestConfig.getInstance().getSearchBatchMaxQueries())
+			{
+				throw new RestException("The batch may contain at most " + RestConfig.getInstance().getSearchBatchMaxQueries() + " queries");
+			}
+			boolean applyStampToConceptB = StringUtils.isBlank(applyStampToConcept) ? true : 
+				RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept);
+			List<Integer> queryIndexes = new ArrayList<>(queries.length);
+			for (int i = 0; i < queries.length; i++)
+			{
+				queryIndexes.add(i);
+			}
+
+			log.debug("Performing a batch of {} description searches", queries.length);
+
+			// The response filters have unbound the RequestInfo by the time the output is written
+			RequestInfo ri = RequestInfo.get();
+			StreamingOutput stream = output -> 
+			{
+				try
+				{
+					ri.wrap(() -> 
+					{
+						JsonGenerator generator = MyJacksonMapperConfig.getMapper().getFactory().createGenerator(output);
+						generator.writeStartArray();
+						RequestPools.parallelForEachCompleted(SearchAPIs.class.getSimpleName(), queryIndexes, index -> batchQuery(index, queries[index], applyStampToConceptB), 
+								(index, page, failure) -> 
+								{
+									RestSearchResultPage result = page;
+									if (result == null)
+									{
+										if (failure.getCause() instanceof RestException)
+										{
+											result = new RestSearchResultPage(index, failure.getCause().toString());
+										}
+										else
+										{
+											log.warn("Query " + index + " of a batch search failed", failure);
+											result = new RestSearchResultPage(index, failure.toString());
+										}
+									}
+									// Each page is flushed as it is written
+									MyJacksonMapperConfig.getMapper().writeValue(generator, result);
+								});
+						generator.writeEndArray();
+						generator.close();
+						return null;
+					}).call();
+				}
+				catch (IOException | RuntimeException e)
+				{
+					throw e;
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			};
+			return Response.ok(stream).build();
+		});
+	}
+
+	private RestSearchResultPage batchQuery(int index, RestSearchQuery query, boolean applyStampToConcept)
+	{
+		try
+		{
+			if (query == null || StringUtils.isBlank(query.query))
+			{
+				throw new RestException("The parameter 'query' must contain at least one character");
+			}
+			int pageNum = query.pageNum == null ? Integer.parseInt(RequestParameters.pageNumDefault) : query.pageNum;
+			int maxPageSize = query.maxPageSize == null ? Integer.parseInt(RequestParameters.maxPageSizeDefault) : query.maxPageSize;
+			if (pageNum < 1 || maxPageSize < 1)
+			{
+				throw new RestException("The pageNum must be >= 1, and the maxPageSize must be > 0");
+			}
+			int[] parsedDescriptionTypes = parseDescriptionTypes(query.descriptionTypes == null ? null : new HashSet<>(Arrays.asList(query.descriptionTypes)));
+			int[] parsedExtendedDescriptionTypes = parseExtendedDescriptionTypes(query.extendedDescriptionTypes == null ? null 
+					: new HashSet<>(Arrays.asList(query.extendedDescriptionTypes)));
+			String restPath = RestPaths.searchAppPathComponent + RestPaths.descriptionsComponent + "?" + RequestParameters.query + "=" + query.query;
+			RestSearchResultPage page = descriptionSearchInternal(query.query, parsedDescriptionTypes, parsedExtendedDescriptionTypes, query.restrictTo, 
+					applyStampToConcept, pageNum, maxPageSize, restPath);
+			page.setQueryIndex(index);
+			return page;
+		}
+		catch (RestException e)
+		{
+			// Passed back to the caller as the error of this query
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * A search interface that is optimized for prefix searching, such as the searching
 	 * that would be done to implement a type-ahead style search. Does not use the Lucene Query parser.
@@ -387,6 +542,11 @@ public class SearchAPIs
 	 *            descriptions that matched the query. When false, you will get a search result for EACH matching description. When true, you will
 	 *            only get one search result, which is the search result with the best score for that concept (compared to the other search results
 	 *            for that concept)
+	 * @param typeAhead - Optional - if set to true, the query is answered from an in-memory prefix index of the descriptions, rather than the 
+	 *            lucene index, which is much faster for the short, repeated queries of a type-ahead.  Only the descriptions in the language of the 
+	 *            language coordinate are searched, and the results are ordered shortest description first, rather than by lucene score.  
+	 *            The query terms are matched ignoring case and accents.  If the language isn't indexed (see 'type_ahead_languages' in 
+	 *            uts-rest-api.properties) or the index is still being built, the query is answered as if this were false.  Defaults to false.
 	 * @param expand Optional Comma separated list of fields to expand or include directly in the results. Supports:
 	 *            <br> 'uuid' (return the UUID of the matched semantic, rather than just the nid)
 	 *            <br> 'referencedConcept' (return the conceptChronology of the nearest concept found by following the referencedComponent references
@@ -429,166 +589,103 @@ public class SearchAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.prefixComponent)
-	public RestSearchResultPage prefixSearch(@QueryParam(RequestParameters.query) String query,
+	public CompletionStage<RestSearchResultPage> prefixSearch(@QueryParam(RequestParameters.query) String query,
 			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
 			@QueryParam(RequestParameters.pageNum) @DefaultValue(RequestParameters.pageNumDefault) int pageNum,
 			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(RequestParameters.maxPageSizeDefault) int maxPageSize,
 			@QueryParam(RequestParameters.restrictTo) String restrictTo, @QueryParam(RequestParameters.mergeOnConcept) String mergeOnConcept,
 			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
-			@QueryParam(RequestParameters.altId) String altId) throws RestException
+			@QueryParam(RequestParameters.altId) String altId, @QueryParam(RequestParameters.typeAhead) String typeAhead) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.restrictTo, RequestParameters.mergeOnConcept, RequestParameters.expand,
-				RequestParameters.applyStampToConcept, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
-		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
-
-		if (StringUtils.isBlank(query))
+		return AsyncRequests.supply(SearchAPIs.class, () ->
 		{
-			throw new RestException("The parameter 'query' must contain at least one character");
-		}
-		log.debug("Performing prefix search for '" + query + "'");
-
-		boolean mergeOnConcepts = StringUtils.isBlank(mergeOnConcept) ? false
-				: RequestInfoUtils.parseBooleanParameter(RequestParameters.mergeOnConcept, mergeOnConcept);
-		boolean metadataRestrict = false;
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
+					RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.restrictTo, RequestParameters.mergeOnConcept, RequestParameters.expand,
+					RequestParameters.applyStampToConcept, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId, RequestParameters.typeAhead);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 
-		Predicate<Integer> filter = null;
-		if (StringUtils.isNotBlank(restrictTo))
-		{
-			String temp = restrictTo.toLowerCase(Locale.ENGLISH).trim();
-			metadataRestrict = true;
-			switch (temp)
+			if (StringUtils.isBlank(query))
 			{
-				case "association":
-					filter = (nid -> {
-						Optional<Integer> conNid = Frills.getNearestConcept(nid);
-						if (conNid.isPresent())
-						{
-							return Frills.definesAssociation(conNid.get());
-						}
-						return false;
-					});
-					break;
-				case "mapset":
-					filter = (nid -> {
-						Optional<Integer> conNid = Frills.getNearestConcept(nid);
-						if (conNid.isPresent())
-						{
-							return Frills.definesMapping(conNid.get());
-						}
-						return false;
-					});
-					break;
-				case "sememe":
-				case "semantic":
-					filter = (nid -> {
-						Optional<Integer> conNid = Frills.getNearestConcept(nid);
-						if (conNid.isPresent())
-						{
-							SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
-							if (ss != null && ss != SemanticStyle.NONE)
-							{
-								return true;
-							}
-							return false;
-						}
-						return false;
-					});
-					break;
-				case "refset":
-					filter = (nid -> {
-						Optional<Integer> conNid = Frills.getNearestConcept(nid);
-						if (conNid.isPresent())
-						{
-							SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
-							if (ss != null && ss == SemanticStyle.REFSET)
-							{
-								return true;
-							}
-							return false;
-						}
-						return false;
-					});
-					break;
-				case "property":
-					filter = (nid -> {
-						Optional<Integer> conNid = Frills.getNearestConcept(nid);
-						if (conNid.isPresent())
-						{
-							SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
-							if (ss != null && (ss == SemanticStyle.ASSOCIATION || ss == SemanticStyle.MAPSET || ss == SemanticStyle.PROPERTY))
-							{
-								return true;
-							}
-							return false;
-						}
-						return false;
-					});
-					break;
-				case "metadata":
-					// metadata restrict is now part of the query construction.
-					filter = null;
-					break;
-				default :
-					throw new RestException("restrictTo", "Invalid restriction.  Must be 'association', 'mapset', 'refset', 'property', 'semantic' or 'metadata'");
+				throw new RestException("The parameter 'query' must contain at least one character");
 			}
-		}
+			log.debug("Performing prefix search for '" + query + "'");
+
+			boolean mergeOnConcepts = StringUtils.isBlank(mergeOnConcept) ? false
+					: RequestInfoUtils.parseBooleanParameter(RequestParameters.mergeOnConcept, mergeOnConcept);
+			boolean metadataRestrict = StringUtils.isNotBlank(restrictTo);
+			Predicate<Integer> filter = createRestrictToFilter(restrictTo);
 		
-		Predicate<Integer> compositeFilter = null;
-		if (filter == null)
-		{
-			compositeFilter = createStatusTimeFilter(StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
-					RequestInfo.get().getStampCoordinate());
-		}
-		else
-		{
-			final Predicate<Integer> methodFilterFinal = filter;
-			compositeFilter = new Predicate<Integer>()
+			DescriptionIndexer indexer = LookupService.get().getService(DescriptionIndexer.class);
+			List<SearchResult> ochreSearchResults = null;
+
+			boolean typeAheadB = StringUtils.isBlank(typeAhead) ? false : RequestInfoUtils.parseBooleanParameter(RequestParameters.typeAhead, typeAhead);
+			int languageNid = RequestInfo.get().getLanguageCoordinate().getLanguageConceptNid();
+			TypeAheadIndexService typeAheadIndex = LookupService.getService(TypeAheadIndexService.class);
+			if (typeAheadB && typeAheadIndex != null && typeAheadIndex.isAvailable(languageNid))
 			{
-				Predicate<Integer> parentFilter = createStatusTimeFilter(StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
-						RequestInfo.get().getStampCoordinate());
-				@Override
-				public boolean test(Integer nid)
+				//The restrictions are only checked for the leading candidates, rather than as part of the query
+				Predicate<Integer> typeAheadFilter = filter;
+				if (metadataRestrict)
 				{
-					return (methodFilterFinal.test(nid) && parentFilter.test(nid));
+					TaxonomySnapshot tss = Get.taxonomyService().getSnapshotNoTree(RequestInfo.get().getManifoldCoordinate());
+					Predicate<Integer> isMetadata = nid -> 
+					{
+						Optional<Integer> conNid = Frills.getNearestConcept(nid);
+						return conNid.isPresent() && tss.isKindOf(conNid.get(), MetaData.METADATA____SOLOR.getNid());
+					};
+					typeAheadFilter = filter == null ? isMetadata : isMetadata.and(filter);
 				}
-			};
-		}
-
-		DescriptionIndexer indexer = LookupService.get().getService(DescriptionIndexer.class);
-
-		List<SearchResult> ochreSearchResults;
-		try
-		{
-			ochreSearchResults = indexer.query(query, true, null, compositeFilter, AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()),
-					metadataRestrict, (int[])null, (int[])null, pageNum, maxPageSize, Long.MAX_VALUE);
-		}
-		catch (Exception e)
-		{
-			if (e.getCause() != null && e.getCause() instanceof ParseException)
-			{
-				throw new RestException(query, "Query Syntax Error: " + ((ParseException)e.getCause()).getMessage());
+				ochreSearchResults = typeAheadIndex.query(languageNid, query, RequestInfo.get().getStampCoordinate(), 
+						StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept), 
+						AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), typeAheadFilter, pageNum, maxPageSize);
 			}
-			else
+
+			if (ochreSearchResults == null)
 			{
-				throw e;
+				Predicate<Integer> compositeFilter = combineFilters(filter, createStatusTimeFilter(StringUtils.isBlank(applyStampToConcept) ? true : 
+						RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept), RequestInfo.get().getStampCoordinate()));
+
+				try
+				{
+					final Predicate<Integer> compositeFilterFinal = compositeFilter;
+					final boolean metadataRestrictFinal = metadataRestrict;
+					//A type-ahead commonly re-issues a query it has already run - paging, or backspacing to an earlier prefix
+					ochreSearchResults = getSearchResultCache().getPage(new Object[] {"prefix", query, 
+							StringUtils.isBlank(restrictTo) ? null : restrictTo.toLowerCase(Locale.ENGLISH).trim(), 
+							StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept), 
+							RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+							(page, pageSize) -> indexer.query(query, true, null, compositeFilterFinal, 
+									AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), metadataRestrictFinal, (int[])null, (int[])null, 
+									page, pageSize, Long.MAX_VALUE));
+				}
+				catch (Exception e)
+				{
+					if (e.getCause() != null && e.getCause() instanceof ParseException)
+					{
+						throw new RestException(query, "Query Syntax Error: " + ((ParseException)e.getCause()).getMessage());
+					}
+					else
+					{
+						throw e;
+					}
+				}
 			}
-		}
 
-		if (mergeOnConcepts)
-		{
-			List<ConceptSearchResult> temp = indexer.mergeResultsOnConcept(ochreSearchResults, RequestInfo.get().getStampCoordinate());
-			ochreSearchResults = new ArrayList<>(temp.size());
-			for (ConceptSearchResult csr : temp)
+			if (mergeOnConcepts)
 			{
-				ochreSearchResults.add((SearchResult) csr);
+				List<ConceptSearchResult> temp = indexer.mergeResultsOnConcept(ochreSearchResults, RequestInfo.get().getStampCoordinate());
+				ochreSearchResults = new ArrayList<>(temp.size());
+				for (ConceptSearchResult csr : temp)
+				{
+					ochreSearchResults.add((SearchResult) csr);
+				}
 			}
-		}
 
-		String restPath = RestPaths.searchAppPathComponent + RestPaths.prefixComponent + "?" + RequestParameters.query + "=" + query;
-		return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
+			String restPath = RestPaths.searchAppPathComponent + RestPaths.prefixComponent + "?" + RequestParameters.query + "=" + query;
+			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
+		});
 	}
 
 	private Optional<RestSearchResult> createRestSearchResult(SearchResult sr, String query)
@@ -768,7 +865,7 @@ public class SearchAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.semanticsComponent)
-	public RestSearchResultPage semanticSearch(@QueryParam(RequestParameters.query) String query,
+	public CompletionStage<RestSearchResultPage> semanticSearch(@QueryParam(RequestParameters.query) String query,
 			@QueryParam(RequestParameters.treatAsString) Boolean treatAsString,
 			@QueryParam(RequestParameters.semanticAssemblageId) Set<String> semanticAssemblageId,
 			@QueryParam(RequestParameters.dynamicSemanticColumns) Set<Integer> dynamicSemanticColumns,
@@ -778,15 +875,18 @@ public class SearchAPIs
 			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
-				RequestParameters.treatAsString, RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.applyStampToConcept, 
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query,
+					RequestParameters.treatAsString, RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.applyStampToConcept, 
+					RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 		
-		return semanticSearchInternal(query, treatAsString, semanticAssemblageId, dynamicSemanticColumns, pageNum, maxPageSize, expand, coordToken, altId, 
-				StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept));
+			return semanticSearchInternal(query, treatAsString, semanticAssemblageId, dynamicSemanticColumns, pageNum, maxPageSize, expand, coordToken, altId, 
+					StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept));
+		});
 	}
 	
 	/**
@@ -861,7 +961,7 @@ public class SearchAPIs
 	@POST
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.semanticsComponent)
-	public RestSearchResultPage semanticSearchPost(String query,
+	public CompletionStage<RestSearchResultPage> semanticSearchPost(String query,
 			@QueryParam(RequestParameters.treatAsString) Boolean treatAsString,
 			@QueryParam(RequestParameters.semanticAssemblageId) Set<String> semanticAssemblageId,
 			@QueryParam(RequestParameters.dynamicSemanticColumns) Set<Integer> dynamicSemanticColumns,
@@ -872,16 +972,19 @@ public class SearchAPIs
 			@QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),
-				RequestParameters.treatAsString, RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.applyStampToConcept, 
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(),
+					RequestParameters.treatAsString, RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.applyStampToConcept, 
+					RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 		
-		return semanticSearchInternal(query, treatAsString, semanticAssemblageId, dynamicSemanticColumns, pageNum, maxPageSize, expand, coordToken, altId, 
-				StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept));
+			return semanticSearchInternal(query, treatAsString, semanticAssemblageId, dynamicSemanticColumns, pageNum, maxPageSize, expand, coordToken, altId, 
+					StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept));
 
+		});
 	}
 
 	private RestSearchResultPage semanticSearchInternal(@QueryParam(RequestParameters.query) String query, Boolean treatAsString, Set<String> semanticAssemblageId,
@@ -910,6 +1013,9 @@ public class SearchAPIs
 		{
 			throw new RestException("The query must contain at least one character");
 		}
+		
+		final int[] assemblageRestrictions = processAssemblageRestrictions(semanticAssemblageId);
+		final int[] columns = toArray(dynamicSemanticColumns);
 
 		if (treatAsString != null && treatAsString.booleanValue())
 		{
@@ -917,10 +1023,12 @@ public class SearchAPIs
 			// all "IDs" are stored as string semantics for consistency.
 			log.debug("Performing semantic search for '" + query + "' - treating it as a string");
 
-			List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryData(
-					new DynamicStringImpl(searchString), false, processAssemblageRestrictions(semanticAssemblageId), toArray(dynamicSemanticColumns), 
-					createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
-					AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize, Long.MAX_VALUE);
+			List<SearchResult> ochreSearchResults = getSearchResultCache().getPage(new Object[] {"semanticString", searchString, assemblageRestrictions, 
+					columns, applyStampToConcept, RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+					(page, pageSize) -> LookupService.get().getService(IndexSemanticQueryService.class).queryData(
+							new DynamicStringImpl(searchString), false, assemblageRestrictions, columns, 
+							createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
+							AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), page, pageSize, Long.MAX_VALUE));
 			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
 		}
 		else
@@ -931,12 +1039,12 @@ public class SearchAPIs
 			boolean wasInterval = true;
 			try
 			{
-				List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryData(
-						NumericUtilsDynamic.wrapIntoRefexHolder(NumericUtilsDynamic.parseUnknown(query)), false, processAssemblageRestrictions(semanticAssemblageId),
-						toArray(dynamicSemanticColumns), 
-						createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
-						AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize,
-						Long.MAX_VALUE);
+				final DynamicData number = NumericUtilsDynamic.wrapIntoRefexHolder(NumericUtilsDynamic.parseUnknown(query));
+				List<SearchResult> ochreSearchResults = getSearchResultCache().getPage(new Object[] {"semanticNumber", searchString, assemblageRestrictions, 
+						columns, applyStampToConcept, RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+						(page, pageSize) -> LookupService.get().getService(IndexSemanticQueryService.class).queryData(number, false, assemblageRestrictions,
+								columns, createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
+								AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), page, pageSize, Long.MAX_VALUE));
 				return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
 			}
 			catch (NumberFormatException e)
@@ -946,21 +1054,24 @@ public class SearchAPIs
 				try
 				{
 					Interval interval = new Interval(searchString);
-					List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryNumericRange(
-							interval.getLeft(), interval.isLeftInclusive(), interval.getRight(), interval.isRightInclusive(),
-							processAssemblageRestrictions(semanticAssemblageId), toArray(dynamicSemanticColumns), 
-							createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
-							AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize, Long.MAX_VALUE);
+					List<SearchResult> ochreSearchResults = getSearchResultCache().getPage(new Object[] {"semanticInterval", searchString, 
+							assemblageRestrictions, columns, applyStampToConcept, RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+							(page, pageSize) -> LookupService.get().getService(IndexSemanticQueryService.class).queryNumericRange(
+									interval.getLeft(), interval.isLeftInclusive(), interval.getRight(), interval.isRightInclusive(),
+									assemblageRestrictions, columns, createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
+									AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), page, pageSize, Long.MAX_VALUE));
 					return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
 				}
 				catch (NumberFormatException e1)
 				{
 					wasInterval = false;
 					// nope Run it as a string search.
-					List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryData(
-							new DynamicStringImpl(searchString), false, processAssemblageRestrictions(semanticAssemblageId), toArray(dynamicSemanticColumns),
-							createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
-							AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize, Long.MAX_VALUE);
+					List<SearchResult> ochreSearchResults = getSearchResultCache().getPage(new Object[] {"semanticString", searchString, 
+							assemblageRestrictions, columns, applyStampToConcept, RequestInfo.get().getStampCoordinate()}, pageNum, maxPageSize, 
+							(page, pageSize) -> LookupService.get().getService(IndexSemanticQueryService.class).queryData(
+									new DynamicStringImpl(searchString), false, assemblageRestrictions, columns,
+									createStatusTimeFilter(applyStampToConcept, RequestInfo.get().getStampCoordinate()),
+									AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), page, pageSize, Long.MAX_VALUE));
 					return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, query);
 				}
 			}
@@ -1050,7 +1161,7 @@ public class SearchAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.forReferencedComponentComponent)
-	public RestSearchResultPage nidReferences(@QueryParam(RequestParameters.nid) int nid,
+	public CompletionStage<RestSearchResultPage> nidReferences(@QueryParam(RequestParameters.nid) int nid,
 			@QueryParam(RequestParameters.semanticAssemblageId) Set<String> semanticAssemblageId,
 			@QueryParam(RequestParameters.dynamicSemanticColumns) Set<Integer> dynamicSemanticColumns,
 			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
@@ -1059,37 +1170,40 @@ public class SearchAPIs
 			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.nid,
-				RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.PAGINATION_PARAM_NAMES,
-				RequestParameters.applyStampToConcept, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.nid,
+					RequestParameters.semanticAssemblageId, RequestParameters.dynamicSemanticColumns, RequestParameters.PAGINATION_PARAM_NAMES,
+					RequestParameters.applyStampToConcept, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 
-		String restPath = RestPaths.searchAppPathComponent + RestPaths.forReferencedComponentComponent + "?" + RequestParameters.nid + "=" + nid;
-		if (semanticAssemblageId != null)
-		{
-			for (String id : semanticAssemblageId)
+			String restPath = RestPaths.searchAppPathComponent + RestPaths.forReferencedComponentComponent + "?" + RequestParameters.nid + "=" + nid;
+			if (semanticAssemblageId != null)
 			{
-				restPath += "&" + RequestParameters.semanticAssemblageId + "=" + id;
+				for (String id : semanticAssemblageId)
+				{
+					restPath += "&" + RequestParameters.semanticAssemblageId + "=" + id;
+				}
 			}
-		}
-		if (dynamicSemanticColumns != null)
-		{
-			for (int col : dynamicSemanticColumns)
+			if (dynamicSemanticColumns != null)
 			{
-				restPath += "&" + RequestParameters.dynamicSemanticColumns + "=" + col;
+				for (int col : dynamicSemanticColumns)
+				{
+					restPath += "&" + RequestParameters.dynamicSemanticColumns + "=" + col;
+				}
 			}
-		}
-		restPath += (!StringUtils.isBlank(expand) ? ("&" + RequestParameters.expand + "=" + expand) : "");
+			restPath += (!StringUtils.isBlank(expand) ? ("&" + RequestParameters.expand + "=" + expand) : "");
 
-		List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryNidReference(nid,
-				processAssemblageRestrictions(semanticAssemblageId), toArray(dynamicSemanticColumns), 
-				createStatusTimeFilter(
-						StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
-						RequestInfo.get().getStampCoordinate()),
-				AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize, Long.MAX_VALUE);
-		return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, nid + "");
+			List<SearchResult> ochreSearchResults = LookupService.get().getService(IndexSemanticQueryService.class).queryNidReference(nid,
+					processAssemblageRestrictions(semanticAssemblageId), toArray(dynamicSemanticColumns), 
+					createStatusTimeFilter(
+							StringUtils.isBlank(applyStampToConcept) ? true : RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept),
+							RequestInfo.get().getStampCoordinate()),
+					AuthorModulePathRestriction.restrict(RequestInfo.get().getStampCoordinate()), pageNum, maxPageSize, Long.MAX_VALUE);
+			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, nid + "");
+		});
 	}
 
 	/**
@@ -1141,72 +1255,80 @@ public class SearchAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.idComponent)
-	public RestSearchResultPage idSearch(@QueryParam(RequestParameters.query) String query,
+	public CompletionStage<RestSearchResultPage> idSearch(@QueryParam(RequestParameters.query) String query,
 			@QueryParam(RequestParameters.applyStampToConcept) @DefaultValue("true") String applyStampToConcept,
 			@QueryParam(RequestParameters.pageNum) @DefaultValue(RequestParameters.pageNumDefault) int pageNum,
 			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(RequestParameters.maxPageSizeDefault) int maxPageSize,
 			@QueryParam(RequestParameters.expand) String expand, @QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query, RequestParameters.applyStampToConcept, 
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SearchAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.query, RequestParameters.applyStampToConcept, 
+					RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
-				ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.uuid, ExpandUtil.referencedConcept, ExpandUtil.versionsLatestOnlyExpandable, 
+					ExpandUtil.versionsAllExpandable, ExpandUtil.countParents, ExpandUtil.includeParents, ExpandUtil.terminologyType);
 
-		List<SearchResult> results = new ArrayList<>();
-		final String restPath = RestPaths.searchAppPathComponent + RestPaths.idComponent + "?" + RequestParameters.query + "=" + query;
-		boolean applyStampToConceptB = StringUtils.isBlank(applyStampToConcept) ? true : 
-			RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept);
+			List<SearchResult> results = new ArrayList<>();
+			final String restPath = RestPaths.searchAppPathComponent + RestPaths.idComponent + "?" + RequestParameters.query + "=" + query;
+			boolean applyStampToConceptB = StringUtils.isBlank(applyStampToConcept) ? true : 
+				RequestInfoUtils.parseBooleanParameter(RequestParameters.applyStampToConcept, applyStampToConcept);
 
-		if (StringUtils.isBlank(query))
-		{
-			throw new RestException("The parameter 'query' must be a UUID or an integer for an id query");
-		}
-		String temp = query.trim();
-		Optional<UUID> uuid = UUIDUtil.getUUID(temp);
-		IdentifiedObjectService ios = Get.identifiedObjectService();
-		if (uuid.isPresent())
-		{
-			if (Get.identifierService().hasUuid(uuid.get()))
+			if (StringUtils.isBlank(query))
 			{
-				int foundNid = Get.identifierService().getNidForUuids(uuid.get());
-				ios.getChronology(foundNid).ifPresent(chronology -> 
-				{
-					if (chronology.getLatestVersion(RequestInfo.get().getStampCoordinate()).isPresent())
-					{
-						results.add(new ComponentSearchResult(foundNid, 1));
-					}
-				});
+				throw new RestException("The parameter 'query' must be a UUID or an integer for an id query");
 			}
-		}
-		else
-		{
-			OptionalInt intValue = NumericUtils.getInt(temp);
-			if (intValue.isPresent())
+			String temp = query.trim();
+			Optional<UUID> uuid = UUIDUtil.getUUID(temp);
+			IdentifiedObjectService ios = Get.identifiedObjectService();
+			if (uuid.isPresent())
 			{
-				if (intValue.getAsInt() < 0 && Get.identifierService().getObjectTypeForComponent(intValue.getAsInt()) != IsaacObjectType.UNKNOWN)
+				if (Get.identifierService().hasUuid(uuid.get()))
 				{
-					ios.getChronology(intValue.getAsInt()).ifPresent(chronology -> 
+					int foundNid = Get.identifierService().getNidForUuids(uuid.get());
+					ios.getChronology(foundNid).ifPresent(chronology -> 
 					{
 						if (chronology.getLatestVersion(RequestInfo.get().getStampCoordinate()).isPresent())
 						{
-							results.add(new ComponentSearchResult(chronology.getNid(), 1));
+							results.add(new ComponentSearchResult(foundNid, 1));
 						}
 					});
 				}
 			}
-		}
+			else
+			{
+				OptionalInt intValue = NumericUtils.getInt(temp);
+				if (intValue.isPresent())
+				{
+					if (intValue.getAsInt() < 0 && Get.identifierService().getObjectTypeForComponent(intValue.getAsInt()) != IsaacObjectType.UNKNOWN)
+					{
+						ios.getChronology(intValue.getAsInt()).ifPresent(chronology -> 
+						{
+							if (chronology.getLatestVersion(RequestInfo.get().getStampCoordinate()).isPresent())
+							{
+								results.add(new ComponentSearchResult(chronology.getNid(), 1));
+							}
+						});
+					}
+				}
+			}
 		
-		List<SearchResult> ochreSearchResults = new ArrayList<>();
-		for (ConceptSearchResult csr : LookupService.get().getService(DescriptionIndexer.class).mergeResultsOnConcept(results, RequestInfo.get().getStampCoordinate()))
-		{
-			if (applyStampToConceptB == false || ios.getChronology(csr.getConceptNid()).get().getLatestVersion(RequestInfo.get().getStampCoordinate()).isPresent())
+			List<SearchResult> ochreSearchResults = new ArrayList<>();
+			for (ConceptSearchResult csr : LookupService.get().getService(DescriptionIndexer.class).mergeResultsOnConcept(results, RequestInfo.get().getStampCoordinate()))
 			{
-				ochreSearchResults.add((SearchResult) csr);
+				if (applyStampToConceptB == false || ios.getChronology(csr.getConceptNid()).get().getLatestVersion(RequestInfo.get().getStampCoordinate()).isPresent())
+				{
+					ochreSearchResults.add((SearchResult) csr);
+				}
 			}
-		}
-		return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, temp);
+			return getRestSearchResultsFromOchreSearchResults(ochreSearchResults, pageNum, maxPageSize, restPath, temp);
+		});
+	}
+
+	private SearchResultCache getSearchResultCache()
+	{
+		return LookupService.getService(SearchResultCache.class);
 	}
 
 	private int[] processAssemblageRestrictions(Set<String> semanticAssemblageIds) throws RestException
@@ -1296,80 +1418,128 @@ public class SearchAPIs
 	}
 	
 	/**
-	 * WARNING this filter only expects to be passed in nids of semantics!
-	 * Author / Module / Path are already part of the query, so we really only need to validate time and status.
-	 * If time is latest, and status is any, we don't need to do anything - so return null in that case.
+	 * @param restrictTo the restrictTo parameter of a search, which may be blank
+	 * @return the filter that implements the restriction, or null, if there is no restriction, or the restriction is 'metadata' - which is 
+	 *     passed to the query itself, rather than filtering.
+	 * @throws RestException if the restriction isn't valid
 	 */
-	private Predicate<Integer> createStatusTimeFilter(boolean applyStampToConcept, StampCoordinate sc)
+	private static Predicate<Integer> createRestrictToFilter(String restrictTo) throws RestException
 	{
-		if (sc.getStampPosition().getTime() == Long.MAX_VALUE && sc.getAllowedStates().size() == Status.ANY_STATUS_SET.size())
+		if (StringUtils.isBlank(restrictTo))
 		{
-			log.debug("No status / time filter required");
 			return null;
 		}
-		
-		return new Predicate<Integer>()
+		Predicate<Integer> filter = null;
+		String temp = restrictTo.toLowerCase(Locale.ENGLISH).trim();
+		switch (temp)
 		{
-			{
-				log.debug("status time filter enabled");
-			}
-			AssemblageService as = Get.assemblageService();
-			ConceptService cs = Get.conceptService();
-			IdentifiedObjectService ios = Get.identifiedObjectService();
-			ConcurrentHashMap<Integer, Boolean> resultCache = new ConcurrentHashMap<>();
-			
-			@Override
-			public boolean test(Integer searchNid)
-			{
-				SemanticChronology semChron = as.getSemanticChronology(searchNid);
-				//This will be passed nids of semantic search results
-				boolean semanticIsPresent = resultCache.computeIfAbsent(searchNid, nidAgain -> 
-				{
-					return semChron.getLatestVersion(sc).isPresent();
+			case "association":
+				filter = (nid -> {
+					Optional<Integer> conNid = Frills.getNearestConcept(nid);
+					if (conNid.isPresent())
+					{
+						return Frills.definesAssociation(conNid.get());
+					}
+					return false;
 				});
-				
-				if (!semanticIsPresent)
-				{
+				break;
+			case "mapset":
+				filter = (nid -> {
+					Optional<Integer> conNid = Frills.getNearestConcept(nid);
+					if (conNid.isPresent())
+					{
+						return Frills.definesMapping(conNid.get());
+					}
 					return false;
-				}
-				
-				else if (applyStampToConcept)
-				{
-					//Use a Cache here, as hits on one description will usually result in hits on each version of that description, and/or hits on 
-					//multiple descriptions for a single concept.  This helps avoid several concept and semantic lookups
-					boolean conceptIsPresent = resultCache.computeIfAbsent(semChron.getReferencedComponentNid(), refCompNidAgain ->
+				});
+				break;
+			case "sememe":
+			case "semantic":
+				filter = (nid -> {
+					Optional<Integer> conNid = Frills.getNearestConcept(nid);
+					if (conNid.isPresent())
 					{
-						Optional<? extends Chronology> possibleConcept = ios.getChronology(refCompNidAgain);
-						
-						if (possibleConcept.isPresent())
+						SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
+						if (ss != null && ss != SemanticStyle.NONE)
 						{
-							if (possibleConcept.get().getIsaacObjectType() != IsaacObjectType.CONCEPT)
-							{
-								//Let frills recurse - this should be rare.
-								int possibleConceptNid = Frills.getNearestConcept(refCompNidAgain).orElse(0);
-								if (possibleConceptNid != 0 && cs.getConceptChronology(possibleConceptNid).getLatestVersion(sc).isPresent())
-								{
-									return true;
-								}
-								else
-								{
-									return false;
-								}
-								
-							}
-							//The typical path
-							return possibleConcept.get().getLatestVersion(sc).isPresent();
+							return true;
 						}
 						return false;
-					});
-					
-					if (!conceptIsPresent)
+					}
+					return false;
+				});
+				break;
+			case "refset":
+				filter = (nid -> {
+					Optional<Integer> conNid = Frills.getNearestConcept(nid);
+					if (conNid.isPresent())
 					{
+						SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
+						if (ss != null && ss == SemanticStyle.REFSET)
+						{
+							return true;
+						}
 						return false;
 					}
-				}
-				return true;
-			}
-		};
+					return false;
+				});
+				break;
+			case "property":
+				filter = (nid -> {
+					Optional<Integer> conNid = Frills.getNearestConcept(nid);
+					if (conNid.isPresent())
+					{
+						SemanticStyle ss = SemanticAPIs.getSemanticStyle(conNid.get());
+						if (ss != null && (ss == SemanticStyle.ASSOCIATION || ss == SemanticStyle.MAPSET || ss == SemanticStyle.PROPERTY))
+						{
+							return true;
+						}
+						return false;
+					}
+					return false;
+				});
+				break;
+			case "metadata":
+				// metadata restrict is now part of the query construction.
+				filter = null;
+				break;
+			default :
+				throw new RestException("restrictTo", "Invalid restriction.  Must be 'association', 'mapset', 'refset', 'property', 'semantic' or 'metadata'");
+		}
+		return filter;
+	}
+
+	/**
+	 * @return a filter that passes only what passes both filters, either of which may be null
+	 */
+	private static Predicate<Integer> combineFilters(Predicate<Integer> first, Predicate<Integer> second)
+	{
+		if (first == null)
+		{
+			return second;
+		}
+		return second == null ? first : first.and(second);
+	}
+
+	/**
+	 * WARNING this filter only expects to be passed in nids of semantics!
+	 * Author / Module / Path are already part of the query, so we really only need to validate time and status.
+	 * If time is latest, and status is any, we don't need to do anything - so return null in that case.
+	 */
+	private Predicate<Integer> createStatusTimeFilter(boolean applyStampToConcept, StampCoordinate sc)
+	{
+		if (sc.getStampPosition().getTime() == Long.MAX_VALUE && sc.getAllowedStates().size() == Status.ANY_STATUS_SET.size())
+		{
+			log.debug("No status / time filter required");
+			return null;
+		}
+		
+		log.debug("status time filter enabled");
+		//The memo is shared by all requests with the same stamp, until the next commit.  Hits on one description will usually result in hits 
+		//on each version of that description, and/or hits on multiple descriptions for a single concept - the memo avoids repeating those 
+		//concept and semantic lookups within a request, and the same searches being filtered again in later requests.
+		PresenceMemoService.StampMemo memo = LookupService.getService(PresenceMemoService.class).getMemo(sc);
+		//This will be passed nids of semantic search results
+		return applyStampToConcept ? searchNid -> memo.isPresentWithConcept(searchNid) : searchNid -> memo.isPresent(searchNid);
 	}
 }
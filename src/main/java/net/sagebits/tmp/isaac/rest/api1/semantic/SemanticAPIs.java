@@ -31,16 +31,19 @@
 package net.sagebits.tmp.isaac.rest.api1.semantic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -53,6 +56,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -61,6 +65,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import net.sagebits.tmp.isaac.rest.ExpandUtil;
 import net.sagebits.tmp.isaac.rest.Util;
+import net.sagebits.tmp.isaac.rest.api.data.PageCursor;
 import net.sagebits.tmp.isaac.rest.api.data.PaginationUtils;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
 import net.sagebits.tmp.isaac.rest.api1.RestPaths;
@@ -71,12 +76,16 @@ import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestDynamicSemanticDefinit
 import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestSemanticChronology;
 import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestSemanticVersion;
 import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestSemanticVersionPage;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.NdJsonOutput;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.api.AssemblageService;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.Status;
 import sh.isaac.api.bootstrap.TermAux;
 import sh.isaac.api.chronicle.LatestVersion;
@@ -315,8 +324,11 @@ public class SemanticAPIs
 	 * If includeAllVersions is specified, returns all versions of each semantic.
 	 * 
 	 * @param id - A UUID or nid of an assemblage concept
-	 * @param pageNum The pagination page number >= 1 to return
+	 * @param pageNum The pagination page number >= 1 to return.  Ignored, if a cursor is provided.
 	 * @param maxPageSize The maximum number of results to return per page, must be greater than 0
+	 * @param cursor - optional - the nextCursor value from the paginationData of the prior page.  When provided, the next page is read 
+	 *            directly after the end of the prior page, which is much faster than using pageNum for pages deep into a large assemblage.  
+	 *            The cursor must be used with the same coordinates as the prior page.  Not supported in combination with includeAllVersions.
 	 * @param expand - comma separated list of fields to expand. Supports 'chronology', 'nestedSemantics', 'referencedDetails'
 	 *            When referencedDetails is passed, nids will include type information, and certain nids will also include their descriptions,
 	 *            if they represent a concept or a description semantic.
@@ -334,37 +346,95 @@ public class SemanticAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.forAssemblageComponent + "{" + RequestParameters.id + "}")
-	public RestSemanticVersionPage getForAssemblage(@PathParam(RequestParameters.id) String id,
+	public CompletionStage<RestSemanticVersionPage> getForAssemblage(@PathParam(RequestParameters.id) String id,
 			@QueryParam(RequestParameters.pageNum) @DefaultValue(RequestParameters.pageNumDefault) int pageNum,
 			@QueryParam(RequestParameters.maxPageSize) @DefaultValue(RequestParameters.maxPageSizeDefault) int maxPageSize,
+			@QueryParam(RequestParameters.cursor) String cursor,
 			@QueryParam(RequestParameters.expand) String expand, 
 			@QueryParam(RequestParameters.includeAllVersions) @DefaultValue("false") String includeAllVersions,
 			@QueryParam(RequestParameters.coordToken) String coordToken,
 			@QueryParam(RequestParameters.altId) String altId) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, RequestParameters.expand,
-				RequestParameters.includeAllVersions, RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		return AsyncRequests.supply(SemanticAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, RequestParameters.expand,
+					RequestParameters.includeAllVersions, RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.cursor, RequestParameters.COORDINATE_PARAM_NAMES, 
+					RequestParameters.altId);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.chronologyExpandable, ExpandUtil.nestedSemanticsExpandable, ExpandUtil.referencedDetails);
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.chronologyExpandable, ExpandUtil.nestedSemanticsExpandable, ExpandUtil.referencedDetails);
+
+			HashSet<Integer> singleAllowedAssemblage = new HashSet<>();
+			singleAllowedAssemblage.add(RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id));
 
-		HashSet<Integer> singleAllowedAssemblage = new HashSet<>();
-		singleAllowedAssemblage.add(RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id));
+			// we don't have a referenced component - our id is assemblage
+			SemanticVersions versions = get(null, singleAllowedAssemblage, pageNum, maxPageSize, true, Boolean.parseBoolean(includeAllVersions.trim()), null, 
+					cursor);
 
-		// we don't have a referenced component - our id is assemblage
-		SemanticVersions versions = get(null, singleAllowedAssemblage, pageNum, maxPageSize, true, Boolean.parseBoolean(includeAllVersions.trim()), null);
+			List<RestSemanticVersion> restSemanticVersions = new ArrayList<>();
+			for (SemanticVersion sv : versions.getValues())
+			{
+				restSemanticVersions.add(RestSemanticVersion.buildRestSemanticVersion(sv, RequestInfo.get().shouldExpand(ExpandUtil.chronologyExpandable),
+						RequestInfo.get().shouldExpand(ExpandUtil.nestedSemanticsExpandable), RequestInfo.get().shouldExpand(ExpandUtil.referencedDetails),
+						false));
+			}
+			RestSemanticVersionPage results = new RestSemanticVersionPage(versions.getPageNum(), maxPageSize, versions.getTotal(), true,
+					versions.getNextCursor(), RestPaths.semanticByAssemblageAppPathComponent + id,
+					restSemanticVersions.toArray(new RestSemanticVersion[restSemanticVersions.size()]));
 
-		List<RestSemanticVersion> restSemanticVersions = new ArrayList<>();
-		for (SemanticVersion sv : versions.getValues())
+			return results;
+		});
+	}
+
+	/**
+	 * The streamed variant of {@link #getForAssemblage(String, int, int, String, String, String, String, String)}, selected by sending 
+	 * <code>Accept: application/x-ndjson</code>.  Rather than a page, every semantic instance of the assemblage is returned, one 
+	 * RestSemanticVersion per line, in the same order as the pages.  Each line is written as soon as it is read, so this is the efficient 
+	 * way to read an entire large assemblage.  Paging parameters are not supported.
+	 * 
+	 * @param id - A UUID or nid of an assemblage concept
+	 * @param expand - comma separated list of fields to expand. Supports 'chronology', 'nestedSemantics', 'referencedDetails'
+	 * @param includeAllVersions - when true, will return all existing versions of the semantic instances, ignoring the coordinates.
+	 * @param coordToken specifies an explicit serialized CoordinatesToken string specifying all coordinate parameters. A CoordinatesToken
+	 *            may be obtained by a separate (prior) call to getCoordinatesToken().
+	 * @param altId - (optional) the altId type(s) to populate in any returned RestIdentifiedObject structures.
+	 * 
+	 * @return the semantic versions, as newline delimited JSON
+	 * @throws RestException
+	 */
+	@GET
+	@Produces(NdJsonOutput.PRODUCES)
+	@Path(RestPaths.forAssemblageComponent + "{" + RequestParameters.id + "}")
+	public CompletionStage<Response> getForAssemblageStream(@PathParam(RequestParameters.id) String id,
+			@QueryParam(RequestParameters.expand) String expand, 
+			@QueryParam(RequestParameters.includeAllVersions) @DefaultValue("false") String includeAllVersions,
+			@QueryParam(RequestParameters.coordToken) String coordToken,
+			@QueryParam(RequestParameters.altId) String altId) throws RestException
+	{
+		return AsyncRequests.supply(SemanticAPIs.class, () ->
 		{
-			restSemanticVersions.add(RestSemanticVersion.buildRestSemanticVersion(sv, RequestInfo.get().shouldExpand(ExpandUtil.chronologyExpandable),
-					RequestInfo.get().shouldExpand(ExpandUtil.nestedSemanticsExpandable), RequestInfo.get().shouldExpand(ExpandUtil.referencedDetails),
-					false));
-		}
-		RestSemanticVersionPage results = new RestSemanticVersionPage(pageNum, maxPageSize, versions.getTotal(), true,
-				versions.getTotal() > (pageNum * maxPageSize), RestPaths.semanticByAssemblageAppPathComponent + id,
-				restSemanticVersions.toArray(new RestSemanticVersion[restSemanticVersions.size()]));
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, RequestParameters.expand,
+					RequestParameters.includeAllVersions, RequestParameters.COORDINATE_PARAM_NAMES, RequestParameters.altId);
+		
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.chronologyExpandable, ExpandUtil.nestedSemanticsExpandable, ExpandUtil.referencedDetails);
 
-		return results;
+			int assemblageNid = RequestInfoUtils.getConceptNidFromParameter(RequestParameters.id, id);
+			boolean includeAllVersionsB = Boolean.parseBoolean(includeAllVersions.trim());
+			boolean expandChronology = RequestInfo.get().shouldExpand(ExpandUtil.chronologyExpandable);
+			boolean expandNested = RequestInfo.get().shouldExpand(ExpandUtil.nestedSemanticsExpandable);
+			boolean expandReferenced = RequestInfo.get().shouldExpand(ExpandUtil.referencedDetails);
+
+			return NdJsonOutput.stream(writer -> forEachInAssemblage(assemblageNid, includeAllVersionsB, null, sv -> 
+			{
+				try
+				{
+					writer.write(RestSemanticVersion.buildRestSemanticVersion(sv, expandChronology, expandNested, expandReferenced, false));
+				}
+				catch (RestException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}));
+		});
 	}
 
 	/**
@@ -731,20 +801,26 @@ public class SemanticAPIs
 	
 	private void addSemanticsOfType(Set<Integer> results, int typeNid, ArrayList<String> nonFatalExceptionMessages, Function<SemanticChronology, Boolean> filterFunction)
 	{
-		Get.assemblageService().getSemanticChronologyStream(typeNid).forEach(semanticC -> {
+		for (int semanticNid : LookupService.getService(AssemblageIndexService.class).getSortedSemanticNids(typeNid))
+		{
 			try
 			{
 				//Dynamic semantics are nested... need to walk up two, to get to the concept...
-				Optional<Integer> nearestConcept = Frills.getNearestConcept(semanticC.getNid());
+				Optional<Integer> nearestConcept = Frills.getNearestConcept(semanticNid);
 				
 				if (nearestConcept.isPresent())
 				{
+					if (results.contains(nearestConcept.get()))
+					{
+						continue;
+					}
 					ConceptChronology cc = Get.conceptService().getConceptChronology(nearestConcept.get());
 					LatestVersion<ConceptVersion> cv = cc.getLatestVersion(RequestInfo.get().getStampCoordinate());
 					Util.logContradictions(log, cv);
 					if (cv.isPresent())
 					{
-						if (filterFunction == null || filterFunction.apply(semanticC))
+						//Only read the semantic, if we need to filter on it
+						if (filterFunction == null || filterFunction.apply(Get.assemblageService().getSemanticChronology(semanticNid)))
 						{
 							results.add(cc.getNid());
 						}
@@ -753,7 +829,7 @@ public class SemanticAPIs
 				else
 				{
 					nonFatalExceptionMessages.add("Failed to find an expected concept");
-					log.error("No concept found from semantic??? {}", semanticC);
+					log.error("No concept found from semantic??? {}", semanticNid);
 				}
 			}
 			catch (Exception e)
@@ -761,7 +837,7 @@ public class SemanticAPIs
 				nonFatalExceptionMessages.add("Error processing a concept that appears to be a semantic");
 				log.error("Error processing semantic!", e);
 			}
-		});
+		}
 	}
 	
 
@@ -803,11 +879,26 @@ public class SemanticAPIs
 	{
 		private final List<SemanticVersion> values;
 		private final int approximateTotal;
+		private final int pageNum;
+		private final String nextCursor;
 
 		public SemanticVersions(List<SemanticVersion> values, int approximateTotal)
+		{
+			this(values, approximateTotal, 1, null);
+		}
+
+		/**
+		 * @param values the values of the page
+		 * @param approximateTotal the total across all pages
+		 * @param pageNum the page number of the page being returned
+		 * @param nextCursor the cursor for the next page, or null, if there are no more pages (or cursors don't apply)
+		 */
+		public SemanticVersions(List<SemanticVersion> values, int approximateTotal, int pageNum, String nextCursor)
 		{
 			this.values = values;
 			this.approximateTotal = approximateTotal;
+			this.pageNum = pageNum;
+			this.nextCursor = nextCursor;
 		}
 
 		public SemanticVersion[] getValues()
@@ -819,6 +910,22 @@ public class SemanticAPIs
 		{
 			return approximateTotal;
 		}
+
+		/**
+		 * @return the page number of the page being returned - which, when paging by cursor, may differ from the pageNum that was requested
+		 */
+		public int getPageNum()
+		{
+			return pageNum;
+		}
+
+		/**
+		 * @return the cursor for the next page, or null
+		 */
+		public String getNextCursor()
+		{
+			return nextCursor;
+		}
 	}
 
 	/**
@@ -836,6 +943,27 @@ public class SemanticAPIs
 	 */
 	public static SemanticVersions get(String referencedComponent, Set<Integer> allowedAssemblages, final int pageNum, final int maxPageSize,
 			boolean allowDescriptions, boolean includeAllVersions, StampCoordinate stamp) throws RestException
+	{
+		return get(referencedComponent, allowedAssemblages, pageNum, maxPageSize, allowDescriptions, includeAllVersions, stamp, null);
+	}
+
+	/**
+	 * @param referencedComponent - optional - if provided - takes precedence
+	 * @param allowedAssemblages - optional - if provided, either limits the referencedComponent search by this type, or, if
+	 *            referencedComponent is not provided - focuses the search on just this assemblage
+	 * @param pageNum - ignored, if a cursor is provided
+	 * @param maxPageSize 
+	 * @param allowDescriptions true to include description type semantics, false to skip
+	 * @param includeAllVersions - true for all versions, ignoring stamp, false for latest only on given stamp
+	 * @param stamp - optional - when includeAllVersions is false, use this stamp for populating the version to return.  If not provided, 
+	 *     the stamp is read from the RequestInfo.  
+	 * @param cursor - optional - the {@link PageCursor} returned with the prior page, to resume directly after it.  Only supported when 
+	 *     a referencedComponent is not provided.  
+	 * @return the semantic versions wrapped for paging
+	 * @throws RestException
+	 */
+	public static SemanticVersions get(String referencedComponent, Set<Integer> allowedAssemblages, final int pageNum, final int maxPageSize,
+			boolean allowDescriptions, boolean includeAllVersions, StampCoordinate stamp, String cursor) throws RestException
 	{
 		PaginationUtils.validateParameters(pageNum, maxPageSize);
 
@@ -861,6 +989,10 @@ public class SemanticAPIs
 
 		if (StringUtils.isNotBlank(referencedComponent))
 		{
+			if (StringUtils.isNotBlank(cursor))
+			{
+				throw new RestException(RequestParameters.cursor, cursor, "Paging by cursor is not supported in combination with a referenced component");
+			}
 			Optional<UUID> uuidId = UUIDUtil.getUUID(referencedComponent);
 			OptionalInt refCompNid = OptionalInt.empty();
 			if (uuidId.isPresent())
@@ -932,41 +1064,118 @@ public class SemanticAPIs
 				throw new RestException("If a referenced component is not provided, then an allowedAssemblage must be provided");
 			}
 
-			NidSet allSemanticNids = new NidSet();
-			for (int assemblageId : allowedAssemblages)
+			// Sorted, so that a page can be resumed from the last nid of the prior page.  For a single assemblage on a stamp, the index also 
+			// knows which semantics are present, so pages can be skipped, and the total counted, without reading the chronologies.
+			AssemblageIndexService index = LookupService.getService(AssemblageIndexService.class);
+			AssemblageIndexService.LatestPresent latestPresent = null;
+			int[] allSemanticNids;
+			if (!includeAllVersions && allowedAssemblages.size() == 1)
 			{
-				allSemanticNids.addAll(Get.assemblageService().getSemanticNidsFromAssemblage(assemblageId).stream());
+				latestPresent = index.getLatestPresent(allowedAssemblages.iterator().next(), stampToUse);
+				allSemanticNids = latestPresent.getNids();
 			}
+			else
+			{
+				allSemanticNids = index.getSortedSemanticNids(allowedAssemblages);
+			}
+
+			// The cursor is only valid for the same assemblages, on the same stamp
+			int contextHash = Objects.hash(new TreeSet<>(allowedAssemblages), allowDescriptions, includeAllVersions, 
+					includeAllVersions ? 0 : (stamp == null ? RequestInfo.get().getCoordinatesToken().getStampHash() : stamp.hashCode()));
 
-			for (PrimitiveIterator.OfInt it = allSemanticNids.getIntIterator(); it.hasNext();)
+			int start = 0;
+			int skip = (pageNum - 1) * maxPageSize;
+			int returnedPageNum = pageNum;
+			if (StringUtils.isNotBlank(cursor))
 			{
-				if (ochreResults.size() >= (pageNum * maxPageSize))
+				if (includeAllVersions)
 				{
-					break;
+					throw new RestException(RequestParameters.cursor, cursor, "Paging by cursor is not supported in combination with includeAllVersions");
 				}
-				else
+				PageCursor pc = PageCursor.read(cursor, contextHash);
+				int index = Arrays.binarySearch(allSemanticNids, pc.getLastNid());
+				start = index >= 0 ? index + 1 : -(index + 1);
+				skip = 0;
+				returnedPageNum = pc.getPageNum() + 1;
+			}
+			else if (latestPresent != null)
+			{
+				start = latestPresent.indexAfterPresent(skip);
+				skip = 0;
+			}
+
+			int i = start;
+			while (i < allSemanticNids.length && ochreResults.size() < (skip + maxPageSize))
+			{
+				if (latestPresent != null && !latestPresent.isPresent(i))
 				{
-					SemanticChronology chronology = Get.assemblageService().getSemanticChronology(it.nextInt());
-					if (includeAllVersions)
+					i++;
+					continue;
+				}
+				SemanticChronology chronology = Get.assemblageService().getSemanticChronology(allSemanticNids[i++]);
+				if (includeAllVersions)
+				{
+					for (Version v : chronology.getVersionList())
 					{
-						for (Version v : chronology.getVersionList())
-						{
-							ochreResults.add((SemanticVersion)v);
-						}
+						ochreResults.add((SemanticVersion)v);
 					}
-					else
+				}
+				else
+				{
+					LatestVersion<SemanticVersion> sv = ((SemanticChronology) chronology).getLatestVersion(stampToUse);
+					Util.logContradictions(log, sv);
+					if (sv.isPresent())
 					{
-						LatestVersion<SemanticVersion> sv = ((SemanticChronology) chronology).getLatestVersion(stampToUse);
-						Util.logContradictions(log, sv);
-						if (sv.isPresent())
-						{
-							ochreResults.add(sv.get());
-						}
+						ochreResults.add(sv.get());
 					}
 				}
 			}
 
-			return new SemanticVersions(PaginationUtils.getResults(ochreResults, pageNum, maxPageSize), allSemanticNids.size());
+			boolean more = latestPresent == null ? i < allSemanticNids.length : (i < allSemanticNids.length && latestPresent.nextPresent(i) >= 0);
+			String nextCursor = (more && !includeAllVersions) ? new PageCursor(allSemanticNids[i - 1], returnedPageNum, contextHash).serialize() : null;
+
+			return new SemanticVersions(skip == 0 ? ochreResults : PaginationUtils.getResults(ochreResults, pageNum, maxPageSize), 
+					latestPresent == null ? allSemanticNids.length : latestPresent.getPresentCount(), returnedPageNum, nextCursor);
+		}
+	}
+
+	/**
+	 * Hands each semantic of an assemblage to the consumer as it is read, in the same (nid) order as the pages of 
+	 * {@link #get(String, Set, int, int, boolean, boolean, StampCoordinate, String)} - without collecting them, for the streamed APIs.
+	 * 
+	 * @param assemblageNid the assemblage to read
+	 * @param includeAllVersions - true for all versions, ignoring stamp, false for latest only on given stamp
+	 * @param stamp - optional - when includeAllVersions is false, the stamp to read the latest version with.  If not provided, 
+	 *     the stamp is read from the RequestInfo.
+	 * @param consumer receives each semantic version
+	 */
+	public static void forEachInAssemblage(int assemblageNid, boolean includeAllVersions, StampCoordinate stamp, Consumer<SemanticVersion> consumer)
+	{
+		AssemblageIndexService index = LookupService.getService(AssemblageIndexService.class);
+		if (includeAllVersions)
+		{
+			for (int nid : index.getSortedSemanticNids(assemblageNid))
+			{
+				for (Version v : Get.assemblageService().getSemanticChronology(nid).getVersionList())
+				{
+					consumer.accept((SemanticVersion)v);
+				}
+			}
+		}
+		else
+		{
+			StampCoordinate stampToUse = stamp == null ? RequestInfo.get().getStampCoordinate() : stamp;
+			// Only the present semantics need to be read
+			AssemblageIndexService.LatestPresent latestPresent = index.getLatestPresent(assemblageNid, stampToUse);
+			for (int i = latestPresent.nextPresent(0); i >= 0 && i < latestPresent.getNids().length; i = latestPresent.nextPresent(i + 1))
+			{
+				LatestVersion<SemanticVersion> sv = Get.assemblageService().getSemanticChronology(latestPresent.getNids()[i]).getLatestVersion(stampToUse);
+				Util.logContradictions(log, sv);
+				if (sv.isPresent())
+				{
+					consumer.accept(sv.get());
+				}
+			}
 		}
 	}
 
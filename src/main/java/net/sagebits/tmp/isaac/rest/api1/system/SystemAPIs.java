@@ -34,10 +34,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.OptionalInt;
-import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -72,21 +71,29 @@ import net.sagebits.tmp.isaac.rest.api1.data.enumerations.RestObjectChronologyTy
 import net.sagebits.tmp.isaac.rest.api1.data.enumerations.RestSemanticType;
 import net.sagebits.tmp.isaac.rest.api1.data.enumerations.RestSupportedIdType;
 import net.sagebits.tmp.isaac.rest.api1.data.semantic.RestSemanticChronology;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestCacheStats;
 import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestIdentifiedObjectsResult;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestRequestPoolStats;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestUserLookupStats;
 import net.sagebits.tmp.isaac.rest.api1.taxonomy.TaxonomyAPIs;
+import net.sagebits.tmp.isaac.rest.session.MetadataSnapshotService;
+import net.sagebits.tmp.isaac.rest.session.MetadataSnapshotService.DescriptionType;
+import net.sagebits.tmp.isaac.rest.session.MetadataSnapshotService.Snapshot;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestInfoUtils;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RequestPools;
+import net.sagebits.tmp.isaac.rest.session.RestCaches;
+import net.sagebits.tmp.isaac.rest.session.RestUserService;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.MetaData;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.TaxonomySnapshot;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.collections.NidSet;
 import sh.isaac.api.component.concept.ConceptChronology;
 import sh.isaac.api.component.concept.ConceptVersion;
-import sh.isaac.api.component.semantic.version.DynamicVersion;
-import sh.isaac.api.component.semantic.version.dynamic.types.DynamicUUID;
 import sh.isaac.api.coordinate.PremiseType;
 import sh.isaac.api.externalizable.IsaacObjectType;
 import sh.isaac.api.util.NumericUtils;
@@ -440,6 +447,54 @@ public class SystemAPIs
 		return ApplicationConfig.getInstance().getSystemInfo();
 	}
 
+	/**
+	 * Return the usage statistics of the internal server caches, such as the coordinate token caches.  The counters are cumulative
+	 * since the server started.  Useful for tuning the cache sizes in the uts-rest-api.properties file.
+	 * @return the statistics for each cache, sorted by cache name
+	 * @throws RestException
+	 */
+	@GET
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	@Path(RestPaths.systemAPIsCacheStats)
+	public RestCacheStats[] getCacheStats() throws RestException
+	{
+		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.COORDINATE_PARAM_NAMES);
+
+		return RestCaches.getStats();
+	}
+
+	/**
+	 * Return the state of the thread pools that the long running calls (search, taxonomy, export, etc) are executed on - one pool per API class.
+	 * Pools are only listed once they have been used.  Useful for tuning the pool sizes in the uts-rest-api.properties file.
+	 * @return the statistics for each pool, sorted by pool name
+	 * @throws RestException
+	 */
+	@GET
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	@Path(RestPaths.systemAPIsRequestPoolStats)
+	public RestRequestPoolStats[] getRequestPoolStats() throws RestException
+	{
+		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.COORDINATE_PARAM_NAMES);
+
+		return RequestPools.getStats();
+	}
+
+	/**
+	 * Return the call counts and timing of the lookups in the local user store (by id, by name or email, by service token, by role).
+	 * Empty, when the server is using a remote auth server.
+	 * @return the statistics for each kind of lookup
+	 * @throws RestException
+	 */
+	@GET
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	@Path(RestPaths.systemAPIsUserLookupStats)
+	public RestUserLookupStats[] getUserLookupStats() throws RestException
+	{
+		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.COORDINATE_PARAM_NAMES);
+
+		return Get.service(RestUserService.class).getLookupStats();
+	}
+
 	/**
 	 * Return information about a particular user (utilized to tie back session information to what was passed via SSO)
 	 * 
@@ -471,17 +526,20 @@ public class SystemAPIs
 	{
 		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.COORDINATE_PARAM_NAMES);
 
-		TreeSet<RestTerminologyConcept> terminologies = new TreeSet<>();
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.terminologyTypes, snapshot -> 
+		{
+			TreeSet<RestTerminologyConcept> terminologies = new TreeSet<>();
 
-		TaxonomySnapshot tss = Get.taxonomyService().getSnapshotNoTree(RequestInfo.get().getManifoldCoordinate());
+			TaxonomySnapshot tss = Get.taxonomyService().getSnapshotNoTree(RequestInfo.get().getManifoldCoordinate());
 
-		for (int nid : tss.getTaxonomyChildConceptNids(MetaData.MODULE____SOLOR.getNid()))
-		{
-			ConceptChronology cc = Get.conceptService().getConceptChronology(nid);
-			terminologies.add(new RestTerminologyConcept(cc, getDescriptionStyleForTerminologyInternal(cc)));
-		} ;
+			for (int nid : tss.getTaxonomyChildConceptNids(MetaData.MODULE____SOLOR.getNid()))
+			{
+				ConceptChronology cc = Get.conceptService().getConceptChronology(nid);
+				terminologies.add(new RestTerminologyConcept(cc, getDescriptionStyleForTerminologyInternal(cc, snapshot)));
+			}
 
-		return terminologies.toArray(new RestTerminologyConcept[terminologies.size()]);
+			return terminologies.toArray(new RestTerminologyConcept[terminologies.size()]);
+		});
 	}
 	
 	/**
@@ -528,41 +586,44 @@ public class SystemAPIs
 				RequestParameters.COORDINATE_PARAM_NAMES,
 				RequestParameters.availableOnly);
 
-		LatestVersion<ConceptVersion> cv = Get.conceptService().getConceptChronology(MetaData.MODULE____SOLOR.getNid())
-				.getLatestVersion(StampCoordinates.getDevelopmentLatest());
-		Util.logContradictions(log, cv);
-
-		if (cv.isPresent())
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.modules + availableOnly, snapshot -> 
 		{
-			RestConceptVersion rcv = new RestConceptVersion(cv.get(), true, false, false, true, true, true, false, false, true);
+			LatestVersion<ConceptVersion> cv = Get.conceptService().getConceptChronology(MetaData.MODULE____SOLOR.getNid())
+					.getLatestVersion(StampCoordinates.getDevelopmentLatest());
+			Util.logContradictions(log, cv);
 
-			TaxonomySnapshot tss = Get.taxonomyService()
-					.getSnapshotNoTree(new ManifoldCoordinateImpl(PremiseType.STATED, StampCoordinates.getDevelopmentLatest(),
-							Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLanguageCoordinate(), 
-							Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLogicCoordinate()));
+			if (cv.isPresent())
+			{
+				RestConceptVersion rcv = new RestConceptVersion(cv.get(), true, false, false, true, true, true, false, false, true);
 
-			TaxonomyAPIs.addChildren(MetaData.MODULE____SOLOR.getNid(), rcv, tss, true, false, false, 3, false, false, new NidSet(), 1, 500);
+				TaxonomySnapshot tss = Get.taxonomyService()
+						.getSnapshotNoTree(new ManifoldCoordinateImpl(PremiseType.STATED, StampCoordinates.getDevelopmentLatest(),
+								Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLanguageCoordinate(), 
+								Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLogicCoordinate()));
 
-			if (availableOnly == null || Boolean.parseBoolean(availableOnly))
-			{
-				ArrayList<RestConceptVersion> filteredResults = new ArrayList<>();
-				// Trim out any 2nd level tree items that don't have children.
-				for (RestConceptVersion x : rcv.children.results)
+				TaxonomyAPIs.addChildren(MetaData.MODULE____SOLOR.getNid(), rcv, tss, true, false, false, 3, false, false, new NidSet(), 1, 500);
+
+				if (availableOnly == null || Boolean.parseBoolean(availableOnly))
 				{
-					if (x.getChildCount() > 0)
+					ArrayList<RestConceptVersion> filteredResults = new ArrayList<>();
+					// Trim out any 2nd level tree items that don't have children.
+					for (RestConceptVersion x : rcv.children.results)
 					{
-						filteredResults.add(x);
+						if (x.getChildCount() > 0)
+						{
+							filteredResults.add(x);
+						}
 					}
+					rcv.children.results = filteredResults.toArray(new RestConceptVersion[filteredResults.size()]);
+					rcv.children.paginationData.approximateTotal = filteredResults.size();
 				}
-				rcv.children.results = filteredResults.toArray(new RestConceptVersion[filteredResults.size()]);
-				rcv.children.paginationData.approximateTotal = filteredResults.size();
+				rcv.sortParentsAndChildren();
+				return rcv;
 			}
-			rcv.sortParentsAndChildren();
-			return rcv;
-		}
 
-		log.error("Couldn't find MODULE??");
-		throw new RestException("Unexpected internal error");
+			log.error("Couldn't find MODULE??");
+			throw new RestException("Unexpected internal error");
+		});
 	}
 
 	/**
@@ -581,8 +642,6 @@ public class SystemAPIs
 		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, 
 				RequestParameters.COORDINATE_PARAM_NAMES);
 
-		TreeSet<RestConceptChronology> results = new TreeSet<>();
-
 		ConceptChronology cc = ConceptAPIs.findConceptChronology(id);
 
 		TaxonomySnapshot tss = Get.taxonomyService()
@@ -595,23 +654,25 @@ public class SystemAPIs
 					+ MetaData.MODULE____SOLOR.getPrimordialUuid());
 		}
 		
-		if (cc.getNid() == MetaData.CORE_METADATA_MODULE____SOLOR.getNid() || cc.getNid() == MetaData.MODULE____SOLOR.getNid())
-		{
-			log.debug("no extended description types used in core terminiologies");
-		}
-		else
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.extendedDescriptionTypes + cc.getNid(), snapshot -> 
 		{
-			Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_TYPE_IN_SOURCE_TERMINOLOGY____SOLOR.getNid(), true, true, RequestInfo.get().getStampCoordinate())
-					.forEach(descType -> {
-						ConceptChronology concept = Get.conceptService().getConceptChronology(descType);
-						if (Frills.getTerminologyTypes(concept, null).contains(cc.getNid()))
-						{
-							results.add(new RestConceptChronology(concept, false, false, false));
-						}
-					});
-		}
-
-		return results.toArray(new RestConceptChronology[results.size()]);
+			TreeSet<RestConceptChronology> results = new TreeSet<>();
+			if (cc.getNid() == MetaData.CORE_METADATA_MODULE____SOLOR.getNid() || cc.getNid() == MetaData.MODULE____SOLOR.getNid())
+			{
+				log.debug("no extended description types used in core terminiologies");
+			}
+			else
+			{
+				for (DescriptionType descType : snapshot.getExtendedDescriptionTypes())
+				{
+					if (IntStream.of(descType.getModuleNids()).anyMatch(terminologyType -> terminologyType == cc.getNid()))
+					{
+						results.add(new RestConceptChronology(Get.conceptService().getConceptChronology(descType.getNid()), false, false, false));
+					}
+				}
+			}
+			return results.toArray(new RestConceptChronology[results.size()]);
+		});
 	}
 	
 	/**
@@ -639,10 +700,6 @@ public class SystemAPIs
 		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, 
 				RequestParameters.COORDINATE_PARAM_NAMES);
 
-		TreeSet<RestConceptVersion> fqns = new TreeSet<>();
-		TreeSet<RestConceptVersion> regName = new TreeSet<>();
-		TreeSet<RestConceptVersion> definition = new TreeSet<>();
-
 		ConceptChronology termType = ConceptAPIs.findConceptChronology(id);
 
 		TaxonomySnapshot tss = Get.taxonomyService()
@@ -655,70 +712,28 @@ public class SystemAPIs
 					+ MetaData.MODULE____SOLOR.getPrimordialUuid());
 		}
 		
-		//Look up the description types that have a module of the requested type
-		Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_TYPE____SOLOR.getNid(), true, true, RequestInfo.get().getStampCoordinate())
-				.forEach(descType -> {
-					ConceptChronology cc = Get.conceptService().getConceptChronology(descType);
-					Set<Integer> modules = Frills.getAllModuleSequences(cc);
-					for (int m : modules)
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.externalDescriptionTypes + termType.getNid(), snapshot -> 
+		{
+			TreeSet<RestConceptVersion> fqns = new TreeSet<>();
+			TreeSet<RestConceptVersion> regName = new TreeSet<>();
+			TreeSet<RestConceptVersion> definition = new TreeSet<>();
+
+			//Look up the description types that have a module of the requested type
+			for (DescriptionType descType : snapshot.getDescriptionTypes())
+			{
+				if (IntStream.of(descType.getModuleNids()).anyMatch(m -> tss.isKindOf(m, termType.getNid())) && descType.getCoreTypeCount() > 0)
+				{
+					if (descType.getCoreTypeCount() != 1)
 					{
-						if (tss.isKindOf(m, termType.getNid()))
-						{
-							NidSet typeInfo = Get.assemblageService().getSemanticNidsForComponentFromAssemblage(cc.getNid(), 
-									MetaData.DESCRIPTION_CORE_TYPE____SOLOR.getNid());
-							if (typeInfo.size() != 1)
-							{
-								log.error("There should be one and only one Description Core Type on a external description type.  Found {} on {}", typeInfo.size(), cc);
-							}
-							if (typeInfo.size() > 0)
-							{
-								DynamicVersion dv = (DynamicVersion)Get.assemblageService()
-										.getSemanticChronology(typeInfo.findFirst().getAsInt()).getLatestVersion(RequestInfo.get().getStampCoordinate()).get();
-								DynamicUUID type = (DynamicUUID)dv.getData(0);
-								
-								RestConceptVersion rcv = new RestConceptVersion((ConceptVersion)cc
-										.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
-								rcv.setChildCount(0);
-								if (MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-								{
-									fqns.add(rcv);
-								}
-								else if (MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-								{
-									regName.add(rcv);
-								}
-								else if (MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-								{
-									definition.add(rcv);
-								}
-								else
-								{
-									log.error("Unexpected core type linkage of {} on {}", type.getDataUUID(), cc);
-								}
-							}
-						}
+						log.error("There should be one and only one Description Core Type on a external description type.  Found {} on {}", 
+								descType.getCoreTypeCount(), Get.conceptService().getConceptChronology(descType.getNid()));
 					}
-				});
-
-		RestConceptVersion[] finalResult = new RestConceptVersion[3];
-		finalResult[0] = new RestConceptVersion((ConceptVersion)Get.concept(MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getNid())
-				.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
-		finalResult[0].children = new RestConceptVersionPage(1, Integer.MAX_VALUE, fqns.size(), true, false, "", fqns.toArray(new RestConceptVersion[fqns.size()]));
-		finalResult[0].setChildCount(fqns.size());
-		
-		finalResult[1] = new RestConceptVersion((ConceptVersion)Get.concept(MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getNid())
-				.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
-		finalResult[1].children = new RestConceptVersionPage(1, Integer.MAX_VALUE, regName.size(), true, false, "", 
-				regName.toArray(new RestConceptVersion[regName.size()]));
-		finalResult[1].setChildCount(regName.size());
-		
-		finalResult[2] = new RestConceptVersion((ConceptVersion)Get.concept(MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getNid())
-				.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
-		finalResult[2].children = new RestConceptVersionPage(1, Integer.MAX_VALUE, definition.size(), true, false, "", 
-				definition.toArray(new RestConceptVersion[definition.size()]));
-		finalResult[2].setChildCount(definition.size());
+					addToCoreType(descType, fqns, regName, definition);
+				}
+			}
 
-		return finalResult;
+			return buildCoreTypeHierarchy(fqns, regName, definition);
+		});
 	}
 	
 	/**
@@ -742,58 +757,79 @@ public class SystemAPIs
 	{
 		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.COORDINATE_PARAM_NAMES);
 
-		TreeSet<RestConceptVersion> fqns = new TreeSet<>();
-		TreeSet<RestConceptVersion> regName = new TreeSet<>();
-		TreeSet<RestConceptVersion> definition = new TreeSet<>();
-
-		//Look up the description types that have a module of the requested type
-		Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_TYPE____SOLOR.getNid(), true, true, RequestInfo.get().getStampCoordinate())
-				.forEach(descType -> {
-					ConceptChronology cc = Get.conceptService().getConceptChronology(descType);
-					NidSet typeInfo = Get.assemblageService().getSemanticNidsForComponentFromAssemblage(cc.getNid(), 
-							MetaData.DESCRIPTION_CORE_TYPE____SOLOR.getNid());
-					if (typeInfo.size() == 0)
-					{
-						//should be a core type
-						if (descType != MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getNid() 
-								&& descType != MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getNid()
-								&& descType != MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getNid())
-						{
-							log.warn("Unexpected core description type {}", cc);
-						}
-					}
-					else if (typeInfo.size() > 1)
-					{
-						log.error("There should be one and only one Description Core Type on a external description type.  Found {} on {}", typeInfo.size(), cc);
-					}
-					else
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.descriptionTypes, snapshot -> 
+		{
+			TreeSet<RestConceptVersion> fqns = new TreeSet<>();
+			TreeSet<RestConceptVersion> regName = new TreeSet<>();
+			TreeSet<RestConceptVersion> definition = new TreeSet<>();
+
+			for (DescriptionType descType : snapshot.getDescriptionTypes())
+			{
+				if (descType.getCoreTypeCount() == 0)
+				{
+					//should be a core type
+					if (descType.getNid() != MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getNid() 
+							&& descType.getNid() != MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getNid()
+							&& descType.getNid() != MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getNid())
 					{
-						DynamicVersion dv = (DynamicVersion)Get.assemblageService()
-								.getSemanticChronology(typeInfo.findFirst().getAsInt()).getLatestVersion(RequestInfo.get().getStampCoordinate()).get();
-						DynamicUUID type = (DynamicUUID)dv.getData(0);
-						
-						RestConceptVersion rcv = new RestConceptVersion((ConceptVersion)cc
-								.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
-						rcv.setChildCount(0);
-						if (MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-						{
-							fqns.add(rcv);
-						}
-						else if (MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-						{
-							regName.add(rcv);
-						}
-						else if (MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type.getDataUUID()))
-						{
-							definition.add(rcv);
-						}
-						else
-						{
-							log.error("Unexpected core type linkage of {} on {}", type.getDataUUID(), cc);
-						}
+						log.warn("Unexpected core description type {}", Get.conceptService().getConceptChronology(descType.getNid()));
 					}
-				});
+				}
+				else if (descType.getCoreTypeCount() > 1)
+				{
+					log.error("There should be one and only one Description Core Type on a external description type.  Found {} on {}", 
+							descType.getCoreTypeCount(), Get.conceptService().getConceptChronology(descType.getNid()));
+				}
+				else
+				{
+					addToCoreType(descType, fqns, regName, definition);
+				}
+			}
 
+			return buildCoreTypeHierarchy(fqns, regName, definition);
+		});
+	}
+	
+	/**
+	 * Add an external description type to the set for the core type it is linked to
+	 */
+	private void addToCoreType(DescriptionType descType, TreeSet<RestConceptVersion> fqns, TreeSet<RestConceptVersion> regName, 
+			TreeSet<RestConceptVersion> definition)
+	{
+		ConceptChronology cc = Get.conceptService().getConceptChronology(descType.getNid());
+		if (!descType.getCoreType().isPresent())
+		{
+			log.error("No current Description Core Type on {}", cc);
+			return;
+		}
+		UUID type = descType.getCoreType().get();
+		
+		RestConceptVersion rcv = new RestConceptVersion((ConceptVersion)cc.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
+		rcv.setChildCount(0);
+		if (MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type))
+		{
+			fqns.add(rcv);
+		}
+		else if (MetaData.REGULAR_NAME_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type))
+		{
+			regName.add(rcv);
+		}
+		else if (MetaData.DEFINITION_DESCRIPTION_TYPE____SOLOR.getUuidList().contains(type))
+		{
+			definition.add(rcv);
+		}
+		else
+		{
+			log.error("Unexpected core type linkage of {} on {}", type, cc);
+		}
+	}
+	
+	/**
+	 * @return the three core description types, with the external description types linked to each as its children
+	 */
+	private RestConceptVersion[] buildCoreTypeHierarchy(TreeSet<RestConceptVersion> fqns, TreeSet<RestConceptVersion> regName, 
+			TreeSet<RestConceptVersion> definition) throws RestException
+	{
 		RestConceptVersion[] finalResult = new RestConceptVersion[3];
 		finalResult[0] = new RestConceptVersion((ConceptVersion)Get.concept(MetaData.FULLY_QUALIFIED_NAME_DESCRIPTION_TYPE____SOLOR.getNid())
 				.getLatestVersion(RequestInfo.get().getStampCoordinate()).get(), true);
@@ -842,36 +878,26 @@ public class SystemAPIs
 			throw new RestException("The passed in concept '" + id + "' is not a child of the MODULE constant.  " + "It should be a direct child of "
 					+ MetaData.MODULE____SOLOR.getPrimordialUuid());
 		}
-		return getDescriptionStyleForTerminologyInternal(termType);
+		return LookupService.getService(MetadataSnapshotService.class).getResponse(RestPaths.descriptionStyle + termType.getNid(), 
+				snapshot -> getDescriptionStyleForTerminologyInternal(termType, snapshot));
 	}
 	
 	/**
 	 * This internal method makes the assumption that you have passed in a valid terminology type
 	 * @param id
+	 * @param snapshot the metadata for the stamp of the request
 	 * @return
 	 * @throws RestException
 	 */
-	private RestDescriptionStyle getDescriptionStyleForTerminologyInternal(ConceptChronology termType) throws RestException
+	private RestDescriptionStyle getDescriptionStyleForTerminologyInternal(ConceptChronology termType, Snapshot snapshot) throws RestException
 	{
 		//these are always native, even if some extended types got created for testing or something along those lines.
 		if (Frills.getSCTRulesTermTypes().contains(termType.getNid()))
 		{
 			return new RestDescriptionStyle(DescriptionStyle.NATIVE);
 		}
-		//Iterate over the core types that were created, and if any match the passed in term type, then this is a native style
-		if (Get.assemblageService().getSemanticChronologyStream(MetaData.DESCRIPTION_CORE_TYPE____SOLOR.getNid()).filter(sc ->
-		{
-			AtomicBoolean returnVal = new AtomicBoolean(false);
-			sc.getLatestVersion(RequestInfo.get().getStampCoordinate()).ifPresent(version -> 
-			{
-				int foundTermType = Frills.getTerminologyTypeForModule(version.getModuleNid(), RequestInfo.get().getStampCoordinate());
-				if (foundTermType == termType.getNid())
-				{
-					returnVal.set(true);
-				}
-			});
-			return returnVal.get();
-		}).findFirst().isPresent())
+		//If any of the core type links were created in the passed in term type, then this is an external style
+		if (snapshot.getExternalTerminologyTypes().contains(termType.getNid()))
 		{
 			return new RestDescriptionStyle(DescriptionStyle.EXTERNAL);
 		}
@@ -884,15 +910,8 @@ public class SystemAPIs
 		else
 		{
 		
-			if (Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_TYPE_IN_SOURCE_TERMINOLOGY____SOLOR.getNid(), true, true, RequestInfo.get().getStampCoordinate())
-			.stream().filter(descType -> {
-				ConceptChronology concept = Get.conceptService().getConceptChronology(descType);
-				if (Frills.getTerminologyTypes(concept, null).contains(termType.getNid()))
-				{
-					return true;
-				}
-				return false;
-			}).findFirst().isPresent())
+			if (snapshot.getExtendedDescriptionTypes().stream()
+					.anyMatch(descType -> IntStream.of(descType.getModuleNids()).anyMatch(terminologyType -> terminologyType == termType.getNid())))
 			{
 				return new RestDescriptionStyle(DescriptionStyle.EXTENDED);
 			}
@@ -18,10 +18,12 @@
  */
 package net.sagebits.tmp.isaac.rest.api1.taxonomy;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -40,12 +42,16 @@ import net.sagebits.tmp.isaac.rest.api1.RestPaths;
 import net.sagebits.tmp.isaac.rest.api1.concept.ConceptAPIs;
 import net.sagebits.tmp.isaac.rest.api1.data.RestIdentifiedObject;
 import net.sagebits.tmp.isaac.rest.api1.data.concept.RestConceptVersion;
-import net.sagebits.tmp.isaac.rest.api1.data.concept.RestConceptVersionPage;
+import net.sagebits.tmp.isaac.rest.session.AsyncRequests;
+import net.sagebits.tmp.isaac.rest.session.ConceptSummaryService;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
 import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RequestPools;
+import net.sagebits.tmp.isaac.rest.session.TaxonomyChildCache;
 import net.sagebits.uts.auth.data.UserRole.SystemRoleConstants;
 import sh.isaac.MetaData;
 import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.TaxonomySnapshot;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.collections.NidSet;
@@ -53,7 +59,6 @@ import sh.isaac.api.component.concept.ConceptChronology;
 import sh.isaac.api.component.concept.ConceptVersion;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
 import sh.isaac.api.coordinate.PremiseType;
-import sh.isaac.api.util.AlphanumComparator;
 import sh.isaac.model.coordinate.ManifoldCoordinateImpl;
 
 /**
@@ -125,7 +130,7 @@ public class TaxonomyAPIs
 	@GET
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
 	@Path(RestPaths.versionComponent)
-	public RestConceptVersion getConceptVersionTaxonomy(
+	public CompletionStage<RestConceptVersion> getConceptVersionTaxonomy(
 			// ISAAC_Root - any variable ref here breaks the compiler and/or enunciate
 			@QueryParam(RequestParameters.id) @DefaultValue(RequestParameters.ISAAC_ROOT_UUID) String id,
 			@QueryParam(RequestParameters.parentHeight) @DefaultValue("0") int parentHeight,
@@ -140,68 +145,74 @@ public class TaxonomyAPIs
 			@QueryParam(RequestParameters.altId) String altId,
 			@QueryParam(RequestParameters.sortFull) @DefaultValue("false") String sortFull) throws RestException
 	{
-		RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, RequestParameters.parentHeight,
-				RequestParameters.countParents, RequestParameters.childDepth, RequestParameters.countChildren, RequestParameters.semanticMembership,
-				RequestParameters.terminologyType, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES,
-				RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.altId, RequestParameters.sortFull);
+		return AsyncRequests.supply(TaxonomyAPIs.class, () ->
+		{
+			RequestParameters.validateParameterNamesAgainstSupportedNames(RequestInfo.get().getParameters(), RequestParameters.id, RequestParameters.parentHeight,
+					RequestParameters.countParents, RequestParameters.childDepth, RequestParameters.countChildren, RequestParameters.semanticMembership,
+					RequestParameters.terminologyType, RequestParameters.expand, RequestParameters.COORDINATE_PARAM_NAMES,
+					RequestParameters.PAGINATION_PARAM_NAMES, RequestParameters.altId, RequestParameters.sortFull);
 		
-		RequestInfo.get().validateMethodExpansions(ExpandUtil.chronologyExpandable);
-
-		boolean countChildrenBoolean = Boolean.parseBoolean(countChildren.trim());
-		boolean countParentsBoolean = Boolean.parseBoolean(countParents.trim());
-		boolean includeSemanticMembership = Boolean.parseBoolean(semanticMembership.trim());
-		boolean includeTerminologyType = Boolean.parseBoolean(terminologyType.trim());
-		boolean sortFullBoolean = Boolean.parseBoolean(sortFull.trim());
+			RequestInfo.get().validateMethodExpansions(ExpandUtil.chronologyExpandable);
 
-		ConceptChronology concept = ConceptAPIs.findConceptChronology(id);
-		LatestVersion<ConceptVersion> cv = concept.getLatestVersion(RequestInfo.get().getStampCoordinate());
-		Util.logContradictions(log, cv);
-		if (cv.isPresent())
-		{
-			// parent / child expansion is handled here by providing a depth, not with expandables.
-			// TODO handle contradictions
-			RestConceptVersion rcv = new RestConceptVersion(cv.get(), RequestInfo.get().shouldExpand(ExpandUtil.chronologyExpandable), false, false, false,
-					false, RequestInfo.get().getStated(), includeSemanticMembership, includeTerminologyType, true);
+			boolean countChildrenBoolean = Boolean.parseBoolean(countChildren.trim());
+			boolean countParentsBoolean = Boolean.parseBoolean(countParents.trim());
+			boolean includeSemanticMembership = Boolean.parseBoolean(semanticMembership.trim());
+			boolean includeTerminologyType = Boolean.parseBoolean(terminologyType.trim());
+			boolean sortFullBoolean = Boolean.parseBoolean(sortFull.trim());
 
-			ManifoldCoordinate mc = RequestInfo.get().getManifoldCoordinate();
-			if (sortFullBoolean)
+			ConceptChronology concept = ConceptAPIs.findConceptChronology(id);
+			LatestVersion<ConceptVersion> cv = concept.getLatestVersion(RequestInfo.get().getStampCoordinate());
+			Util.logContradictions(log, cv);
+			if (cv.isPresent())
 			{
-				//Sort all of the children or parents by the description we will be returning - this keeps the paged results being sane, 
-				//and since it is done way down in the TaxonomyRecord, our caches will work when the next page is requested.
-				((ManifoldCoordinateImpl)mc).setCustomSorter(new CustomSorter(mc));
-			}
-			TaxonomySnapshot tree = Get.taxonomyService().getSnapshotNoTree(mc);
+				// parent / child expansion is handled here by providing a depth, not with expandables.
+				// TODO handle contradictions
+				RestConceptVersion rcv = new RestConceptVersion(cv.get(), RequestInfo.get().shouldExpand(ExpandUtil.chronologyExpandable), false, false, false,
+						false, RequestInfo.get().getStated(), includeSemanticMembership, includeTerminologyType, true);
 
-			if (parentHeight > 0)
-			{
-				addParents(concept.getNid(), rcv, tree, countParentsBoolean, parentHeight - 1, includeSemanticMembership, includeTerminologyType, new NidSet());
-			}
-			else if (countParentsBoolean)
-			{
-				countParents(concept.getNid(), rcv, tree);
-			}
+				ManifoldCoordinate mc = RequestInfo.get().getManifoldCoordinate();
+				if (sortFullBoolean)
+				{
+					//Sort all of the children or parents by the description we will be returning - this keeps the paged results being sane, 
+					//and since it is done way down in the TaxonomyRecord, our caches will work when the next page is requested.
+					((ManifoldCoordinateImpl)mc).setCustomSorter(new CustomSorter(mc));
+				}
+				TaxonomySnapshot tree = Get.taxonomyService().getSnapshotNoTree(mc);
 
-			if (childDepth > 0)
-			{
-				//If parent height of more than 1 was requested, populate the direct parents for each child.
-				addChildren(concept.getNid(), rcv, tree, countChildrenBoolean, parentHeight > 0, countParentsBoolean, childDepth - 1, includeSemanticMembership,
-						includeTerminologyType, new NidSet(), pageNum, maxPageSize);
-			}
-			else if (countChildrenBoolean)
-			{
-				countChildren(concept.getNid(), rcv, tree);
-			}
-			if (!sortFullBoolean) 
-			{
-				//Sort should have already been done in the tree
-				rcv.sortParentsAndChildren();
+				if (parentHeight > 0)
+				{
+					addParents(concept.getNid(), rcv, tree, countParentsBoolean, parentHeight - 1, includeSemanticMembership, includeTerminologyType, new NidSet());
+				}
+				else if (countParentsBoolean)
+				{
+					countParents(concept.getNid(), rcv, tree);
+				}
+
+				if (childDepth > 0)
+				{
+					//If parent height of more than 1 was requested, populate the direct parents for each child.
+					addChildren(concept.getNid(), rcv, tree, countChildrenBoolean, parentHeight > 0, countParentsBoolean, childDepth - 1, includeSemanticMembership,
+							includeTerminologyType, new NidSet(), pageNum, maxPageSize);
+				}
+				else if (countChildrenBoolean)
+				{
+					countChildren(concept.getNid(), rcv, tree);
+				}
+				if (!sortFullBoolean) 
+				{
+					//Sort should have already been done in the tree
+					rcv.sortParentsAndChildren();
+				}
+				return rcv;
 			}
-			return rcv;
-		}
-		throw new RestException(RequestParameters.id, id, "No concept was found");
+			throw new RestException(RequestParameters.id, id, "No concept was found");
+		});
 	}
 
 	/**
+	 * Populate a page of the children of a concept, and their children, down to the remaining depth.  The subtree is read a level 
+	 * at a time, in parallel - see {@link TaxonomyExpansion}.
+	 * 
 	 * @param conceptNid
 	 * @param rcv 
 	 * @param tree
@@ -233,99 +244,18 @@ public class TaxonomyAPIs
 			throw new RestException(RequestParameters.maxPageSize, maxPageSize + "", "maxPageSize (" + maxPageSize + ") should be >= 1");
 		}
 
-		if (alreadyAddedChildren.contains(conceptNid))
-		{
-			// Avoiding infinite loop
-			log.warn("addChildren(" + conceptNid + ") aborted potential infinite recursion");
-			return;
-		}
-		else
-		{
-			alreadyAddedChildren.add(conceptNid);
-		}
-
-		int childCount = 0;
-		final int first = pageNum == 1 ? 0 : ((pageNum - 1) * maxPageSize + 1);
-		final int last = pageNum * maxPageSize;
-		final int[] totalChildrenNids = tree.getTaxonomyChildConceptNids(conceptNid);
-		List<RestConceptVersion> children = new ArrayList<>();
-		boolean scannedAll = true;
-		for (int childNid : totalChildrenNids)
-		{
-			ConceptChronology childConcept = null;
-			try
-			{
-				childConcept = ConceptAPIs.findConceptChronology(childNid + "");
-				try
-				{
-					//TODO some performance issues here, where the taxonomy call is doing getLatestVersion, and then we have to do it again here.
-					//want to do some benchmarking of adding caches into findConceptChronology, and getLatestVersion
-					LatestVersion<ConceptVersion> cv = childConcept.getLatestVersion(tree.getManifoldCoordinate().getDestinationStampCoordinate());
-					Util.logContradictions(log, cv);
-					if (cv.isPresent())
-					{
-						childCount++;
-						if (childCount < first)
-						{
-							// Ignore unrequested pages prior to requested page
-							continue;
-						}
-						else if (childCount > last)
-						{
-							// Ignore unrequested pages subsequent to requested page
-							scannedAll = false;
-							break;
-						}
-						// expand chronology of child even if unrequested, otherwise, you can't identify what the child is
-						// TODO handle contradictions
-						RestConceptVersion childVersion = new RestConceptVersion(cv.get(), true, populateParents, countParents, false, false,
-								includeSemanticMembership, includeTerminologyType, tree);
-						children.add(childVersion);
-						if (remainingChildDepth > 0)
-						{
-							addChildren(childConcept.getNid(), childVersion, tree, countLeafChildren, populateParents, countParents, remainingChildDepth - 1,
-									includeSemanticMembership, includeTerminologyType, alreadyAddedChildren, 1, MAX_PAGE_SIZE_DEFAULT);
-						}
-						else if (countLeafChildren)
-						{
-							countChildren(childConcept.getNid(), childVersion, tree);
-						}
-					}
-					else
-					{
-						log.warn("Taxonomy impl broken, not following coordinates on destination properly");
-					}
-				}
-				catch (RestException | RuntimeException e)
-				{
-					log.error("Error adding child concept " + childConcept.getPrimordialUuid() + " of parent concept SEQ=" + conceptNid, e);
-					rcv.exceptionMessages.add("Error adding child concept " + childConcept.getPrimordialUuid() + " of parent concept SEQ=" + conceptNid
-							+ ": " + e.getLocalizedMessage());
-				}
-			}
-			catch (RestException e)
-			{
-				log.error("Failed finding concept for child concept SEQ=" + childNid + " of parent concept " + new RestIdentifiedObject(conceptNid)
-						+ ". Not including child.", e);
-				rcv.exceptionMessages
-						.add("Error adding child concept SEQ=" + childNid + " of parent concept SEQ=" + conceptNid + ": " + e.getLocalizedMessage());
-			}
-		}
-
-		final String baseUrl = RestPaths.taxonomyAPIsPathComponent + RestPaths.versionComponent + "?" + RequestParameters.id + "=" + conceptNid;
-
-		rcv.children = new RestConceptVersionPage(pageNum, maxPageSize, (scannedAll ? childCount : Math.max(childCount, totalChildrenNids.length)), 
-				scannedAll, !scannedAll, baseUrl, children.toArray(new RestConceptVersion[children.size()]));
+		new TaxonomyExpansion(tree, countLeafChildren, populateParents, countParents, includeSemanticMembership, includeTerminologyType, alreadyAddedChildren)
+				.expand(conceptNid, rcv, remainingChildDepth, pageNum, maxPageSize);
 	}
 
 	public static void countParents(int conceptNid, RestConceptVersion rcv, TaxonomySnapshot tree)
 	{
-		rcv.setParentCount(tree.getTaxonomyParentConceptNids(conceptNid).length);
+		rcv.setParentCount(LookupService.getService(ConceptSummaryService.class).getParentCount(conceptNid, tree));
 	}
 
 	public static void countChildren(int conceptNid, RestConceptVersion rcv, TaxonomySnapshot tree)
 	{
-		rcv.setChildCount(tree.getTaxonomyChildConceptNids(conceptNid).length);
+		rcv.setChildCount(LookupService.getService(ConceptSummaryService.class).getChildCount(conceptNid, tree));
 	}
 
 	public static void addParents(int conceptNid, RestConceptVersion rcv, TaxonomySnapshot tree, boolean countLeafParents, int remainingParentDepth,
@@ -427,19 +357,32 @@ public class TaxonomyAPIs
 		@Override
 		public int[] apply(int[] inputNids)
 		{
-			//Sort the concept nids based on the description the tree will display
-			TreeMap<String, Integer> sorted = new TreeMap<>(new AlphanumComparator(true));
-			for (int conNid : inputNids)
+			int[] sorted = LookupService.getService(TaxonomyChildCache.class).getSortedOrder(inputNids, mc.getStampCoordinate(), 
+					mc.getLanguageCoordinate(), () -> sortByDescription(inputNids));
+			System.arraycopy(sorted, 0, inputNids, 0, inputNids.length);
+			return inputNids;
+		}
+
+		private int[] sortByDescription(int[] inputNids)
+		{
+			//Sort the concept nids based on the description the tree will display.  The sort keys are built once per concept, rather than 
+			//on each comparison, and the sort is stable, so concepts with the same description all stay, in their taxonomy order.
+			List<String> keys = RequestPools.parallelMap(Arrays.stream(inputNids).boxed().collect(Collectors.toList()), 
+					nid -> naturalSortKey(Util.readBestDescription(nid, mc.getStampCoordinate(), mc.getLanguageCoordinate())));
+			
+			Integer[] order = new Integer[inputNids.length];
+			for (int i = 0; i < order.length; i++)
 			{
-				sorted.put(Util.readBestDescription(conNid, mc.getStampCoordinate(), mc.getLanguageCoordinate()), conNid);
+				order[i] = i;
 			}
+			Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
 			
-			int i = 0;
-			for (int nid : sorted.values())
+			int[] result = new int[inputNids.length];
+			for (int i = 0; i < order.length; i++)
 			{
-				inputNids[i++] = nid;
+				result[i] = inputNids[order[i]];
 			}
-			return inputNids;
+			return result;
 		}
 
 		@Override
@@ -454,7 +397,47 @@ public class TaxonomyAPIs
 		@Override
 		public boolean equals(Object obj)
 		{
-			return this.hashCode() == obj.hashCode();
+			return obj != null && this.hashCode() == obj.hashCode();
 		}
 	}
+	
+	/**
+	 * @param text a description
+	 * @return a key that orders, by {@link String#compareTo(String)}, the way {@link sh.isaac.api.util.AlphanumComparator} orders ignoring 
+	 *     case - the text is lower cased, and each run of digits is replaced by a '0', the number of digits in the count of its significant 
+	 *     digits, the count, and the significant digits, so that shorter numbers sort first, however long they are.
+	 */
+	public static String naturalSortKey(String text)
+	{
+		String lower = text.toLowerCase(Locale.ROOT);
+		StringBuilder sb = new StringBuilder(lower.length() + 8);
+		int i = 0;
+		while (i < lower.length())
+		{
+			if (isDigit(lower.charAt(i)))
+			{
+				int start = i;
+				while (i < lower.length() && isDigit(lower.charAt(i)))
+				{
+					i++;
+				}
+				while (start < i - 1 && lower.charAt(start) == '0')
+				{
+					start++;
+				}
+				String length = Integer.toString(i - start);
+				sb.append('0').append((char) ('0' + length.length())).append(length).append(lower, start, i);
+			}
+			else
+			{
+				sb.append(lower.charAt(i++));
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
 }
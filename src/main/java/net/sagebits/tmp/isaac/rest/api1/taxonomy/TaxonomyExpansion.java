@@ -0,0 +1,439 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.api1.taxonomy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import net.sagebits.tmp.isaac.rest.Util;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.tmp.isaac.rest.api1.RestPaths;
+import net.sagebits.tmp.isaac.rest.api1.data.RestIdentifiedObject;
+import net.sagebits.tmp.isaac.rest.api1.data.concept.RestConceptVersion;
+import net.sagebits.tmp.isaac.rest.api1.data.concept.RestConceptVersionPage;
+import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RequestPools;
+import net.sagebits.tmp.isaac.rest.session.TaxonomyChildCache;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.TaxonomySnapshot;
+import sh.isaac.api.chronicle.LatestVersion;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.concept.ConceptVersion;
+import sh.isaac.api.coordinate.StampCoordinate;
+
+/**
+ * {@link TaxonomyExpansion}
+ *
+ * Populates the children of a concept, down to a depth, one level of the subtree at a time.  The latest versions of all of the children 
+ * on a level are read together, and the present ones are then converted to {@link RestConceptVersion}s together - each step split across 
+ * the shared parallel pool of {@link RequestPools}.  Children are read by nid, and the latest version of a concept that occurs under more 
+ * than one parent is only read once per expansion.
+ *
+ * A concept is only expanded at the first place it is reached, which also stops cycles.  As the walk is by level, that is the shallowest 
+ * place it occurs.
+ * 
+ * The paged (first) level is read through the {@link TaxonomyChildCache}, so that the later pages of a concept with a very large number of 
+ * children only read the children on the page, and the total is exact.  The deeper levels always return their first page, so they 
+ * are read directly, only as far as the page.
+ */
+class TaxonomyExpansion
+{
+	private static Logger log = LogManager.getLogger(TaxonomyExpansion.class);
+
+	private final TaxonomySnapshot tree;
+	private final StampCoordinate stamp;
+	private final boolean countLeafChildren;
+	private final boolean populateParents;
+	private final boolean countParents;
+	private final boolean includeSemanticMembership;
+	private final boolean includeTerminologyType;
+	private final NidSet alreadyAddedChildren;
+
+	private final ConcurrentHashMap<Integer, Read> reads = new ConcurrentHashMap<>();
+
+	/**
+	 * The outcome of reading the latest version of one concept
+	 */
+	private static class Read
+	{
+		final LatestVersion<ConceptVersion> latest;
+		final String error;
+
+		Read(LatestVersion<ConceptVersion> latest, String error)
+		{
+			this.latest = latest;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * A concept whose children are being populated
+	 */
+	private static class Parent
+	{
+		final int nid;
+		final RestConceptVersion rcv;
+		final int pageNum;
+		final int maxPageSize;
+		final int first;
+		final int last;
+		final boolean paged;
+
+		int[] childNids;
+		int nextIndex = 0;
+		int present = 0;
+		boolean scannedAll = true;
+		boolean hasMore = false;
+		final List<ConceptVersion> page = new ArrayList<>();
+
+		Parent(int nid, RestConceptVersion rcv, int pageNum, int maxPageSize, boolean paged)
+		{
+			this.nid = nid;
+			this.rcv = rcv;
+			this.pageNum = pageNum;
+			this.maxPageSize = maxPageSize;
+			this.paged = paged;
+			this.first = pageNum == 1 ? 0 : ((pageNum - 1) * maxPageSize + 1);
+			this.last = pageNum * maxPageSize;
+		}
+
+		/**
+		 * @return the index after the end of the nids that need to be read to fill the page (including one extra present child, to 
+		 *     learn whether there are more)
+		 */
+		int readEnd()
+		{
+			return (int) Math.min(childNids.length, (long) nextIndex + (last + 1 - present));
+		}
+
+		boolean needsMore()
+		{
+			return scannedAll && nextIndex < childNids.length;
+		}
+	}
+
+	/**
+	 * A present child, and what it was converted to
+	 */
+	private static class Child
+	{
+		final Parent parent;
+		final ConceptVersion version;
+		RestConceptVersion rcv;
+		String error;
+
+		Child(Parent parent, ConceptVersion version)
+		{
+			this.parent = parent;
+			this.version = version;
+		}
+	}
+
+	TaxonomyExpansion(TaxonomySnapshot tree, boolean countLeafChildren, boolean populateParents, boolean countParents, boolean includeSemanticMembership, 
+			boolean includeTerminologyType, NidSet alreadyAddedChildren)
+	{
+		this.tree = tree;
+		this.stamp = tree.getManifoldCoordinate().getDestinationStampCoordinate();
+		this.countLeafChildren = countLeafChildren;
+		this.populateParents = populateParents;
+		this.countParents = countParents;
+		this.includeSemanticMembership = includeSemanticMembership;
+		this.includeTerminologyType = includeTerminologyType;
+		this.alreadyAddedChildren = alreadyAddedChildren;
+	}
+
+	/**
+	 * Populate the requested page of children of the concept, and all of the children of those children, down to the remaining depth.
+	 * Only the first level is paged.
+	 * 
+	 * @param conceptNid the concept to expand
+	 * @param rcv the concept to populate the children of
+	 * @param remainingChildDepth the number of levels to expand below the children of the concept
+	 * @param pageNum > 0
+	 * @param maxPageSize > 0
+	 * @throws RestException 
+	 */
+	void expand(int conceptNid, RestConceptVersion rcv, int remainingChildDepth, int pageNum, int maxPageSize) throws RestException
+	{
+		List<Parent> level = new ArrayList<>();
+		level.add(new Parent(conceptNid, rcv, pageNum, maxPageSize, true));
+		int remaining = remainingChildDepth;
+		while (!level.isEmpty())
+		{
+			List<Child> children = expandLevel(level, remaining == 0);
+			if (remaining-- == 0)
+			{
+				break;
+			}
+			level = new ArrayList<>(children.size());
+			for (Child child : children)
+			{
+				if (child.rcv != null)
+				{
+					level.add(new Parent(child.version.getNid(), child.rcv, TaxonomyAPIs.PAGE_NUM_DEFAULT, TaxonomyAPIs.MAX_PAGE_SIZE_DEFAULT, false));
+				}
+			}
+		}
+	}
+
+	private List<Child> expandLevel(List<Parent> level, boolean leafLevel) throws RestException
+	{
+		List<Parent> expanding = new ArrayList<>(level.size());
+		List<Parent> pending = new ArrayList<>(level.size());
+		for (Parent parent : level)
+		{
+			if (alreadyAddedChildren.contains(parent.nid))
+			{
+				// Avoiding infinite loop
+				log.warn("addChildren(" + parent.nid + ") aborted potential infinite recursion");
+				continue;
+			}
+			alreadyAddedChildren.add(parent.nid);
+			parent.childNids = tree.getTaxonomyChildConceptNids(parent.nid);
+			expanding.add(parent);
+			if (parent.paged)
+			{
+				readCachedPage(parent);
+			}
+			else
+			{
+				pending.add(parent);
+			}
+		}
+
+		// Read the latest versions of enough children to fill each page.  Only when some of those turn out not to be present 
+		// does a parent need another round.
+		while (!pending.isEmpty())
+		{
+			List<Integer> toRead = new ArrayList<>();
+			for (Parent parent : pending)
+			{
+				for (int i = parent.nextIndex; i < parent.readEnd(); i++)
+				{
+					toRead.add(parent.childNids[i]);
+				}
+			}
+			RequestPools.parallelMap(toRead, nid -> reads.computeIfAbsent(nid, this::read));
+
+			List<Parent> stillPending = new ArrayList<>();
+			for (Parent parent : pending)
+			{
+				collectPage(parent);
+				if (parent.needsMore())
+				{
+					stillPending.add(parent);
+				}
+			}
+			pending = stillPending;
+		}
+
+		List<Child> children = new ArrayList<>();
+		for (Parent parent : expanding)
+		{
+			for (ConceptVersion cv : parent.page)
+			{
+				children.add(new Child(parent, cv));
+			}
+		}
+
+		RequestPools.parallelMap(children, child -> 
+		{
+			try
+			{
+				// expand chronology of child even if unrequested, otherwise, you can't identify what the child is
+				// TODO handle contradictions
+				child.rcv = new RestConceptVersion(child.version, true, populateParents, countParents, false, false, includeSemanticMembership, 
+						includeTerminologyType, tree);
+				if (leafLevel && countLeafChildren)
+				{
+					TaxonomyAPIs.countChildren(child.version.getNid(), child.rcv, tree);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Error adding child concept " + child.version.getPrimordialUuid() + " of parent concept SEQ=" + child.parent.nid, e);
+				child.error = "Error adding child concept " + child.version.getPrimordialUuid() + " of parent concept SEQ=" + child.parent.nid
+						+ ": " + e.getLocalizedMessage();
+			}
+			return child;
+		});
+
+		int childIndex = 0;
+		for (Parent parent : expanding)
+		{
+			List<RestConceptVersion> page = new ArrayList<>(parent.page.size());
+			for (int i = 0; i < parent.page.size(); i++)
+			{
+				Child child = children.get(childIndex++);
+				if (child.rcv != null)
+				{
+					page.add(child.rcv);
+				}
+				else
+				{
+					parent.rcv.exceptionMessages.add(child.error);
+				}
+			}
+
+			final String baseUrl = RestPaths.taxonomyAPIsPathComponent + RestPaths.versionComponent + "?" + RequestParameters.id + "=" + parent.nid;
+
+			parent.rcv.children = new RestConceptVersionPage(parent.pageNum, parent.maxPageSize, 
+					(parent.scannedAll ? parent.present : Math.max(parent.present, parent.childNids.length)), parent.scannedAll, parent.hasMore, baseUrl, 
+					page.toArray(new RestConceptVersion[page.size()]));
+		}
+		return children;
+	}
+
+	/**
+	 * Slice the requested page out of the cached present children of the parent, reading the present children first, if they aren't cached.
+	 */
+	private void readCachedPage(Parent parent)
+	{
+		TaxonomyChildCache.PresentChildren cached = LookupService.getService(TaxonomyChildCache.class).getPresentChildren(parent.nid, 
+				tree.getManifoldCoordinate(), () -> 
+		{
+			List<Integer> all = new ArrayList<>(parent.childNids.length);
+			for (int childNid : parent.childNids)
+			{
+				all.add(childNid);
+			}
+			RequestPools.parallelMap(all, nid -> reads.computeIfAbsent(nid, this::read));
+			int[] present = new int[parent.childNids.length];
+			int count = 0;
+			List<String> exceptionMessages = new ArrayList<>();
+			for (int childNid : parent.childNids)
+			{
+				Read read = reads.get(childNid);
+				if (read.error != null)
+				{
+					log.error("Failed finding concept for child concept SEQ=" + childNid + " of parent concept " + new RestIdentifiedObject(parent.nid)
+							+ ". Not including child: " + read.error);
+					exceptionMessages.add("Error adding child concept SEQ=" + childNid + " of parent concept SEQ=" + parent.nid + ": " + read.error);
+				}
+				else if (read.latest.isPresent())
+				{
+					present[count++] = childNid;
+				}
+			}
+			return new TaxonomyChildCache.PresentChildren(count == present.length ? present : Arrays.copyOf(present, count), exceptionMessages);
+		});
+		// Reported on every page, whether the children were read by this request, or came from the cache
+		parent.rcv.exceptionMessages.addAll(cached.getExceptionMessages());
+		int[] presentChildren = cached.getNids();
+
+		int from = (int) Math.min(presentChildren.length, (long) (parent.pageNum - 1) * parent.maxPageSize);
+		int to = (int) Math.min(presentChildren.length, (long) parent.pageNum * parent.maxPageSize);
+		List<Integer> pageNids = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++)
+		{
+			pageNids.add(presentChildren[i]);
+		}
+		// Already read, unless the children came from the cache
+		RequestPools.parallelMap(pageNids, nid -> reads.computeIfAbsent(nid, this::read));
+		for (int nid : pageNids)
+		{
+			Read read = reads.get(nid);
+			if (read.latest != null && read.latest.isPresent())
+			{
+				parent.page.add(read.latest.get());
+			}
+		}
+		parent.present = presentChildren.length;
+		parent.nextIndex = parent.childNids.length;
+		parent.hasMore = to < presentChildren.length;
+	}
+
+	/**
+	 * Page through the children of the parent that have been read so far
+	 */
+	private void collectPage(Parent parent)
+	{
+		int end = parent.readEnd();
+		for (; parent.nextIndex < end; parent.nextIndex++)
+		{
+			int childNid = parent.childNids[parent.nextIndex];
+			Read read = reads.get(childNid);
+			if (read.error != null)
+			{
+				log.error("Failed finding concept for child concept SEQ=" + childNid + " of parent concept " + new RestIdentifiedObject(parent.nid)
+						+ ". Not including child: " + read.error);
+				parent.rcv.exceptionMessages.add("Error adding child concept SEQ=" + childNid + " of parent concept SEQ=" + parent.nid + ": " + read.error);
+			}
+			else if (read.latest.isPresent())
+			{
+				parent.present++;
+				if (parent.present < parent.first)
+				{
+					// Ignore unrequested pages prior to requested page
+					continue;
+				}
+				else if (parent.present > parent.last)
+				{
+					// Ignore unrequested pages subsequent to requested page
+					parent.scannedAll = false;
+					parent.hasMore = true;
+					parent.nextIndex++;
+					break;
+				}
+				parent.page.add(read.latest.get());
+			}
+			else
+			{
+				log.warn("Taxonomy impl broken, not following coordinates on destination properly");
+			}
+		}
+	}
+
+	private Read read(int nid)
+	{
+		try
+		{
+			Optional<? extends ConceptChronology> concept = Get.conceptService().getOptionalConcept(nid);
+			if (!concept.isPresent())
+			{
+				return new Read(null, "No concept is available with the specified id \"" + nid + "\"");
+			}
+			LatestVersion<ConceptVersion> cv = concept.get().getLatestVersion(stamp);
+			Util.logContradictions(log, cv);
+			return new Read(cv, null);
+		}
+		catch (RuntimeException e)
+		{
+			return new Read(null, e.getLocalizedMessage());
+		}
+	}
+}
@@ -33,8 +33,11 @@ package net.sagebits.tmp.isaac.rest.jerseyConfig;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.concurrent.RejectedExecutionException;
 import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.RedirectionException;
 import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -49,6 +52,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestExceptionResponse;
 import net.sagebits.tmp.isaac.rest.session.RequestInfo;
+import net.sagebits.tmp.isaac.rest.session.RestConfig;
 
 /**
  * 
@@ -61,6 +65,11 @@ public class IsaacExceptionMapper implements ExceptionMapper<Exception>
 {
 	private static Logger log = LogManager.getLogger("web");
 	
+	// The mapper may run on the container thread after the request went async, where the RequestInfo is no longer bound, so it is 
+	// read from the request
+	@Context
+	private javax.inject.Provider<ContainerRequestContext> request_;
+	
 	/**
 	 * Reads the initial requested format from the request, tries to format the error the same, otherwise, returns a string.
 	 * @param response
@@ -71,7 +80,7 @@ public class IsaacExceptionMapper implements ExceptionMapper<Exception>
 		String errorMessage;
 		String mediaType = MediaType.TEXT_PLAIN;
 		
-		ContainerRequestContext crc = RequestInfo.get().getContext(); 
+		ContainerRequestContext crc = RequestInfo.get(request()).getContext(); 
 		String errorFormat = crc == null ? null : crc.getHeaderString("Accept");
 		
 		if (MediaType.APPLICATION_XML.equals(errorFormat))
@@ -113,9 +122,28 @@ public class IsaacExceptionMapper implements ExceptionMapper<Exception>
 		return Response.status(status).entity(errorMessage).type(mediaType).build();
 	}
 	
+	private ContainerRequestContext request()
+	{
+		try
+		{
+			return request_ == null ? null : request_.get();
+		}
+		catch (IllegalStateException e)
+		{
+			// Not in a request scope
+			return null;
+		}
+	}
+	
 	@Override
 	public Response toResponse(Exception ex)
 	{
+		if (ex instanceof RedirectionException)
+		{
+			// Not an error - such as the 304 of a conditional GET
+			return ((RedirectionException)ex).getResponse();
+		}
+
 		Status status = Status.INTERNAL_SERVER_ERROR; // Default is INTERNAL_SERVER_ERROR
 		boolean sendMessage = false;
 
@@ -129,9 +157,15 @@ public class IsaacExceptionMapper implements ExceptionMapper<Exception>
 			sendMessage = true;
 			log.warn(ex.getMessage());
 		}
+		else if (ex instanceof RejectedExecutionException)
+		{
+			status = Status.SERVICE_UNAVAILABLE;
+			sendMessage = true;
+			log.warn(ex.getMessage());
+		}
 		else if ((ex instanceof SecurityException) || (ex instanceof IOException && ((IOException)ex).getCause() instanceof SecurityException))
 		{
-			RequestInfo.get().setAuthFail(ex.getMessage());
+			RequestInfo.get(request()).setAuthFail(ex.getMessage());
 			status = Status.UNAUTHORIZED;
 			sendMessage = true;
 			log.info(ex.getMessage());
@@ -166,6 +200,12 @@ public class IsaacExceptionMapper implements ExceptionMapper<Exception>
 					null,
 					null,
 					status);
+			if (ex instanceof RejectedExecutionException)
+			{
+				// Let the caller know when it is worth trying again
+				return Response.fromResponse(buildResponse(exceptionResponse))
+						.header("Retry-After", RestConfig.getInstance().getRequestRetryAfterSeconds()).build();
+			}
 			return buildResponse(exceptionResponse);
 		}
 		else if (ex instanceof RestException)
@@ -30,30 +30,104 @@
 
 package net.sagebits.tmp.isaac.rest.jerseyConfig;
 
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.cfg.EndpointConfigBase;
+import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterModifier;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
 
 /**
  * 
  * {@link MyJacksonMapperConfig}
  *
+ * Responses are written without indentation, unless {@link ResponseFormatFilter} has flagged the request as coming from a browser.
+ * The indentation is applied to the writer of the individual response, with {@link #PRETTY_OUTPUT}, rather than by handing out a 
+ * different mapper - the jackson provider caches the writer for each type, so the mapper handed out for the first request of a type 
+ * would otherwise be used for every later request of that type.
+ * The mappers for the binary (smile / cbor) formats are configured the same way, and handed to their providers by the ApplicationConfig.
+ *
  * @author <a href="mailto:daniel.armbrust.list@sagebits.net">Dan Armbrust</a>
  */
 @Provider
 public class MyJacksonMapperConfig implements ContextResolver<ObjectMapper>
 {
+	private static Logger log = LogManager.getLogger(MyJacksonMapperConfig.class);
+
+	private static final ObjectMapper SHARED_MAPPER = createDefaultMapper(new ObjectMapper());
+	private static final ObjectMapper SMILE_MAPPER = createDefaultMapper(new ObjectMapper(new SmileFactory()));
+	private static final ObjectMapper CBOR_MAPPER = createDefaultMapper(new ObjectMapper(new CBORFactory()));
+
+	/**
+	 * Indents the response it is applied to.  Passed to the jackson provider for a single response with 
+	 * {@link com.fasterxml.jackson.jaxrs.cfg.ObjectWriterInjector}, by the {@link ResponseFormatFilter}.
+	 */
+	static final ObjectWriterModifier PRETTY_OUTPUT = new ObjectWriterModifier()
+	{
+		@Override
+		public ObjectWriter modify(EndpointConfigBase<?> endpoint, MultivaluedMap<String, Object> responseHeaders, Object valueToWrite, 
+				ObjectWriter w, JsonGenerator g) throws IOException
+		{
+			// The generator is already created, so it is given the printer directly, as well as the writer
+			g.useDefaultPrettyPrinter();
+			return w.with(SerializationFeature.INDENT_OUTPUT);
+		}
+	};
+
 	final ObjectMapper defaultObjectMapper;
 
 	public MyJacksonMapperConfig()
 	{
-		defaultObjectMapper = createDefaultMapper();
+		defaultObjectMapper = SHARED_MAPPER;
+	}
+
+	/**
+	 * @return the mapper that responses are written with, for the methods that stream their own JSON
+	 */
+	public static ObjectMapper getMapper()
+	{
+		return SHARED_MAPPER;
+	}
+
+	/**
+	 * @return the mapper for application/x-jackson-smile responses
+	 */
+	public static ObjectMapper getSmileMapper()
+	{
+		return SMILE_MAPPER;
+	}
+
+	/**
+	 * @return the mapper for application/cbor responses
+	 */
+	public static ObjectMapper getCborMapper()
+	{
+		return CBOR_MAPPER;
 	}
 
 	@Override
@@ -62,10 +136,107 @@ public class MyJacksonMapperConfig implements ContextResolver<ObjectMapper>
 		return defaultObjectMapper;
 	}
 
-	private static ObjectMapper createDefaultMapper()
+	/**
+	 * Builds, and caches in each mapper, the serializers of the data classes returned by the resource methods of the given classes 
+	 * (along with the classes they reference, and their {@link XmlSeeAlso} subtypes), so that the paired jaxb / jackson annotation 
+	 * introspection is done once, up front, rather than by the first requests that return each type.
+	 * 
+	 * @param resourceClasses the classes registered with jersey - anything that doesn't have resource methods is ignored.
+	 */
+	public static void precomputeSerializers(Collection<Class<?>> resourceClasses)
+	{
+		long start = System.currentTimeMillis();
+		Set<Class<?>> dataClasses = new HashSet<>();
+		for (Class<?> resourceClass : resourceClasses)
+		{
+			for (Method m : resourceClass.getMethods())
+			{
+				if (isResourceMethod(m))
+				{
+					collectDataClasses(m.getGenericReturnType(), dataClasses);
+				}
+			}
+		}
+
+		for (Class<?> dataClass : dataClasses)
+		{
+			for (ObjectMapper mapper : new ObjectMapper[] {SHARED_MAPPER, SMILE_MAPPER, CBOR_MAPPER})
+			{
+				try
+				{
+					// With EAGER_SERIALIZER_FETCH (the default) creating the writer resolves, and caches, the serializer
+					mapper.writerFor(dataClass);
+				}
+				catch (RuntimeException e)
+				{
+					log.debug("Couldn't precompute the serializer for " + dataClass.getName(), e);
+				}
+			}
+		}
+		log.info("Precomputed the serializers of {} data classes in {}ms", dataClasses.size(), System.currentTimeMillis() - start);
+	}
+
+	private static boolean isResourceMethod(Method m)
+	{
+		for (Annotation a : m.getAnnotations())
+		{
+			if (a.annotationType().isAnnotationPresent(HttpMethod.class))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void collectDataClasses(Type type, Set<Class<?>> found)
+	{
+		if (type instanceof ParameterizedType)
+		{
+			// CompletionStage<X>, List<X>, etc
+			for (Type t : ((ParameterizedType) type).getActualTypeArguments())
+			{
+				collectDataClasses(t, found);
+			}
+		}
+		else if (type instanceof GenericArrayType)
+		{
+			collectDataClasses(((GenericArrayType) type).getGenericComponentType(), found);
+		}
+		else if (type instanceof Class)
+		{
+			Class<?> c = (Class<?>) type;
+			if (c.isArray())
+			{
+				collectDataClasses(c.getComponentType(), found);
+				return;
+			}
+			if (c.isPrimitive() || !c.getName().startsWith("net.sagebits.") || !found.add(c))
+			{
+				return;
+			}
+			XmlSeeAlso seeAlso = c.getAnnotation(XmlSeeAlso.class);
+			if (seeAlso != null)
+			{
+				for (Class<?> subType : seeAlso.value())
+				{
+					collectDataClasses(subType, found);
+				}
+			}
+			for (Class<?> current = c; current != null && current != Object.class; current = current.getSuperclass())
+			{
+				for (Field f : current.getDeclaredFields())
+				{
+					if (!Modifier.isStatic(f.getModifiers()))
+					{
+						collectDataClasses(f.getGenericType(), found);
+					}
+				}
+			}
+		}
+	}
+
+	private static ObjectMapper createDefaultMapper(ObjectMapper result)
 	{
-		final ObjectMapper result = new ObjectMapper();
-		result.enable(SerializationFeature.INDENT_OUTPUT);
 		result.setSerializationInclusion(Include.NON_NULL);
 		result.setAnnotationIntrospector(createJaxbJacksonAnnotationIntrospector());
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.jerseyConfig;
+
+import java.io.IOException;
+import java.util.List;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterInjector;
+import net.sagebits.tmp.isaac.rest.session.RequestInfo;
+
+/**
+ * {@link ResponseFormatFilter}
+ *
+ * Picks the form that JSON responses are written in:
+ * <ul>
+ * <li>Compact (non-indented) JSON, by default.</li>
+ * <li>Indented JSON, for browsers (a User-Agent starting with <code>Mozilla/</code>), so the output is still readable when viewed directly.</li>
+ * <li>Smile or CBOR, when the client's most preferred type is {@link #SMILE} or {@link #CBOR}.</li>
+ * </ul>
+ * 
+ * The resource methods only declare JSON and XML, so a binary request is matched as a JSON request (the Accept header is rewritten 
+ * before matching), and the binary type is swapped back in when the entity is written, which routes it to the smile / cbor provider.
+ * Entities that write themselves ({@link StreamingOutput}) are left alone.
+ * 
+ * Every entity is written with the {@link RequestInfo} of its request bound - an async request may be written on the container thread, 
+ * which the RequestInfo was detached from.
+ */
+@PreMatching
+@Provider
+public class ResponseFormatFilter implements ContainerRequestFilter, WriterInterceptor
+{
+	public static final String SMILE = "application/x-jackson-smile";
+	public static final String CBOR = "application/cbor";
+
+	public static final MediaType SMILE_TYPE = MediaType.valueOf(SMILE);
+	public static final MediaType CBOR_TYPE = MediaType.valueOf(CBOR);
+
+	private static final String BINARY_FORMAT_PROPERTY = ResponseFormatFilter.class.getName() + ".binaryFormat";
+	private static final String PRETTY_PROPERTY = ResponseFormatFilter.class.getName() + ".pretty";
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		List<MediaType> acceptable = requestContext.getAcceptableMediaTypes();
+		// sorted most preferred first
+		MediaType preferred = acceptable.isEmpty() ? null : acceptable.get(0);
+		if (preferred != null && !preferred.isWildcardType() && !preferred.isWildcardSubtype() 
+				&& (preferred.isCompatible(SMILE_TYPE) || preferred.isCompatible(CBOR_TYPE)))
+		{
+			requestContext.setProperty(BINARY_FORMAT_PROPERTY, preferred.isCompatible(SMILE_TYPE) ? SMILE_TYPE : CBOR_TYPE);
+			requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+		}
+		else
+		{
+			String userAgent = requestContext.getHeaderString(HttpHeaders.USER_AGENT);
+			if (userAgent != null && userAgent.startsWith("Mozilla/"))
+			{
+				requestContext.setProperty(PRETTY_PROPERTY, Boolean.TRUE);
+			}
+		}
+	}
+
+	/**
+	 * @param requestContext a request this filter has seen
+	 * @return the binary type, or "pretty", or "" for compact JSON (and for XML) - what, beyond the Accept header, sets the form of the response
+	 */
+	public static String getFormat(ContainerRequestContext requestContext)
+	{
+		Object binary = requestContext.getProperty(BINARY_FORMAT_PROPERTY);
+		if (binary != null)
+		{
+			return binary.toString();
+		}
+		return requestContext.getProperty(PRETTY_PROPERTY) != null ? "pretty" : "";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException
+	{
+		RequestInfo ri = RequestInfo.get(context);
+		if (ri == null)
+		{
+			write(context);
+			return;
+		}
+		try
+		{
+			ri.wrap(() -> 
+			{
+				write(context);
+				return null;
+			}).call();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	private void write(WriterInterceptorContext context) throws IOException
+	{
+		if (context.getEntity() instanceof StreamingOutput || context.getMediaType() == null 
+				|| !MediaType.APPLICATION_JSON_TYPE.isCompatible(context.getMediaType()) || context.getMediaType().isWildcardType())
+		{
+			context.proceed();
+			return;
+		}
+
+		MediaType binary = (MediaType) context.getProperty(BINARY_FORMAT_PROPERTY);
+		if (binary != null)
+		{
+			context.setMediaType(binary);
+			context.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, binary);
+			context.proceed();
+		}
+		else if (context.getProperty(PRETTY_PROPERTY) != null)
+		{
+			// Consumed by the jackson provider as it writes this entity
+			ObjectWriterInjector.set(MyJacksonMapperConfig.PRETTY_OUTPUT);
+			try
+			{
+				context.proceed();
+			}
+			finally
+			{
+				// In case the entity wasn't written by the jackson provider after all
+				ObjectWriterInjector.getAndClear();
+			}
+		}
+		else
+		{
+			context.proceed();
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.coordinate.StampCoordinate;
+
+/**
+ * {@link AssemblageIndexService}
+ *
+ * Keeps a sorted array of the semantic nids of each assemblage, and for each assemblage / stamp pair, a bitmap of which of those 
+ * semantics have a latest version present on the stamp.  This lets the REST layer count, page and filter the members of an assemblage 
+ * without streaming every chronology of the assemblage on each call.
+ * 
+ * Both are built lazily, on first use.  The entries of an assemblage are dropped when any semantic of the assemblage is changed or committed.
+ * A bitmap is only valid for the exact nid array it was built from, so a bitmap which was being built across a change is never handed out.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class AssemblageIndexService implements ChronologyChangeListener
+{
+	private static Logger log = LogManager.getLogger(AssemblageIndexService.class);
+
+	private static final UUID LISTENER_UUID = UUID.fromString("5b1f3c0e-9a47-4d2b-8c61-0f3e7d2a9b14");
+
+	private Cache<Integer, int[]> sortedNids_;
+	private Cache<PresentKey, LatestPresent> latestPresent_;
+
+	/**
+	 * The semantics of one assemblage, in nid order, along with which of them have a latest version present on a particular stamp.
+	 */
+	public static final class LatestPresent
+	{
+		private final int[] nids;
+		private final BitSet present;
+		private final int presentCount;
+
+		/**
+		 * @param nids the sorted semantic nids of an assemblage
+		 * @param present the indexes into nids of the semantics with a latest version present on the stamp
+		 */
+		public LatestPresent(int[] nids, BitSet present)
+		{
+			this.nids = nids;
+			this.present = present;
+			this.presentCount = present.cardinality();
+		}
+
+		/**
+		 * @return the sorted semantic nids of the assemblage.  Callers must not modify the array.
+		 */
+		public int[] getNids()
+		{
+			return nids;
+		}
+
+		/**
+		 * @param index an index into {@link #getNids()}
+		 * @return true, if the semantic at the index has a latest version present on the stamp
+		 */
+		public boolean isPresent(int index)
+		{
+			return present.get(index);
+		}
+
+		/**
+		 * @return the number of semantics that have a latest version present on the stamp
+		 */
+		public int getPresentCount()
+		{
+			return presentCount;
+		}
+
+		/**
+		 * @param fromIndex the index to start looking from, inclusive
+		 * @return the index of the next semantic that is present, or -1, if there are none
+		 */
+		public int nextPresent(int fromIndex)
+		{
+			return present.nextSetBit(fromIndex);
+		}
+
+		/**
+		 * @param skip the number of present semantics to pass over
+		 * @return the index of the present semantic that follows the first skip present semantics, or the length of the nids array, if 
+		 *     there are not that many present.
+		 */
+		public int indexAfterPresent(int skip)
+		{
+			if (skip >= presentCount)
+			{
+				return nids.length;
+			}
+			int index = present.nextSetBit(0);
+			for (int i = 0; i < skip; i++)
+			{
+				index = present.nextSetBit(index + 1);
+			}
+			return index;
+		}
+	}
+
+	private static final class PresentKey
+	{
+		private final int assemblageNid;
+		private final StampCoordinate stamp;
+
+		private PresentKey(int assemblageNid, StampCoordinate stamp)
+		{
+			this.assemblageNid = assemblageNid;
+			this.stamp = stamp;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * assemblageNid + stamp.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof PresentKey))
+			{
+				return false;
+			}
+			PresentKey other = (PresentKey) obj;
+			return assemblageNid == other.assemblageNid && Objects.equals(stamp, other.stamp);
+		}
+	}
+
+	AssemblageIndexService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @param assemblageNid the assemblage to read
+	 * @return the nids of all semantics in the assemblage, in ascending order.  Callers must not modify the array.
+	 */
+	public int[] getSortedSemanticNids(int assemblageNid)
+	{
+		return sortedNids_.get(assemblageNid, nid -> Get.assemblageService().getSemanticNidsFromAssemblage(nid).stream().sorted().toArray());
+	}
+
+	/**
+	 * @param assemblageNids the assemblages to read
+	 * @return the distinct nids of all semantics in the passed assemblages, in ascending order.  Callers must not modify the array.
+	 */
+	public int[] getSortedSemanticNids(Set<Integer> assemblageNids)
+	{
+		if (assemblageNids.size() == 1)
+		{
+			return getSortedSemanticNids(assemblageNids.iterator().next());
+		}
+		IntStream nids = IntStream.empty();
+		for (int assemblageNid : assemblageNids)
+		{
+			nids = IntStream.concat(nids, Arrays.stream(getSortedSemanticNids(assemblageNid)));
+		}
+		return nids.sorted().distinct().toArray();
+	}
+
+	/**
+	 * @param assemblageNid the assemblage to read
+	 * @param stamp the stamp to evaluate the latest versions on
+	 * @return the sorted semantic nids of the assemblage, and which of them have a latest version present on the stamp
+	 */
+	public LatestPresent getLatestPresent(int assemblageNid, StampCoordinate stamp)
+	{
+		int[] nids = getSortedSemanticNids(assemblageNid);
+		PresentKey key = new PresentKey(assemblageNid, stamp);
+		LatestPresent result = latestPresent_.get(key, keyAgain -> build(nids, stamp));
+		if (result.nids != nids)
+		{
+			// built from a prior version of the index
+			result = build(nids, stamp);
+			latestPresent_.put(key, result);
+		}
+		return result;
+	}
+
+	private static LatestPresent build(int[] nids, StampCoordinate stamp)
+	{
+		// Each word of the bitmap is computed independently, so the words can be filled in parallel without coordination
+		List<Long> computed = RequestPools.parallelMap(IntStream.range(0, (nids.length + 63) / 64).boxed().collect(Collectors.toList()), word -> 
+		{
+			long bits = 0;
+			int end = Math.min(nids.length, (word + 1) * 64);
+			for (int i = word * 64; i < end; i++)
+			{
+				if (Get.assemblageService().getSemanticChronology(nids[i]).getLatestVersion(stamp).isPresent())
+				{
+					bits |= 1L << (i & 63);
+				}
+			}
+			return bits;
+		});
+		long[] words = new long[computed.size()];
+		for (int word = 0; word < words.length; word++)
+		{
+			words[word] = computed.get(word);
+		}
+		return new LatestPresent(nids, BitSet.valueOf(words));
+	}
+
+	/**
+	 * Drop the index entries of the assemblage
+	 * @param assemblageNid
+	 */
+	public void invalidate(int assemblageNid)
+	{
+		sortedNids_.invalidate(assemblageNid);
+		latestPresent_.asMap().keySet().removeIf(key -> key.assemblageNid == assemblageNid);
+	}
+
+	/**
+	 * Drop all index entries
+	 */
+	public void invalidateAll()
+	{
+		sortedNids_.invalidateAll();
+		latestPresent_.invalidateAll();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		// Concepts aren't indexed
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		invalidate(sc.getAssemblageNid());
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		// Committing changes the time on the uncommitted versions, which may change what is latest on a stamp with a time
+		commitRecord.getSemanticNidsInCommit().stream()
+				.map(nid -> Get.assemblageService().getSemanticChronology(nid).getAssemblageNid()).distinct().forEach(this::invalidate);
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		long maxSize = RestConfig.getInstance().getAssemblageIndexCacheSize();
+		sortedNids_ = RestCaches.register("assemblageSortedNids", Caffeine.newBuilder().maximumWeight(maxSize)
+				.weigher((Integer key, int[] value) -> Math.max(1, value.length)).recordStats().build());
+		// A bitmap costs one bit per nid, rather than 32
+		latestPresent_ = RestCaches.register("assemblageLatestPresent", Caffeine.newBuilder().maximumWeight(maxSize)
+				.weigher((PresentKey key, LatestPresent value) -> Math.max(1, value.nids.length / 32)).recordStats().build());
+		Get.commitService().addChangeListener(this);
+		log.debug("Assemblage index service started");
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		invalidateAll();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link AsyncRequests}
+ *
+ * Runs the work of a resource method off of the container thread.  A resource method that returns the {@link CompletionStage} from 
+ * {@link #supply(Callable)} is suspended by Jersey, and resumed when the work completes, so the container thread is free to take 
+ * other requests in the meantime.
+ * 
+ * The work is run on the {@link RequestPools} pool for the API class, unless the pools are disabled in the {@link RestConfig}, in which 
+ * case it is run directly on the container thread.  If the pool is full, the call is rejected with a {@link RejectedExecutionException}, 
+ * which is returned as a 503.
+ * 
+ * The {@link RequestInfo} of the request is carried to the thread that does the work, and unbound from the container thread once 
+ * the work is handed off.  If the work completes before Jersey is waiting on it, Jersey writes the response on the container thread 
+ * instead, so the response side finds the RequestInfo from the request - see {@link RequestInfo#get(javax.ws.rs.container.ContainerRequestContext)}.
+ * Exceptions thrown by the work are passed back unwrapped, so that they are mapped the same as they would be for a synchronous method.
+ */
+public class AsyncRequests
+{
+	private AsyncRequests()
+	{
+	}
+
+	/**
+	 * @param apiClass the API class the resource method belongs to, which selects the pool to run on
+	 * @param work the work of the resource method, to be run with the {@link RequestInfo} of the current request
+	 * @return the stage that completes with the result of the work
+	 * @throws RejectedExecutionException if the pool for the API class is full
+	 */
+	public static <T> CompletionStage<T> supply(Class<?> apiClass, Callable<T> work) throws RejectedExecutionException
+	{
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable complete = () -> 
+		{
+			try
+			{
+				result.complete(work.call());
+			}
+			catch (Throwable e)
+			{
+				result.completeExceptionally(e);
+			}
+		};
+
+		if (RestConfig.getInstance().isRequestPoolsEnabled())
+		{
+			// The completion is inside of the wrap, as Jersey writes the response (and runs the response filters) during completion,
+			// which still needs the RequestInfo
+			RequestPools.execute(apiClass.getSimpleName(), RequestInfo.get().wrap(complete));
+			// Handed off - the container thread is done with this request
+			RequestInfo.detach();
+		}
+		else
+		{
+			complete.run();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import net.sagebits.tmp.isaac.rest.Util;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.uts.auth.rest.api1.data.RestUser;
+import sh.isaac.MetaData;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.commit.ChangeCheckerMode;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptBuilder;
+import sh.isaac.api.component.concept.ConceptBuilderService;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.concept.ConceptSpecification;
+import sh.isaac.api.coordinate.EditCoordinate;
+import sh.isaac.api.coordinate.LanguageCoordinate;
+import sh.isaac.api.coordinate.LogicCoordinate;
+import sh.isaac.model.configuration.LanguageCoordinates;
+import sh.isaac.model.configuration.LogicCoordinates;
+import sh.isaac.model.coordinate.EditCoordinateImpl;
+import sh.isaac.model.logic.LogicalExpressionImpl;
+import sh.isaac.model.logic.node.NecessarySetNode;
+import sh.isaac.model.logic.node.external.ConceptNodeWithUuids;
+
+/**
+ * {@link AuthorNidService}
+ *
+ * Holds the author concept nid of each user that has made a request, so that the user lookup of a request doesn't have to probe the 
+ * identifier service.  
+ * 
+ * The concepts of users seen for the first time are built on a background thread - users that arrive within {@link #BATCH_DELAY_MS} of 
+ * each other are built together, and committed once.  A user is only ever queued once, no matter how many of their requests arrive before
+ * the concept is built.  Callers that need the nid wait for the build, callers that only need the concept to exist (eventually) don't.
+ * 
+ * Only committed concepts are cached - if the commit of a batch fails, its concepts are cancelled, and the users are queued again by 
+ * their next request.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class AuthorNidService
+{
+	private static Logger log = LogManager.getLogger(AuthorNidService.class);
+
+	private static final long BATCH_DELAY_MS = 50;
+
+	/**
+	 * Finds, builds and commits the author concepts - in the ISAAC database, other than in tests
+	 */
+	interface AuthorStore
+	{
+		/**
+		 * @param userId the user
+		 * @return the nid of the author concept of the user, if it exists, and has been committed - otherwise null
+		 */
+		Integer find(UUID userId);
+
+		/**
+		 * Build, but don't commit, the author concept of the user, with the user id as its primordial UUID
+		 * @param user the user
+		 * @param created the chronologies that were created are added to this
+		 * @return the nid of the new concept
+		 */
+		int build(RestUser user, List<Chronology> created);
+
+		/**
+		 * Commit the concepts that have been built
+		 * @param count the number of concepts that were built
+		 * @throws RestException if the commit fails
+		 */
+		void commit(int count) throws RestException;
+
+		/**
+		 * Cancel the uncommitted changes to chronologies that were built
+		 * @param created the chronologies
+		 */
+		void cancel(List<Chronology> created);
+	}
+
+	private static final class PendingAuthor
+	{
+		final RestUser user;
+		final CompletableFuture<Integer> nid = new CompletableFuture<>();
+
+		PendingAuthor(RestUser user)
+		{
+			this.user = user;
+		}
+	}
+
+	// The nids never change for a user id, so there is nothing to invalidate
+	private final ConcurrentHashMap<UUID, Integer> authorNids_ = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<UUID, PendingAuthor> pending_ = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<PendingAuthor> buildQueue_ = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean buildScheduled_ = new AtomicBoolean(false);
+
+	private final AuthorStore store_;
+	private final Supplier<ScheduledExecutorService> scheduler_;
+
+	AuthorNidService()
+	{
+		// For HK2
+		this(new IsaacAuthorStore(), () -> Get.workExecutors().getScheduledThreadPoolExecutor());
+	}
+
+	/**
+	 * For tests
+	 * @param store finds, builds and commits the author concepts
+	 * @param scheduler supplies the executor that runs the builds
+	 */
+	AuthorNidService(AuthorStore store, Supplier<ScheduledExecutorService> scheduler)
+	{
+		store_ = store;
+		scheduler_ = scheduler;
+	}
+
+	/**
+	 * Make sure that an author concept exists for the user - if it doesn't, queue it to be built, without waiting for it.
+	 * 
+	 * @param user the user
+	 */
+	public void ensureAuthorConcept(RestUser user)
+	{
+		if (!authorNids_.containsKey(user.userId) && !lookup(user.userId))
+		{
+			queue(user);
+		}
+	}
+
+	/**
+	 * Get the concept nid that corresponds to a given editors user id - waiting for the concept to be built, if necessary.
+	 * 
+	 * @param user the user
+	 * @return the nid of the author
+	 */
+	public int getAuthorNid(RestUser user)
+	{
+		Integer nid = authorNids_.get(user.userId);
+		if (nid != null)
+		{
+			return nid;
+		}
+		if (lookup(user.userId))
+		{
+			return authorNids_.get(user.userId);
+		}
+		try
+		{
+			return queue(user).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the creation of the user concept", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Creation of user concept failed. Caught " + e.getCause().getClass().getSimpleName() + " " 
+					+ e.getCause().getLocalizedMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return true, and cache the nid, if the user already has a committed author concept
+	 */
+	private boolean lookup(UUID userId)
+	{
+		Integer nid = store_.find(userId);
+		if (nid != null)
+		{
+			authorNids_.put(userId, nid);
+			return true;
+		}
+		return false;
+	}
+
+	private CompletableFuture<Integer> queue(RestUser user)
+	{
+		PendingAuthor pending = pending_.computeIfAbsent(user.userId, userId -> 
+		{
+			PendingAuthor p = new PendingAuthor(user);
+			buildQueue_.add(p);
+			return p;
+		});
+		if (buildScheduled_.compareAndSet(false, true))
+		{
+			try
+			{
+				scheduler_.get().schedule(() -> buildQueued(), BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+			}
+			catch (RuntimeException e)
+			{
+				// Can't leave the flag set, or no later user would be scheduled either - and can't leave the queued users waiting
+				log.warn("Couldn't schedule the creation of the queued user concepts, creating them on the request thread", e);
+				buildScheduled_.set(false);
+				buildQueued();
+			}
+		}
+		return pending.nid;
+	}
+
+	private void buildQueued()
+	{
+		// Clear the flag before draining, so that a user queued while we build gets a build of its own
+		buildScheduled_.set(false);
+
+		List<PendingAuthor> batch = new ArrayList<>();
+		PendingAuthor p;
+		while ((p = buildQueue_.poll()) != null)
+		{
+			batch.add(p);
+		}
+		if (batch.isEmpty())
+		{
+			return;
+		}
+
+		List<Chronology> created = new ArrayList<>();
+		try
+		{
+			List<PendingAuthor> built = new ArrayList<>();
+			List<Integer> builtNids = new ArrayList<>();
+			for (PendingAuthor author : batch)
+			{
+				try
+				{
+					// A request that probed before an earlier batch was committed may have queued a user that now exists
+					if (lookup(author.user.userId))
+					{
+						complete(author, authorNids_.get(author.user.userId));
+					}
+					else
+					{
+						builtNids.add(store_.build(author.user, created));
+						built.add(author);
+					}
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Creation of user concept for '" + author.user.userId + "' failed", e);
+					fail(author, e);
+				}
+			}
+
+			if (!built.isEmpty())
+			{
+				store_.commit(built.size());
+				for (int i = 0; i < built.size(); i++)
+				{
+					authorNids_.put(built.get(i).user.userId, builtNids.get(i));
+					complete(built.get(i), builtNids.get(i));
+				}
+			}
+		}
+		catch (RestException | RuntimeException e)
+		{
+			log.error("Creation of " + batch.size() + " new user concept(s) failed", e);
+			// The uncommitted concepts would otherwise be found by the next lookup, and be picked up by the next commit on the same coordinate
+			try
+			{
+				store_.cancel(created);
+			}
+			catch (RuntimeException cancelFailure)
+			{
+				log.error("Cancelling the uncommitted user concept(s) failed", cancelFailure);
+			}
+			// Never leave a waiting request hanging
+			for (PendingAuthor author : batch)
+			{
+				if (!author.nid.isDone())
+				{
+					fail(author, e);
+				}
+			}
+		}
+	}
+
+	private void complete(PendingAuthor author, int nid)
+	{
+		pending_.remove(author.user.userId, author);
+		author.nid.complete(nid);
+	}
+
+	private void fail(PendingAuthor author, Exception e)
+	{
+		// Removed before completing, so that a later request queues the user again
+		pending_.remove(author.user.userId, author);
+		author.nid.completeExceptionally(e);
+	}
+
+	/**
+	 * The author concepts in the ISAAC database
+	 */
+	private static class IsaacAuthorStore implements AuthorStore
+	{
+		private static EditCoordinate getAdminEditCoordinate()
+		{
+			//TODO remove the hasConcept check, after we have rebuilt all the DBs with the new users module
+			return new EditCoordinateImpl(MetaData.USER____SOLOR.getNid(), 
+					Get.conceptService().hasConcept(MetaData.USERS_MODULE____SOLOR.getNid()) ? 
+						MetaData.USERS_MODULE____SOLOR.getNid() : MetaData.METADATA_MODULES____SOLOR.getNid(),
+					MetaData.DEVELOPMENT_PATH____SOLOR.getNid());
+		}
+
+		/**
+		 * A concept that is known to the identifier service may not be committed yet, or its commit may have failed, and been cancelled - 
+		 * only a concept with a committed version counts.
+		 */
+		@Override
+		public Integer find(UUID userId)
+		{
+			if (Get.identifierService().hasUuid(userId))
+			{
+				int nid = Get.identifierService().getNidForUuids(userId);
+				if (Get.conceptService().hasConcept(nid) && Get.conceptService().getConceptChronology(nid).getVersionList().stream()
+						.anyMatch(version -> version.getTime() != Long.MAX_VALUE && version.getTime() != Long.MIN_VALUE))
+				{
+					return nid;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public int build(RestUser user, List<Chronology> created)
+		{
+			log.debug("Creating new concept for user '" + user.userId + "'");
+			LanguageCoordinate languageCoordinate = LanguageCoordinates.getUsEnglishLanguageFullySpecifiedNameCoordinate();
+			LogicCoordinate logicCoordinate = LogicCoordinates.getStandardElProfile();
+
+			ConceptSpecification defaultDescriptionsLanguageConceptSpec = Get.conceptSpecification(languageCoordinate.getLanguageConceptNid());
+			ConceptSpecification defaultDescriptionDialectConceptSpec = Get.conceptSpecification(languageCoordinate.getDialectAssemblagePreferenceList()[0]);
+
+			ConceptBuilderService conceptBuilderService = LookupService.getService(ConceptBuilderService.class);
+			conceptBuilderService.setDefaultLanguageForDescriptions(defaultDescriptionsLanguageConceptSpec);
+			conceptBuilderService.setDefaultDialectAssemblageForDescriptions(defaultDescriptionDialectConceptSpec);
+			conceptBuilderService.setDefaultLogicCoordinate(logicCoordinate);
+
+			LogicalExpressionImpl parentDef = new LogicalExpressionImpl();
+			NecessarySetNode nsn = parentDef.NecessarySet(parentDef.And(new ConceptNodeWithUuids(parentDef.Concept(MetaData.USER____SOLOR))));
+			parentDef.getRoot().addChildren(nsn);
+
+			ConceptBuilder builder = conceptBuilderService.getDefaultConceptBuilder(user.displayName, null, parentDef,
+					MetaData.SOLOR_CONCEPT_ASSEMBLAGE____SOLOR.getAssemblageNid());
+
+			// Set new author concept UUID to SSO UUID
+			builder.setPrimordialUuid(user.userId);
+
+			if (languageCoordinate.getDialectAssemblagePreferenceList() != null && languageCoordinate.getDialectAssemblagePreferenceList().length > 0)
+			{
+				for (int i : languageCoordinate.getDialectAssemblagePreferenceList())
+				{
+					builder.getFullySpecifiedDescriptionBuilder().addPreferredInDialectAssemblage(Get.conceptSpecification(i));
+				}
+			}
+
+			ConceptChronology newCon = builder.build(getAdminEditCoordinate(), ChangeCheckerMode.ACTIVE, created).getNoThrow();
+			return newCon.getNid();
+		}
+
+		@Override
+		public void commit(int count) throws RestException
+		{
+			CommitRecord commitRecord = Util.commitCheck(Get.commitService().commit(getAdminEditCoordinate(), "creating " + count + " new user concept(s)"));
+			log.debug("commit {}", commitRecord);
+		}
+
+		@Override
+		public void cancel(List<Chronology> created)
+		{
+			EditCoordinate adminEditCoordinate = getAdminEditCoordinate();
+			for (Chronology chronology : created)
+			{
+				try
+				{
+					Get.commitService().cancel(chronology, adminEditCoordinate).get();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while cancelling the user concept(s)", e);
+				}
+				catch (ExecutionException e)
+				{
+					throw new RuntimeException("Cancelling " + chronology.getPrimordialUuid() + " failed", e.getCause());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+
+/**
+ * {@link ChangeSequenceService}
+ *
+ * Counts the changes and commits made to the database since startup, so that a response built from the database can be identified 
+ * by the sequence it was built at - any later change to the database moves the sequence on.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class ChangeSequenceService implements ChronologyChangeListener
+{
+	private static final UUID LISTENER_UUID = UUID.fromString("3d8a61f4-7c2e-4b95-a1f0-6e94c2d7b358");
+
+	private final AtomicLong sequence_ = new AtomicLong();
+	private volatile long lastChangeTime_ = System.currentTimeMillis();
+
+	ChangeSequenceService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @return the number of changes and commits since startup
+	 */
+	public long getSequence()
+	{
+		return sequence_.get();
+	}
+
+	/**
+	 * @return the time of the last change or commit, or the startup time, if there have been none
+	 */
+	public long getLastChangeTime()
+	{
+		return lastChangeTime_;
+	}
+
+	private void changed()
+	{
+		lastChangeTime_ = System.currentTimeMillis();
+		sequence_.incrementAndGet();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		changed();
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		changed();
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		changed();
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import net.sagebits.tmp.isaac.rest.tokens.CoordinatesTokens;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.TaxonomySnapshot;
+import sh.isaac.api.chronicle.VersionType;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.coordinate.PremiseType;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.utility.Frills;
+
+/**
+ * {@link ConceptSummaryService}
+ *
+ * Holds, for the default coordinates, the parts of each concept that the concept expansions return - the stated and inferred parent and 
+ * child counts, the terminology types, and the assemblages the concept is a member of - so that search results and taxonomy pages read 
+ * them per concept, rather than streaming every semantic on every concept they show, and reading its parents and children.
+ * 
+ * The summaries are built in the background at startup, and are held as one int array per concept, in pages indexed by nid, allocated as 
+ * they are touched.  A change to a concept, or a semantic on it, drops just the summary of that concept - a change to a logic graph drops 
+ * all of the counts, as it may change the parents and children of other concepts.  Requests on any other coordinates compute the same 
+ * values directly.  When the default coordinates are rebuilt, by {@link CoordinatesTokens#clearCache()}, all of the summaries are dropped, 
+ * along with the taxonomies they were counted in.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class ConceptSummaryService implements ChronologyChangeListener
+{
+	private static Logger log = LogManager.getLogger(ConceptSummaryService.class);
+
+	private static final UUID LISTENER_UUID = UUID.fromString("c4a17e29-6b3d-4e85-9f02-7d1b58a3e6c4");
+
+	// 4096 nids per page
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+	// The layout of a summary - the counts generation, the 4 counts, the number of terminology types, the terminology types, and then 
+	// the semantic membership assemblages
+	private static final int COUNTS_GENERATION = 0;
+	private static final int STATED_PARENTS = 1;
+	private static final int STATED_CHILDREN = 2;
+	private static final int INFERRED_PARENTS = 3;
+	private static final int INFERRED_CHILDREN = 4;
+	private static final int TERMINOLOGY_TYPE_COUNT = 5;
+	private static final int HEADER = 6;
+
+	private final ConcurrentHashMap<Integer, AtomicReferenceArray<int[]>> pages_ = new ConcurrentHashMap<>();
+
+	// Incremented on every change, so that a summary computed across a change is not kept
+	private final AtomicLong changes_ = new AtomicLong();
+	// Incremented on every logic graph change - the counts of a summary from an earlier generation are recomputed
+	private final AtomicInteger countsGeneration_ = new AtomicInteger();
+
+	private volatile TaxonomySnapshot statedTree_ = null;
+	private volatile TaxonomySnapshot inferredTree_ = null;
+	private volatile boolean running_ = false;
+
+	ConceptSummaryService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @param conceptNid the concept
+	 * @param tree the taxonomy to count in
+	 * @return the number of parents of the concept in the tree
+	 */
+	public int getParentCount(int conceptNid, TaxonomySnapshot tree)
+	{
+		PremiseType premise = getDefaultPremise(tree.getManifoldCoordinate());
+		if (premise == null)
+		{
+			return tree.getTaxonomyParentConceptNids(conceptNid).length;
+		}
+		return readSummary(conceptNid)[premise == PremiseType.STATED ? STATED_PARENTS : INFERRED_PARENTS];
+	}
+
+	/**
+	 * @param conceptNid the concept
+	 * @param tree the taxonomy to count in
+	 * @return the number of children of the concept in the tree
+	 */
+	public int getChildCount(int conceptNid, TaxonomySnapshot tree)
+	{
+		PremiseType premise = getDefaultPremise(tree.getManifoldCoordinate());
+		if (premise == null)
+		{
+			return tree.getTaxonomyChildConceptNids(conceptNid).length;
+		}
+		return readSummary(conceptNid)[premise == PremiseType.STATED ? STATED_CHILDREN : INFERRED_CHILDREN];
+	}
+
+	/**
+	 * @param conceptNid the concept
+	 * @param stamp the stamp to read the concept with
+	 * @return the nids of the terminology types of the concept, see {@link Frills#getTerminologyTypes(ConceptChronology, StampCoordinate)}
+	 */
+	public int[] getTerminologyTypes(int conceptNid, StampCoordinate stamp)
+	{
+		if (!isDefault(stamp))
+		{
+			return computeTerminologyTypes(conceptNid, stamp);
+		}
+		int[] summary = readSummary(conceptNid);
+		return Arrays.copyOfRange(summary, HEADER, HEADER + summary[TERMINOLOGY_TYPE_COUNT]);
+	}
+
+	/**
+	 * @param conceptNid the concept
+	 * @param stamp the stamp to read the semantics with
+	 * @return the nids of the assemblages that have a semantic on the concept that is present on the stamp - not counting descriptions 
+	 *     or logic graphs
+	 */
+	public int[] getSemanticMembership(int conceptNid, StampCoordinate stamp)
+	{
+		if (!isDefault(stamp))
+		{
+			return computeSemanticMembership(conceptNid, stamp);
+		}
+		int[] summary = readSummary(conceptNid);
+		return Arrays.copyOfRange(summary, HEADER + summary[TERMINOLOGY_TYPE_COUNT], summary.length);
+	}
+
+	private static boolean isDefault(StampCoordinate stamp)
+	{
+		return stamp.equals(CoordinatesTokens.getDefaultCoordinatesToken().getManifoldCoordinate().getStampCoordinate());
+	}
+
+	/**
+	 * @return the premise type of the coordinate, if it otherwise matches the default coordinate, null if it does not
+	 */
+	private static PremiseType getDefaultPremise(ManifoldCoordinate mc)
+	{
+		ManifoldCoordinate defaults = CoordinatesTokens.getDefaultCoordinatesToken().getManifoldCoordinate();
+		if (defaults.getStampCoordinate().equals(mc.getStampCoordinate()) && defaults.getStampCoordinate().equals(mc.getDestinationStampCoordinate())
+				&& defaults.getLogicCoordinate().equals(mc.getLogicCoordinate()))
+		{
+			return mc.getTaxonomyPremiseType();
+		}
+		return null;
+	}
+
+	private int[] readSummary(int conceptNid)
+	{
+		// nids are negative, this maps them onto 0 - Integer.MAX_VALUE
+		int index = conceptNid - Integer.MIN_VALUE;
+		AtomicReferenceArray<int[]> page = pages_.computeIfAbsent(index >>> PAGE_BITS, pageNum -> new AtomicReferenceArray<>(PAGE_MASK + 1));
+		int[] summary = page.get(index & PAGE_MASK);
+		int countsGeneration = countsGeneration_.get();
+		if (summary != null && summary[COUNTS_GENERATION] == countsGeneration)
+		{
+			return summary;
+		}
+
+		long changes = changes_.get();
+		int[] updated;
+		if (summary == null)
+		{
+			StampCoordinate stamp = CoordinatesTokens.getDefaultCoordinatesToken().getManifoldCoordinate().getStampCoordinate();
+			int[] terminologyTypes = computeTerminologyTypes(conceptNid, stamp);
+			int[] semanticMembership = computeSemanticMembership(conceptNid, stamp);
+			updated = new int[HEADER + terminologyTypes.length + semanticMembership.length];
+			updated[TERMINOLOGY_TYPE_COUNT] = terminologyTypes.length;
+			System.arraycopy(terminologyTypes, 0, updated, HEADER, terminologyTypes.length);
+			System.arraycopy(semanticMembership, 0, updated, HEADER + terminologyTypes.length, semanticMembership.length);
+		}
+		else
+		{
+			// Only the counts are out of date
+			updated = summary.clone();
+		}
+		updated[COUNTS_GENERATION] = countsGeneration;
+		updated[STATED_PARENTS] = getStatedTree().getTaxonomyParentConceptNids(conceptNid).length;
+		updated[STATED_CHILDREN] = getStatedTree().getTaxonomyChildConceptNids(conceptNid).length;
+		updated[INFERRED_PARENTS] = getInferredTree().getTaxonomyParentConceptNids(conceptNid).length;
+		updated[INFERRED_CHILDREN] = getInferredTree().getTaxonomyChildConceptNids(conceptNid).length;
+
+		page.set(index & PAGE_MASK, updated);
+		// If a change came in while this was computed, it may not be reflected - don't keep it.  A change increments the counter 
+		// before it drops the summary, so either this check, or the drop, removes it.
+		if (changes_.get() != changes)
+		{
+			page.compareAndSet(index & PAGE_MASK, updated, null);
+		}
+		return updated;
+	}
+
+	private TaxonomySnapshot getStatedTree()
+	{
+		if (statedTree_ == null)
+		{
+			statedTree_ = Get.taxonomyService().getSnapshotNoTree(
+					CoordinatesTokens.getDefaultCoordinatesToken().getManifoldCoordinate().makeCoordinateAnalog(PremiseType.STATED));
+		}
+		return statedTree_;
+	}
+
+	private TaxonomySnapshot getInferredTree()
+	{
+		if (inferredTree_ == null)
+		{
+			inferredTree_ = Get.taxonomyService().getSnapshotNoTree(
+					CoordinatesTokens.getDefaultCoordinatesToken().getManifoldCoordinate().makeCoordinateAnalog(PremiseType.INFERRED));
+		}
+		return inferredTree_;
+	}
+
+	private static int[] computeTerminologyTypes(int conceptNid, StampCoordinate stamp)
+	{
+		return Frills.getTerminologyTypes(Get.conceptService().getConceptChronology(conceptNid), stamp).stream().mapToInt(nid -> nid).toArray();
+	}
+
+	private static int[] computeSemanticMembership(int conceptNid, StampCoordinate stamp)
+	{
+		Set<Integer> assemblageNids = new HashSet<>();
+		Get.assemblageService().getSemanticChronologyStreamForComponent(conceptNid).forEach(sc -> 
+		{
+			if (!assemblageNids.contains(sc.getAssemblageNid()) && sc.getVersionType() != VersionType.LOGIC_GRAPH
+					&& sc.getVersionType() != VersionType.DESCRIPTION && sc.getLatestVersion(stamp).isPresent())
+			{
+				assemblageNids.add(sc.getAssemblageNid());
+			}
+		});
+		return assemblageNids.stream().mapToInt(nid -> nid).toArray();
+	}
+
+	private void build()
+	{
+		long start = System.currentTimeMillis();
+		AtomicInteger built = new AtomicInteger();
+		Get.conceptService().getConceptNidStream().takeWhile(nid -> running_).forEach(nid -> 
+		{
+			try
+			{
+				readSummary(nid);
+				built.incrementAndGet();
+			}
+			catch (RuntimeException e)
+			{
+				log.debug("Failed to summarize concept " + nid, e);
+			}
+		});
+		log.info("Built the summaries of {} concepts in {}ms", built.get(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Drop the summary of a concept
+	 * @param conceptNid the concept
+	 */
+	public void invalidate(int conceptNid)
+	{
+		changes_.incrementAndGet();
+		int index = conceptNid - Integer.MIN_VALUE;
+		AtomicReferenceArray<int[]> page = pages_.get(index >>> PAGE_BITS);
+		if (page != null)
+		{
+			page.set(index & PAGE_MASK, null);
+		}
+	}
+
+	/**
+	 * Drop all summaries, and the default taxonomies they were counted in, so that they are read again on the current default coordinates
+	 */
+	public void clearDefaults()
+	{
+		changes_.incrementAndGet();
+		statedTree_ = null;
+		inferredTree_ = null;
+		pages_.clear();
+	}
+
+	/**
+	 * Drop the parent and child counts of all summaries
+	 */
+	public void invalidateCounts()
+	{
+		changes_.incrementAndGet();
+		countsGeneration_.incrementAndGet();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		invalidate(cc.getNid());
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		if (sc.getVersionType() == VersionType.LOGIC_GRAPH)
+		{
+			invalidateCounts();
+		}
+		invalidate(sc.getReferencedComponentNid());
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		// Committing changes the time on the uncommitted versions, which may change what is latest on the default stamp
+		commitRecord.getSemanticNidsInCommit().stream().forEach(nid -> handleChange(Get.assemblageService().getSemanticChronology(nid)));
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		running_ = true;
+		Get.commitService().addChangeListener(this);
+		if (RestConfig.getInstance().isConceptSummaryPrebuild())
+		{
+			Get.workExecutors().getExecutor().execute(() -> build());
+		}
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		running_ = false;
+		Get.commitService().removeChangeListener(this);
+		pages_.clear();
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CoordinatesParameterKey}
+ *
+ * The canonical form of the coordinate related parameters of a request, used to look up a previously calculated 
+ * {@link net.sagebits.tmp.isaac.rest.tokens.CoordinatesToken} by the parameters that produced it.
+ * 
+ * The parameters are gathered as the request parameters are read (see {@link Builder}), and the hash is calculated once, 
+ * so the same key can be used for both the lookup and the later put, without building a string from the parameters.
+ * 
+ * Values are kept in the order they were passed, as the order is significant for the preference list parameters.
+ */
+public final class CoordinatesParameterKey
+{
+	// Sorted, so that the canonical form doesn't depend on the order of the parameters in the request
+	private static final String[] NAMES = RequestParameters.COORDINATE_PARAM_NAMES.stream().sorted().toArray(String[]::new);
+	private static final Map<String, Integer> NAME_INDEX = new HashMap<>();
+
+	static
+	{
+		for (int i = 0; i < NAMES.length; i++)
+		{
+			NAME_INDEX.put(NAMES[i], i);
+		}
+	}
+
+	private final String[] values;
+	private final int hash;
+	// A copy of the parameters as passed, for parsing.  Not part of the identity of the key.  Copied, rather than referenced, 
+	// as the key outlives the request in the token cache, and must not pin (or see changes to) the request's parameter lists.
+	private final transient Map<String, List<String>> parameters;
+
+	private CoordinatesParameterKey(String[] values, Map<String, List<String>> parameters)
+	{
+		this.values = values;
+		this.parameters = parameters;
+		this.hash = Arrays.hashCode(values);
+	}
+
+	/**
+	 * @param allParams the parameters of a request, which may include non-coordinate parameters
+	 * @return the key for the coordinate parameters in the passed map
+	 */
+	public static CoordinatesParameterKey of(Map<String, List<String>> allParams)
+	{
+		Builder b = new Builder();
+		for (Map.Entry<String, List<String>> entry : allParams.entrySet())
+		{
+			b.add(entry.getKey(), entry.getValue());
+		}
+		return b.build();
+	}
+
+	/**
+	 * @param parameterName a coordinate parameter name
+	 * @return the values passed for the parameter, or null, if it wasn't passed
+	 */
+	public List<String> get(String parameterName)
+	{
+		return parameters.get(parameterName);
+	}
+
+	/**
+	 * @return the number of coordinate parameters that were passed, including {@link RequestParameters#coordToken}
+	 */
+	public int size()
+	{
+		return parameters.size();
+	}
+
+	/**
+	 * @return true if any coordinate parameter other than {@link RequestParameters#coordToken} was passed, which means that 
+	 *     a token needs to be calculated from the parameters.
+	 */
+	public boolean hasIndividualParameters()
+	{
+		return parameters.size() > (parameters.containsKey(RequestParameters.coordToken) ? 1 : 0);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof CoordinatesParameterKey))
+		{
+			return false;
+		}
+		CoordinatesParameterKey other = (CoordinatesParameterKey) obj;
+		return hash == other.hash && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CoordinatesParameterKey " + parameters;
+	}
+
+	/**
+	 * Collects the coordinate parameters from a stream of request parameters, ignoring any non-coordinate parameters.
+	 */
+	public static class Builder
+	{
+		private String[] values = new String[NAMES.length];
+		private Map<String, List<String>> parameters = new HashMap<>();
+
+		/**
+		 * @param parameterName any request parameter name
+		 * @param parameterValues the values of the parameter
+		 * @return this builder
+		 */
+		public Builder add(String parameterName, List<String> parameterValues)
+		{
+			Integer index = NAME_INDEX.get(parameterName);
+			if (index != null && parameterValues != null && parameterValues.size() > 0)
+			{
+				values[index] = parameterValues.size() == 1 ? parameterValues.get(0) : String.join(",", parameterValues);
+				parameters.put(parameterName, Collections.unmodifiableList(new ArrayList<>(parameterValues)));
+			}
+			return this;
+		}
+
+		public CoordinatesParameterKey build()
+		{
+			return new CoordinatesParameterKey(values.clone(), Collections.unmodifiableMap(new HashMap<>(parameters)));
+		}
+	}
+}
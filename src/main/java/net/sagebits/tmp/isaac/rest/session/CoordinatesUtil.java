@@ -32,7 +32,6 @@ package net.sagebits.tmp.isaac.rest.session;
 
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -82,38 +81,6 @@ public class CoordinatesUtil
 
 	private static HashMap<Integer, Set<Integer>> nestedModules_ = new HashMap<>();
 
-	/**
-	 * Used to hash CoordinatesToken object and serialized string by request parameters
-	 * 
-	 * @param params parameter name to value-list map provided in UriInfo by ContainerRequestContext
-	 * @return string representation of parameter name to value-list map
-	 */
-	public static String encodeCoordinateParameters(Map<String, List<String>> params)
-	{
-		Map<String, List<String>> coordinateParams = getCoordinateParameters(params);
-
-		StringBuilder sb = new StringBuilder(coordinateParams.size() * 32);
-		for (Map.Entry<String, List<String>> entry : coordinateParams.entrySet())
-		{
-			String key = entry.getKey();
-			List<String> parameterValueList = entry.getValue();
-			Collections.sort(parameterValueList);
-
-			sb.append(key + ':');
-			for (int i = 0; i < parameterValueList.size(); ++i)
-			{
-				sb.append(parameterValueList.get(i));
-				if (i < (parameterValueList.size() - 1))
-				{
-					sb.append(',');
-				}
-			}
-			sb.append(';');
-		}
-
-		return sb.toString();
-	}
-
 	/**
 	 * 
 	 * Returns subset of parameter map relevant to CoordinatesToken,
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ws.rs.RedirectionException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.ResponseFormatFilter;
+import net.sagebits.tmp.isaac.rest.session.filters.ConditionalGetFilter;
+import net.sagebits.tmp.isaac.rest.session.filters.EntityTagResponseFilter;
+import sh.isaac.MetaData;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.TaxonomySnapshot;
+import sh.isaac.api.chronicle.LatestVersion;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.component.semantic.version.DynamicVersion;
+import sh.isaac.api.component.semantic.version.dynamic.types.DynamicUUID;
+import sh.isaac.api.coordinate.PremiseType;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.model.configuration.StampCoordinates;
+import sh.isaac.model.coordinate.ManifoldCoordinateImpl;
+import sh.isaac.utility.Frills;
+
+/**
+ * {@link MetadataSnapshotService}
+ *
+ * Holds a snapshot of the system metadata calls (description types, terminology types, modules) per stamp coordinate.  A snapshot 
+ * holds the description type hierarchies, read once, and the responses built from them, per call and coordinates, along with an 
+ * ETag for each response - so the repeated metadata calls of the GUI are answered without walking the metadata hierarchies, and a 
+ * client that already holds the response gets a 304.
+ * 
+ * When a commit changes a concept under the description type or module hierarchies, or a semantic on one, each snapshot is replaced 
+ * by a new, empty snapshot, which is then filled in the background.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class MetadataSnapshotService implements ChronologyChangeListener
+{
+	private static Logger log = LogManager.getLogger(MetadataSnapshotService.class);
+
+	private static final UUID LISTENER_UUID = UUID.fromString("9f3c5e71-2a84-4d6b-b0e9-58c1a7d2f436");
+
+	// The number of distinct responses (call and coordinates) a single snapshot holds
+	private static final int MAX_RESPONSES = 256;
+
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+
+	private Cache<StampCoordinate, Snapshot> snapshots_;
+
+	// Set when an uncommitted change touches the metadata, so the next commit replaces the snapshots
+	private volatile boolean metadataChanged_ = false;
+
+	/**
+	 * Builds the response for a metadata call from a snapshot
+	 */
+	@FunctionalInterface
+	public interface SnapshotResponse<T>
+	{
+		T build(Snapshot snapshot) throws RestException;
+	}
+
+	/**
+	 * A description type, with the core type it is linked to, and its modules
+	 */
+	public static final class DescriptionType
+	{
+		private final int nid;
+		private final int coreTypeCount;
+		private final UUID coreType;
+		private final int[] moduleNids;
+
+		private DescriptionType(int nid, int coreTypeCount, UUID coreType, int[] moduleNids)
+		{
+			this.nid = nid;
+			this.coreTypeCount = coreTypeCount;
+			this.coreType = coreType;
+			this.moduleNids = moduleNids;
+		}
+
+		public int getNid()
+		{
+			return nid;
+		}
+
+		/**
+		 * @return the number of {@link MetaData#DESCRIPTION_CORE_TYPE____SOLOR} semantics on the type - 0 for the core types themselves
+		 */
+		public int getCoreTypeCount()
+		{
+			return coreTypeCount;
+		}
+
+		/**
+		 * @return the core type the type is linked to, if it has a core type semantic that is present on the stamp
+		 */
+		public Optional<UUID> getCoreType()
+		{
+			return Optional.ofNullable(coreType);
+		}
+
+		public int[] getModuleNids()
+		{
+			return moduleNids;
+		}
+	}
+
+	/**
+	 * The metadata for a single stamp coordinate
+	 */
+	public static final class Snapshot
+	{
+		private final StampCoordinate stamp;
+		private final long generation = GENERATIONS.incrementAndGet();
+		private final AtomicInteger responseCount = new AtomicInteger();
+		private final ConcurrentHashMap<String, CachedResponse> responses = new ConcurrentHashMap<>();
+		private volatile List<DescriptionType> descriptionTypes;
+		private volatile List<DescriptionType> extendedDescriptionTypes;
+		private volatile Set<Integer> externalTerminologyTypes;
+
+		private Snapshot(StampCoordinate stamp)
+		{
+			this.stamp = stamp;
+		}
+
+		public StampCoordinate getStamp()
+		{
+			return stamp;
+		}
+
+		/**
+		 * @return all of the children of {@link MetaData#DESCRIPTION_TYPE____SOLOR}
+		 */
+		public List<DescriptionType> getDescriptionTypes()
+		{
+			if (descriptionTypes == null)
+			{
+				descriptionTypes = readDescriptionTypes(MetaData.DESCRIPTION_TYPE____SOLOR.getNid());
+			}
+			return descriptionTypes;
+		}
+
+		/**
+		 * @return all of the children of {@link MetaData#DESCRIPTION_TYPE_IN_SOURCE_TERMINOLOGY____SOLOR} - the modules of these are the 
+		 *     terminology types of the concept
+		 */
+		public List<DescriptionType> getExtendedDescriptionTypes()
+		{
+			if (extendedDescriptionTypes == null)
+			{
+				ArrayList<DescriptionType> result = new ArrayList<>();
+				for (int nid : Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_TYPE_IN_SOURCE_TERMINOLOGY____SOLOR.getNid(), true, true, stamp))
+				{
+					result.add(new DescriptionType(nid, 0, null, Frills.getTerminologyTypes(Get.conceptService().getConceptChronology(nid), null)
+							.stream().mapToInt(i -> i).toArray()));
+				}
+				extendedDescriptionTypes = result;
+			}
+			return extendedDescriptionTypes;
+		}
+
+		/**
+		 * @return the terminology types of the modules of the {@link MetaData#DESCRIPTION_CORE_TYPE____SOLOR} semantics - the terminologies 
+		 *     that link their own description types to the core types
+		 */
+		public Set<Integer> getExternalTerminologyTypes()
+		{
+			if (externalTerminologyTypes == null)
+			{
+				HashSet<Integer> result = new HashSet<>();
+				Get.assemblageService().getSemanticChronologyStream(MetaData.DESCRIPTION_CORE_TYPE____SOLOR.getNid()).forEach(sc -> 
+						sc.getLatestVersion(stamp).ifPresent(version -> result.add(Frills.getTerminologyTypeForModule(version.getModuleNid(), stamp))));
+				externalTerminologyTypes = result;
+			}
+			return externalTerminologyTypes;
+		}
+
+		private List<DescriptionType> readDescriptionTypes(int rootNid)
+		{
+			ArrayList<DescriptionType> result = new ArrayList<>();
+			for (int nid : Frills.getAllChildrenOfConcept(rootNid, true, true, stamp))
+			{
+				ConceptChronology cc = Get.conceptService().getConceptChronology(nid);
+				NidSet typeInfo = Get.assemblageService().getSemanticNidsForComponentFromAssemblage(nid, MetaData.DESCRIPTION_CORE_TYPE____SOLOR.getNid());
+				UUID coreType = null;
+				if (typeInfo.size() > 0)
+				{
+					LatestVersion<DynamicVersion> dv = Get.assemblageService().getSemanticChronology(typeInfo.findFirst().getAsInt()).getLatestVersion(stamp);
+					if (dv.isPresent())
+					{
+						coreType = ((DynamicUUID) dv.get().getData(0)).getDataUUID();
+					}
+				}
+				result.add(new DescriptionType(nid, typeInfo.size(), coreType, Frills.getAllModuleSequences(cc).stream().mapToInt(i -> i).toArray()));
+			}
+			return result;
+		}
+	}
+
+	private static final class CachedResponse
+	{
+		private final Object entity;
+		// The ETag of the entity, before the format it is written in is added
+		private final String tag;
+
+		private CachedResponse(Object entity, String tag)
+		{
+			this.entity = entity;
+			this.tag = tag;
+		}
+	}
+
+	MetadataSnapshotService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * Return the response for a metadata call, from the snapshot for the stamp of the request, building it if the snapshot doesn't 
+	 * already hold it.  The ETag of the response is stored on the request, for the {@link EntityTagResponseFilter}.  As with the 
+	 * {@link ConditionalGetFilter}, the ETag starts with the epoch of this server run, and ends with a digest of the Accept header and 
+	 * the response format, so each form a response is written in has its own ETag.
+	 * 
+	 * @param call a name for the call, and any of its parameters that are not coordinates
+	 * @param builder builds the response, when it isn't held
+	 * @return the response - shared with other requests, so it must not be modified
+	 * @throws RestException if the builder does
+	 * @throws RedirectionException a 304, if the request carries an If-None-Match header that matches the ETag of the response
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getResponse(String call, SnapshotResponse<T> builder) throws RestException
+	{
+		RequestInfo ri = RequestInfo.get();
+		Snapshot snapshot = snapshots_.get(ri.getStampCoordinate(), stamp -> new Snapshot(stamp));
+		String key = call + "|" + ri.getCoordinatesToken().getSerialized() + "|" + ri.returnExpandableLinks() + "|" 
+				+ ri.getParameters().get(RequestParameters.altId);
+
+		CachedResponse cached = snapshot.responses.get(key);
+		if (cached == null)
+		{
+			cached = new CachedResponse(builder.build(snapshot), ConditionalGetFilter.EPOCH + "-" + Long.toString(snapshot.generation, 36) + "-" 
+					+ Integer.toString(snapshot.responseCount.incrementAndGet(), 36));
+			if (snapshot.responses.size() < MAX_RESPONSES)
+			{
+				CachedResponse existing = snapshot.responses.putIfAbsent(key, cached);
+				cached = existing == null ? cached : existing;
+			}
+		}
+
+		ContainerRequestContext context = ri.getContext();
+		if (context != null)
+		{
+			EntityTag etag = new EntityTag(cached.tag + "-" 
+					+ ConditionalGetFilter.digest(context.getHeaderString(HttpHeaders.ACCEPT), ResponseFormatFilter.getFormat(context)));
+			ResponseBuilder notModified = context.getRequest().evaluatePreconditions(etag);
+			if (notModified != null)
+			{
+				Response response = notModified.build();
+				if (response.getStatus() == Status.NOT_MODIFIED.getStatusCode())
+				{
+					throw new RedirectionException(response);
+				}
+			}
+			context.setProperty(EntityTagResponseFilter.ETAG_PROPERTY, etag);
+		}
+		return (T) cached.entity;
+	}
+
+	/**
+	 * Replace all snapshots with new, empty snapshots, which are filled in the background
+	 */
+	public void invalidateAll()
+	{
+		for (StampCoordinate stamp : snapshots_.asMap().keySet())
+		{
+			Snapshot snapshot = new Snapshot(stamp);
+			snapshots_.put(stamp, snapshot);
+			Get.workExecutors().getExecutor().execute(() -> 
+			{
+				try
+				{
+					snapshot.getDescriptionTypes();
+					snapshot.getExtendedDescriptionTypes();
+					snapshot.getExternalTerminologyTypes();
+				}
+				catch (RuntimeException e)
+				{
+					log.debug("Failed to prepare a metadata snapshot", e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return true, if the nid is a concept in the description type or module hierarchies
+	 */
+	private static boolean isMetadata(int nid)
+	{
+		TaxonomySnapshot tss = Get.taxonomyService().getSnapshotNoTree(new ManifoldCoordinateImpl(PremiseType.STATED, StampCoordinates.getDevelopmentLatest(),
+				Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLanguageCoordinate(), 
+				Get.configurationService().getGlobalDatastoreConfiguration().getDefaultLogicCoordinate()));
+		return tss.isKindOf(nid, MetaData.DESCRIPTION_TYPE____SOLOR.getNid()) || tss.isKindOf(nid, MetaData.DESCRIPTION_TYPE_IN_SOURCE_TERMINOLOGY____SOLOR.getNid())
+				|| tss.isKindOf(nid, MetaData.MODULE____SOLOR.getNid());
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		if (!metadataChanged_ && snapshots_.estimatedSize() > 0 && isMetadata(cc.getNid()))
+		{
+			metadataChanged_ = true;
+		}
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		if (!metadataChanged_ && snapshots_.estimatedSize() > 0 && isMetadata(sc.getReferencedComponentNid()))
+		{
+			metadataChanged_ = true;
+		}
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		if (snapshots_.estimatedSize() == 0)
+		{
+			return;
+		}
+		// A new concept only joins the hierarchies when its logic graph is committed
+		if (metadataChanged_ || commitRecord.getSemanticNidsInCommit().stream()
+				.anyMatch(nid -> isMetadata(Get.assemblageService().getSemanticChronology(nid).getReferencedComponentNid())))
+		{
+			metadataChanged_ = false;
+			invalidateAll();
+		}
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		snapshots_ = RestCaches.register("metadataSnapshots", Caffeine.newBuilder().maximumSize(RestConfig.getInstance().getMetadataSnapshotCacheSize())
+				.recordStats().build());
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		snapshots_.invalidateAll();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.MyJacksonMapperConfig;
+
+/**
+ * {@link NdJsonOutput}
+ *
+ * Builds the opt-in newline delimited JSON (<code>Accept: application/x-ndjson</code>) responses of the APIs that can return very large
+ * results.  Rather than collecting the whole array and then handing it to jackson, each element is written to the response, one JSON 
+ * object per line, as soon as it is produced - so the time to first byte, and the heap used, do not depend on the size of the result.
+ *
+ * The producer runs while jersey writes the entity, after the response filters have unbound the {@link RequestInfo}, so it is run inside
+ * the {@link RequestInfo} of the request that built the response.  Parameters must be validated before the response is built - once the 
+ * first element is written, the status can no longer be changed, so a failure part way through can only be logged, and end the stream early.
+ */
+public class NdJsonOutput
+{
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+
+	/**
+	 * For the {@link javax.ws.rs.Produces} of the streamed variant methods.  The low source quality keeps clients that accept anything 
+	 * on the regular JSON / XML variant - only clients that ask for ndjson get it.
+	 */
+	public static final String PRODUCES = MEDIA_TYPE + ";qs=0.1";
+
+	private static Logger log = LogManager.getLogger(NdJsonOutput.class);
+
+	/**
+	 * Writes one element of a streamed result.  Failures writing to the client are thrown as an {@link UncheckedIOException}, so that
+	 * the writer can be called from the existing {@link java.util.function.Consumer} based iterations.
+	 */
+	@FunctionalInterface
+	public interface ElementWriter
+	{
+		void write(Object element) throws UncheckedIOException;
+	}
+
+	/**
+	 * Produces the elements of a streamed result, handing each one to the writer as it is built
+	 */
+	@FunctionalInterface
+	public interface Producer
+	{
+		void produce(ElementWriter writer) throws Exception;
+	}
+
+	private NdJsonOutput()
+	{
+	}
+
+	/**
+	 * @param producer the source of the elements to stream
+	 * @return an ndjson response, which runs the producer when jersey writes the entity
+	 */
+	public static Response stream(Producer producer)
+	{
+		RequestInfo ri = RequestInfo.get();
+		StreamingOutput output = outputStream -> 
+		{
+			// Flushing after each value would send a chunk per element - let the generator buffer fill instead.
+			ObjectWriter writer = MyJacksonMapperConfig.getMapper().writer().without(SerializationFeature.INDENT_OUTPUT)
+					.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).withRootValueSeparator("\n");
+			JsonGenerator generator = writer.getFactory().createGenerator(outputStream);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			int[] written = new int[1];
+			try (SequenceWriter sequence = writer.writeValues(generator))
+			{
+				ri.wrap(() -> 
+				{
+					producer.produce(element -> 
+					{
+						try
+						{
+							sequence.write(element);
+							if (written[0]++ == 0)
+							{
+								// get the first line out right away
+								generator.flush();
+							}
+						}
+						catch (IOException e)
+						{
+							throw new UncheckedIOException(e);
+						}
+					});
+					return null;
+				}).call();
+				log.trace("Streamed {} elements", written[0]);
+			}
+			catch (IOException | UncheckedIOException e)
+			{
+				// Usually, the client went away
+				log.debug("Streamed response ended early", e);
+				throw e instanceof UncheckedIOException ? ((UncheckedIOException)e).getCause() : (IOException)e;
+			}
+			catch (Exception e)
+			{
+				log.error("Failure producing a streamed response - the response is truncated", e);
+				throw new IOException(e);
+			}
+			if (written[0] > 0)
+			{
+				// the separator only goes between values - end the last line, too
+				generator.writeRaw('\n');
+			}
+			generator.close();
+		};
+		return Response.ok(output, MEDIA_TYPE).build();
+	}
+}
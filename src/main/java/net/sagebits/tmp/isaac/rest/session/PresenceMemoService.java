@@ -0,0 +1,307 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.api.externalizable.IsaacObjectType;
+import sh.isaac.utility.Frills;
+
+/**
+ * {@link PresenceMemoService}
+ *
+ * Remembers, per stamp coordinate, whether the latest version of a component is present on the stamp - so that the status / time 
+ * filtering of search results doesn't repeat the same latest version calculations for every request that uses the same stamp.
+ * 
+ * The answers are held as two bits per nid (known, present) in pages that are allocated as they are touched, so an answer costs 
+ * neither a boxed key nor a map entry.  The memos are dropped when anything is changed or committed.
+ * 
+ * The memos are weighed by the pages they hold, and the least recently used memos are dropped to keep the pages of all memos within 
+ * {@link RestConfig#getPresenceMemoMaxMB()}.  As a memo grows after it is cached, it is re-written to the cache as it allocates each page, 
+ * so that the cache sees its new weight.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class PresenceMemoService implements ChronologyChangeListener
+{
+	private static final UUID LISTENER_UUID = UUID.fromString("0e7b9d42-3c5a-4f18-a6d9-2b8e4c1f7a63");
+
+	// The size of a page of a NidMemo
+	private static final int PAGE_KB = 8;
+
+	private Cache<StampCoordinate, StampMemo> memos_;
+
+	/**
+	 * A memo of int to boolean, for nids, safe for concurrent use.  Stops remembering new answers once {@link #MAX_PAGES} pages 
+	 * are in use, but still answers correctly.
+	 */
+	public static final class NidMemo
+	{
+		// 2 bits per nid, 32768 nids per page
+		private static final int PAGE_BITS = 15;
+		private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+		public static final int MAX_PAGES = 512;
+
+		private final ConcurrentHashMap<Integer, AtomicLongArray> pages = new ConcurrentHashMap<>();
+		private final Runnable onNewPage;
+
+		/**
+		 * @param onNewPage called after each page is allocated
+		 */
+		public NidMemo(Runnable onNewPage)
+		{
+			this.onNewPage = onNewPage;
+		}
+
+		/**
+		 * @param nid the nid to answer for
+		 * @param compute calculates the answer, if it isn't already known
+		 * @return the remembered, or computed, answer
+		 */
+		public boolean test(int nid, IntPredicate compute)
+		{
+			// nids are negative, this maps them onto 0 - Integer.MAX_VALUE
+			int index = nid - Integer.MIN_VALUE;
+			int pageNum = index >>> PAGE_BITS;
+			int bit = (index & PAGE_MASK) * 2;
+			AtomicLongArray page = pages.get(pageNum);
+			if (page != null)
+			{
+				long bits = page.get(bit >>> 6) >>> (bit & 63);
+				if ((bits & 1L) != 0)
+				{
+					return (bits & 2L) != 0;
+				}
+			}
+
+			boolean result = compute.test(nid);
+
+			if (page == null && pages.size() < MAX_PAGES)
+			{
+				AtomicLongArray newPage = new AtomicLongArray(((PAGE_MASK + 1) * 2) / 64);
+				page = pages.putIfAbsent(pageNum, newPage);
+				if (page == null)
+				{
+					page = newPage;
+					onNewPage.run();
+				}
+			}
+			if (page != null)
+			{
+				long mask = (result ? 3L : 1L) << (bit & 63);
+				page.accumulateAndGet(bit >>> 6, mask, (current, update) -> current | update);
+			}
+			return result;
+		}
+
+		public int getPageCount()
+		{
+			return pages.size();
+		}
+	}
+
+	/**
+	 * The memos for a single stamp coordinate
+	 */
+	public static final class StampMemo
+	{
+		private final StampCoordinate stamp;
+		private final NidMemo present;
+		private final NidMemo nearestConceptPresent;
+		private final NidMemo presentWithConcept;
+
+		private StampMemo(StampCoordinate stamp, Consumer<StampMemo> onGrow)
+		{
+			this.stamp = stamp;
+			this.present = new NidMemo(() -> onGrow.accept(this));
+			this.nearestConceptPresent = new NidMemo(() -> onGrow.accept(this));
+			this.presentWithConcept = new NidMemo(() -> onGrow.accept(this));
+		}
+
+		/**
+		 * @param nid the nid of a component
+		 * @return true, if the latest version of the component is present on the stamp
+		 */
+		public boolean isPresent(int nid)
+		{
+			return present.test(nid, nidAgain -> 
+			{
+				Optional<? extends Chronology> c = Get.identifiedObjectService().getChronology(nidAgain);
+				return c.isPresent() && c.get().getLatestVersion(stamp).isPresent();
+			});
+		}
+
+		/**
+		 * @param nid the nid of a component
+		 * @return true, if the component is a concept that is present on the stamp, or a semantic, whose nearest concept is present on the stamp
+		 */
+		public boolean isNearestConceptPresent(int nid)
+		{
+			return nearestConceptPresent.test(nid, nidAgain -> 
+			{
+				Optional<? extends Chronology> possibleConcept = Get.identifiedObjectService().getChronology(nidAgain);
+				if (possibleConcept.isPresent())
+				{
+					if (possibleConcept.get().getIsaacObjectType() != IsaacObjectType.CONCEPT)
+					{
+						//Let frills recurse - this should be rare.
+						int possibleConceptNid = Frills.getNearestConcept(nidAgain).orElse(0);
+						return possibleConceptNid != 0 && Get.conceptService().getConceptChronology(possibleConceptNid).getLatestVersion(stamp).isPresent();
+					}
+					//The typical path
+					return possibleConcept.get().getLatestVersion(stamp).isPresent();
+				}
+				return false;
+			});
+		}
+
+		/**
+		 * @param semanticNid the nid of a semantic
+		 * @return true, if the semantic is present on the stamp, and the concept the semantic is attached to is present on the stamp
+		 */
+		public boolean isPresentWithConcept(int semanticNid)
+		{
+			return presentWithConcept.test(semanticNid, nidAgain -> 
+			{
+				SemanticChronology semChron = Get.assemblageService().getSemanticChronology(nidAgain);
+				// Many semantics share a concept, so the concept answer is remembered separately
+				return isPresent(nidAgain) && isNearestConceptPresent(semChron.getReferencedComponentNid());
+			});
+		}
+
+		/**
+		 * @return the number of bitmap pages held by the memo
+		 */
+		public int getPageCount()
+		{
+			return present.getPageCount() + nearestConceptPresent.getPageCount() + presentWithConcept.getPageCount();
+		}
+	}
+
+	PresenceMemoService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @param stamp the stamp coordinate the memo answers for
+	 * @return the memo for the stamp, shared with the other requests that use an equal stamp
+	 */
+	public StampMemo getMemo(StampCoordinate stamp)
+	{
+		return memos_.get(stamp, stampAgain -> new StampMemo(stampAgain, memo -> reweigh(memo)));
+	}
+
+	/**
+	 * The cache weighs an entry as it is written, so a memo that has grown is re-written in place, to charge it for its new page.
+	 * This is a no-op for a memo that has already been evicted (or replaced), which is still usable by the requests holding it.
+	 */
+	private void reweigh(StampMemo memo)
+	{
+		memos_.asMap().replace(memo.stamp, memo, memo);
+	}
+
+	/**
+	 * Drop all memos
+	 */
+	public void invalidateAll()
+	{
+		memos_.invalidateAll();
+	}
+
+	/**
+	 * @return the number of bitmap pages in use across all cached memos - each page is 8KB
+	 */
+	public long getPageCount()
+	{
+		return memos_.asMap().values().stream().mapToLong(memo -> memo.getPageCount()).sum();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		invalidateAll();
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		// Weighed in pages, with a minimum of one, so an empty memo is still counted
+		memos_ = RestCaches.register("stampPresenceMemos", Caffeine.newBuilder()
+				.maximumWeight(RestConfig.getInstance().getPresenceMemoMaxMB() * 1024L / PAGE_KB)
+				.weigher((StampCoordinate stamp, StampMemo memo) -> Math.max(1, memo.getPageCount()))
+				.recordStats().build());
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		invalidateAll();
+	}
+}
@@ -41,9 +41,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.ext.InterceptorContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import net.sagebits.tmp.isaac.rest.ApplicationConfig;
@@ -72,8 +74,11 @@ import sh.isaac.api.coordinate.StampPrecedence;
  * {@link RequestInfo}
  * This class is intended to hold a cache of global request info that we tie to the request / session being processed.
  * Things like the STAMP that applies, the expandable parameters, etc.
- * We will (likely) set this up on the thread local with a request filter that looks at every request before it arrives
- * at the implementing method.
+ * 
+ * An instance is created for each request by {@link #begin(ContainerRequestContext)}, which stores it as a property of the request, 
+ * and binds it to the current thread, so that {@link #get()} continues to work for code that doesn't have the request at hand.  
+ * Work that is handed off to another thread (for example, by an asynchronous resource method) must carry the context with it, 
+ * via {@link #wrap(Callable)} or {@link #wrap(Runnable)}.
  * 
  * @author <a href="mailto:daniel.armbrust.list@sagebits.net">Dan Armbrust</a>
  */
@@ -106,18 +111,155 @@ public class RequestInfo
 	// Default to this, users may override by specifying expandables=true
 	private boolean returnExpandableLinks_ = ApplicationConfig.getInstance().isDebugDeploy();
 
-	private static final ThreadLocal<RequestInfo> requestInfo = new ThreadLocal<RequestInfo>()
+	private static final ThreadLocal<RequestInfo> requestInfo = new ThreadLocal<RequestInfo>();
+
+	private static final String REQUEST_PROPERTY = RequestInfo.class.getName();
+
+	/**
+	 * @return the RequestInfo bound to the current thread.  If none is bound, a new one is created and bound.
+	 */
+	public static RequestInfo get()
 	{
-		@Override
-		protected RequestInfo initialValue()
+		RequestInfo ri = requestInfo.get();
+		if (ri == null)
 		{
-			return new RequestInfo();
+			ri = new RequestInfo();
+			requestInfo.set(ri);
 		}
-	};
+		return ri;
+	}
 
-	public static RequestInfo get()
+	/**
+	 * The response side of a request (response filters, exception mappers, entity writers) may run on the container thread after the 
+	 * request went async, and was detached from it - so it finds the RequestInfo on the request, rather than on the thread.
+	 * @param context the request
+	 * @return the RequestInfo stored on the request by {@link #begin(ContainerRequestContext)}, or, for a request that never had one, the 
+	 *     RequestInfo bound to the current thread, as {@link #get()}
+	 */
+	public static RequestInfo get(ContainerRequestContext context)
+	{
+		return fromProperty(context == null ? null : context.getProperty(REQUEST_PROPERTY));
+	}
+
+	/**
+	 * @param context the writer or reader of the entity of a request - which shares the properties of the request
+	 * @return the RequestInfo stored on the request by {@link #begin(ContainerRequestContext)}, or null, for a request that never had one
+	 */
+	public static RequestInfo get(InterceptorContext context)
+	{
+		Object ri = context.getProperty(REQUEST_PROPERTY);
+		return ri instanceof RequestInfo ? (RequestInfo) ri : null;
+	}
+
+	private static RequestInfo fromProperty(Object ri)
+	{
+		return ri instanceof RequestInfo ? (RequestInfo) ri : get();
+	}
+
+	/**
+	 * Create the RequestInfo for a new request, store it on the request, and bind it to the current thread, replacing
+	 * anything that was left bound to this thread by a prior request.
+	 * @param context the request being started
+	 * @return the new RequestInfo
+	 */
+	public static RequestInfo begin(ContainerRequestContext context)
 	{
-		return requestInfo.get();
+		RequestInfo ri = new RequestInfo();
+		ri.setContext(context);
+		context.setProperty(REQUEST_PROPERTY, ri);
+		requestInfo.set(ri);
+		return ri;
+	}
+
+	/**
+	 * Finish a request, unbinding its RequestInfo from the current thread.  The response may be completed on a different
+	 * thread than the one that started the request, so the RequestInfo is found from the request itself, where possible.  It stays 
+	 * on the request, as the entity is written after the response filters run.
+	 * @param context the request being completed
+	 * @return the RequestInfo of the request
+	 */
+	public static RequestInfo end(ContainerRequestContext context)
+	{
+		Object ri = context.getProperty(REQUEST_PROPERTY);
+		if (ri instanceof RequestInfo)
+		{
+			requestInfo.remove();
+			log.debug("Request info cleared for request {}", ((RequestInfo) ri).requestId_);
+			return (RequestInfo) ri;
+		}
+		return remove();
+	}
+
+	/**
+	 * @param work work to run on another thread, on behalf of this request
+	 * @return a callable that runs the work with this RequestInfo bound, restoring the prior binding of the executing thread when done
+	 */
+	public <T> Callable<T> wrap(Callable<T> work)
+	{
+		return () -> 
+		{
+			RequestInfo prior = bind(this);
+			try
+			{
+				return work.call();
+			}
+			finally
+			{
+				bind(prior);
+			}
+		};
+	}
+
+	/**
+	 * @param work work to run on another thread, on behalf of this request
+	 * @return a runnable that runs the work with this RequestInfo bound, restoring the prior binding of the executing thread when done
+	 */
+	public Runnable wrap(Runnable work)
+	{
+		return () -> 
+		{
+			RequestInfo prior = bind(this);
+			try
+			{
+				work.run();
+			}
+			finally
+			{
+				bind(prior);
+			}
+		};
+	}
+
+	/**
+	 * Unbind the RequestInfo from the current thread, once its request has been handed off to another thread.  The RequestInfo 
+	 * stays on the request, and is bound to the thread that does the work by {@link #wrap(Runnable)}, so it must not be left 
+	 * bound to the container thread, which will go on to serve other requests.
+	 */
+	static void detach()
+	{
+		RequestInfo ri = requestInfo.get();
+		if (ri != null)
+		{
+			requestInfo.remove();
+			log.trace("Thread-Local request info detached for request {}", ri.requestId_);
+		}
+	}
+
+	/**
+	 * @return the previously bound RequestInfo, or null, if none was bound
+	 */
+	private static RequestInfo bind(RequestInfo ri)
+	{
+		RequestInfo prior = requestInfo.get();
+		if (ri == null)
+		{
+			requestInfo.remove();
+		}
+		else
+		{
+			requestInfo.set(ri);
+		}
+		return prior;
 	}
 
 	private RequestInfo()
@@ -131,7 +273,7 @@ public class RequestInfo
 
 	public static RequestInfo remove()
 	{
-		RequestInfo ri = requestInfo.get();
+		RequestInfo ri = get();
 		requestInfo.remove();
 		log.debug("Thread-Local request info cleared for request {}", ri.requestId_);
 		return ri;
@@ -139,7 +281,7 @@ public class RequestInfo
 
 	public RequestInfo readExpandables(Map<String, List<String>> parameters) throws RestException
 	{
-		requestInfo.get().expandablesForDirectExpansion_ = new HashSet<>(10);
+		expandablesForDirectExpansion_ = new HashSet<>(10);
 		if (parameters.containsKey(RequestParameters.expand))
 		{
 			for (String expandable : RequestInfoUtils.expandCommaDelimitedElements(parameters.get(RequestParameters.expand)))
@@ -149,7 +291,7 @@ public class RequestInfo
 					String expandFlag = expandable.trim();
 					if (ExpandUtil.isValidExpansion(expandFlag))
 					{
-						requestInfo.get().expandablesForDirectExpansion_.add(expandFlag);
+						expandablesForDirectExpansion_.add(expandFlag);
 					}
 					else
 					{
@@ -192,10 +334,14 @@ public class RequestInfo
 	public RequestInfo readAll(Map<String, List<String>> parameters, String path, Function<String, Optional<String>> cookieValueProvider) throws Exception
 	{
 		parameters_.clear();
+		// Gather the coordinate parameter key in the same pass, it is used for both the token lookup and the put, below
+		CoordinatesParameterKey.Builder coordinateKeyBuilder = new CoordinatesParameterKey.Builder();
 		for (Map.Entry<String, List<String>> entry : parameters.entrySet())
 		{
 			parameters_.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+			coordinateKeyBuilder.add(entry.getKey(), entry.getValue());
 		}
+		CoordinatesParameterKey coordinateParameters = coordinateKeyBuilder.build();
 		
 		//populate the user, if possible, and the editToken, if possible (only when an encoded token is provided)
 		user_ = Get.service(RestUserService.class).getUser(parameters_, getEditToken(), cookieValueProvider);
@@ -237,11 +383,11 @@ public class RequestInfo
 			}
 		}
 
-		String serializedCoordinatesTokenByParams = CoordinatesTokens.get(CoordinatesUtil.getCoordinateParameters(parameters));
+		String serializedCoordinatesTokenByParams = CoordinatesTokens.get(coordinateParameters);
 		if (serializedCoordinatesTokenByParams != null)
 		{
 			log.debug("Using CoordinatesToken value cached by parameter");
-			requestInfo.get().coordinatesToken_ = serializedCoordinatesTokenByParams;
+			coordinatesToken_ = serializedCoordinatesTokenByParams;
 		}
 		else
 		{
@@ -252,29 +398,25 @@ public class RequestInfo
 			if (token.isPresent())
 			{
 				log.debug("Applying CoordinatesToken {} parameter \"{}\"", RequestParameters.coordToken, token.get().getSerialized());
-				requestInfo.get().coordinatesToken_ = token.get().getSerialized();
+				coordinatesToken_ = token.get().getSerialized();
 			}
 			else
 			{
 				log.debug("Applying default coordinates");
 
-				requestInfo.get().coordinatesToken_ = CoordinatesTokens.getDefaultCoordinatesToken().getSerialized();
+				coordinatesToken_ = CoordinatesTokens.getDefaultCoordinatesToken().getSerialized();
 				token = Optional.of(CoordinatesTokens.getDefaultCoordinatesToken());
 			}
 
-			// Determine if any relevant coordinate parameters set
-			Map<String, List<String>> coordinateParameters = new HashMap<>();
-			coordinateParameters.putAll(RequestInfoUtils.getParametersSubset(parameters, RequestParameters.COORDINATE_PARAM_NAMES));
-
 			// If no coordinate parameter or only coordToken value set, then use
-			if (coordinateParameters.size() == 0 || (coordinateParameters.size() == 1 && coordinateParameters.containsKey(RequestParameters.coordToken)))
+			if (!coordinateParameters.hasIndividualParameters())
 			{
-				log.debug("No individual coordinate parameters to apply to token \"{}\"", requestInfo.get().coordinatesToken_);
+				log.debug("No individual coordinate parameters to apply to token \"{}\"", coordinatesToken_);
 
 			}
 			else
 			{ // If ANY coordinate parameter other than coordToken value set, then calculate new CoordinatesToken string
-				log.debug("Applying {} individual parameters to coordinates token \"{}\": {}", requestInfo.get().coordinatesToken_, coordinateParameters.size(),
+				log.debug("Applying {} individual parameters to coordinates token \"{}\": {}", coordinatesToken_, coordinateParameters.size(),
 						coordinateParameters.toString());
 
 				// TaxonomyCoordinate components
@@ -312,15 +454,15 @@ public class RequestInfo
 						(byte) (stated ? PremiseType.STATED : PremiseType.INFERRED).ordinal(), logicStatedSeq, logicInferredSeq, logicDescProfileSeq,
 						logicClassifierSeq);
 
-				requestInfo.get().coordinatesToken_ = tokenObj.getSerialized();
+				coordinatesToken_ = tokenObj.getSerialized();
 
-				CoordinatesTokens.put(CoordinatesUtil.getCoordinateParameters(parameters), tokenObj);
+				CoordinatesTokens.put(coordinateParameters, tokenObj);
 
-				log.debug("Created CoordinatesToken \"{}\"", requestInfo.get().coordinatesToken_);
+				log.debug("Created CoordinatesToken \"{}\"", coordinatesToken_);
 			}
 		}
 
-		return requestInfo.get();
+		return this;
 	}
 
 	public boolean shouldExpand(String expandable)
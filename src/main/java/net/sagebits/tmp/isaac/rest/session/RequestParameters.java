@@ -143,6 +143,8 @@ public class RequestParameters {
 	public final static String maxPageSize = "maxPageSize";
 	public final static String maxPageSizeDefault = "10";
 	public final static Set<String> PAGINATION_PARAM_NAMES = unmodifiableSet(pageNum, maxPageSize);
+	// Only supported by the methods that document it
+	public final static String cursor = "cursor";
 	
 	public final static String assemblage = "assemblage";
 	public final static String skipAssemblage = "skipAssemblage";
@@ -162,6 +164,7 @@ public class RequestParameters {
 	public final static String semanticAssemblageId = "semanticAssemblageId";
 	public final static String restrictTo = "restrictTo";
 	public final static String mergeOnConcept = "mergeOnConcept";
+	public final static String typeAhead = "typeAhead";
 	
 	// Taxonomy
 	public final static String childDepth = "childDepth";
@@ -267,6 +270,7 @@ public class RequestParameters {
 		Set<String> params = new HashSet<>();
 		params.addAll(COORDINATE_PARAM_NAMES);
 		params.addAll(PAGINATION_PARAM_NAMES);
+		params.add(cursor);
 		params.addAll(EDIT_TOKEN_PARAM_NAMES);
 		params.addAll(VUID_PARAM_NAMES);
 		params.addAll(unmodifiableSet(
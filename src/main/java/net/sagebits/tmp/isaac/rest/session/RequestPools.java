@@ -0,0 +1,371 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestRequestPoolStats;
+
+/**
+ * {@link RequestPools}
+ *
+ * The bounded thread pools that the asynchronous API calls are executed on - one pool per API class, so that a burst of slow
+ * calls of one kind (for example, exports) can't starve the other kinds of calls.  Each pool has a fixed number of threads, and 
+ * a fixed length queue.  Once the queue is full, further calls are rejected with a {@link RejectedExecutionException}, which 
+ * is returned to the caller as a 503, with a Retry-After header.
+ * 
+ * There is also a single, shared, fork join pool, for splitting the per-item work of one call (such as the conversion of a page of 
+ * results) across threads - see {@link #parallelMap(List, Function)}.  Work that is the equivalent of a call in its own right, such as 
+ * each query of a batch, is instead spread across the request pool of the API class - see 
+ * {@link #parallelForEachCompleted(String, List, Function, CompletionConsumer)}.
+ * 
+ * The pool sizes are configured in the uts-rest-api.properties file, see {@link RestConfig}.
+ */
+public class RequestPools
+{
+	private static Logger log = LogManager.getLogger(RequestPools.class);
+
+	private static final Map<String, Pool> POOLS = new ConcurrentSkipListMap<>();
+	private static volatile ForkJoinPool parallelPool;
+
+	private RequestPools()
+	{
+	}
+
+	/**
+	 * @param poolName the pool to run on, created on first use
+	 * @param work the work to run
+	 * @throws RejectedExecutionException if the queue of the pool is full
+	 */
+	public static void execute(String poolName, Runnable work) throws RejectedExecutionException
+	{
+		POOLS.computeIfAbsent(poolName, name -> new Pool(name)).execute(work);
+	}
+
+	/**
+	 * Apply a function to each item of a list, in parallel on the shared fork join pool, with the {@link RequestInfo} of the current 
+	 * request bound on each of the worker threads.  The calling thread waits for the result.
+	 * 
+	 * @param items the items to process
+	 * @param function the function to apply to each item
+	 * @return the results, in the same order as the items
+	 * @throws RuntimeException the first exception thrown by the function, if any
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, R> List<R> parallelMap(List<T> items, Function<T, R> function)
+	{
+		List<R> results = new ArrayList<>(items.size());
+		if (items.size() < 2 || RestConfig.getInstance().getParallelThreads() < 2)
+		{
+			for (T item : items)
+			{
+				results.add(function.apply(item));
+			}
+			return results;
+		}
+
+		RequestInfo ri = RequestInfo.get();
+		// Resolve the lazily read coordinates before the RequestInfo is shared across threads
+		ri.getCoordinatesToken();
+		Object[] temp = new Object[items.size()];
+		try
+		{
+			getParallelPool().submit(() -> IntStream.range(0, temp.length).parallel()
+					.forEach(i -> ri.wrap(() -> 
+					{
+						temp[i] = function.apply(items.get(i));
+					}).run())).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		for (Object o : temp)
+		{
+			results.add((R) o);
+		}
+		return results;
+	}
+
+	/**
+	 * Receives the results of {@link RequestPools#parallelForEachCompleted(String, List, Function, CompletionConsumer)}, as they complete.
+	 */
+	public interface CompletionConsumer<R>
+	{
+		/**
+		 * @param index the index of the item the result is for
+		 * @param result the result, or null, if the function failed
+		 * @param failure the exception thrown by the function, or null, if it succeeded
+		 * @throws IOException if the result can't be passed on, which abandons the remaining results
+		 */
+		void accept(int index, R result, Exception failure) throws IOException;
+	}
+
+	/**
+	 * Apply a function to each item of a list, in parallel on a request pool, with the {@link RequestInfo} of the current request bound 
+	 * on each of the worker threads.  Each result is handed to the consumer on the calling thread as soon as it is complete - so the results 
+	 * arrive in the order they complete, rather than the order of the items.  A failure of the function for one item is handed to the 
+	 * consumer, rather than stopping the others - but an {@link Error} is thrown to the caller, when the consumer would have had its item.
+	 * 
+	 * The items are shared out between up to one helper per thread of the pool, and the calling thread, which works on the items itself 
+	 * whenever no result is waiting.  So the call completes even if the pool is too busy to run any of the helpers - which also means the 
+	 * calling thread may itself be a thread of the same pool.  If the request pools are disabled, the calling thread does all of the items.
+	 * 
+	 * @param poolName the request pool to run the helpers on
+	 * @param items the items to process
+	 * @param function the function to apply to each item
+	 * @param consumer the receiver of the results
+	 * @throws IOException if thrown by the consumer
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, R> void parallelForEachCompleted(String poolName, List<T> items, Function<T, R> function, CompletionConsumer<R> consumer) 
+			throws IOException
+	{
+		RequestInfo ri = RequestInfo.get();
+		// Resolve the lazily read coordinates before the RequestInfo is shared across threads
+		ri.getCoordinatesToken();
+		Object[] temp = new Object[items.size()];
+		Exception[] failures = new Exception[items.size()];
+		Error[] errors = new Error[items.size()];
+		AtomicInteger next = new AtomicInteger();
+		BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+
+		Runnable processNext = () -> 
+		{
+			int index = next.getAndIncrement();
+			if (index < items.size())
+			{
+				try
+				{
+					temp[index] = function.apply(items.get(index));
+				}
+				catch (Exception e)
+				{
+					failures[index] = e;
+				}
+				catch (Error e)
+				{
+					// Not a failure of the item, passed on to the caller - which would otherwise wait forever for the item
+					errors[index] = e;
+				}
+				finally
+				{
+					completed.add(index);
+				}
+			}
+		};
+		Runnable helper = ri.wrap(() -> 
+		{
+			while (next.get() < items.size())
+			{
+				processNext.run();
+			}
+		});
+
+		if (RestConfig.getInstance().isRequestPoolsEnabled())
+		{
+			Pool pool = POOLS.computeIfAbsent(poolName, name -> new Pool(name));
+			for (int i = 0; i < Math.min(items.size() - 1, RestConfig.getInstance().getRequestPoolThreads(poolName)); i++)
+			{
+				try
+				{
+					pool.execute(helper);
+				}
+				catch (RejectedExecutionException e)
+				{
+					// The calling thread picks up the slack
+					break;
+				}
+			}
+		}
+
+		try
+		{
+			for (int i = 0; i < items.size(); i++)
+			{
+				Integer index = completed.poll();
+				while (index == null)
+				{
+					if (next.get() < items.size())
+					{
+						processNext.run();
+						index = completed.poll();
+					}
+					else
+					{
+						index = completed.take();
+					}
+				}
+				if (errors[index] != null)
+				{
+					throw errors[index];
+				}
+				consumer.accept(index, (R) temp[index], failures[index]);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			// Don't leave the helpers starting new items for a consumer that has gone away
+			next.set(items.size());
+		}
+	}
+
+	private static ForkJoinPool getParallelPool()
+	{
+		if (parallelPool == null)
+		{
+			synchronized (RequestPools.class)
+			{
+				if (parallelPool == null)
+				{
+					int threads = RestConfig.getInstance().getParallelThreads();
+					log.info("Starting parallel pool with {} threads", threads);
+					AtomicInteger threadCount = new AtomicInteger();
+					parallelPool = new ForkJoinPool(threads, pool -> 
+					{
+						ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						t.setName("rest-parallel-" + threadCount.incrementAndGet());
+						// The container class loader, rather than the system class loader the default workers get
+						t.setContextClassLoader(RequestPools.class.getClassLoader());
+						return t;
+					}, null, false);
+				}
+			}
+		}
+		return parallelPool;
+	}
+
+	/**
+	 * @return a snapshot of the state of each pool that has been used, sorted by name
+	 */
+	public static RestRequestPoolStats[] getStats()
+	{
+		List<RestRequestPoolStats> result = new ArrayList<>(POOLS.size());
+		for (Pool pool : POOLS.values())
+		{
+			result.add(pool.getStats());
+		}
+		return result.toArray(new RestRequestPoolStats[result.size()]);
+	}
+
+	/**
+	 * Stop all of the pools, abandoning any queued work.  Used during shutdown.
+	 */
+	public static void shutdown()
+	{
+		for (Pool pool : POOLS.values())
+		{
+			pool.executor.shutdownNow();
+		}
+		POOLS.clear();
+		synchronized (RequestPools.class)
+		{
+			if (parallelPool != null)
+			{
+				parallelPool.shutdownNow();
+				parallelPool = null;
+			}
+		}
+	}
+
+	private static class Pool
+	{
+		private final String name;
+		private final ThreadPoolExecutor executor;
+		private final LongAdder rejected = new LongAdder();
+
+		private Pool(String name)
+		{
+			this.name = name;
+			int threads = RestConfig.getInstance().getRequestPoolThreads(name);
+			int queueSize = RestConfig.getInstance().getRequestPoolQueueSize(name);
+			log.info("Starting request pool {} with {} threads and a queue size of {}", name, threads, queueSize);
+
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadFactory tf = r -> 
+			{
+				Thread t = new Thread(r, "rest-" + name + "-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), tf, (r, e) -> 
+			{
+				rejected.increment();
+				throw new RejectedExecutionException("The server is too busy to handle the request - the " + name + " queue is full");
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		private void execute(Runnable work)
+		{
+			executor.execute(work);
+		}
+
+		private RestRequestPoolStats getStats()
+		{
+			return new RestRequestPoolStats(name, executor.getActiveCount(), executor.getMaximumPoolSize(), executor.getQueue().size(),
+					executor.getQueue().size() + executor.getQueue().remainingCapacity(), executor.getCompletedTaskCount(), rejected.sum());
+		}
+	}
+}
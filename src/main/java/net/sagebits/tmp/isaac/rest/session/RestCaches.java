@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestCacheStats;
+
+/**
+ * {@link RestCaches}
+ *
+ * A registry of the named, bounded caches that the REST layer keeps, so their effectiveness can be reported through
+ * 1/system/cacheStats.  Caches should be built with {@link com.github.benmanes.caffeine.cache.Caffeine#recordStats()}, 
+ * otherwise they will simply report zeros.
+ */
+public class RestCaches
+{
+	private static final Map<String, Cache<?, ?>> CACHES = new ConcurrentSkipListMap<>();
+
+	private RestCaches()
+	{
+	}
+
+	/**
+	 * @param name a unique, human readable name for the cache
+	 * @param cache the cache to report on
+	 * @return the passed cache, for convenience in static initializers
+	 */
+	public static <K, V> Cache<K, V> register(String name, Cache<K, V> cache)
+	{
+		CACHES.put(name, cache);
+		return cache;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of each registered cache, sorted by name
+	 */
+	public static RestCacheStats[] getStats()
+	{
+		List<RestCacheStats> result = new ArrayList<>(CACHES.size());
+		for (Map.Entry<String, Cache<?, ?>> entry : CACHES.entrySet())
+		{
+			Cache<?, ?> cache = entry.getValue();
+			CacheStats stats = cache.stats();
+			long max = cache.policy().eviction().map(eviction -> eviction.getMaximum()).orElse(-1L);
+			result.add(new RestCacheStats(entry.getKey(), cache.estimatedSize(), max, stats.hitCount(), stats.missCount(), stats.evictionCount()));
+		}
+		return result.toArray(new RestCacheStats[result.size()]);
+	}
+}
@@ -17,6 +17,10 @@ package net.sagebits.tmp.isaac.rest.session;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import org.apache.commons.lang3.StringUtils;
@@ -56,9 +60,31 @@ public class RestConfig
 	
 	private String authURL;
 	private boolean allowAnonRead = false;
+	private int authRefreshAhead = 60;
+	private int authStaleWhileRevalidate = 60;
 	
 	private UUID editModule = null;
 	
+	private int coordinateTokenCacheSize = 1024;
+	private int decodedTokenCacheSize = 10_000;
+	private int assemblageIndexCacheSize = 10_000_000;
+	private int searchResultCacheSize = 256;
+	private int presenceMemoMaxMB = 64;
+	private int taxonomyChildCacheSize = 2_000_000;
+	private boolean conceptSummaryPrebuild = true;
+	private int metadataSnapshotCacheSize = 16;
+	private int conditionalGetMaxAge = 3600;
+	private int searchBatchMaxQueries = 100;
+	
+	private boolean requestPoolsEnabled = true;
+	private int requestPoolThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private int requestPoolQueueSize = 64;
+	private Map<String, Integer> requestPoolThreadsOverrides = new HashMap<>();
+	private Map<String, Integer> requestPoolQueueSizeOverrides = new HashMap<>();
+	private int requestRetryAfterSeconds = 5;
+	private int parallelThreads = Runtime.getRuntime().availableProcessors();
+	private List<String> typeAheadLanguages = new ArrayList<>();
+	
 	private RestConfig()
 	{
 		init();
@@ -98,6 +124,8 @@ public class RestConfig
 			authURL = props.getProperty("auth_url", "");
 			
 			allowAnonRead = Boolean.parseBoolean(props.getProperty("anonymous_read", ""));
+			authRefreshAhead = readInt(props, "auth_refresh_ahead", authRefreshAhead);
+			authStaleWhileRevalidate = readInt(props, "auth_stale_while_revalidate", authStaleWhileRevalidate);
 			
 			String editModuleString = props.getProperty("edit_module", "");
 			if (StringUtils.isNotBlank(editModuleString.trim()))
@@ -112,6 +140,49 @@ public class RestConfig
 				}
 			}
 			
+			coordinateTokenCacheSize = readInt(props, "coordinate_token_cache_size", coordinateTokenCacheSize);
+			decodedTokenCacheSize = readInt(props, "decoded_token_cache_size", decodedTokenCacheSize);
+			assemblageIndexCacheSize = readInt(props, "assemblage_index_cache_size", assemblageIndexCacheSize);
+			searchResultCacheSize = readInt(props, "search_result_cache_size", searchResultCacheSize);
+			presenceMemoMaxMB = readInt(props, "presence_memo_max_mb", presenceMemoMaxMB);
+			taxonomyChildCacheSize = readInt(props, "taxonomy_child_cache_size", taxonomyChildCacheSize);
+			conceptSummaryPrebuild = Boolean.parseBoolean(props.getProperty("concept_summary_prebuild", "true").trim());
+			metadataSnapshotCacheSize = readInt(props, "metadata_snapshot_cache_size", metadataSnapshotCacheSize);
+			conditionalGetMaxAge = readInt(props, "conditional_get_max_age", conditionalGetMaxAge);
+			searchBatchMaxQueries = readInt(props, "search_batch_max_queries", searchBatchMaxQueries);
+			
+			String executionMode = props.getProperty("request_execution_mode", "pooled").trim();
+			if (executionMode.equalsIgnoreCase("container"))
+			{
+				requestPoolsEnabled = false;
+			}
+			else if (!executionMode.equalsIgnoreCase("pooled"))
+			{
+				throw new RuntimeException("The request_execution_mode " + executionMode + " must be 'pooled' or 'container' in uts-rest-api.properties file");
+			}
+			requestPoolThreads = readInt(props, "request_pool_threads", requestPoolThreads);
+			requestPoolQueueSize = readInt(props, "request_pool_queue_size", requestPoolQueueSize);
+			for (String key : props.stringPropertyNames())
+			{
+				if (key.startsWith("request_pool_threads."))
+				{
+					requestPoolThreadsOverrides.put(key.substring("request_pool_threads.".length()), readInt(props, key, requestPoolThreads));
+				}
+				else if (key.startsWith("request_pool_queue_size."))
+				{
+					requestPoolQueueSizeOverrides.put(key.substring("request_pool_queue_size.".length()), readInt(props, key, requestPoolQueueSize));
+				}
+			}
+			requestRetryAfterSeconds = readInt(props, "request_retry_after_seconds", requestRetryAfterSeconds);
+			parallelThreads = readInt(props, "parallel_threads", parallelThreads);
+			for (String language : props.getProperty("type_ahead_languages", "english").split(","))
+			{
+				if (StringUtils.isNotBlank(language))
+				{
+					typeAheadLanguages.add(language.trim());
+				}
+			}
+			
 		}
 		catch (Exception e)
 		{
@@ -121,6 +192,23 @@ public class RestConfig
 		}
 	}
 
+	private static int readInt(Properties props, String key, int defaultValue)
+	{
+		String value = props.getProperty(key, "");
+		if (StringUtils.isBlank(value))
+		{
+			return defaultValue;
+		}
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new RuntimeException("The value " + value + " for " + key + " isn't a valid integer in uts-rest-api.properties file");
+		}
+	}
+
 	public static RestConfig getInstance()
 	{
 		if (restConfig_ == null)
@@ -189,6 +277,24 @@ public class RestConfig
 	{
 		return allowAnonRead;
 	}
+
+	/**
+	 * @return The number of seconds before the cached roles of a user expire, that a request with the token of that user starts a 
+	 *     background revalidation with the auth server.  60 by default.
+	 */
+	public int getAuthRefreshAhead()
+	{
+		return authRefreshAhead;
+	}
+
+	/**
+	 * @return The number of seconds after the cached roles of a user expire, that they may still be used while they are revalidated 
+	 *     with the auth server in the background.  Once this passes, the request waits for the auth server.  60 by default.
+	 */
+	public int getAuthStaleWhileRevalidate()
+	{
+		return authStaleWhileRevalidate;
+	}
 	
 	/**
 	 * Null by default
@@ -199,12 +305,158 @@ public class RestConfig
 		return editModule;
 	}
 
+	/**
+	 * @return The maximum number of entries to hold in each of the coordinate token caches.  1024 by default.
+	 */
+	public int getCoordinateTokenCacheSize()
+	{
+		return coordinateTokenCacheSize;
+	}
+
+	/**
+	 * @return The maximum number of decoded SSO and edit tokens to hold, which should cover the number of active sessions.  10000 by default.
+	 */
+	public int getDecodedTokenCacheSize()
+	{
+		return decodedTokenCacheSize;
+	}
+
+	/**
+	 * @return The number of semantic nids the {@link AssemblageIndexService} may hold in its index of assemblage members.  
+	 *     Its bitmaps of present members are held to the same memory limit.  10 million by default.
+	 */
+	public int getAssemblageIndexCacheSize()
+	{
+		return assemblageIndexCacheSize;
+	}
+
+	/**
+	 * @return The number of distinct searches the {@link SearchResultCache} holds the results of.  256 by default.
+	 */
+	public int getSearchResultCacheSize()
+	{
+		return searchResultCacheSize;
+	}
+
+	/**
+	 * @return The memory, in MB, that the bitmaps of the {@link PresenceMemoService} may use, across all of the stamp coordinates 
+	 *     it holds a memo for.  64 by default.
+	 */
+	public int getPresenceMemoMaxMB()
+	{
+		return presenceMemoMaxMB;
+	}
+
+	/**
+	 * @return The number of child concept nids the {@link TaxonomyChildCache} may hold, across all of the concepts it holds the 
+	 *     present children of.  The sorted orders it holds for sorted taxonomies are limited to the same size.  2 million by default.
+	 */
+	public int getTaxonomyChildCacheSize()
+	{
+		return taxonomyChildCacheSize;
+	}
+
+	/**
+	 * @return true if the {@link ConceptSummaryService} should summarize every concept in the background at startup, false if it should 
+	 *     only summarize concepts as they are requested.  True by default.
+	 */
+	public boolean isConceptSummaryPrebuild()
+	{
+		return conceptSummaryPrebuild;
+	}
+
+	/**
+	 * @return The number of distinct stamp coordinates the {@link MetadataSnapshotService} holds a snapshot of the metadata for.  16 by default.
+	 */
+	public int getMetadataSnapshotCacheSize()
+	{
+		return metadataSnapshotCacheSize;
+	}
+
+	/**
+	 * @return The number of seconds a client (not a shared cache) may hold a concept, taxonomy or metadata response for a stamp coordinate 
+	 *     with a fixed time, without revalidating it.  Responses for the latest time are always revalidated.  3600 by default.
+	 */
+	public int getConditionalGetMaxAge()
+	{
+		return conditionalGetMaxAge;
+	}
+
+	/**
+	 * @return The maximum number of queries in a single batch description search.  Larger batches are rejected.  100 by default.
+	 */
+	public int getSearchBatchMaxQueries()
+	{
+		return searchBatchMaxQueries;
+	}
+
+	/**
+	 * @return true if the long running API calls should be executed on the bounded {@link RequestPools}, false if they should be executed 
+	 *     directly on the container thread.  True by default.
+	 */
+	public boolean isRequestPoolsEnabled()
+	{
+		return requestPoolsEnabled;
+	}
+
+	/**
+	 * @param poolName the name of a request pool
+	 * @return The number of threads for the request pool.  Defaults to the number of processors, with a minimum of 2.
+	 */
+	public int getRequestPoolThreads(String poolName)
+	{
+		return requestPoolThreadsOverrides.getOrDefault(poolName, requestPoolThreads);
+	}
+
+	/**
+	 * @param poolName the name of a request pool
+	 * @return The number of requests that may wait for a thread of the request pool, before they are rejected.  64 by default.
+	 */
+	public int getRequestPoolQueueSize(String poolName)
+	{
+		return requestPoolQueueSizeOverrides.getOrDefault(poolName, requestPoolQueueSize);
+	}
+
+	/**
+	 * @return The number of threads in the shared pool that the per-item work of a single call, such as converting a page of search 
+	 *     results, is split across.  1 disables the parallel processing.  Defaults to the number of processors.
+	 */
+	public int getParallelThreads()
+	{
+		return parallelThreads;
+	}
+
+	/**
+	 * @return The languages the {@link TypeAheadIndexService} builds an in-memory prefix index for, for the type-ahead mode of the prefix 
+	 *     search.  English by default - an empty list disables the type-ahead index.
+	 */
+	public List<String> getTypeAheadLanguages()
+	{
+		return typeAheadLanguages;
+	}
+
+	/**
+	 * @return The number of seconds to send in the Retry-After header, when a request is rejected because a request pool is full.  5 by default.
+	 */
+	public int getRequestRetryAfterSeconds()
+	{
+		return requestRetryAfterSeconds;
+	}
+
 	@Override
 	public String toString()
 	{
 		return "RestConfig [artifactBaseURL=" + artifactBaseURL + ", artifactUsername=" + artifactUsername + ", artifactPassword=****"
 				+ ", dbGroupId=" + dbGroupId + ", dbArtifactId=" + dbArtifactId + ", dbVersion=" + dbVersion
 				+ ", dbClassifier=" + dbClassifier + ", gitRootURL=" + gitRootURL + ", gitUsername=" + gitUsername + ", gitPassword=****"
-				+ ", authURL=" + authURL + ", allowAnonRead=" + allowAnonRead + ", editModule=" + editModule + "]" ;
+				+ ", authURL=" + authURL + ", allowAnonRead=" + allowAnonRead + ", authRefreshAhead=" + authRefreshAhead 
+				+ ", authStaleWhileRevalidate=" + authStaleWhileRevalidate + ", editModule=" + editModule 
+				+ ", coordinateTokenCacheSize=" + coordinateTokenCacheSize + ", decodedTokenCacheSize=" + decodedTokenCacheSize + ", assemblageIndexCacheSize=" + assemblageIndexCacheSize 
+				+ ", searchResultCacheSize=" + searchResultCacheSize + ", presenceMemoMaxMB=" + presenceMemoMaxMB + ", taxonomyChildCacheSize=" + taxonomyChildCacheSize 
+				+ ", conceptSummaryPrebuild=" + conceptSummaryPrebuild + ", metadataSnapshotCacheSize=" + metadataSnapshotCacheSize 
+				+ ", conditionalGetMaxAge=" + conditionalGetMaxAge + ", searchBatchMaxQueries=" + searchBatchMaxQueries 
+				+ ", requestPoolsEnabled=" + requestPoolsEnabled + ", requestPoolThreads=" + requestPoolThreads + requestPoolThreadsOverrides + ", requestPoolQueueSize=" + requestPoolQueueSize 
+				+ requestPoolQueueSizeOverrides + ", requestRetryAfterSeconds=" + requestRetryAfterSeconds + ", parallelThreads=" + parallelThreads 
+				+ ", typeAheadLanguages=" + typeAheadLanguages + "]" ;
 	}
 }
@@ -30,7 +30,6 @@
 
 package net.sagebits.tmp.isaac.rest.session;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,29 +37,11 @@ import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jvnet.hk2.annotations.Contract;
-import net.sagebits.tmp.isaac.rest.Util;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestUserLookupStats;
 import net.sagebits.tmp.isaac.rest.tokens.EditToken;
 import net.sagebits.uts.auth.rest.api1.data.RestUser;
-import sh.isaac.MetaData;
-import sh.isaac.api.Get;
 import sh.isaac.api.LookupService;
-import sh.isaac.api.chronicle.Chronology;
-import sh.isaac.api.commit.ChangeCheckerMode;
-import sh.isaac.api.commit.CommitRecord;
-import sh.isaac.api.component.concept.ConceptBuilder;
-import sh.isaac.api.component.concept.ConceptBuilderService;
-import sh.isaac.api.component.concept.ConceptChronology;
-import sh.isaac.api.component.concept.ConceptSpecification;
-import sh.isaac.api.coordinate.EditCoordinate;
-import sh.isaac.api.coordinate.LanguageCoordinate;
-import sh.isaac.api.coordinate.LogicCoordinate;
-import sh.isaac.model.configuration.LanguageCoordinates;
-import sh.isaac.model.configuration.LogicCoordinates;
-import sh.isaac.model.coordinate.EditCoordinateImpl;
-import sh.isaac.model.logic.LogicalExpressionImpl;
-import sh.isaac.model.logic.node.NecessarySetNode;
-import sh.isaac.model.logic.node.external.ConceptNodeWithUuids;
 
 /**
  * {@link RestUserService}
@@ -93,64 +74,25 @@ public interface RestUserService
 	 */
 	public default int getAuthorNid(RestUser user)
 	{
-		// If the SSO UUID already persisted
-		if (Get.identifierService().hasUuid(user.userId))
-		{
-			// Set authorNid to value corresponding to SSO UUID
-			return Get.identifierService().getNidForUuids(user.userId);
-		}
-		else
-		{
-			log.debug("Creating new concept for user '" + user.userId + "'");
-			//TODO remove the hasConcept check, after we have rebuilt all the DBs with the new users module
-			EditCoordinate adminEditCoordinate = new EditCoordinateImpl(MetaData.USER____SOLOR.getNid(), 
-					Get.conceptService().hasConcept(MetaData.USERS_MODULE____SOLOR.getNid()) ? 
-						MetaData.USERS_MODULE____SOLOR.getNid() : MetaData.METADATA_MODULES____SOLOR.getNid(),
-					MetaData.DEVELOPMENT_PATH____SOLOR.getNid());
-			LanguageCoordinate languageCoordinate = LanguageCoordinates.getUsEnglishLanguageFullySpecifiedNameCoordinate();
-			LogicCoordinate logicCoordinate = LogicCoordinates.getStandardElProfile();
-
-			ConceptSpecification defaultDescriptionsLanguageConceptSpec = Get.conceptSpecification(languageCoordinate.getLanguageConceptNid());
-			ConceptSpecification defaultDescriptionDialectConceptSpec = Get.conceptSpecification(languageCoordinate.getDialectAssemblagePreferenceList()[0]);
-
-			ConceptBuilderService conceptBuilderService = LookupService.getService(ConceptBuilderService.class);
-			conceptBuilderService.setDefaultLanguageForDescriptions(defaultDescriptionsLanguageConceptSpec);
-			conceptBuilderService.setDefaultDialectAssemblageForDescriptions(defaultDescriptionDialectConceptSpec);
-			conceptBuilderService.setDefaultLogicCoordinate(logicCoordinate);
-
-			LogicalExpressionImpl parentDef = new LogicalExpressionImpl();
-			NecessarySetNode nsn = parentDef.NecessarySet(parentDef.And(new ConceptNodeWithUuids(parentDef.Concept(MetaData.USER____SOLOR))));
-			parentDef.getRoot().addChildren(nsn);
-
-			ConceptBuilder builder = conceptBuilderService.getDefaultConceptBuilder(user.displayName, null, parentDef,
-					MetaData.SOLOR_CONCEPT_ASSEMBLAGE____SOLOR.getAssemblageNid());
-
-			// Set new author concept UUID to SSO UUID
-			builder.setPrimordialUuid(user.userId);
-
-			if (languageCoordinate.getDialectAssemblagePreferenceList() != null && languageCoordinate.getDialectAssemblagePreferenceList().length > 0)
-			{
-				for (int i : languageCoordinate.getDialectAssemblagePreferenceList())
-				{
-					builder.getFullySpecifiedDescriptionBuilder().addPreferredInDialectAssemblage(Get.conceptSpecification(i));
-				}
-			}
-
-			List<Chronology> createdObjects = new ArrayList<>();
-			ConceptChronology newCon = builder.build(adminEditCoordinate, ChangeCheckerMode.ACTIVE, createdObjects).getNoThrow();
-
-			try
-			{
-				CommitRecord commitRecord = Util.commitCheck(
-						Get.commitService().commit(adminEditCoordinate, "creating new concept: NID=" + newCon.getNid() + ", FQN=" + user.displayName));
-				log.debug("commit {}", commitRecord);
-				return newCon.getNid();
-			}
-			catch (RestException e)
-			{
-				throw new RuntimeException("Creation of user concept failed. Caught " + e.getClass().getSimpleName() + " " + e.getLocalizedMessage());
-			}
-		}
+		return LookupService.getService(AuthorNidService.class).getAuthorNid(user);
+	}
+	
+	/**
+	 * Make sure that a concept exists for the user - if it doesn't, it is constructed in the background, so the caller doesn't wait for it.
+	 * 
+	 * @param user
+	 */
+	public default void ensureAuthorConcept(RestUser user)
+	{
+		LookupService.getService(AuthorNidService.class).ensureAuthorConcept(user);
+	}
+	
+	/**
+	 * @return the call counts and timing of the user lookups, if this implementation has a local user store
+	 */
+	public default RestUserLookupStats[] getLookupStats()
+	{
+		return new RestUserLookupStats[0];
 	}
 	
 	/**
@@ -39,9 +39,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.ws.rs.client.Client;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -69,6 +75,10 @@ import sh.isaac.api.LookupService;
  * 
  * It does, however, create concepts in the local database that correspond to the users accessing the system,
  * and maintains a cache of user information, so that lookups to the uts-auth-api only occur every so often.
+ * 
+ * Concurrent requests that need the same read (the same token, of the same type) share a single request to the uts-auth-api.  Roles that are about to expire
+ * (or that expired within the configured stale window) are still used, while they are read again in the background - see 
+ * {@link RestConfig#getAuthRefreshAhead()} and {@link RestConfig#getAuthStaleWhileRevalidate()}.
  *
  * @author <a href="mailto:daniel.armbrust.list@gmail.com">Dan Armbrust</a>
  */
@@ -87,17 +97,59 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 
 	//Map of SSOToken to a RestUser - and the time stamp that we read that user (and roles)
 	private ConcurrentHashMap<String, Pair<RestUser, Long>> ssoTokenCache = new ConcurrentHashMap<String, Pair<RestUser, Long>>(100);
+	
+	//Map of token type and token to the read of that user (and roles) from the auth server that is in progress, so that concurrent requests 
+	//share it.  An sso token and a service token with the same value are different reads.
+	private ConcurrentHashMap<String, CompletableFuture<Optional<RestUser>>> pendingReads = new ConcurrentHashMap<>();
+	
+	private final long refreshAhead;
+	private final long staleWhileRevalidate;
+	
+	private final Supplier<Client> client;
+	private final Executor backgroundExecutor;
+	private final LongSupplier clock;
+	
+	@FunctionalInterface
+	private interface UserReader
+	{
+		Optional<RestUser> read() throws RestException, SecurityException;
+	}
 
 	protected RestUserServiceAuthIntegrated()
 	{
 		// for RestServiceSelector
-		dbID = Get.dataStore().getDataStoreId().get();
-		String temp = RestConfig.getInstance().getAuthURL();
+		this(Get.dataStore().getDataStoreId().get(), RestConfig.getInstance().getAuthURL(), RestConfig.getInstance().getAuthRefreshAhead(), 
+				RestConfig.getInstance().getAuthStaleWhileRevalidate(), () -> LookupService.getService(ClientService.class).getClient(), 
+				Get.workExecutors().getExecutor(), System::currentTimeMillis);
+		Get.workExecutors().getScheduledThreadPoolExecutor().scheduleAtFixedRate(() -> {expireOldUsers();}, 15, 15, TimeUnit.MINUTES);
+	}
+	
+	/**
+	 * Doesn't use ISAAC, other than to create the author concepts - for tests, which can also control the time.
+	 * 
+	 * @param dbID the id of the database, sent to the auth server with each read, may be null
+	 * @param authURL the url of the auth server
+	 * @param refreshAheadSeconds see {@link RestConfig#getAuthRefreshAhead()}
+	 * @param staleWhileRevalidateSeconds see {@link RestConfig#getAuthStaleWhileRevalidate()}
+	 * @param client supplies the client to read from the auth server with
+	 * @param backgroundExecutor runs the background revalidations
+	 * @param clock the time, in milliseconds
+	 */
+	RestUserServiceAuthIntegrated(UUID dbID, String authURL, int refreshAheadSeconds, int staleWhileRevalidateSeconds, Supplier<Client> client, 
+			Executor backgroundExecutor, LongSupplier clock)
+	{
+		this.dbID = dbID;
+		String temp = authURL;
 		if (temp != null && temp.length() > 1 && temp.endsWith("/"))
 		{
 			temp = temp.substring(0, temp.length() - 1);
 		}
 		remoteAuthURL = temp;
+		refreshAhead = Math.min(userRoleMaxAge, 1000l * Math.max(0, refreshAheadSeconds));
+		staleWhileRevalidate = 1000l * Math.max(0, staleWhileRevalidateSeconds);
+		this.client = client;
+		this.backgroundExecutor = backgroundExecutor;
+		this.clock = clock;
 		
 		if (StringUtils.isBlank(remoteAuthURL))
 		{
@@ -107,7 +159,6 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 		{
 			log.error("remoteAuthURL should be configured with SSL!");
 		}
-		Get.workExecutors().getScheduledThreadPoolExecutor().scheduleAtFixedRate(() -> {expireOldUsers();}, 15, 15, TimeUnit.MINUTES);
 	}
 	
 
@@ -144,26 +195,24 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 				{
 					throw new RuntimeException("Internal error");
 				}
+				
+				final String readToken = token;
+				final String readTokenType = tokenType;
 
 				Pair<RestUser, Long> userInfo = ssoTokenCache.get(token);
 				if (isCachedTokenValid(userInfo, token, tokenType))
 				{
 					restUser = Optional.ofNullable(userInfo.getKey());
+					if (isRefreshDue(userInfo))
+					{
+						refreshInBackground(token, tokenType, () -> readAndCacheUser(readToken, readTokenType));
+					}
 				}
 				
 				//don't have user info, or its outdated / wrong.  Need to request.
 				if (!restUser.isPresent())
 				{
-					restUser = getUser(token, tokenType);
-					if (restUser.isPresent())
-					{
-						ssoTokenCache.put(restUser.get().ssoToken, new Pair<>(restUser.get(), System.currentTimeMillis()));
-						
-						//Note that this read always returns a NEW ssoToken, but this new ssoToken isn't returned to the caller here (in most calls)
-						//Their future requests will likely still be using the same token they just passed us (which was valid)
-						//So also cache the token they passed, but with the up-to-date user roles / info we just read.
-						ssoTokenCache.put(token, new Pair<>(restUser.get(), System.currentTimeMillis()));
-					}
+					restUser = readUser(token, tokenType, () -> readAndCacheUser(readToken, readTokenType));
 				}
 			}
 			catch (RestException e)
@@ -197,7 +246,7 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 					RequestInfoUtils.getFirstParameterValue(requestParameters, AuthRequestParameters.password), true);
 			if (restUser.isPresent())
 			{
-				ssoTokenCache.put(restUser.get().ssoToken, new Pair<>(restUser.get(), System.currentTimeMillis()));
+				ssoTokenCache.put(restUser.get().ssoToken, new Pair<>(restUser.get(), clock.getAsLong()));
 			}
 		}
 		
@@ -208,21 +257,21 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 			if (isCachedTokenValid(userInfo, ANON_TOKEN, AuthRequestParameters.ssoToken))
 			{
 				restUser = Optional.ofNullable(userInfo.getKey());
+				if (isRefreshDue(userInfo))
+				{
+					refreshInBackground(ANON_TOKEN, AuthRequestParameters.ssoToken, () -> readAndCacheAnonUser());
+				}
 			}
 			else
 			{
-				restUser = getUser("", "", "", false);
-				if (restUser.isPresent())
-				{
-					ssoTokenCache.put(ANON_TOKEN, new Pair<>(restUser.get(), System.currentTimeMillis()));
-				}
+				restUser = readUser(ANON_TOKEN, AuthRequestParameters.ssoToken, () -> readAndCacheAnonUser());
 			}
 		}
 		
 		if (restUser.isPresent())
 		{
 			//Make sure that a concept exists for the user.
-			getAuthorNid(restUser.get());
+			ensureAuthorConcept(restUser.get());
 			
 			if (editToken != null)
 			{
@@ -238,9 +287,9 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 		if (cachedUserInfo != null)
 		{
 			log.debug("SSOToken cache hit for token " + tokenType);
-			if ((System.currentTimeMillis() - cachedUserInfo.getValue()) > userRoleMaxAge)
+			if ((clock.getAsLong() - cachedUserInfo.getValue()) > userRoleMaxAge + staleWhileRevalidate)
 			{
-				log.debug("User cache hit, but roles expired - last read at {} now {} - requesting user info", cachedUserInfo.getValue(), System.currentTimeMillis());
+				log.debug("User cache hit, but roles expired - last read at {} now {} - requesting user info", cachedUserInfo.getValue(), clock.getAsLong());
 				return false;
 			}
 			else 
@@ -264,6 +313,144 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 		}
 		return false;
 	}
+	
+	/**
+	 * @return true, if the roles of a usable cache entry are close enough to (or past) their expiry, that they should be read again
+	 */
+	private boolean isRefreshDue(Pair<RestUser, Long> cachedUserInfo)
+	{
+		return (clock.getAsLong() - cachedUserInfo.getValue()) > userRoleMaxAge - refreshAhead;
+	}
+	
+	/**
+	 * @return the key of the reads of a token in {@link #pendingReads}
+	 */
+	private static String readKey(String token, String tokenType)
+	{
+		return tokenType + ":" + token;
+	}
+	
+	/**
+	 * Read the user for the token - or if a read for the token is already in progress, wait for that one, rather than making another
+	 * request to the auth server.
+	 */
+	private Optional<RestUser> readUser(String token, String tokenType, UserReader reader) throws RestException, SecurityException
+	{
+		String key = readKey(token, tokenType);
+		CompletableFuture<Optional<RestUser>> read = new CompletableFuture<>();
+		CompletableFuture<Optional<RestUser>> pending = pendingReads.putIfAbsent(key, read);
+		if (pending != null)
+		{
+			log.debug("Joining the user read already in progress for the token");
+			return awaitRead(pending);
+		}
+		runRead(token, key, reader, read);
+		return awaitRead(read);
+	}
+	
+	/**
+	 * Start a read of the user for the token on a background thread, unless one is already in progress.  The cached roles continue to 
+	 * be used until it completes.
+	 */
+	private void refreshInBackground(String token, String tokenType, UserReader reader)
+	{
+		String key = readKey(token, tokenType);
+		CompletableFuture<Optional<RestUser>> read = new CompletableFuture<>();
+		if (pendingReads.putIfAbsent(key, read) != null)
+		{
+			return;
+		}
+		log.debug("Revalidating cached user roles in the background");
+		read.whenComplete((user, error) -> 
+		{
+			if (error != null && !(error instanceof SecurityException))
+			{
+				log.warn("Background revalidation of user roles failed, the cached roles will be used until they expire", error);
+			}
+		});
+		try
+		{
+			backgroundExecutor.execute(() -> runRead(token, key, reader, read));
+		}
+		catch (RuntimeException e)
+		{
+			//Can't leave the read pending, or every later request for the token would wait on it
+			log.warn("Couldn't schedule the background revalidation, revalidating on the request thread", e);
+			runRead(token, key, reader, read);
+		}
+	}
+	
+	private void runRead(String token, String key, UserReader reader, CompletableFuture<Optional<RestUser>> read)
+	{
+		try
+		{
+			read.complete(reader.read());
+		}
+		catch (SecurityException e)
+		{
+			//The auth server rejected the token
+			ssoTokenCache.remove(token);
+			read.completeExceptionally(e);
+		}
+		catch (Throwable e)
+		{
+			read.completeExceptionally(e);
+		}
+		finally
+		{
+			pendingReads.remove(key, read);
+		}
+	}
+	
+	private Optional<RestUser> awaitRead(CompletableFuture<Optional<RestUser>> read) throws RestException, SecurityException
+	{
+		try
+		{
+			return read.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RestException("Interrupted while reading the user");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RestException)
+			{
+				throw (RestException)e.getCause();
+			}
+			else if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	private Optional<RestUser> readAndCacheUser(String token, String tokenType) throws RestException, SecurityException
+	{
+		Optional<RestUser> restUser = getUser(token, tokenType);
+		if (restUser.isPresent())
+		{
+			ssoTokenCache.put(restUser.get().ssoToken, new Pair<>(restUser.get(), clock.getAsLong()));
+			
+			//Note that this read always returns a NEW ssoToken, but this new ssoToken isn't returned to the caller here (in most calls)
+			//Their future requests will likely still be using the same token they just passed us (which was valid)
+			//So also cache the token they passed, but with the up-to-date user roles / info we just read.
+			ssoTokenCache.put(token, new Pair<>(restUser.get(), clock.getAsLong()));
+		}
+		return restUser;
+	}
+	
+	private Optional<RestUser> readAndCacheAnonUser() throws RestException
+	{
+		Optional<RestUser> restUser = getUser("", "", "", false);
+		if (restUser.isPresent())
+		{
+			ssoTokenCache.put(ANON_TOKEN, new Pair<>(restUser.get(), clock.getAsLong()));
+		}
+		return restUser;
+	}
 
 	private void expireOldUsers()
 	{
@@ -278,7 +465,7 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 			Iterator<Entry<String, Pair<RestUser, Long>>> x = ssoTokenCache.entrySet().iterator();
 			while (x.hasNext())
 			{
-				if ((System.currentTimeMillis() - x.next().getValue().getValue()) > cleanUserCache)
+				if ((clock.getAsLong() - x.next().getValue().getValue()) > cleanUserCache)
 				{
 					x.remove();
 				}
@@ -406,8 +593,7 @@ public class RestUserServiceAuthIntegrated implements RestUserService
 	
 	private String remoteRequestJSON(URL url, Map<String, String> params) throws RestException, SecurityException
 	{
-		ClientService clientService = LookupService.getService(ClientService.class);
-		WebTarget target = clientService.getClient().target(getTargetFromUrl(url));
+		WebTarget target = client.get().target(getTargetFromUrl(url));
 		target = target.path(url.getPath());
 		
 		for (Map.Entry<String, String> entry : params.entrySet())
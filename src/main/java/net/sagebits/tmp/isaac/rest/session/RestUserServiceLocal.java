@@ -41,12 +41,15 @@ import org.apache.logging.log4j.Logger;
 import net.sagebits.tmp.isaac.rest.ApplicationConfig;
 import net.sagebits.tmp.isaac.rest.Util;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.tmp.isaac.rest.api1.data.systeminfo.RestUserLookupStats;
+import net.sagebits.tmp.isaac.rest.tokens.DecodedTokenCache;
 import net.sagebits.tmp.isaac.rest.tokens.EditToken;
 import net.sagebits.uts.auth.data.SSOToken;
 import net.sagebits.uts.auth.data.User;
 import net.sagebits.uts.auth.data.UserRole;
 import net.sagebits.uts.auth.rest.api1.data.RestUser;
 import net.sagebits.uts.auth.rest.session.AuthRequestParameters;
+import net.sagebits.uts.auth.users.LookupTimer;
 import net.sagebits.uts.auth.users.UserService;
 import sh.isaac.api.Get;
 
@@ -93,7 +96,13 @@ public class RestUserServiceLocal implements RestUserService
 		{
 			try
 			{
-				SSOToken st = new SSOToken(cookieValueProvider.apply(SSOToken.cookieName).orElse(requestParameters.get(AuthRequestParameters.ssoToken).get(0)));
+				String encodedToken = cookieValueProvider.apply(SSOToken.cookieName).orElse(requestParameters.get(AuthRequestParameters.ssoToken).get(0));
+				SSOToken st = DecodedTokenCache.get(encodedToken, SSOToken.class);
+				if (st == null || st.isExpired())
+				{
+					st = new SSOToken(encodedToken);
+					DecodedTokenCache.put(encodedToken, st);
+				}
 				user = us.getUser(st.getUser());
 				if (!user.isPresent())
 				{
@@ -187,7 +196,7 @@ public class RestUserServiceLocal implements RestUserService
 		if (ru.isPresent())
 		{
 			//Make sure that a concept exists for the user.
-			getAuthorNid(ru.get());
+			ensureAuthorConcept(ru.get());
 			
 			if (editToken != null)
 			{
@@ -198,6 +207,18 @@ public class RestUserServiceLocal implements RestUserService
 	}
 
 
+	@Override
+	public RestUserLookupStats[] getLookupStats()
+	{
+		LookupTimer[] timers = us.getLookupStats();
+		RestUserLookupStats[] result = new RestUserLookupStats[timers.length];
+		for (int i = 0; i < timers.length; i++)
+		{
+			result[i] = new RestUserLookupStats(timers[i].getName(), timers[i].getCount(), timers[i].getTotalNanos(), timers[i].getMaxNanos());
+		}
+		return result;
+	}
+
 	@Override
 	public void clearCache()
 	{
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.index.SearchResult;
+
+/**
+ * {@link SearchResultCache}
+ *
+ * Holds the leading, already filtered, results of recent searches, so that paging through the results of a search (or a type-ahead 
+ * re-issuing the same query) is served as a slice of the cached results, rather than re-running the query and the status / time 
+ * filtering for each page.
+ * 
+ * Entries are keyed on everything that affects the results of the query - the query text, the restrictions and the stamp - but not 
+ * on the page.  The first request for a key fetches at least {@link #MIN_FETCH} results, and deeper pages extend the entry, up to 
+ * {@link #MAX_RESULTS} - pages beyond that are passed straight through to the query.
+ * 
+ * Any change to a concept or semantic (which is indexed as it is written) or a commit drops all entries.  Results of a query that was 
+ * running when the entries were dropped are not cached, as they may predate the change.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class SearchResultCache implements ChronologyChangeListener
+{
+	private static final UUID LISTENER_UUID = UUID.fromString("c2d4a8e1-6f3b-4b7a-9e25-71d0b6c3f5a8");
+
+	public static final int MIN_FETCH = 100;
+	public static final int MAX_RESULTS = 1000;
+
+	private Cache<Key, Entry> cache_;
+	
+	// Counts the calls to invalidateAll, so a query that overlaps one can tell not to cache its results
+	private final AtomicLong invalidations_ = new AtomicLong();
+
+	/**
+	 * Runs the underlying query for a page of results
+	 */
+	@FunctionalInterface
+	public interface PagedQuery
+	{
+		public List<SearchResult> query(int pageNum, int maxPageSize);
+	}
+
+	private static final class Key
+	{
+		private final Object[] parts;
+		private final int hash;
+
+		private Key(Object[] parts)
+		{
+			this.parts = parts;
+			this.hash = Arrays.deepHashCode(parts);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof Key && hash == ((Key) obj).hash && Arrays.deepEquals(parts, ((Key) obj).parts);
+		}
+	}
+
+	private static final class Entry
+	{
+		private final List<SearchResult> results;
+		private final boolean complete;
+
+		private Entry(List<SearchResult> results, boolean complete)
+		{
+			this.results = results;
+			this.complete = complete;
+		}
+	}
+
+	SearchResultCache()
+	{
+		// For HK2
+	}
+
+	/**
+	 * A cache that isn't managed by HK2 - it isn't registered as a change listener, or with {@link RestCaches}.
+	 * @param maximumSize the number of searches to hold
+	 */
+	public SearchResultCache(int maximumSize)
+	{
+		cache_ = Caffeine.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	/**
+	 * @param keyParts everything that affects the results of the query, other than the paging.  Arrays are compared by content.  
+	 *     The first part should name the kind of query.
+	 * @param pageNum the page to return
+	 * @param maxPageSize the page size
+	 * @param query the query to run, if the page isn't already cached
+	 * @return the requested page of results
+	 */
+	public List<SearchResult> getPage(Object[] keyParts, int pageNum, int maxPageSize, PagedQuery query)
+	{
+		long needed = (long) pageNum * maxPageSize;
+		if (needed > MAX_RESULTS)
+		{
+			return query.query(pageNum, maxPageSize);
+		}
+
+		Key key = new Key(keyParts);
+		Entry entry = cache_.getIfPresent(key);
+		if (entry == null || (!entry.complete && entry.results.size() < needed))
+		{
+			int fetch = (int) Math.min(MAX_RESULTS, Math.max(MIN_FETCH, needed * 2));
+			long invalidations = invalidations_.get();
+			List<SearchResult> results = query.query(1, fetch);
+			Entry fetched = new Entry(results, results.size() < fetch);
+			// The count is raised before the entries are dropped, so if it is unchanged under the lock of the key, any invalidation 
+			// still to come will drop this entry
+			cache_.asMap().compute(key, (keyAgain, existing) -> invalidations_.get() == invalidations ? fetched : existing);
+			entry = fetched;
+		}
+
+		int from = (int) Math.min(needed - maxPageSize, entry.results.size());
+		int to = (int) Math.min(needed, entry.results.size());
+		return new ArrayList<>(entry.results.subList(from, to));
+	}
+
+	/**
+	 * Drop all cached results
+	 */
+	public void invalidateAll()
+	{
+		invalidations_.incrementAndGet();
+		cache_.invalidateAll();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		invalidateAll();
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		cache_ = RestCaches.register("searchResults", Caffeine.newBuilder().maximumSize(RestConfig.getInstance().getSearchResultCacheSize())
+				.recordStats().build());
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		invalidateAll();
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.coordinate.LanguageCoordinate;
+import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.coordinate.StampCoordinate;
+
+/**
+ * {@link TaxonomyChildCache}
+ *
+ * Holds, per concept and manifold coordinate, the nids of the children of the concept that are present on the coordinate, in the order 
+ * the taxonomy returns them.  Paging through a concept with a very large number of children then reads just the children on the 
+ * requested page, and can return an exact total, rather than re-reading every child ahead of the page on each request.  Any errors 
+ * hit while reading the children are held with them, so that every request for the concept reports them, not just the first.
+ * 
+ * Also holds the description sorted order of a set of children, per stamp and language coordinate, so that a sorted taxonomy 
+ * doesn't re-read and re-sort the descriptions of every child for each page.
+ * 
+ * Each entry is computed once - concurrent requests for an entry that is being computed wait for it, rather than repeating the work.
+ * 
+ * Any change to a concept or semantic, or a commit, drops all entries.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class TaxonomyChildCache implements ChronologyChangeListener
+{
+	private static final UUID LISTENER_UUID = UUID.fromString("5b0e7c3a-9d12-4f6e-a8c4-2e7f91d3b6a0");
+
+	private Cache<Key, PresentChildren> cache_;
+	private Cache<SortKey, int[]> sorted_;
+
+	/**
+	 * The present children of a concept, along with the errors hit reading the children
+	 */
+	public static final class PresentChildren
+	{
+		private final int[] nids;
+		private final List<String> exceptionMessages;
+
+		/**
+		 * @param nids the nids of the present children, in taxonomy order
+		 * @param exceptionMessages the errors hit reading the children, if any
+		 */
+		public PresentChildren(int[] nids, List<String> exceptionMessages)
+		{
+			this.nids = nids;
+			this.exceptionMessages = exceptionMessages.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(exceptionMessages);
+		}
+
+		/**
+		 * @return the nids of the present children, in taxonomy order.  Must not be modified.
+		 */
+		public int[] getNids()
+		{
+			return nids;
+		}
+
+		/**
+		 * @return the errors hit reading the children
+		 */
+		public List<String> getExceptionMessages()
+		{
+			return exceptionMessages;
+		}
+	}
+
+	private static final class Key
+	{
+		private final int conceptNid;
+		private final ManifoldCoordinate mc;
+		// The custom sorter of a coordinate may be set after it is created, so don't rely on the hash staying the same
+		private final int hash;
+
+		private Key(int conceptNid, ManifoldCoordinate mc)
+		{
+			this.conceptNid = conceptNid;
+			this.mc = mc;
+			this.hash = 31 * conceptNid + mc.hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof Key && conceptNid == ((Key) obj).conceptNid && hash == ((Key) obj).hash && mc.equals(((Key) obj).mc);
+		}
+	}
+
+	private static final class SortKey
+	{
+		private final int[] nids;
+		private final StampCoordinate sc;
+		private final LanguageCoordinate lc;
+		private final int hash;
+
+		private SortKey(int[] nids, StampCoordinate sc, LanguageCoordinate lc)
+		{
+			// copied, as the sorter is handed an array that it sorts in place
+			this.nids = nids.clone();
+			this.sc = sc;
+			this.lc = lc;
+			this.hash = 31 * (31 * Arrays.hashCode(nids) + sc.hashCode()) + lc.hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof SortKey))
+			{
+				return false;
+			}
+			SortKey other = (SortKey) obj;
+			return hash == other.hash && Arrays.equals(nids, other.nids) && sc.equals(other.sc) && lc.equals(other.lc);
+		}
+	}
+
+	TaxonomyChildCache()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @param conceptNid the parent concept
+	 * @param mc the coordinate of the taxonomy the children were read from
+	 * @param compute reads the present children, if they are not cached.  Must not use this cache.
+	 * @return the present children
+	 */
+	public PresentChildren getPresentChildren(int conceptNid, ManifoldCoordinate mc, Supplier<PresentChildren> compute)
+	{
+		return cache_.get(new Key(conceptNid, mc), key -> compute.get());
+	}
+
+	/**
+	 * @param nids the concepts to sort
+	 * @param sc the stamp coordinate the descriptions are read with
+	 * @param lc the language coordinate the descriptions are read with
+	 * @param compute sorts the nids, if the order is not cached.  Must return a new array, and must not use this cache.
+	 * @return the sorted nids.  Must not be modified.
+	 */
+	public int[] getSortedOrder(int[] nids, StampCoordinate sc, LanguageCoordinate lc, Supplier<int[]> compute)
+	{
+		return sorted_.get(new SortKey(nids, sc, lc), key -> compute.get());
+	}
+
+	/**
+	 * Drop all cached children and sort orders
+	 */
+	public void invalidateAll()
+	{
+		cache_.invalidateAll();
+		sorted_.invalidateAll();
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		invalidateAll();
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		cache_ = RestCaches.register("taxonomyChildren", Caffeine.newBuilder().maximumWeight(RestConfig.getInstance().getTaxonomyChildCacheSize())
+				.weigher((Key key, PresentChildren value) -> Math.max(1, value.nids.length + value.exceptionMessages.size())).recordStats().build());
+		// Each entry holds the nids twice - in the key, and sorted
+		sorted_ = RestCaches.register("taxonomySortOrders", Caffeine.newBuilder().maximumWeight(RestConfig.getInstance().getTaxonomyChildCacheSize())
+				.weigher((SortKey key, int[] value) -> Math.max(1, value.length * 2)).recordStats().build());
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		invalidateAll();
+	}
+}
@@ -0,0 +1,698 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import sh.isaac.MetaData;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.chronicle.LatestVersion;
+import sh.isaac.api.chronicle.Version;
+import sh.isaac.api.chronicle.VersionType;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.component.semantic.version.DescriptionVersion;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.api.index.AuthorModulePathRestriction;
+import sh.isaac.api.index.ComponentSearchResult;
+import sh.isaac.api.index.SearchResult;
+import sh.isaac.utility.Frills;
+
+/**
+ * {@link TypeAheadIndexService}
+ *
+ * An in-memory prefix index of the description text of each configured language, for the type-ahead mode of the prefix search.  The 
+ * descriptions are read from every description assemblage, and bucketed by the language of the description.
+ * 
+ * Each language is held as a sorted array of normalized terms, each pointing to a run of description nids in a single int array, so 
+ * finding the descriptions for a prefix is a pair of binary searches, rather than a lucene query.  Candidates are read shortest 
+ * description first, and the stamp and restriction filters are only applied to as many candidates as it takes to fill the requested pages.
+ * 
+ * The indexes are built in the background at startup, in a single pass over the description assemblages.  Descriptions committed after 
+ * the build are held in a small delta index, which is rebuilt after each commit, and folded into a full rebuild once it grows large.  Entries are never removed - the current text of 
+ * each candidate is checked against the query, so a stale entry costs a lookup, but can't produce a wrong result.
+ */
+@RunLevel(LookupService.SL_L6_ISAAC_DEPENDENTS_RUNLEVEL)
+@Service
+public class TypeAheadIndexService implements ChronologyChangeListener
+{
+	private static Logger log = LogManager.getLogger(TypeAheadIndexService.class);
+
+	private static final UUID LISTENER_UUID = UUID.fromString("5d2c8f17-94ab-4e06-b3c1-7f0a6e92d458");
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern NON_TERM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	// Descriptions are ranked by length, longer descriptions than this are ranked together
+	private static final int MAX_RANK = 255;
+	// Terms with fewer postings than this are checked against their postings, rather than the description text
+	private static final int MAX_FILTER_POSTINGS = 100_000;
+	// Once this many descriptions have been committed since the last full build, the index is rebuilt
+	private static final int MAX_DELTA = 50_000;
+
+	private final Map<Integer, LanguageIndex> languages_ = new ConcurrentHashMap<>();
+	// Serializes the full builds, so that an older build can't replace the result of a newer one
+	private final Object rebuildLock_ = new Object();
+
+	private static final class LanguageIndex
+	{
+		private final int languageNid;
+		private volatile TermIndex base = null;
+		private volatile TermIndex delta = TermIndex.EMPTY;
+		private final Set<Integer> deltaNids = ConcurrentHashMap.newKeySet();
+		private volatile boolean rebuildQueued = false;
+
+		private LanguageIndex(int languageNid)
+		{
+			this.languageNid = languageNid;
+		}
+	}
+
+	/**
+	 * Sorted terms, each pointing to a run of description nids in {@link #nids}, and their ranks in {@link #ranks}
+	 */
+	public static final class TermIndex
+	{
+		private static final TermIndex EMPTY = new TermIndex(new String[0], new int[] {0}, new int[0], new byte[0]);
+
+		private final String[] terms;
+		private final int[] starts;
+		private final int[] nids;
+		private final byte[] ranks;
+
+		private TermIndex(String[] terms, int[] starts, int[] nids, byte[] ranks)
+		{
+			this.terms = terms;
+			this.starts = starts;
+			this.nids = nids;
+			this.ranks = ranks;
+		}
+
+		private static TermIndex build(Stream<SemanticChronology> descriptions)
+		{
+			Map<String, Postings> postings = new HashMap<>();
+			descriptions.forEach(sc -> addDescription(sc, postings));
+			return build(postings);
+		}
+
+		/**
+		 * @param texts the text to index, by nid
+		 * @return an index of the terms of the text, with each run of nids ordered shortest text first
+		 */
+		public static TermIndex fromText(Map<Integer, String> texts)
+		{
+			Map<String, Postings> postings = new HashMap<>();
+			for (Map.Entry<Integer, String> text : texts.entrySet())
+			{
+				addPostings(text.getKey(), Collections.singletonList(text.getValue()), postings);
+			}
+			return build(postings);
+		}
+
+		private static TermIndex build(Map<String, Postings> postings)
+		{
+			String[] terms = postings.keySet().toArray(new String[postings.size()]);
+			Arrays.sort(terms);
+			int[] starts = new int[terms.length + 1];
+			int total = 0;
+			for (int i = 0; i < terms.length; i++)
+			{
+				starts[i] = total;
+				total += postings.get(terms[i]).size;
+			}
+			starts[terms.length] = total;
+
+			int[] nids = new int[total];
+			byte[] ranks = new byte[total];
+			for (int i = 0; i < terms.length; i++)
+			{
+				Postings p = postings.remove(terms[i]);
+				// rank in the high bits, so this orders each run shortest first
+				Arrays.sort(p.values, 0, p.size);
+				for (int j = 0; j < p.size; j++)
+				{
+					nids[starts[i] + j] = (int) p.values[j];
+					ranks[starts[i] + j] = (byte) (p.values[j] >>> 32);
+				}
+			}
+			return new TermIndex(terms, starts, nids, ranks);
+		}
+
+		private static void addDescription(SemanticChronology sc, Map<String, Postings> postings)
+		{
+			if (sc.getVersionType() != VersionType.DESCRIPTION)
+			{
+				return;
+			}
+			// Index the terms of every version, so the description can be found on any stamp
+			List<String> texts = new ArrayList<>();
+			for (Version v : sc.getVersionList())
+			{
+				texts.add(((DescriptionVersion) v).getText());
+			}
+			addPostings(sc.getNid(), texts, postings);
+		}
+
+		private static void addPostings(int nid, Collection<String> texts, Map<String, Postings> postings)
+		{
+			Set<String> descriptionTerms = new HashSet<>();
+			int shortest = MAX_RANK;
+			for (String text : texts)
+			{
+				if (text != null)
+				{
+					shortest = Math.min(shortest, text.length());
+					Collections.addAll(descriptionTerms, tokenize(text));
+				}
+			}
+			long posting = ((long) shortest << 32) | (nid & 0xFFFFFFFFL);
+			for (String term : descriptionTerms)
+			{
+				postings.computeIfAbsent(term, termAgain -> new Postings()).add(posting);
+			}
+		}
+
+		/**
+		 * @param token a normalized term, as returned by {@link TypeAheadIndexService#tokenize(String)}
+		 * @param prefix true to match every term that starts with the token, false to match only the token itself
+		 * @return the first and last + 1 index of the terms that match the token
+		 */
+		public int[] range(String token, boolean prefix)
+		{
+			int low = lowerBound(token);
+			int high;
+			if (prefix)
+			{
+				high = lowerBound(token + Character.MAX_VALUE);
+			}
+			else
+			{
+				high = (low < terms.length && terms[low].equals(token)) ? low + 1 : low;
+			}
+			return new int[] {low, high};
+		}
+
+		private int lowerBound(String key)
+		{
+			int low = 0;
+			int high = terms.length;
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (terms[mid].compareTo(key) < 0)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private int postingCount(int[] range)
+		{
+			return starts[range[1]] - starts[range[0]];
+		}
+
+		/**
+		 * @param index an index into the sorted terms
+		 * @return the term at the index
+		 */
+		public String getTerm(int index)
+		{
+			return terms[index];
+		}
+
+		/**
+		 * @param index an index into the sorted terms
+		 * @return the nids of the term, shortest text first
+		 */
+		public int[] getNids(int index)
+		{
+			return Arrays.copyOfRange(nids, starts[index], starts[index + 1]);
+		}
+	}
+
+	private static final class Postings
+	{
+		private long[] values = new long[2];
+		private int size = 0;
+
+		private void add(long value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	TypeAheadIndexService()
+	{
+		// For HK2
+	}
+
+	/**
+	 * @param text the text to split
+	 * @return the normalized terms of the text - lower case, with accents removed, split on anything other than letters and digits
+	 */
+	public static String[] tokenize(String text)
+	{
+		String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+		String[] tokens = NON_TERM.split(normalized.toLowerCase(Locale.ROOT));
+		if (tokens.length > 0 && tokens[0].isEmpty())
+		{
+			return Arrays.copyOfRange(tokens, 1, tokens.length);
+		}
+		return tokens;
+	}
+
+	/**
+	 * @param languageNid the language concept
+	 * @return true, if the language is indexed, and its index has finished building
+	 */
+	public boolean isAvailable(int languageNid)
+	{
+		LanguageIndex li = languages_.get(languageNid);
+		return li != null && li.base != null;
+	}
+
+	/**
+	 * Find the descriptions of a language that match a type-ahead query.  Every term of the query must be found in the description - the 
+	 * last term as a prefix, unless the query ends with whitespace.
+	 * 
+	 * @param languageNid the language to search, which must be {@link #isAvailable(int)}
+	 * @param query the query, as typed
+	 * @param stamp the stamp the description (and optionally its concept) must be present on
+	 * @param applyStampToConcept true, if the concept of the description must also be present on the stamp
+	 * @param amp the optional author / module / path restriction - as for the lucene queries, a description matches if any of its versions 
+	 *     has one of the authors, any has one of the modules, and any has one of the paths
+	 * @param filter an optional further restriction on the description nids
+	 * @param pageNum the page number, >= 1
+	 * @param maxPageSize the page size
+	 * @return the requested page of results, shortest (best) first
+	 */
+	public List<SearchResult> query(int languageNid, String query, StampCoordinate stamp, boolean applyStampToConcept, AuthorModulePathRestriction amp, 
+			Predicate<Integer> filter, int pageNum, int maxPageSize)
+	{
+		LanguageIndex li = languages_.get(languageNid);
+		String[] tokens = tokenize(query);
+		if (li == null || li.base == null || tokens.length == 0)
+		{
+			return new ArrayList<>();
+		}
+		boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+		TermIndex[] indexes = new TermIndex[] {li.base, li.delta};
+
+		// Drive from the token with the fewest postings
+		int[][][] ranges = new int[tokens.length][][];
+		int driver = 0;
+		int driverCount = Integer.MAX_VALUE;
+		for (int t = 0; t < tokens.length; t++)
+		{
+			ranges[t] = new int[indexes.length][];
+			int count = 0;
+			for (int i = 0; i < indexes.length; i++)
+			{
+				ranges[t][i] = indexes[i].range(tokens[t], lastIsPrefix && t == tokens.length - 1);
+				count += indexes[i].postingCount(ranges[t][i]);
+			}
+			if (count < driverCount)
+			{
+				driver = t;
+				driverCount = count;
+			}
+		}
+		if (driverCount == 0)
+		{
+			return new ArrayList<>();
+		}
+
+		// Order the candidates shortest first, with a counting sort on the rank
+		int[] bucketStarts = new int[MAX_RANK + 2];
+		for (int i = 0; i < indexes.length; i++)
+		{
+			for (int p = indexes[i].starts[ranges[driver][i][0]]; p < indexes[i].starts[ranges[driver][i][1]]; p++)
+			{
+				bucketStarts[(indexes[i].ranks[p] & 0xFF) + 1]++;
+			}
+		}
+		for (int b = 1; b < bucketStarts.length; b++)
+		{
+			bucketStarts[b] += bucketStarts[b - 1];
+		}
+		int[] candidates = new int[driverCount];
+		for (int i = 0; i < indexes.length; i++)
+		{
+			for (int p = indexes[i].starts[ranges[driver][i][0]]; p < indexes[i].starts[ranges[driver][i][1]]; p++)
+			{
+				candidates[bucketStarts[indexes[i].ranks[p] & 0xFF]++] = indexes[i].nids[p];
+			}
+		}
+
+		// The postings of the other tokens are a cheaper check than the description text, when they are small enough
+		List<int[]> tokenFilters = new ArrayList<>();
+		for (int t = 0; t < tokens.length; t++)
+		{
+			if (t != driver)
+			{
+				int count = 0;
+				for (int i = 0; i < indexes.length; i++)
+				{
+					count += indexes[i].postingCount(ranges[t][i]);
+				}
+				if (count <= MAX_FILTER_POSTINGS)
+				{
+					int[] nids = new int[count];
+					int pos = 0;
+					for (int i = 0; i < indexes.length; i++)
+					{
+						int from = indexes[i].starts[ranges[t][i][0]];
+						int length = indexes[i].starts[ranges[t][i][1]] - from;
+						System.arraycopy(indexes[i].nids, from, nids, pos, length);
+						pos += length;
+					}
+					Arrays.sort(nids);
+					tokenFilters.add(nids);
+				}
+			}
+		}
+
+		PresenceMemoService.StampMemo memo = LookupService.getService(PresenceMemoService.class).getMemo(stamp);
+		int wanted = pageNum * maxPageSize;
+		int queryLength = query.trim().length();
+		List<SearchResult> results = new ArrayList<>();
+		Set<Integer> seen = new HashSet<>();
+		for (int candidate : candidates)
+		{
+			if (results.size() >= wanted)
+			{
+				break;
+			}
+			if (!seen.add(candidate) || !inAll(tokenFilters, candidate))
+			{
+				continue;
+			}
+			SemanticChronology sc = Get.assemblageService().getSemanticChronology(candidate);
+			if (amp != null && !isAllowed(sc, amp))
+			{
+				continue;
+			}
+			LatestVersion<DescriptionVersion> latest = sc.getLatestVersion(stamp);
+			if (!latest.isPresent() || latest.get().getText() == null || !matches(tokenize(latest.get().getText()), tokens, lastIsPrefix))
+			{
+				continue;
+			}
+			if (applyStampToConcept && !memo.isNearestConceptPresent(sc.getReferencedComponentNid()))
+			{
+				continue;
+			}
+			if (filter != null && !filter.test(candidate))
+			{
+				continue;
+			}
+			results.add(new ComponentSearchResult(candidate, Math.min(1.0f, (float) queryLength / latest.get().getText().length())));
+		}
+
+		int skip = (pageNum - 1) * maxPageSize;
+		return skip >= results.size() ? new ArrayList<>() : new ArrayList<>(results.subList(skip, results.size()));
+	}
+
+	private static boolean inAll(List<int[]> tokenFilters, int nid)
+	{
+		for (int[] nids : tokenFilters)
+		{
+			if (Arrays.binarySearch(nids, nid) < 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAllowed(SemanticChronology sc, AuthorModulePathRestriction amp)
+	{
+		boolean author = amp.getAuthors() == null || amp.getAuthors().isEmpty();
+		boolean module = amp.getModules() == null || amp.getModules().isEmpty();
+		boolean path = amp.getPaths() == null || amp.getPaths().isEmpty();
+		for (Version v : sc.getVersionList())
+		{
+			author = author || amp.getAuthors().contains(v.getAuthorNid());
+			module = module || amp.getModules().contains(v.getModuleNid());
+			path = path || amp.getPaths().contains(v.getPathNid());
+		}
+		return author && module && path;
+	}
+
+	/**
+	 * @param textTerms the terms of a text, as returned by {@link #tokenize(String)}
+	 * @param tokens the terms of a query, as returned by {@link #tokenize(String)}
+	 * @param lastIsPrefix true, if the last token of the query may match the start of a term
+	 * @return true, if every token of the query is found among the terms of the text
+	 */
+	public static boolean matches(String[] textTerms, String[] tokens, boolean lastIsPrefix)
+	{
+		for (int t = 0; t < tokens.length; t++)
+		{
+			boolean prefix = lastIsPrefix && t == tokens.length - 1;
+			boolean found = false;
+			for (String term : textTerms)
+			{
+				if (prefix ? term.startsWith(tokens[t]) : term.equals(tokens[t]))
+				{
+					found = true;
+					break;
+				}
+			}
+			if (!found)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the language of a description, or 0, if it has no versions
+	 */
+	private static int getLanguageNid(SemanticChronology sc)
+	{
+		List<? extends Version> versions = sc.getVersionList();
+		return versions.isEmpty() ? 0 : ((DescriptionVersion) versions.get(0)).getLanguageConceptNid();
+	}
+
+	/**
+	 * @return every description, from every description assemblage.  The descriptions aren't stored under their language concept, so the 
+	 *     descriptions of a language can only be found by reading them all.
+	 */
+	private static Stream<SemanticChronology> getAllDescriptions()
+	{
+		Set<Integer> assemblages = new HashSet<>(Frills.getAllChildrenOfConcept(MetaData.DESCRIPTION_ASSEMBLAGE____SOLOR.getNid(), true, false, null));
+		assemblages.add(MetaData.DESCRIPTION_ASSEMBLAGE____SOLOR.getNid());
+		return assemblages.stream().flatMap(assemblageNid -> Get.assemblageService().getSemanticChronologyStream(assemblageNid))
+				.filter(sc -> sc.getVersionType() == VersionType.DESCRIPTION);
+	}
+
+	/**
+	 * Rebuild the base index of the passed languages, from a single pass over the descriptions.
+	 */
+	private void rebuild(Collection<LanguageIndex> toBuild)
+	{
+		synchronized (rebuildLock_)
+		{
+			long start = System.currentTimeMillis();
+			Map<Integer, Map<String, Postings>> postings = new HashMap<>();
+			Map<Integer, Set<Integer>> folded = new HashMap<>();
+			for (LanguageIndex li : toBuild)
+			{
+				li.rebuildQueued = false;
+				postings.put(li.languageNid, new HashMap<>());
+				// Anything committed while this runs stays in the delta
+				folded.put(li.languageNid, new HashSet<>(li.deltaNids));
+			}
+
+			getAllDescriptions().forEach(sc -> 
+			{
+				Map<String, Postings> languagePostings = postings.get(getLanguageNid(sc));
+				if (languagePostings != null)
+				{
+					TermIndex.addDescription(sc, languagePostings);
+				}
+			});
+
+			for (LanguageIndex li : toBuild)
+			{
+				TermIndex base = TermIndex.build(postings.remove(li.languageNid));
+				synchronized (li)
+				{
+					li.base = base;
+					li.deltaNids.removeAll(folded.get(li.languageNid));
+					li.delta = buildDelta(li);
+				}
+				log.info("Built the type-ahead index for language {} with {} terms and {} postings in {}ms", li.languageNid, 
+						base.terms.length, base.nids.length, System.currentTimeMillis() - start);
+			}
+		}
+	}
+
+	private TermIndex buildDelta(LanguageIndex li)
+	{
+		return TermIndex.build(li.deltaNids.stream().map(nid -> Get.assemblageService().getSemanticChronology(nid)));
+	}
+
+	private void updateDelta(LanguageIndex li)
+	{
+		synchronized (li)
+		{
+			if (li.base == null)
+			{
+				// The initial build hasn't finished, the delta will be built at the end of it
+				return;
+			}
+			if (li.deltaNids.size() > MAX_DELTA)
+			{
+				if (!li.rebuildQueued)
+				{
+					li.rebuildQueued = true;
+					Get.workExecutors().getExecutor().execute(() -> rebuild(Collections.singletonList(li)));
+				}
+				return;
+			}
+			li.delta = buildDelta(li);
+		}
+	}
+
+	@Override
+	public UUID getListenerUuid()
+	{
+		return LISTENER_UUID;
+	}
+
+	@Override
+	public void handleChange(ConceptChronology cc)
+	{
+		// Only committed descriptions are indexed
+	}
+
+	@Override
+	public void handleChange(SemanticChronology sc)
+	{
+		// Only committed descriptions are indexed
+	}
+
+	@Override
+	public void handleCommit(CommitRecord commitRecord)
+	{
+		if (languages_.isEmpty())
+		{
+			return;
+		}
+		Get.workExecutors().getExecutor().execute(() -> 
+		{
+			Set<LanguageIndex> changed = new HashSet<>();
+			commitRecord.getSemanticNidsInCommit().stream().forEach(nid -> 
+			{
+				SemanticChronology sc = Get.assemblageService().getSemanticChronology(nid);
+				if (sc.getVersionType() == VersionType.DESCRIPTION)
+				{
+					// Keyed the same as the full build - by the language of the description, not the assemblage it is stored in
+					LanguageIndex li = languages_.get(getLanguageNid(sc));
+					if (li != null)
+					{
+						li.deltaNids.add(nid);
+						changed.add(li);
+					}
+				}
+			});
+			for (LanguageIndex li : changed)
+			{
+				updateDelta(li);
+			}
+		});
+	}
+
+	@PostConstruct
+	public void construct()
+	{
+		for (String language : RestConfig.getInstance().getTypeAheadLanguages())
+		{
+			try
+			{
+				int languageNid = CoordinatesUtil.getLanguageCoordinateLanguageNidFromParameter(Arrays.asList(language), Optional.empty());
+				languages_.put(languageNid, new LanguageIndex(languageNid));
+			}
+			catch (RestException e)
+			{
+				log.warn("Ignoring the unknown type-ahead language '{}'", language);
+			}
+		}
+		if (!languages_.isEmpty())
+		{
+			List<LanguageIndex> toBuild = new ArrayList<>(languages_.values());
+			Get.workExecutors().getExecutor().execute(() -> rebuild(toBuild));
+		}
+		Get.commitService().addChangeListener(this);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		Get.commitService().removeChangeListener(this);
+		languages_.clear();
+	}
+}
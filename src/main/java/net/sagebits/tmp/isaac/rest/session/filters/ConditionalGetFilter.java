@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session.filters;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.ext.Provider;
+import net.sagebits.tmp.isaac.rest.api1.RestPaths;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.ResponseFormatFilter;
+import net.sagebits.tmp.isaac.rest.session.ChangeSequenceService;
+import net.sagebits.tmp.isaac.rest.session.MetadataSnapshotService;
+import net.sagebits.tmp.isaac.rest.session.RequestInfo;
+import net.sagebits.tmp.isaac.rest.session.RequestParameters;
+import net.sagebits.tmp.isaac.rest.session.RestConfig;
+import sh.isaac.api.LookupService;
+
+/**
+ * {@link ConditionalGetFilter}
+ *
+ * Gives the concept and taxonomy GET calls, and the system metadata calls that are not answered from the {@link MetadataSnapshotService}, 
+ * an ETag, built from the {@link ChangeSequenceService} sequence and a SHA-256 digest of the coordinates token, the expand and altId 
+ * parameters, the request URI and the response format, and a Last-Modified of the last change to the database.  The metadata calls that 
+ * are answered from the snapshots get their ETags from the snapshot instead, so each call has only one kind of ETag.
+ * 
+ * A request with an If-None-Match header that matches (or an If-Modified-Since that is not older than the last change)
+ * is answered with a 304 before the resource method runs - the ETag is only valid until the next change to 
+ * the database, so the check is cheap, but unchanged data is not re-sent.
+ * 
+ * Responses for a stamp coordinate with a fixed time also get a private Cache-Control max-age, as they don't change when new content is 
+ * committed - responses for the latest time must be revalidated.  The max-age is private - the calls require an authenticated user, so 
+ * a shared cache must not hand the response to other clients.
+ * 
+ * Runs after the {@link RestContainerRequestFilter} and the role checks, so an unauthorized request never gets a 304.
+ */
+@Priority(Priorities.USER)
+@Provider
+public class ConditionalGetFilter implements ContainerRequestFilter
+{
+	/**
+	 * The sequence restarts with the server, this keeps the ETags from one run from matching the next
+	 */
+	public static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+	// The system calls that only read metadata, and are not answered from the MetadataSnapshotService, which tags its own responses
+	private static final String[] METADATA_CALLS = new String[] {RestPaths.sctTerminologyTypes};
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		if (!HttpMethod.GET.equals(requestContext.getMethod()) || !isCacheable(requestContext.getUriInfo().getPath(true)))
+		{
+			return;
+		}
+
+		RequestInfo ri = RequestInfo.get();
+		ChangeSequenceService changes = LookupService.getService(ChangeSequenceService.class);
+		// HTTP dates are in whole seconds
+		Date lastModified = new Date((changes.getLastChangeTime() / 1000) * 1000);
+		EntityTag etag = new EntityTag(EPOCH + "-" + Long.toString(changes.getSequence(), 36) + "-" 
+				+ digest(ri.getCoordinatesToken().getSerialized(), ri.getParameters().get(RequestParameters.expand),
+						ri.getParameters().get(RequestParameters.altId), requestContext.getUriInfo().getRequestUri(), 
+						requestContext.getHeaderString(HttpHeaders.ACCEPT), ResponseFormatFilter.getFormat(requestContext)));
+
+		CacheControl cacheControl = new CacheControl();
+		if (ri.getStampCoordinate().getStampPosition().getTime() == Long.MAX_VALUE)
+		{
+			cacheControl.setNoCache(true);
+		}
+		else
+		{
+			cacheControl.setPrivate(true);
+			cacheControl.setMaxAge(RestConfig.getInstance().getConditionalGetMaxAge());
+		}
+
+		requestContext.setProperty(EntityTagResponseFilter.ETAG_PROPERTY, etag);
+		requestContext.setProperty(EntityTagResponseFilter.CACHE_CONTROL_PROPERTY, cacheControl);
+		requestContext.setProperty(EntityTagResponseFilter.LAST_MODIFIED_PROPERTY, lastModified);
+
+		ResponseBuilder precondition = requestContext.getRequest().evaluatePreconditions(lastModified, etag);
+		if (precondition != null)
+		{
+			requestContext.abortWith(precondition.tag(etag).lastModified(lastModified).cacheControl(cacheControl).build());
+		}
+	}
+
+	/**
+	 * @return the URL safe base64 of the SHA-256 digest of the parts - each part is terminated, and a null part is marked, so that 
+	 *     adjacent parts don't run together
+	 */
+	public static String digest(Object ... parts)
+	{
+		try
+		{
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			for (Object part : parts)
+			{
+				if (part == null)
+				{
+					md.update((byte) 1);
+				}
+				else
+				{
+					md.update(part.toString().getBytes(StandardCharsets.UTF_8));
+					md.update((byte) 0);
+				}
+			}
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private boolean isCacheable(String path)
+	{
+		if (path.startsWith(RestPaths.conceptAPIsPathComponent) || path.startsWith(RestPaths.taxonomyAPIsPathComponent))
+		{
+			return true;
+		}
+		if (path.startsWith(RestPaths.systemAPIsPathComponent))
+		{
+			String call = path.substring(RestPaths.systemAPIsPathComponent.length());
+			for (String metadataCall : METADATA_CALLS)
+			{
+				// The components end with a '/', which the request may leave off
+				if (call.startsWith(metadataCall.substring(0, metadataCall.length() - 1)))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
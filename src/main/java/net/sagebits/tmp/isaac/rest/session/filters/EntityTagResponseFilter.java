@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session.filters;
+
+import java.io.IOException;
+import java.util.Date;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * {@link EntityTagResponseFilter}
+ *
+ * Adds the ETag header to a successful response, when the resource method (or the {@link ConditionalGetFilter}) stored an {@link EntityTag} 
+ * for the response in the {@link #ETAG_PROPERTY} property of the request, and the Cache-Control header, when a {@link CacheControl} 
+ * was stored in the {@link #CACHE_CONTROL_PROPERTY} property, and the Last-Modified header, when a {@link Date} was stored in the 
+ * {@link #LAST_MODIFIED_PROPERTY} property.
+ */
+@Provider
+public class EntityTagResponseFilter implements ContainerResponseFilter
+{
+	public static final String ETAG_PROPERTY = "net.sagebits.tmp.isaac.rest.etag";
+	public static final String CACHE_CONTROL_PROPERTY = "net.sagebits.tmp.isaac.rest.cacheControl";
+	public static final String LAST_MODIFIED_PROPERTY = "net.sagebits.tmp.isaac.rest.lastModified";
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException
+	{
+		if (responseContext.getStatus() != Status.OK.getStatusCode())
+		{
+			return;
+		}
+		Object etag = requestContext.getProperty(ETAG_PROPERTY);
+		if (etag instanceof EntityTag)
+		{
+			responseContext.getHeaders().putSingle(HttpHeaders.ETAG, etag);
+		}
+		Object cacheControl = requestContext.getProperty(CACHE_CONTROL_PROPERTY);
+		if (cacheControl instanceof CacheControl)
+		{
+			responseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, cacheControl);
+		}
+		Object lastModified = requestContext.getProperty(LAST_MODIFIED_PROPERTY);
+		if (lastModified instanceof Date)
+		{
+			responseContext.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, lastModified);
+		}
+	}
+}
@@ -61,7 +61,7 @@ import net.sagebits.uts.auth.rest.session.AuthRequestParameters;
  *
  * @author <a href="mailto:joel.kniaz.list@gmail.com">Joel Kniaz</a>
  *
- * Initializes RequestInfo ThreadLocal if necessary and initializes StampCoordinate and LanguageCoordinate based on intercepted 
+ * Starts the RequestInfo for the request, and initializes StampCoordinate and LanguageCoordinate based on intercepted 
  * query parameters, or default values if no relevant parameters are present.
  * 
  * Priority is set to Priorities.AUTHENTICATION - 1000 to ensure that this filter is run before other user filters, and puts 
@@ -110,8 +110,9 @@ public class RestContainerRequestFilter implements ContainerRequestFilter
 	@Override
 	public void filter(ContainerRequestContext requestContext) throws IOException
 	{
+		// Start the request info for this request - this also sets the start time of the request, and the context
+		RequestInfo.begin(requestContext);
 		LOG.debug("{} - Running filter on request {} {}", RequestInfo.get().getUniqueId(), requestContext.getRequest().getMethod(), requestContext.getUriInfo().getPath(true));
-		RequestInfo.get().setContext(requestContext);  // Just setting the start time of the request, and the context
 		if (requestContext.getUriInfo().getPathParameters().size() > 0)
 		{
 			LOG.debug("{} - Path parameters: {}", RequestInfo.get().getUniqueId(), requestContext.getUriInfo().getPathParameters().keySet());
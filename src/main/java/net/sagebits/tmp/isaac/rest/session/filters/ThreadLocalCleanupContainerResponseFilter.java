@@ -46,7 +46,8 @@ import net.sagebits.tmp.isaac.rest.session.RequestInfo;
  *
  * @author <a href="mailto:joel.kniaz.list@gmail.com">Joel Kniaz</a>
  *
- *         Filter that resets RequestInfo state in ThreadLocal after handling a client request
+ *         Filter that ends the RequestInfo of the request, and unbinds it from the thread, after handling a client request.
+ *         For asynchronous requests, this runs on the thread that completed the response.
  *         Priority is set to 9999 to increase likelihood that cleanup will be performed only after all other filters execute
  * 
  */
@@ -65,7 +66,7 @@ public class ThreadLocalCleanupContainerResponseFilter implements ContainerRespo
 	{
 		try
 		{
-			RequestInfo ri = RequestInfo.remove();
+			RequestInfo ri = RequestInfo.end(requestContext);
 			long time = System.currentTimeMillis() - ri.getCreateTime();
 			if (time > 2000)
 			{
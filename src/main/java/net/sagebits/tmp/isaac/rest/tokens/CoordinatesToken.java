@@ -37,6 +37,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import net.sagebits.tmp.isaac.rest.ApplicationConfig;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.uts.auth.data.TokenHmac;
 import sh.isaac.MetaData;
 import sh.isaac.api.Status;
 import sh.isaac.api.bootstrap.TermAux;
@@ -67,7 +68,16 @@ public class CoordinatesToken
 {
 	private static final transient Logger log = LogManager.getLogger(CoordinatesToken.class);
 
-	private static final byte tokenVersion = 1;
+	private static final byte tokenVersion = 2;
+	
+	/**
+	 * The {@link TokenHmac} domain of coordinates tokens - the SSO tokens are signed with the same secret
+	 */
+	public static final String MAC_DOMAIN = "coord";
+
+	// Version 1 tokens were verified with a many-round hash, which was far too expensive to do on every request.  They are still
+	// accepted (and re-issued as version 2) for now, so that clients holding an old token don't break.
+	private static final byte legacyTokenVersion = 1;
 	private static final int hashRounds = 128;
 	private static final int hashLength = 64;
 	private static final int encodedHashLength = (int) Math.ceil(hashLength / 8f / 3f) * 4;  // http://stackoverflow.com/a/4715480
@@ -181,24 +191,45 @@ public class CoordinatesToken
 	{
 		try
 		{
-			serialization = encodedData;
-
 			long time = System.currentTimeMillis();
-			String readHash = serialization.substring(0, encodedHashLength);
-			String calculatedHash = PasswordHasher.hash(serialization.substring(encodedHashLength, serialization.length()).toCharArray(), ApplicationConfig.getSecret(),
-					hashRounds, hashLength);
+			byte[] readBytes;
+			byte expectedVersion;
 
-			if (!readHash.equals(calculatedHash))
+			if (TokenHmac.isSigned(encodedData))
 			{
-				throw new RestException("Invalid coordinate token!");
+				try
+				{
+					readBytes = TokenHmac.verify(ApplicationConfig.getSecret(), MAC_DOMAIN, encodedData);
+				}
+				catch (SecurityException e)
+				{
+					throw new RestException("Invalid coordinate token!");
+				}
+				expectedVersion = tokenVersion;
+			}
+			else
+			{
+				if (encodedData.length() < encodedHashLength)
+				{
+					throw new RestException("Invalid coordinate token!");
+				}
+				String readHash = encodedData.substring(0, encodedHashLength);
+				String calculatedHash = PasswordHasher.hash(encodedData.substring(encodedHashLength, encodedData.length()).toCharArray(),
+						ApplicationConfig.getSecret(), hashRounds, hashLength);
+
+				if (!readHash.equals(calculatedHash))
+				{
+					throw new RestException("Invalid coordinate token!");
+				}
+				readBytes = Base64.getUrlDecoder().decode(encodedData.substring(encodedHashLength, encodedData.length()));
+				expectedVersion = legacyTokenVersion;
 			}
 
-			byte[] readBytes = Base64.getUrlDecoder().decode(serialization.substring(encodedHashLength, serialization.length()));
 			ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(readBytes);
 			byte version = buffer.getByte();
-			if (version != tokenVersion)
+			if (version != expectedVersion)
 			{
-				log.warn("Expected token version " + tokenVersion + " but read " + version);
+				log.warn("Expected token version " + expectedVersion + " but read " + version);
 				throw new RestException("Invalid token - old token?");
 			}
 			stampTime = buffer.getLong();
@@ -233,6 +264,13 @@ public class CoordinatesToken
 			logicInferredAssemblage = buffer.getInt();
 			logicDescLogicProfile = buffer.getInt();
 			logicClassifier = buffer.getInt();
+			if (buffer.getPosition() != readBytes.length)
+			{
+				throw new RestException("Invalid coordinate token length");
+			}
+
+			// Legacy tokens are handed back to the caller in the current format, so they stop paying for the legacy check.
+			serialization = version == tokenVersion ? encodedData : serialize(this);
 
 			log.debug("token decode time " + (System.currentTimeMillis() - time) + "ms");
 		}
@@ -331,6 +369,20 @@ public class CoordinatesToken
 		return NidSet.of(stampModules);
 	}
 
+	/**
+	 * @return a hash of the stamp components of this token.  Unlike the hash of a {@link StampCoordinate}, this is stable across 
+	 *     restarts, so it is suitable for embedding in values handed to callers.
+	 */
+	public int getStampHash()
+	{
+		int result = Long.hashCode(stampTime);
+		result = 31 * result + stampPath;
+		result = 31 * result + stampPrecedence;
+		result = 31 * result + Arrays.hashCode(stampModules);
+		result = 31 * result + Arrays.hashCode(stampStates);
+		return result;
+	}
+
 	/**
 	 * @return the stampStates
 	 */
@@ -419,8 +471,7 @@ public class CoordinatesToken
 	{
 		try
 		{
-			String data = Base64.getUrlEncoder().encodeToString(token.getBytesToWrite());
-			return PasswordHasher.hash(data.toCharArray(), ApplicationConfig.getSecret(), hashRounds, hashLength) + data;
+			return TokenHmac.sign(ApplicationConfig.getSecret(), MAC_DOMAIN, token.getBytesToWrite());
 		}
 		catch (Exception e)
 		{
@@ -30,11 +30,14 @@
 
 package net.sagebits.tmp.isaac.rest.tokens;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
-import net.sagebits.tmp.isaac.rest.session.CoordinatesUtil;
+import net.sagebits.tmp.isaac.rest.session.ConceptSummaryService;
+import net.sagebits.tmp.isaac.rest.session.CoordinatesParameterKey;
+import net.sagebits.tmp.isaac.rest.session.RestCaches;
+import net.sagebits.tmp.isaac.rest.session.RestConfig;
+import sh.isaac.api.LookupService;
 import sh.isaac.api.coordinate.LanguageCoordinate;
 import sh.isaac.api.coordinate.LogicCoordinate;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
@@ -53,53 +56,15 @@ import sh.isaac.model.configuration.StampCoordinates;
  */
 public class CoordinatesTokens
 {
-	private final static Object OBJECT_BY_TOKEN_CACHE_LOCK = new Object();
-	private final static Object TOKEN_BY_PARAMS_CACHE_LOCK = new Object();
-
-	private static final int DEFAULT_MAX_SIZE = 1024;
 	private static volatile CoordinatesToken defaultCoordinatesToken = null;
-	private static Map<String, CoordinatesToken> OBJECT_BY_TOKEN_CACHE = null;
-	private static Map<String, String> TOKEN_BY_PARAMS_CACHE = null;
-
-	private static void init(final int maxEntries)
-	{
-		synchronized (TOKEN_BY_PARAMS_CACHE_LOCK)
-		{
-			synchronized (OBJECT_BY_TOKEN_CACHE_LOCK)
-			{
-				if (OBJECT_BY_TOKEN_CACHE == null)
-				{
-					OBJECT_BY_TOKEN_CACHE = new LinkedHashMap<String, CoordinatesToken>(maxEntries, 0.75F, true)
-					{
-						private static final long serialVersionUID = -1236481390177598762L;
-
-						@Override
-						protected boolean removeEldestEntry(Map.Entry<String, CoordinatesToken> eldest)
-						{
-							return size() > maxEntries;
-						}
-					};
 
-					ManifoldCoordinate mc = getDefaultManifoldCoordinate();
-					defaultCoordinatesToken = CoordinatesTokens.getOrCreate(mc.getStampCoordinate(),
-							mc.getLanguageCoordinate(), mc.getLogicCoordinate(),mc.getTaxonomyPremiseType());
-				}
-			}
-			if (TOKEN_BY_PARAMS_CACHE == null)
-			{
-				TOKEN_BY_PARAMS_CACHE = new LinkedHashMap<String, String>(maxEntries, 0.75F, true)
-				{
-					private static final long serialVersionUID = -2638577900934193146L;
-
-					@Override
-					protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
-					{
-						return size() > maxEntries;
-					}
-				};
-			}
-		}
-	}
+	// Nearly every request goes through these caches, so they must not contend on a lock when reading.
+	// From the encoded token string to the decoded token
+	private static final Cache<String, CoordinatesToken> OBJECT_BY_TOKEN_CACHE = RestCaches.register("coordinatesTokenByToken",
+			Caffeine.newBuilder().maximumSize(RestConfig.getInstance().getCoordinateTokenCacheSize()).recordStats().build());
+	// From the encoded coordinate parameters to the encoded token string
+	private static final Cache<CoordinatesParameterKey, String> TOKEN_BY_PARAMS_CACHE = RestCaches.register("coordinatesTokenByParameters",
+			Caffeine.newBuilder().maximumSize(RestConfig.getInstance().getCoordinateTokenCacheSize()).recordStats().build());
 
 	private static ManifoldCoordinate getDefaultManifoldCoordinate()
 	{
@@ -108,21 +73,17 @@ public class CoordinatesTokens
 	}
 
 	/**
-	 * This may need to be cleared after loading new content at runtime, due to language types having dynamic expansion
+	 * This may need to be cleared after loading new content at runtime, due to language types having dynamic expansion.  The concept 
+	 * summaries, which are held for the default coordinates, are dropped as well.
 	 */
 	public static void clearCache()
 	{
-		synchronized (OBJECT_BY_TOKEN_CACHE_LOCK)
-		{
-			OBJECT_BY_TOKEN_CACHE.clear();
-		}
-		synchronized (TOKEN_BY_PARAMS_CACHE_LOCK)
-		{
-			TOKEN_BY_PARAMS_CACHE.clear();
-		}
+		OBJECT_BY_TOKEN_CACHE.invalidateAll();
+		TOKEN_BY_PARAMS_CACHE.invalidateAll();
 		defaultCoordinatesToken = CoordinatesTokens.getOrCreate(getDefaultManifoldCoordinate().getStampCoordinate(),
 				getDefaultManifoldCoordinate().getLanguageCoordinate(), getDefaultManifoldCoordinate().getLogicCoordinate(),
 				getDefaultManifoldCoordinate().getTaxonomyPremiseType());
+		LookupService.getService(ConceptSummaryService.class).clearDefaults();
 	}
 	
 	/**
@@ -130,9 +91,11 @@ public class CoordinatesTokens
 	 */
 	public static CoordinatesToken getDefaultCoordinatesToken()
 	{
-		if (OBJECT_BY_TOKEN_CACHE == null)
+		if (defaultCoordinatesToken == null)
 		{
-			init(DEFAULT_MAX_SIZE);
+			ManifoldCoordinate mc = getDefaultManifoldCoordinate();
+			defaultCoordinatesToken = CoordinatesTokens.getOrCreate(mc.getStampCoordinate(), mc.getLanguageCoordinate(), mc.getLogicCoordinate(),
+					mc.getTaxonomyPremiseType());
 		}
 
 		return defaultCoordinatesToken;
@@ -148,36 +111,20 @@ public class CoordinatesTokens
 	 */
 	private static void put(CoordinatesToken value)
 	{
-		if (OBJECT_BY_TOKEN_CACHE == null)
-		{
-			init(DEFAULT_MAX_SIZE);
-		}
-
-		synchronized (OBJECT_BY_TOKEN_CACHE_LOCK)
-		{
-			OBJECT_BY_TOKEN_CACHE.put(value.getSerialized(), value);
-		}
+		OBJECT_BY_TOKEN_CACHE.put(value.getSerialized(), value);
 	}
 
 	/**
 	 * 
-	 * This method caches a CoordinatesToken object by the provided key
-	 * and also caching the key by a hash of the parameters presumably
-	 * used to generate the object
+	 * This method caches the serialized CoordinatesToken by the coordinate
+	 * parameters presumably used to generate the object
 	 * 
-	 * @param params parameter name to value-list map provided in UriInfo by ContainerRequestContext
+	 * @param params the canonical coordinate parameters of the request
 	 * @param value CoordinatesToken object
 	 */
-	public static void put(Map<String, List<String>> params, CoordinatesToken value)
+	public static void put(CoordinatesParameterKey params, CoordinatesToken value)
 	{
-		if (OBJECT_BY_TOKEN_CACHE == null)
-		{
-			init(DEFAULT_MAX_SIZE);
-		}
-		synchronized (TOKEN_BY_PARAMS_CACHE_LOCK)
-		{
-			TOKEN_BY_PARAMS_CACHE.put(CoordinatesUtil.encodeCoordinateParameters(params), value.getSerialized());
-		}
+		TOKEN_BY_PARAMS_CACHE.put(params, value.getSerialized());
 	}
 
 	/**
@@ -186,21 +133,20 @@ public class CoordinatesTokens
 	 * corresponding to the passed serialized CoordinatesToken string key.
 	 * 
 	 * @param key serialized CoordinatesToken string
-	 * @return CoordinatesToken object
-	 * @throws Exception
+	 * @return CoordinatesToken object, or null, if not cached
 	 */
 	private static CoordinatesToken get(String key)
 	{
-		if (OBJECT_BY_TOKEN_CACHE == null)
-		{
-			init(DEFAULT_MAX_SIZE);
-		}
-		synchronized (OBJECT_BY_TOKEN_CACHE_LOCK)
-		{
-			return OBJECT_BY_TOKEN_CACHE.get(key);
-		}
+		return OBJECT_BY_TOKEN_CACHE.getIfPresent(key);
 	}
 
+	/**
+	 * Return the cached, decoded token for the passed serialization, decoding (and verifying) and caching it if necessary.
+	 * 
+	 * @param key serialized CoordinatesToken string
+	 * @return CoordinatesToken object
+	 * @throws RestException if the token isn't valid
+	 */
 	public static CoordinatesToken getOrCreate(String key) throws RestException
 	{
 		CoordinatesToken token = get(key);
@@ -208,10 +154,15 @@ public class CoordinatesTokens
 		if (token == null)
 		{
 			token = new CoordinatesToken(key);
-			put(token);
+			OBJECT_BY_TOKEN_CACHE.put(key, token);
+			if (!key.equals(token.getSerialized()))
+			{
+				// A legacy token, which was re-issued in the current format - cache it under both.
+				put(token);
+			}
 		}
 
-		return get(key);
+		return token;
 	}
 
 	public static CoordinatesToken getOrCreate(StampCoordinate stamp, LanguageCoordinate lang, LogicCoordinate logic, PremiseType taxType)
@@ -226,7 +177,7 @@ public class CoordinatesTokens
 			put(cachedToken);
 		}
 
-		return get(cachedToken.getSerialized());
+		return cachedToken;
 	}
 
 	public static CoordinatesToken getOrCreate(long stampTime, int stampPath, byte stampPrecedence, int[] stampModules, byte[] stampStates, int langCoord,
@@ -245,32 +196,18 @@ public class CoordinatesTokens
 			put(cachedToken);
 		}
 
-		return get(cachedToken.getSerialized());
+		return cachedToken;
 	}
 
 	/**
 	 * Attempt to retrieve CoordinatesToken serialization key string
-	 * by a hash of the parameters presumably used to generate the object
+	 * by the coordinate parameters presumably used to generate the object
 	 * 
-	 * @param params parameter name to value-list map provided in UriInfo by ContainerRequestContext
-	 * @return the serialized token
+	 * @param params the canonical coordinate parameters of the request
+	 * @return the serialized token, or null, if not cached
 	 */
-	public static String get(Map<String, List<String>> params)
+	public static String get(CoordinatesParameterKey params)
 	{
-		if (OBJECT_BY_TOKEN_CACHE == null)
-		{
-			return null;
-		}
-		else
-		{
-			synchronized (TOKEN_BY_PARAMS_CACHE_LOCK)
-			{
-				if (TOKEN_BY_PARAMS_CACHE != null)
-				{
-					return TOKEN_BY_PARAMS_CACHE.get(CoordinatesUtil.encodeCoordinateParameters(params));
-				}
-				return null;
-			}
-		}
+		return TOKEN_BY_PARAMS_CACHE.getIfPresent(params);
 	}
 }
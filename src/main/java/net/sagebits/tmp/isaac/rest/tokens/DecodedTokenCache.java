@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.tokens;
+
+import java.util.concurrent.TimeUnit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.sagebits.tmp.isaac.rest.session.RestCaches;
+import net.sagebits.tmp.isaac.rest.session.RestConfig;
+
+/**
+ * {@link DecodedTokenCache}
+ *
+ * A single cache, shared by the SSO and edit tokens, from the encoded token string to the decoded token - so that a token which is 
+ * passed on every request of a session is only verified and decoded once.  Entries are only ever added after a successful decode,
+ * but callers must still check the expiry of the token they get back, as it may have expired since it was decoded.
+ */
+public class DecodedTokenCache
+{
+	// Neither token type is valid for more than an hour after it was issued or renewed
+	private static final Cache<String, Object> CACHE = RestCaches.register("decodedTokens",
+			Caffeine.newBuilder().maximumSize(RestConfig.getInstance().getDecodedTokenCacheSize()).expireAfterWrite(1, TimeUnit.HOURS)
+				.recordStats().build());
+
+	private DecodedTokenCache()
+	{
+	}
+
+	/**
+	 * @param encodedToken the encoded token string
+	 * @param type the type of token expected
+	 * @return the decoded token, if one of the expected type is cached for the string, otherwise null
+	 */
+	public static <T> T get(String encodedToken, Class<T> type)
+	{
+		Object token = CACHE.getIfPresent(encodedToken);
+		return type.isInstance(token) ? type.cast(token) : null;
+	}
+
+	/**
+	 * @param encodedToken the encoded token string
+	 * @param token the successfully decoded token
+	 */
+	public static void put(String encodedToken, Object token)
+	{
+		CACHE.put(encodedToken, token);
+	}
+
+	/**
+	 * @param encodedToken the encoded token string, which is no longer valid
+	 */
+	public static void invalidate(String encodedToken)
+	{
+		CACHE.invalidate(encodedToken);
+	}
+}
@@ -32,10 +32,7 @@ package net.sagebits.tmp.isaac.rest.tokens;
 
 import java.security.SecureRandom;
 import java.util.Base64;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +40,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.uts.auth.data.TokenHmac;
 import net.sagebits.uts.auth.rest.api1.data.RestUser;
 import sh.isaac.api.Get;
 import sh.isaac.api.coordinate.EditCoordinate;
@@ -61,6 +59,14 @@ public class EditToken
 	private static final Logger log = LogManager.getLogger(EditToken.class);
 
 	private static final byte tokenVersion = 2;
+	// version, increment, increment time, author, module, path
+	private static final int tokenLength = 1 + 4 + 8 + 4 + 4 + 4;
+	
+	/**
+	 * The {@link TokenHmac} domain of edit tokens
+	 */
+	public static final String MAC_DOMAIN = "edit";
+	// The many-round hash of the tokens issued before the switch to HMAC signing - still checked when one of those is read
 	private static final int hashRounds = 2048;
 	private static final int hashLength = 64;
 	private static final int encodedHashLength = (int) Math.ceil(hashLength / 8f / 3f) * 4;  // http://stackoverflow.com/a/4715480
@@ -74,18 +80,6 @@ public class EditToken
 	// when an edit token comes in that is older than an hour, it is invalid, and they must request a new one.
 	private static final long tokenMaxAge = 1000l * 60l * 60l;
 
-	// A cache from the encoded EditToken string to the decoded EditToken object - used to allow us to skip the decode steps.
-	private static final Map<String, EditToken> EDIT_TOKEN_LOOKUP_CACHE = Collections.synchronizedMap(new LinkedHashMap<String, EditToken>(100, 0.75F, true)
-	{
-		private static final long serialVersionUID = -1236481390177598762L;
-
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<String, EditToken> eldest)
-		{
-			return size() > 100;
-		}
-	});
-
 	/**
 	 * @param encodedEditToken The string produced from a call to {@link #getSerialized()}
 	 * @return the EditToken object
@@ -93,12 +87,19 @@ public class EditToken
 	 */
 	public static EditToken read(String encodedEditToken) throws Exception
 	{
-		EditToken et = EDIT_TOKEN_LOOKUP_CACHE.get(encodedEditToken);
+		// The cache lets us skip the decode steps
+		EditToken et = DecodedTokenCache.get(encodedEditToken, EditToken.class);
 
+		if (et != null && (System.currentTimeMillis() - et.incrementTime) > tokenMaxAge)
+		{
+			// Let the decode report it as expired
+			DecodedTokenCache.invalidate(encodedEditToken);
+			et = null;
+		}
 		if (et == null)
 		{
 			et = new EditToken(encodedEditToken);
-			EDIT_TOKEN_LOOKUP_CACHE.put(et.getSerialized(), et);
+			DecodedTokenCache.put(et.getSerialized(), et);
 		}
 		return et;
 	}
@@ -148,25 +149,37 @@ public class EditToken
 		try
 		{
 			long time = System.currentTimeMillis();
-			if (encodedData.length() < encodedHashLength)
+			byte[] readBytes;
+			if (TokenHmac.isSigned(encodedData))
 			{
-				throw new SecurityException("Invalid edit token");
+				readBytes = TokenHmac.verify(getSecret(), MAC_DOMAIN, encodedData);
 			}
-			String readHash = encodedData.substring(0, encodedHashLength);
-			String calculatedHash = PasswordHasher.hash(encodedData.substring(encodedHashLength, encodedData.length()).toCharArray(), getSecret(), hashRounds, hashLength);
-
-			if (!readHash.equals(calculatedHash))
+			else
 			{
-				throw new SecurityException("Invalid edit token!");
-			}
+				if (encodedData.length() < encodedHashLength)
+				{
+					throw new SecurityException("Invalid edit token");
+				}
+				String readHash = encodedData.substring(0, encodedHashLength);
+				String calculatedHash = PasswordHasher.hash(encodedData.substring(encodedHashLength, encodedData.length()).toCharArray(), getSecret(), hashRounds, hashLength);
+
+				if (!readHash.equals(calculatedHash))
+				{
+					throw new SecurityException("Invalid edit token!");
+				}
 
-			byte[] readBytes = Base64.getUrlDecoder().decode(encodedData.substring(encodedHashLength, encodedData.length()));
+				readBytes = Base64.getUrlDecoder().decode(encodedData.substring(encodedHashLength, encodedData.length()));
+			}
 			ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(readBytes);
 			byte version = buffer.getByte();
 			if (version != tokenVersion)
 			{
 				throw new SecurityException("Expected token version " + tokenVersion + " but read " + version);
 			}
+			if (readBytes.length != tokenLength)
+			{
+				throw new SecurityException("Invalid edit token length");
+			}
 
 			increment = buffer.getInt();
 			incrementTime = buffer.getLong();
@@ -217,8 +230,7 @@ public class EditToken
 	{
 		try
 		{
-			String data = Base64.getUrlEncoder().encodeToString(getBytesToWrite());
-			return PasswordHasher.hash(data.toCharArray(), getSecret(), hashRounds, hashLength) + data;
+			return TokenHmac.sign(getSecret(), MAC_DOMAIN, getBytesToWrite());
 		}
 		catch (Exception e)
 		{
@@ -322,23 +334,23 @@ public class EditToken
 	 */
 	public EditToken renewToken()
 	{
-		EDIT_TOKEN_LOOKUP_CACHE.remove(getSerialized());
+		DecodedTokenCache.invalidate(getSerialized());
 		VALID_TOKENS.remove(increment);
 		increment = globalIncrement.incrementAndGet();
 		incrementTime = System.currentTimeMillis();
 		serialization = serialize();
-		EDIT_TOKEN_LOOKUP_CACHE.put(getSerialized(), this);
+		DecodedTokenCache.put(getSerialized(), this);
 		VALID_TOKENS.put(increment, incrementTime);
 		return this;
 	}
 
 	public void updateValues(int moduleNid, int pathNid)
 	{
-		EDIT_TOKEN_LOOKUP_CACHE.remove(getSerialized());
+		DecodedTokenCache.invalidate(getSerialized());
 		this.moduleNid = moduleNid;
 		this.pathNid = pathNid;
 		this.serialization = serialize();
-		EDIT_TOKEN_LOOKUP_CACHE.put(getSerialized(), this);
+		DecodedTokenCache.put(getSerialized(), this);
 	}
 
 	/**
@@ -52,8 +52,17 @@ public class SSOToken
 	private static final Logger log = LogManager.getLogger(SSOToken.class);
 	
 	public static final String cookieName = "ssoToken";
+	
+	/**
+	 * The {@link TokenHmac} domain of SSO tokens - the coordinates and edit tokens are signed with the same secret
+	 */
+	public static final String MAC_DOMAIN = "sso";
 
 	private static final byte tokenVersion = 2;
+	// version, create time, (version 2 only) logout count, user
+	private static final int version1Length = 1 + 8 + 16;
+	private static final int version2Length = 1 + 8 + 4 + 16;
+	// The many-round hash of the tokens issued before the switch to HMAC signing - still checked when one of those is read
 	private static final int hashRounds = 2048;
 	private static final int hashLength = 64;
 	private static final int encodedHashLength = (int) Math.ceil(hashLength / 8f / 3f) * 4;  // http://stackoverflow.com/a/4715480
@@ -71,6 +80,7 @@ public class SSOToken
 	
 	// Transient - non-serialized variables
 	private transient String serialization;
+	private transient long expireTime;  //when the token that was parsed (or created) expires
 	
 	//data actually put into the token
 	private long createTime;
@@ -87,6 +97,7 @@ public class SSOToken
 		this.createTime = System.currentTimeMillis();
 		this.userLogoutCount = userLogoutCount;
 		this.tokenForUser = userIdentity;
+		this.expireTime = createTime + tokenMaxAge;
 		this.serialization = serialize();
 	}
 
@@ -101,33 +112,46 @@ public class SSOToken
 		try
 		{
 			long time = System.currentTimeMillis();
-			if (encodedData.length() < encodedHashLength)
+			byte[] readBytes;
+			if (TokenHmac.isSigned(encodedData))
 			{
-				log.info("Invalid token {}, {} less than {}", encodedData, encodedData.length(), encodedHashLength);
-				throw new SecurityException("Invalid token");
+				readBytes = TokenHmac.verify(getSecret(), MAC_DOMAIN, encodedData);
 			}
-			String readHash = encodedData.substring(0, encodedHashLength);
-			String calculatedHash = PasswordHasher.hash(encodedData.substring(encodedHashLength, encodedData.length()).toCharArray(), getSecret(), hashRounds, hashLength);
-
-			if (!readHash.equals(calculatedHash))
+			else
 			{
-				log.info("Invalid token, {}, read hash: {} calculated hash: {}", encodedData, readHash, calculatedHash);
-				throw new SecurityException("Invalid token!");
-			}
+				if (encodedData.length() < encodedHashLength)
+				{
+					log.info("Invalid token {}, {} less than {}", encodedData, encodedData.length(), encodedHashLength);
+					throw new SecurityException("Invalid token");
+				}
+				String readHash = encodedData.substring(0, encodedHashLength);
+				String calculatedHash = PasswordHasher.hash(encodedData.substring(encodedHashLength, encodedData.length()).toCharArray(), getSecret(), hashRounds, hashLength);
+
+				if (!readHash.equals(calculatedHash))
+				{
+					log.info("Invalid token, {}, read hash: {} calculated hash: {}", encodedData, readHash, calculatedHash);
+					throw new SecurityException("Invalid token!");
+				}
 
-			byte[] readBytes = Base64.getUrlDecoder().decode(encodedData.substring(encodedHashLength, encodedData.length()));
+				readBytes = Base64.getUrlDecoder().decode(encodedData.substring(encodedHashLength, encodedData.length()));
+			}
 			ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(readBytes);
 			byte version = buffer.getByte();
 			if (version != tokenVersion && version != 1)
 			{
 				throw new SecurityException("Expected token version " + tokenVersion + " but read " + version);
 			}
+			if (readBytes.length != (version == 1 ? version1Length : version2Length))
+			{
+				throw new SecurityException("Invalid token length");
+			}
 
 			createTime = buffer.getLong();
 			if ((System.currentTimeMillis() - createTime) > tokenMaxAge)
 			{
 				throw new SecurityException("SSO Token Expired");
 			}
+			expireTime = createTime + tokenMaxAge;
 			if (version > 1)
 			{
 				userLogoutCount = buffer.getInt();
@@ -157,8 +181,7 @@ public class SSOToken
 	{
 		try
 		{
-			String data = Base64.getUrlEncoder().encodeToString(getBytesToWrite());
-			return PasswordHasher.hash(data.toCharArray(), getSecret(), hashRounds, hashLength) + data;
+			return TokenHmac.sign(getSecret(), MAC_DOMAIN, getBytesToWrite());
 		}
 		catch (Exception e)
 		{
@@ -190,6 +213,15 @@ public class SSOToken
 		return userLogoutCount;
 	}
 	
+	/**
+	 * @return true, if the token this object was parsed from (or the token created) is now too old to be accepted.  A parsed token may
+	 * be held on to, and checked with this, rather than parsing the same token string again.
+	 */
+	public boolean isExpired()
+	{
+		return System.currentTimeMillis() > expireTime;
+	}
+	
 	/**
 	 * @return The time this token was most recently parsed or created
 	 */
@@ -200,7 +232,7 @@ public class SSOToken
 
 	private byte[] getBytesToWrite()
 	{
-		ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(25);
+		ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(version2Length);
 		buffer.putByte(tokenVersion);
 		buffer.putLong(createTime);
 		buffer.putInt(userLogoutCount);
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.uts.auth.data;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link TokenHmac}
+ *
+ * Signs and verifies token payloads with a single HMAC-SHA256 pass. This replaces the many-round {@link sh.isaac.api.util.PasswordHasher}
+ * hash that the older token versions used for integrity checking - the payloads are not secret, we only need to know that we produced them,
+ * and a keyed MAC does that for the cost of two digest passes.
+ *
+ * Signed tokens take the form <code>payload.mac</code> - the '.' never occurs in either base64 alphabet, so it also lets the token
+ * readers tell a signed token apart from the older hash-prefixed formats.
+ * 
+ * The token types share a secret, so each signs under its own domain label, which is part of the mac input - a token of one type never
+ * verifies as a token of another, even where the payloads happen to line up.
+ * 
+ * Kept with the {@link SSOToken}, so that the auth code doesn't depend on the rest api - the edit and coordinates tokens use it from here.
+ */
+public final class TokenHmac
+{
+	private static final String ALGORITHM = "HmacSHA256";
+	public static final char SEPARATOR = '.';
+
+	// Mac instances are not thread safe, and looking up the provider on every call is wasteful
+	private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+		try
+		{
+			return Mac.getInstance(ALGORITHM);
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	});
+
+	private TokenHmac()
+	{
+	}
+
+	/**
+	 * @param encodedToken a token string
+	 * @return true, if the token string is in the signed format produced by {@link #sign(byte[], String, byte[])}
+	 */
+	public static boolean isSigned(String encodedToken)
+	{
+		return encodedToken != null && encodedToken.indexOf(SEPARATOR) >= 0;
+	}
+
+	/**
+	 * @param secret the key to sign with
+	 * @param domain the label of the token type, such as {@link SSOToken#MAC_DOMAIN}
+	 * @param payload the raw bytes to sign
+	 * @return the URL safe string <code>base64(payload).base64(mac)</code>
+	 */
+	public static String sign(byte[] secret, String domain, byte[] payload)
+	{
+		String data = Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+		return data + SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(mac(secret, domain, data));
+	}
+
+	/**
+	 * @param secret the key the token was signed with
+	 * @param domain the label of the token type expected
+	 * @param encodedToken a token produced by {@link #sign(byte[], String, byte[])}
+	 * @return the verified payload bytes
+	 * @throws SecurityException if the token is malformed, or the mac doesn't match - including a token signed for another domain
+	 */
+	public static byte[] verify(byte[] secret, String domain, String encodedToken) throws SecurityException
+	{
+		int split = encodedToken.lastIndexOf(SEPARATOR);
+		if (split <= 0 || split == encodedToken.length() - 1)
+		{
+			throw new SecurityException("Invalid token format");
+		}
+		String data = encodedToken.substring(0, split);
+		try
+		{
+			byte[] readMac = Base64.getUrlDecoder().decode(encodedToken.substring(split + 1));
+			if (!MessageDigest.isEqual(readMac, mac(secret, domain, data)))
+			{
+				throw new SecurityException("Invalid token signature");
+			}
+			return Base64.getUrlDecoder().decode(data);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new SecurityException("Invalid token encoding");
+		}
+	}
+
+	private static byte[] mac(byte[] secret, String domain, String data)
+	{
+		try
+		{
+			Mac mac = MAC.get();
+			mac.init(new SecretKeySpec(secret, ALGORITHM));
+			// The label can't contain the 0 byte, and the data is base64, so no label and data pair runs together into another
+			mac.update(domain.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			return mac.doFinal(data.getBytes(StandardCharsets.US_ASCII));
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ *
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.uts.auth.users;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LookupTimer}
+ *
+ * Counts the calls to one kind of user lookup, and their total and maximum time.  Recording doesn't contend between threads.
+ */
+public class LookupTimer
+{
+	private final String name_;
+	private final LongAdder count_ = new LongAdder();
+	private final LongAdder totalNanos_ = new LongAdder();
+	private final LongAccumulator maxNanos_ = new LongAccumulator(Math::max, 0);
+
+	LookupTimer(String name)
+	{
+		name_ = name;
+	}
+
+	/**
+	 * @param startNanos the {@link System#nanoTime()} at the start of the lookup
+	 */
+	void record(long startNanos)
+	{
+		long elapsed = System.nanoTime() - startNanos;
+		count_.increment();
+		totalNanos_.add(elapsed);
+		maxNanos_.accumulate(elapsed);
+	}
+
+	/**
+	 * @return the name of the lookup
+	 */
+	public String getName()
+	{
+		return name_;
+	}
+
+	/**
+	 * @return the number of lookups since startup
+	 */
+	public long getCount()
+	{
+		return count_.sum();
+	}
+
+	/**
+	 * @return the total time of the lookups since startup, in nanoseconds
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos_.sum();
+	}
+
+	/**
+	 * @return the longest single lookup since startup, in nanoseconds
+	 */
+	public long getMaxNanos()
+	{
+		return maxNanos_.get();
+	}
+}
@@ -30,24 +30,39 @@
 
 package net.sagebits.uts.auth.users;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import org.apache.commons.lang3.StringUtils;
@@ -71,6 +86,16 @@ import sh.isaac.provider.sync.git.SyncServiceGIT;
  * 
  * Our store of users.  
  * 
+ * The users are stored as a json snapshot (users.json), plus a log of the changes made since that snapshot (users.log), which gets 
+ * one line appended per change.  The log is compacted into a new snapshot in the background, once it grows past a size relative to 
+ * the number of users, and periodically.  Each snapshot is also written in binary form (users.bin), which is read at startup in 
+ * place of the json, so long as the json hasn't been replaced since (by a git pull, for example).  A compaction seals the log 
+ * (users.log.sealed) and starts a new one, then writes the snapshot without holding up further changes - the sealed log is deleted 
+ * once the snapshot is written, and replayed at startup if it is still there.
+ * 
+ * When git is configured, only the json snapshot is synced - the change log and the binary copy are ignored by git.  A burst of changes is
+ * compacted into a new snapshot, which is then committed and pushed, on a timer.  Merges with the remote keep the local snapshot, so only 
+ * one user service may write to a git repository - two would each overwrite the changes of the other.
  *
  * @author <a href="mailto:daniel.armbrust.list@gmail.com">Dan Armbrust</a>
  */
@@ -90,23 +115,56 @@ public class UserService
 	 */
 	public static final UUID AUTOMATED_USER = UUID.fromString("8e54759d-f727-4b49-8028-830e93f57d89");
 	
+	private static final String SNAPSHOT_FILE = "users.json";
+	private static final String BINARY_SNAPSHOT_FILE = "users.bin";
+	private static final String CHANGE_LOG_FILE = "users.log";
+	private static final String SEALED_LOG_FILE = CHANGE_LOG_FILE + ".sealed";
+	private static final String LOG_UPDATE = "U ";
+	private static final String LOG_REMOVE = "R ";
+	
+	//Compact once the log holds this many changes, or half as many changes as there are users, whichever is larger
+	private static final int COMPACT_MIN_CHANGES = 1000;
+	private static final long COMPACT_INTERVAL_MINUTES = 30;
+	private static final long GIT_SYNC_DELAY_SECONDS = 15;
+	
 	private final ConcurrentHashMap<UUID, User> users_ = new ConcurrentHashMap<>();
 	private final transient ConcurrentHashMap<String, UUID> uniqueUserName_ = new ConcurrentHashMap<>();
 	private final transient ConcurrentHashMap<String, UUID> uniqueEmail_ = new ConcurrentHashMap<>();
 	private final transient Set<UUID> usersWithServiceTokens_ = new ConcurrentHashMap<UUID, Boolean>().keySet(true);
 	private final transient ConcurrentHashMap<UUID, AtomicInteger> loginFailCount_ = new ConcurrentHashMap<>();
+	private final transient ConcurrentHashMap<UserRole, Set<UUID>> usersByGlobalRole_ = new ConcurrentHashMap<>();
+	//From a digest of a service token that validated, to the stored user object it validated against.  Only used while that 
+	//object is still the one in users_ - any change to the user replaces the object.
+	private final transient ConcurrentHashMap<String, User> userByServiceToken_ = new ConcurrentHashMap<>();
+	//users_ and the indexes above are only changed under this lock, so that they change together
+	private final transient Object indexLock_ = new Object();
+	
+	private final transient LookupTimer getUserTimer_ = new LookupTimer("getUser");
+	private final transient LookupTimer findUserTimer_ = new LookupTimer("findUser");
+	private final transient LookupTimer serviceTokenTimer_ = new LookupTimer("getUserByServiceToken");
+	private final transient LookupTimer roleTimer_ = new LookupTimer("getUsersWithGlobalRole");
 	
 	private final File storageLocation_;
 	private final SyncServiceGIT gitFileSync_;
 	private final String gitUserName_;
 	private final char[] gitPassword_;
 	
+	private final transient Object persistLock_ = new Object();
+	private transient int changeLogEntries_ = 0;
+	private final transient AtomicBoolean compactionScheduled_ = new AtomicBoolean(false);
+	private final transient AtomicBoolean gitSyncScheduled_ = new AtomicBoolean(false);
+	private final transient ScheduledExecutorService persistExecutor_ = Executors.newSingleThreadScheduledExecutor(r -> 
+	{
+		Thread t = new Thread(r, "userStorePersist");
+		t.setDaemon(true);
+		return t;
+	});
+	
 	boolean initialInitComplete = false;
 	private Consumer<UUID> notify;
 	
 	/**
-	 * @param storageLocation Where to store the users (as a json file).  Will also create a file with this name, 
-	 *     plus an additional ".bak" extension.
+	 * @param storageLocation The folder where to store the users.  The service will create multiple files in this folder.
 	 * @param enableUserImport true to allow import of file at the AUTH_USER_IMPORT location, false otherwise.
 	 *     Reads the value of the system or environment variable AUTH_USER_IMPORT, treating it as a file path.
 	 */
@@ -146,7 +204,7 @@ public class UserService
 			
 			gitFileSync_.setRootLocation(storageLocation_);
 			gitFileSync_.setReadmeFileContent("This repository stores the user database for the auth server.  Do not directly edit these files.");
-			gitFileSync_.setGitIgnoreContent("*.json.bak\r\n");
+			gitFileSync_.setGitIgnoreContent("*.json.bak\r\n*.new\r\n" + BINARY_SNAPSHOT_FILE + "\r\n" + CHANGE_LOG_FILE + "\r\n" + SEALED_LOG_FILE + "\r\n");
 			try
 			{
 				gitFileSync_.linkAndFetchFromRemote(gitURL, gitUser, gitPassword);
@@ -164,49 +222,21 @@ public class UserService
 			gitPassword_ = null;
 		}
 		
-		File jsonFile = new File(storageLocation_, "users.json");
+		File jsonFile = new File(storageLocation_, SNAPSHOT_FILE);
+		File changeLog = new File(storageLocation_, CHANGE_LOG_FILE);
+		File sealedLog = new File(storageLocation_, SEALED_LOG_FILE);
 		
-		if (jsonFile.isFile())
+		if (jsonFile.isFile() || changeLog.isFile() || sealedLog.isFile())
 		{
-			log.info("Reading in user store from {}", jsonFile);
-			try
+			log.info("Reading in user store from {}", storageLocation_);
+			for (User user : readSnapshot(jsonFile).values())
 			{
-				JsonReader jr = new JsonReader(new FileInputStream(jsonFile));
-				@SuppressWarnings("unchecked")
-				ConcurrentHashMap<UUID, User> readUsers = (ConcurrentHashMap<UUID, User>)jr.readObject();
-				jr.close();
-				for (Entry<UUID, User> x : readUsers.entrySet())
-				{
-					x.getValue().setUserService(this);
-					users_.put(x.getKey(), x.getValue());
-					if (x.getValue().getEmail() != null)
-					{
-						uniqueEmail_.put(x.getValue().getEmail().toLowerCase(), x.getKey());
-					}
-					if (x.getValue().getUserName() != null)
-					{
-						uniqueUserName_.put(x.getValue().getUserName().toLowerCase(), x.getKey());
-					}
-					if (x.getValue().hasServiceToken())
-					{
-						usersWithServiceTokens_.add(x.getKey());
-					}
-				}
-			}
-			catch (FileNotFoundException e)
-			{
-				// this should be impossible
-				log.error("error reading user store", e);
-			}
-			
-			try
-			{
-				syncGit();
-			}
-			catch (IllegalArgumentException | IOException e)
-			{
-				log.error("initial sync to git failed!", e);
+				index(user);
 			}
+			//A compaction that didn't finish leaves its sealed log, which is older than the current log
+			replayChangeLog(sealedLog);
+			replayChangeLog(changeLog);
+			syncGit();
 		}
 		else
 		{
@@ -295,6 +325,198 @@ public class UserService
 		automated.setServiceToken(automatedServiceToken);
 		addOrUpdate(automated);
 		initialInitComplete = true;
+		
+		persistExecutor_.scheduleWithFixedDelay(() -> compact(false), COMPACT_INTERVAL_MINUTES, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+	
+	/**
+	 * Read the last compacted snapshot - from the binary copy, if it was written from the current json snapshot, otherwise from the json.
+	 */
+	private Map<UUID, User> readSnapshot(File jsonFile)
+	{
+		if (!jsonFile.isFile())
+		{
+			return new HashMap<>();
+		}
+		File binaryFile = new File(storageLocation_, BINARY_SNAPSHOT_FILE);
+		if (binaryFile.isFile())
+		{
+			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(binaryFile))))
+			{
+				//The json is the copy that is synced through git, so the binary copy is only good if it was written along with this json
+				if (ois.readLong() == jsonFile.length() && ois.readLong() == jsonFile.lastModified())
+				{
+					@SuppressWarnings("unchecked")
+					Map<UUID, User> readUsers = (Map<UUID, User>)ois.readObject();
+					log.debug("Read {} users from the binary snapshot", readUsers.size());
+					return readUsers;
+				}
+				log.info("The binary user snapshot is out of date, reading the json snapshot");
+			}
+			catch (IOException | ClassNotFoundException | RuntimeException e)
+			{
+				log.warn("Failed reading the binary user snapshot, reading the json snapshot", e);
+			}
+		}
+		
+		try (JsonReader jr = new JsonReader(new FileInputStream(jsonFile)))
+		{
+			@SuppressWarnings("unchecked")
+			ConcurrentHashMap<UUID, User> readUsers = (ConcurrentHashMap<UUID, User>)jr.readObject();
+			return readUsers;
+		}
+		catch (IOException e)
+		{
+			log.error("error reading user store", e);
+			return new HashMap<>();
+		}
+	}
+	
+	/**
+	 * Apply the changes made since the last compacted snapshot, in the order they were made.
+	 */
+	private void replayChangeLog(File changeLog)
+	{
+		if (!changeLog.isFile())
+		{
+			return;
+		}
+		try
+		{
+			endTornLine(changeLog);
+		}
+		catch (IOException e)
+		{
+			log.error("error repairing user change log", e);
+		}
+		try (BufferedReader reader = Files.newBufferedReader(changeLog.toPath(), StandardCharsets.UTF_8))
+		{
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				if (line.isEmpty())
+				{
+					continue;
+				}
+				try
+				{
+					if (line.startsWith(LOG_UPDATE))
+					{
+						index((User)JsonReader.jsonToJava(line.substring(LOG_UPDATE.length())));
+					}
+					else if (line.startsWith(LOG_REMOVE))
+					{
+						unindex(UUID.fromString(line.substring(LOG_REMOVE.length())));
+					}
+					else
+					{
+						log.warn("Skipping unknown entry on line {} of the user change log", lineNumber);
+					}
+				}
+				catch (RuntimeException e)
+				{
+					//Most likely the last line, if we stopped while writing it
+					log.warn("Skipping unreadable entry on line " + lineNumber + " of the user change log", e);
+				}
+			}
+			changeLogEntries_ += lineNumber;
+			log.info("Replayed {} user changes from {}", lineNumber, changeLog.getName());
+		}
+		catch (IOException e)
+		{
+			log.error("error reading user change log", e);
+		}
+	}
+	
+	/**
+	 * If we stopped while writing the last entry of the log, end its line - otherwise the next entry would be appended onto it, and be 
+	 * unreadable as well.
+	 */
+	private static void endTornLine(File changeLog) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(changeLog.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			long size = channel.size();
+			if (size == 0)
+			{
+				return;
+			}
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.read(last, size - 1);
+			if (last.get(0) != '\n')
+			{
+				log.warn("The last entry of the user change log was not finished, it will be skipped");
+				channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+			}
+		}
+	}
+	
+	/**
+	 * Put the user, and its name, email and service token, into the lookup maps, without any checks.
+	 */
+	private void index(User user)
+	{
+		synchronized (indexLock_)
+		{
+			user.setUserService(this);
+			User oldUserData = users_.put(user.getId(), user);
+			if (oldUserData != null)
+			{
+				unindexKeys(oldUserData);
+			}
+			if (StringUtils.isNotBlank(user.getEmail()))
+			{
+				uniqueEmail_.put(user.getEmail().toLowerCase(), user.getId());
+			}
+			if (StringUtils.isNotBlank(user.getUserName()))
+			{
+				uniqueUserName_.put(user.getUserName().toLowerCase(), user.getId());
+			}
+			if (user.hasServiceToken())
+			{
+				usersWithServiceTokens_.add(user.getId());
+			}
+			for (UserRole role : user.getGlobalRoles())
+			{
+				usersByGlobalRole_.computeIfAbsent(role, roleAgain -> ConcurrentHashMap.newKeySet()).add(user.getId());
+			}
+		}
+	}
+	
+	private void unindex(UUID userId)
+	{
+		synchronized (indexLock_)
+		{
+			User oldUserData = users_.remove(userId);
+			if (oldUserData != null)
+			{
+				unindexKeys(oldUserData);
+			}
+		}
+	}
+	
+	private void unindexKeys(User oldUserData)
+	{
+		if (StringUtils.isNotBlank(oldUserData.getEmail()))
+		{
+			uniqueEmail_.remove(oldUserData.getEmail().toLowerCase(), oldUserData.getId());
+		}
+		if (StringUtils.isNotBlank(oldUserData.getUserName()))
+		{
+			uniqueUserName_.remove(oldUserData.getUserName().toLowerCase(), oldUserData.getId());
+		}
+		usersWithServiceTokens_.remove(oldUserData.getId());
+		for (UserRole role : oldUserData.getGlobalRoles())
+		{
+			Set<UUID> withRole = usersByGlobalRole_.get(role);
+			if (withRole != null)
+			{
+				withRole.remove(oldUserData.getId());
+			}
+		}
+		userByServiceToken_.values().removeIf(indexed -> indexed == oldUserData);
 	}
 	
 	/**
@@ -310,14 +532,26 @@ public class UserService
 	 */
 	public Set<User> getSystemAdmins()
 	{
+		return getUsersWithGlobalRole(UserRole.SYSTEM_MANAGER);
+	}
+	
+	/**
+	 * @param role the role to look for
+	 * @return users that have the role as a global role
+	 */
+	public Set<User> getUsersWithGlobalRole(UserRole role)
+	{
+		long start = System.nanoTime();
 		HashSet<User> results = new HashSet<>();
-		for (User u : users_.values())
+		for (UUID id : usersByGlobalRole_.getOrDefault(role, Collections.emptySet()))
 		{
-			if (u.getGlobalRoles().contains(UserRole.SYSTEM_MANAGER))
+			User u = users_.get(id);
+			if (u != null && u.getGlobalRoles().contains(role))
 			{
 				results.add(u.clone());
 			}
 		}
+		roleTimer_.record(start);
 		return results;
 	}
 	
@@ -331,68 +565,40 @@ public class UserService
 		{
 			throw new IllegalArgumentException("Not allowed to modify the automated user");
 		}
-		if (StringUtils.isNotBlank(user.getEmail()))
+		User oldUserData;
+		synchronized (indexLock_)
 		{
-			UUID test = uniqueEmail_.get(user.getEmail().toLowerCase());
-			if (test != null && !user.getId().equals(test))
+			if (StringUtils.isNotBlank(user.getEmail()))
 			{
-				throw new IllegalArgumentException("The provided email address is already in use by a user");
+				UUID test = uniqueEmail_.get(user.getEmail().toLowerCase());
+				if (test != null && !user.getId().equals(test))
+				{
+					throw new IllegalArgumentException("The provided email address is already in use by a user");
+				}
 			}
-		}
-		
-		if (StringUtils.isNotBlank(user.getUserName()))
-		{
-			UUID test = uniqueUserName_.get(user.getUserName().toLowerCase());
-			if (test != null && !user.getId().equals(test))
+			
+			if (StringUtils.isNotBlank(user.getUserName()))
 			{
-				throw new IllegalArgumentException("The provided user name '" + user.getUserName() + "' is in use by a user");
+				UUID test = uniqueUserName_.get(user.getUserName().toLowerCase());
+				if (test != null && !user.getId().equals(test))
+				{
+					throw new IllegalArgumentException("The provided user name '" + user.getUserName() + "' is in use by a user");
+				}
 			}
+			
+			oldUserData = users_.get(user.getId());
+			index(user);
 		}
-		
-		user.setUserService(this);
-		User oldUserData = users_.put(user.getId(), user);
 		if (oldUserData != null)
 		{
 			log.info("Replaced user information for previously existing user, old: {}, new: {}", oldUserData, user);
-			if (StringUtils.isNotBlank(oldUserData.getEmail()))
-			{
-				uniqueEmail_.remove(oldUserData.getEmail().toLowerCase());
-			}
-			if (StringUtils.isNotBlank(oldUserData.getUserName()))
-			{
-				uniqueUserName_.remove(oldUserData.getUserName().toLowerCase());
-			}
-			if (oldUserData.hasServiceToken() && !user.hasServiceToken())
-			{
-				usersWithServiceTokens_.remove(user.getId());
-			}
 		}
 		else
 		{
 			log.info("Stored new user: {}", user);
 		}
 		
-		if (StringUtils.isNotBlank(user.getEmail()))
-		{
-			uniqueEmail_.put(user.getEmail().toLowerCase(), user.getId());
-		}
-		if (StringUtils.isNotBlank(user.getUserName()))
-		{
-			uniqueUserName_.put(user.getUserName().toLowerCase(), user.getId());
-		}
-		if (user.hasServiceToken())
-		{
-			usersWithServiceTokens_.add(user.getId());
-		}
-		
-		try
-		{
-			save();
-		}
-		catch (IOException e)
-		{
-			log.error("Error writing user store", e);
-		}
+		persist(user.getId());
 		notify(user.getId());
 	}
 	
@@ -410,24 +616,8 @@ public class UserService
 		Optional<User> userObject = getUser(user);
 		if (userObject.isPresent())
 		{
-			users_.remove(user);
-			if (StringUtils.isNotBlank(userObject.get().getUserName()))
-			{
-				uniqueUserName_.remove(userObject.get().getUserName().toLowerCase());
-			}
-			if (StringUtils.isNotBlank(userObject.get().getEmail()))
-			{
-				uniqueEmail_.remove(userObject.get().getEmail().toLowerCase());
-			}
-			usersWithServiceTokens_.remove(userObject.get().getId());
-			try
-			{
-				save();
-			}
-			catch (IOException e)
-			{
-				log.error("Error writing user store", e);
-			}
+			unindex(user);
+			persist(user);
 			notify(user);
 			log.info("Removed user {}", userObject);
 			return true;
@@ -460,27 +650,33 @@ public class UserService
 	 */
 	public Optional<User> findUser(String ... userNameOrEmail)
 	{
-		for (String s : userNameOrEmail)
+		long start = System.nanoTime();
+		try
 		{
-			if (StringUtils.isBlank(s))
+			for (String s : userNameOrEmail)
 			{
-				continue;
-			}
-			UUID temp = uniqueEmail_.get(s.toLowerCase());
-			if (temp != null)
-			{
-				Optional<User> u =  Optional.ofNullable(users_.get(temp));
-				return u.isPresent() ? Optional.of(u.get().clone()) : u;
-			}
-			
-			temp = uniqueUserName_.get(s.toLowerCase());
-			if (temp != null)
-			{
-				Optional<User> u =  Optional.ofNullable(users_.get(temp));
-				return u.isPresent() ? Optional.of(u.get().clone()) : u;
+				if (StringUtils.isBlank(s))
+				{
+					continue;
+				}
+				String key = s.toLowerCase();
+				UUID temp = uniqueEmail_.get(key);
+				if (temp == null)
+				{
+					temp = uniqueUserName_.get(key);
+				}
+				if (temp != null)
+				{
+					Optional<User> u =  Optional.ofNullable(users_.get(temp));
+					return u.isPresent() ? Optional.of(u.get().clone()) : u;
+				}
 			}
+			return Optional.empty();
+		}
+		finally
+		{
+			findUserTimer_.record(start);
 		}
-		return Optional.empty();
 	}
 	
 
@@ -491,8 +687,11 @@ public class UserService
 	 */
 	public Optional<User> getUser(UUID userId)
 	{
+		long start = System.nanoTime();
 		Optional<User> u = Optional.ofNullable(users_.get(userId));
-		return u.isPresent() ? Optional.of(u.get().clone()) : u;
+		u = u.isPresent() ? Optional.of(u.get().clone()) : u;
+		getUserTimer_.record(start);
+		return u;
 	}
 	
 	/**
@@ -503,70 +702,212 @@ public class UserService
 	 */
 	public Optional<User> getUser(String serviceToken)
 	{
-		for (UUID uuid : usersWithServiceTokens_)
+		long start = System.nanoTime();
+		try
 		{
-			Optional<User> u = getUser(uuid);
-			if (u.isPresent() && u.get().validateServiceToken(serviceToken))
+			String digest = digest(serviceToken);
+			User indexed = userByServiceToken_.get(digest);
+			if (indexed != null)
 			{
-				return u;
+				if (users_.get(indexed.getId()) == indexed)
+				{
+					//Same token, same stored user, so only the enabled check of the validation could have a different outcome
+					if (!indexed.isEnabled())
+					{
+						log.info("Preventing disabled user authentication attempt");
+						return Optional.empty();
+					}
+					return Optional.of(indexed.clone());
+				}
+				userByServiceToken_.remove(digest, indexed);
 			}
+			
+			for (UUID uuid : usersWithServiceTokens_)
+			{
+				User u = users_.get(uuid);
+				if (u != null && u.validateServiceToken(serviceToken))
+				{
+					userByServiceToken_.put(digest, u);
+					if (users_.get(uuid) != u)
+					{
+						//Replaced or removed while we validated - the unindex may have run before our put, so don't leave a stale entry
+						userByServiceToken_.remove(digest, u);
+					}
+					return Optional.of(u.clone());
+				}
+			}
+			return Optional.empty();
+		}
+		finally
+		{
+			serviceTokenTimer_.record(start);
+		}
+	}
+	
+	/**
+	 * We don't keep the plain service tokens around as index keys
+	 */
+	private static String digest(String serviceToken)
+	{
+		try
+		{
+			return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(serviceToken.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
 		}
-		return Optional.empty();
+	}
+	
+	/**
+	 * @return the call counts and times of the user lookups, since startup
+	 */
+	public LookupTimer[] getLookupStats()
+	{
+		return new LookupTimer[] {getUserTimer_, findUserTimer_, serviceTokenTimer_, roleTimer_};
 	}
 
-	private void save() throws IOException
+	/**
+	 * Append the current state of the user (or its removal) to the change log - the cost of a change doesn't depend on the number of users.
+	 * Compaction into a new snapshot, and the git commit, happen later, in the background.
+	 */
+	private void persist(UUID userId)
 	{
-		final Map<String, Object> args = new HashMap<>();
-		args.put(JsonWriter.PRETTY_PRINT, true);
-		
-		File newWrite = new File(storageLocation_, "users.json.new");
-		
-		//overwrite any existing file
-		try (JsonWriter jsonWriter = new JsonWriter(new FileOutputStream(newWrite, false), args);)
+		boolean compactionDue;
+		synchronized (persistLock_)
 		{
-			jsonWriter.write(users_);
+			//Always log the current state, rather than the state the caller had, so that the log order can't disagree with the map
+			User current = users_.get(userId);
+			String entry = current == null ? LOG_REMOVE + userId.toString() : LOG_UPDATE + JsonWriter.objectToJson(current);
+			try (BufferedWriter writer = Files.newBufferedWriter(new File(storageLocation_, CHANGE_LOG_FILE).toPath(), StandardCharsets.UTF_8, 
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+			{
+				writer.write(entry);
+				writer.write('\n');
+			}
+			catch (IOException e)
+			{
+				log.error("Error writing user store", e);
+				return;
+			}
+			changeLogEntries_++;
+			compactionDue = changeLogEntries_ >= Math.max(COMPACT_MIN_CHANGES, users_.size() / 2);
 		}
 		
-		File main = new File(storageLocation_, "users.json");
-		File backup = new File(storageLocation_, "users.json.bak");
-		
-		//Move the current file out of the way, move the new file to the correctly named place.
-		if (main.isFile())
+		if (compactionDue && compactionScheduled_.compareAndSet(false, true))
 		{
-			Files.move(main.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			persistExecutor_.execute(() -> compact(true));
 		}
-		Files.move(newWrite.toPath(), main.toPath(), StandardCopyOption.REPLACE_EXISTING);
-		
 		syncGit();
 	}
 	
-	private void syncGit() throws IllegalArgumentException, IOException
+	/**
+	 * Write a new snapshot of all users (json, and the binary copy for fast startup), and drop the change log it replaces.  Only the copy 
+	 * of the users, and the sealing of the log, hold up changes - the snapshot is written while changes go on to the new log.  Runs on the 
+	 * persist thread, other than in tests.
+	 * @param required true to compact regardless of the size of the change log, false to only compact if the log has any changes
+	 */
+	void compact(boolean required)
 	{
-		if (gitFileSync_ != null)
+		try
 		{
-			log.info("syncing users file to git server");
-			gitFileSync_.addUntrackedFiles();
-			
-			Runnable r = new Runnable()
+			Map<UUID, User> snapshot;
+			File sealedLog = new File(storageLocation_, SEALED_LOG_FILE);
+			synchronized (persistLock_)
 			{
-				@Override
-				public void run()
+				compactionScheduled_.set(false);
+				if (!required && changeLogEntries_ == 0)
+				{
+					return;
+				}
+				log.info("Compacting {} user changes into a new snapshot of {} users", changeLogEntries_, users_.size());
+				
+				//Every change in the log being sealed is already in users_ - and a change that is in users_, but not yet logged, is logged 
+				//to the new log, and replayed over the snapshot, which does no harm.
+				snapshot = new ConcurrentHashMap<>(users_);
+				File changeLog = new File(storageLocation_, CHANGE_LOG_FILE);
+				if (changeLog.isFile())
 				{
-					try
+					if (sealedLog.isFile())
 					{
-						log.debug("commit and push begins");
-						gitFileSync_.updateCommitAndPush("Synchronizing user store", gitUserName_, gitPassword_, MergeFailOption.KEEP_LOCAL, (String[])null);
-						log.info("users file synchronized");
+						//The last compaction failed to write its snapshot, so its sealed log is still needed
+						Files.write(sealedLog.toPath(), Files.readAllBytes(changeLog.toPath()), StandardOpenOption.APPEND);
+						Files.delete(changeLog.toPath());
 					}
-					catch (IllegalArgumentException | IOException | MergeFailure e)
+					else
 					{
-						log.error("Sync to git failed!", e);
+						Files.move(changeLog.toPath(), sealedLog.toPath());
 					}
 				}
-			};
-			Thread t = new Thread(r, "backgroundGitPush");
-			t.setDaemon(true);
-			t.start();
+				changeLogEntries_ = 0;
+			}
+			
+			final Map<String, Object> args = new HashMap<>();
+			args.put(JsonWriter.PRETTY_PRINT, true);
+			
+			File newWrite = new File(storageLocation_, SNAPSHOT_FILE + ".new");
+			
+			//overwrite any existing file
+			try (JsonWriter jsonWriter = new JsonWriter(new FileOutputStream(newWrite, false), args);)
+			{
+				jsonWriter.write(snapshot);
+			}
+			
+			File main = new File(storageLocation_, SNAPSHOT_FILE);
+			File backup = new File(storageLocation_, SNAPSHOT_FILE + ".bak");
+			
+			//Move the current file out of the way, move the new file to the correctly named place.
+			if (main.isFile())
+			{
+				Files.move(main.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.move(newWrite.toPath(), main.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			
+			File binaryWrite = new File(storageLocation_, BINARY_SNAPSHOT_FILE + ".new");
+			try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(binaryWrite, false))))
+			{
+				oos.writeLong(main.length());
+				oos.writeLong(main.lastModified());
+				oos.writeObject(new HashMap<>(snapshot));
+			}
+			Files.move(binaryWrite.toPath(), new File(storageLocation_, BINARY_SNAPSHOT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			
+			//The snapshot holds everything in the sealed log now
+			Files.deleteIfExists(sealedLog.toPath());
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.error("Error compacting user store", e);
+		}
+	}
+	
+	/**
+	 * Schedule a compaction, and a commit and push of the new snapshot, unless one is already waiting - so a burst of changes becomes a 
+	 * single commit.
+	 */
+	private void syncGit()
+	{
+		if (gitFileSync_ != null && gitSyncScheduled_.compareAndSet(false, true))
+		{
+			persistExecutor_.schedule(() -> 
+			{
+				gitSyncScheduled_.set(false);
+				//Git only holds the snapshot, so bring it up to date first.  Compaction only ever runs on this (single) thread, so the 
+				//snapshot can't be replaced while it is committed, and the change log, which is still appended to, isn't in git.
+				compact(false);
+				try
+				{
+					log.info("syncing users file to git server");
+					gitFileSync_.addUntrackedFiles();
+					log.debug("commit and push begins");
+					gitFileSync_.updateCommitAndPush("Synchronizing user store", gitUserName_, gitPassword_, MergeFailOption.KEEP_LOCAL, (String[])null);
+					log.info("users file synchronized");
+				}
+				catch (IllegalArgumentException | IOException | MergeFailure e)
+				{
+					log.error("Sync to git failed!", e);
+				}
+			}, GIT_SYNC_DELAY_SECONDS, TimeUnit.SECONDS);
 		}
 	}
 	
@@ -127,7 +127,10 @@ public class LocalServerRunner
 		ServletContainer jersey = new ServletContainer(resourceConfig);
 		ServletContextHandler restContext = new ServletContextHandler();
 		restContext.setContextPath("/rest");
-		restContext.addServlet(new ServletHolder(jersey), "/*");
+		ServletHolder jerseyHolder = new ServletHolder(jersey);
+		//The heavy calls are suspended and resumed on the RequestPools, which the servlet must allow
+		jerseyHolder.setAsyncSupported(true);
+		restContext.addServlet(jerseyHolder, "/*");
 		
 		hc.addHandler(restContext);
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.tokens.DecodedTokenCache;
+import net.sagebits.uts.auth.data.SSOToken;
+
+/**
+ * {@link DecodedTokenCacheTest}
+ */
+public class DecodedTokenCacheTest
+{
+	@BeforeClass
+	public static void setSecretPath()
+	{
+		SSOToken.setSecretPathPrefix("DecodedTokenCacheTest");
+	}
+
+	@Test
+	public void testPutGet()
+	{
+		SSOToken token = new SSOToken(UUID.randomUUID(), 0);
+		Assert.assertNull(DecodedTokenCache.get(token.getSerialized(), SSOToken.class));
+		DecodedTokenCache.put(token.getSerialized(), token);
+		Assert.assertSame(token, DecodedTokenCache.get(token.getSerialized(), SSOToken.class));
+	}
+
+	@Test
+	public void testWrongType()
+	{
+		// The SSO and edit tokens share the cache - a token string must not come back as the other type
+		SSOToken token = new SSOToken(UUID.randomUUID(), 0);
+		DecodedTokenCache.put(token.getSerialized(), token);
+		Assert.assertNull(DecodedTokenCache.get(token.getSerialized(), String.class));
+		Assert.assertSame(token, DecodedTokenCache.get(token.getSerialized(), SSOToken.class));
+	}
+
+	@Test
+	public void testInvalidate()
+	{
+		SSOToken token = new SSOToken(UUID.randomUUID(), 0);
+		DecodedTokenCache.put(token.getSerialized(), token);
+		DecodedTokenCache.invalidate(token.getSerialized());
+		Assert.assertNull(DecodedTokenCache.get(token.getSerialized(), SSOToken.class));
+	}
+}
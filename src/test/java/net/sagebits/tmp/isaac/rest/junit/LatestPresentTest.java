@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.BitSet;
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.session.AssemblageIndexService.LatestPresent;
+
+/**
+ * {@link LatestPresentTest}
+ */
+public class LatestPresentTest
+{
+	private static LatestPresent of(int length, int ... presentIndexes)
+	{
+		int[] nids = new int[length];
+		for (int i = 0; i < length; i++)
+		{
+			nids[i] = -2000000000 + i;
+		}
+		BitSet present = new BitSet(length);
+		for (int i : presentIndexes)
+		{
+			present.set(i);
+		}
+		return new LatestPresent(nids, present);
+	}
+
+	@Test
+	public void testAllPresent()
+	{
+		LatestPresent lp = of(5, 0, 1, 2, 3, 4);
+		for (int skip = 0; skip < 5; skip++)
+		{
+			Assert.assertEquals(skip, lp.indexAfterPresent(skip));
+		}
+		Assert.assertEquals(5, lp.indexAfterPresent(5));
+	}
+
+	@Test
+	public void testGaps()
+	{
+		LatestPresent lp = of(10, 2, 3, 7, 9);
+		Assert.assertEquals(4, lp.getPresentCount());
+		Assert.assertEquals(2, lp.indexAfterPresent(0));
+		Assert.assertEquals(3, lp.indexAfterPresent(1));
+		Assert.assertEquals(7, lp.indexAfterPresent(2));
+		Assert.assertEquals(9, lp.indexAfterPresent(3));
+		Assert.assertTrue(lp.isPresent(lp.indexAfterPresent(2)));
+	}
+
+	@Test
+	public void testSkipPastEnd()
+	{
+		LatestPresent lp = of(10, 2, 3, 7, 9);
+		Assert.assertEquals(10, lp.indexAfterPresent(4));
+		Assert.assertEquals(10, lp.indexAfterPresent(100));
+	}
+
+	@Test
+	public void testNonePresent()
+	{
+		LatestPresent lp = of(3);
+		Assert.assertEquals(0, lp.getPresentCount());
+		Assert.assertEquals(3, lp.indexAfterPresent(0));
+		Assert.assertEquals(-1, lp.nextPresent(0));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		LatestPresent lp = of(0);
+		Assert.assertEquals(0, lp.indexAfterPresent(0));
+	}
+
+	@Test
+	public void testMatchesWalk()
+	{
+		// the same page boundaries as walking the bits one at a time, as the paging callers did before the index
+		LatestPresent lp = of(64, 1, 4, 5, 6, 17, 18, 33, 40, 41, 63);
+		int walked = 0;
+		for (int i = 0; i < 64; i++)
+		{
+			if (lp.isPresent(i))
+			{
+				Assert.assertEquals(i, lp.indexAfterPresent(walked++));
+			}
+		}
+		Assert.assertEquals(lp.getPresentCount(), walked);
+	}
+}
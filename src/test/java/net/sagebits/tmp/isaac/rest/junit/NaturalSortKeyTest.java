@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.api1.taxonomy.TaxonomyAPIs;
+import sh.isaac.api.util.AlphanumComparator;
+
+/**
+ * {@link NaturalSortKeyTest}
+ */
+public class NaturalSortKeyTest
+{
+	private static String digits(char first, int count)
+	{
+		StringBuilder sb = new StringBuilder(count);
+		sb.append(first);
+		while (sb.length() < count)
+		{
+			sb.append('7');
+		}
+		return sb.toString();
+	}
+
+	private static void assertSameOrder(String a, String b)
+	{
+		int expected = Integer.signum(AlphanumComparator.compare(a, b, true));
+		int actual = Integer.signum(TaxonomyAPIs.naturalSortKey(a).compareTo(TaxonomyAPIs.naturalSortKey(b)));
+		Assert.assertEquals("'" + a + "' vs '" + b + "'", expected, actual);
+	}
+
+	private static void assertAllPairs(List<String> texts)
+	{
+		for (String a : texts)
+		{
+			for (String b : texts)
+			{
+				assertSameOrder(a, b);
+			}
+		}
+	}
+
+	@Test
+	public void testNumbers()
+	{
+		assertAllPairs(Arrays.asList("item 1", "item 2", "item 9", "item 10", "item 11", "item 100", "item 2a", "item 2b", "item 10 b", "item 10 a"));
+	}
+
+	@Test
+	public void testCase()
+	{
+		assertAllPairs(Arrays.asList("Alpha", "alpha", "ALPHA", "beta", "Beta 2", "beta 12", "Gamma"));
+		Assert.assertEquals(TaxonomyAPIs.naturalSortKey("Beta 12"), TaxonomyAPIs.naturalSortKey("bETA 12"));
+	}
+
+	@Test
+	public void testLongDigitRuns()
+	{
+		List<String> texts = new ArrayList<>();
+		for (int length : new int[] {1, 9, 10, 98, 99, 100, 101, 150, 999, 1000})
+		{
+			texts.add("x" + digits('1', length));
+			texts.add("x" + digits('9', length));
+			texts.add("x" + digits('1', length) + "y");
+		}
+		assertAllPairs(texts);
+
+		// past the 99 digits that a two digit count can hold, more digits must still be a larger number
+		String key99 = TaxonomyAPIs.naturalSortKey("x" + digits('9', 99));
+		String key100 = TaxonomyAPIs.naturalSortKey("x" + digits('1', 100));
+		String key150 = TaxonomyAPIs.naturalSortKey("x" + digits('1', 150));
+		Assert.assertTrue(key99.compareTo(key100) < 0);
+		Assert.assertTrue(key100.compareTo(key150) < 0);
+	}
+
+	@Test
+	public void testSortsLikeComparator()
+	{
+		List<String> texts = new ArrayList<>(Arrays.asList("Vitamin B12", "Vitamin B6", "Vitamin B1", "vitamin b2", "Vitamin C", "Vitamin", 
+				"vitamin B" + digits('3', 120), "Vitamin B" + digits('2', 120), "Vitamin B" + digits('4', 100)));
+		List<String> byComparator = new ArrayList<>(texts);
+		byComparator.sort((a, b) -> AlphanumComparator.compare(a, b, true));
+		List<String> byKey = new ArrayList<>(texts);
+		byKey.sort((a, b) -> TaxonomyAPIs.naturalSortKey(a).compareTo(TaxonomyAPIs.naturalSortKey(b)));
+		Assert.assertEquals(byComparator, byKey);
+	}
+}
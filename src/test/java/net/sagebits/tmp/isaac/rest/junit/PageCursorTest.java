@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.api.data.PageCursor;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+
+/**
+ * {@link PageCursorTest}
+ */
+public class PageCursorTest
+{
+	private static final int CONTEXT = 0x5eed1234;
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		String serialized = new PageCursor(-2147483000, 7, CONTEXT).serialize();
+		PageCursor read = PageCursor.read(serialized, CONTEXT);
+		Assert.assertEquals(-2147483000, read.getLastNid());
+		Assert.assertEquals(7, read.getPageNum());
+		Assert.assertEquals(serialized, read.serialize());
+	}
+
+	@Test
+	public void testUrlSafe() throws Exception
+	{
+		String serialized = new PageCursor(-1, -1, -1).serialize();
+		Assert.assertTrue(serialized, serialized.matches("[A-Za-z0-9_-]+"));
+		// whitespace from a sloppy client is tolerated
+		Assert.assertEquals(-1, PageCursor.read(" " + serialized + "\n", -1).getLastNid());
+	}
+
+	@Test(expected = RestException.class)
+	public void testDifferentContext() throws Exception
+	{
+		PageCursor.read(new PageCursor(100, 1, CONTEXT).serialize(), CONTEXT + 1);
+	}
+
+	@Test
+	public void testTamperedContext() throws Exception
+	{
+		byte[] bytes = Base64.getUrlDecoder().decode(new PageCursor(100, 1, CONTEXT).serialize());
+		// flip a bit in the context hash, so the cursor claims a different query
+		bytes[12] ^= 1;
+		assertInvalid(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+	}
+
+	@Test
+	public void testWrongVersion() throws Exception
+	{
+		byte[] bytes = Base64.getUrlDecoder().decode(new PageCursor(100, 1, CONTEXT).serialize());
+		bytes[0] = 2;
+		assertInvalid(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+	}
+
+	@Test
+	public void testMalformed() throws Exception
+	{
+		String serialized = new PageCursor(100, 1, CONTEXT).serialize();
+		assertInvalid(serialized.substring(0, serialized.length() - 2));
+		assertInvalid(serialized + "AAAA");
+		assertInvalid("not*base64");
+		assertInvalid("");
+	}
+
+	private void assertInvalid(String cursor)
+	{
+		try
+		{
+			PageCursor.read(cursor, CONTEXT);
+			Assert.fail("Cursor '" + cursor + "' should have been rejected");
+		}
+		catch (RestException e)
+		{
+			// expected
+		}
+	}
+}
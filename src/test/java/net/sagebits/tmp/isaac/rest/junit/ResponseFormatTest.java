@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Assert;
+import org.junit.Test;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.MyJacksonMapperConfig;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.ResponseFormatFilter;
+
+/**
+ * {@link ResponseFormatTest}
+ * 
+ * The jackson provider caches the writer of each type, so the form of one response must not leak into the next response of the same type.
+ * The binary forms are asked for by type, and served by the JSON resource methods.
+ */
+public class ResponseFormatTest extends JerseyTest
+{
+	private static final String BROWSER = "Mozilla/5.0 (X11; Linux x86_64)";
+	private static final String CLIENT = "Java/11";
+
+	public static class Sample
+	{
+		public String name = "sample";
+		public int[] values = new int[] {1, 2, 3};
+	}
+
+	@Path("sample")
+	public static class SampleResource
+	{
+		@GET
+		@Produces(MediaType.APPLICATION_JSON)
+		public Sample get()
+		{
+			return new Sample();
+		}
+	}
+
+	@Override
+	protected Application configure()
+	{
+		return new ResourceConfig(SampleResource.class).register(JacksonFeature.class).register(MyJacksonMapperConfig.class)
+				.register(new JacksonSmileProvider(MyJacksonMapperConfig.getSmileMapper()))
+				.register(new JacksonCBORProvider(MyJacksonMapperConfig.getCborMapper())).register(ResponseFormatFilter.class);
+	}
+
+	private String read(String userAgent)
+	{
+		return target("sample").request(MediaType.APPLICATION_JSON).header(HttpHeaders.USER_AGENT, userAgent).get(String.class);
+	}
+
+	private static boolean isIndented(String json)
+	{
+		return json.contains("\n");
+	}
+
+	@Test
+	public void testPrettyThenCompact()
+	{
+		Assert.assertTrue(isIndented(read(BROWSER)));
+		Assert.assertFalse(isIndented(read(CLIENT)));
+		Assert.assertTrue(isIndented(read(BROWSER)));
+	}
+
+	@Test
+	public void testCompactThenPretty()
+	{
+		Assert.assertFalse(isIndented(read(CLIENT)));
+		Assert.assertTrue(isIndented(read(BROWSER)));
+		Assert.assertFalse(isIndented(read(CLIENT)));
+	}
+
+	@Test
+	public void testSameContent()
+	{
+		Assert.assertEquals(read(CLIENT), read(BROWSER).replaceAll("\\s", ""));
+	}
+
+	private void assertBinary(String type, JsonFactory factory) throws Exception
+	{
+		Response response = target("sample").request(type).header(HttpHeaders.USER_AGENT, BROWSER).get();
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertTrue(response.getMediaType().toString(), MediaType.valueOf(type).isCompatible(response.getMediaType()));
+		JsonNode read = new ObjectMapper(factory).readTree(response.readEntity(byte[].class));
+		Assert.assertEquals("sample", read.get("name").asText());
+		Assert.assertEquals(3, read.get("values").size());
+		Assert.assertEquals(3, read.get("values").get(2).asInt());
+	}
+
+	@Test
+	public void testSmile() throws Exception
+	{
+		assertBinary(ResponseFormatFilter.SMILE, new SmileFactory());
+		// and the writer of the binary form doesn't stick to the type
+		Assert.assertFalse(isIndented(read(CLIENT)));
+		Assert.assertTrue(read(CLIENT).startsWith("{"));
+	}
+
+	@Test
+	public void testCbor() throws Exception
+	{
+		assertBinary(ResponseFormatFilter.CBOR, new CBORFactory());
+		Assert.assertTrue(read(CLIENT).startsWith("{"));
+	}
+
+	@Test
+	public void testJsonPreferredOverBinary()
+	{
+		// Only the most preferred type picks a binary form
+		Response response = target("sample").request().header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON + ", " + ResponseFormatFilter.SMILE + ";q=0.5")
+				.get();
+		Assert.assertTrue(MediaType.APPLICATION_JSON_TYPE.isCompatible(response.getMediaType()));
+		Assert.assertTrue(response.readEntity(String.class).startsWith("{"));
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.lang.reflect.Field;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.tokens.CoordinatesToken;
+import net.sagebits.tmp.isaac.rest.tokens.DecodedTokenCache;
+import net.sagebits.uts.auth.data.SSOToken;
+import net.sagebits.uts.auth.data.TokenHmac;
+import sh.isaac.api.externalizable.ByteArrayDataBuffer;
+import sh.isaac.api.util.PasswordHasher;
+
+/**
+ * {@link SSOTokenTest}
+ * 
+ * The HMAC signed tokens, and the hash-prefixed tokens issued before them, which are still read.
+ */
+public class SSOTokenTest
+{
+	private static final long TOKEN_MAX_AGE = 1000l * 60l * 60l;
+	private static byte[] secret;
+
+	@BeforeClass
+	public static void readSecret() throws Exception
+	{
+		SSOToken.setSecretPathPrefix("SSOTokenTest");
+		// Creating a token reads or creates the secret - which the older format tokens have to be made with
+		new SSOToken(UUID.randomUUID(), 0);
+		Field field = SSOToken.class.getDeclaredField("secret_");
+		field.setAccessible(true);
+		secret = (byte[]) field.get(null);
+	}
+
+	private static byte[] payload(int version, long createTime, int logoutCount, UUID user)
+	{
+		ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(25);
+		buffer.putByte((byte) version);
+		buffer.putLong(createTime);
+		if (version > 1)
+		{
+			buffer.putInt(logoutCount);
+		}
+		buffer.putLong(user.getMostSignificantBits());
+		buffer.putLong(user.getLeastSignificantBits());
+		buffer.trimToSize();
+		return buffer.getData();
+	}
+
+	/**
+	 * @return a token in the format issued before the HMAC signing - the many-round hash of the encoded payload, then the payload
+	 */
+	private static String oldFormat(byte[] payload) throws Exception
+	{
+		String encoded = Base64.getUrlEncoder().encodeToString(payload);
+		return PasswordHasher.hash(encoded.toCharArray(), secret, 2048, 64) + encoded;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		UUID user = UUID.randomUUID();
+		String token = new SSOToken(user, 7).getSerialized();
+		Assert.assertTrue(TokenHmac.isSigned(token));
+		SSOToken read = new SSOToken(token);
+		Assert.assertEquals(user, read.getUser());
+		Assert.assertEquals(7, read.getUserLogOutCount());
+		Assert.assertFalse(read.isExpired());
+		// Reading renews the token, in the current format
+		Assert.assertTrue(TokenHmac.isSigned(read.getSerialized()));
+	}
+
+	@Test
+	public void testOldFormatsReadAlongsideSigned() throws Exception
+	{
+		UUID user = UUID.randomUUID();
+		String signed = TokenHmac.sign(secret, SSOToken.MAC_DOMAIN, payload(2, System.currentTimeMillis(), 3, user));
+		String version2 = oldFormat(payload(2, System.currentTimeMillis(), 3, user));
+		String version1 = oldFormat(payload(1, System.currentTimeMillis(), 0, user));
+		Assert.assertFalse(TokenHmac.isSigned(version2));
+		Assert.assertFalse(TokenHmac.isSigned(version1));
+
+		for (String token : new String[] {signed, version2, version1, signed})
+		{
+			SSOToken read = new SSOToken(token);
+			Assert.assertEquals(user, read.getUser());
+			Assert.assertTrue(TokenHmac.isSigned(read.getSerialized()));
+		}
+		Assert.assertEquals(3, new SSOToken(version2).getUserLogOutCount());
+		Assert.assertEquals(0, new SSOToken(version1).getUserLogOutCount());
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testOldFormatTampered() throws Exception
+	{
+		String token = oldFormat(payload(2, System.currentTimeMillis(), 3, UUID.randomUUID()));
+		String other = oldFormat(payload(2, System.currentTimeMillis(), 4, UUID.randomUUID()));
+		// hash of one token, payload of the other
+		new SSOToken(token.substring(0, 12) + other.substring(12));
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testExpired() throws Exception
+	{
+		new SSOToken(TokenHmac.sign(secret, SSOToken.MAC_DOMAIN, payload(2, System.currentTimeMillis() - TOKEN_MAX_AGE - 1000, 0, UUID.randomUUID())));
+	}
+
+	@Test
+	public void testCachedTokenExpires() throws Exception
+	{
+		// Valid when it is read, and cached, but expires a second later
+		String token = TokenHmac.sign(secret, SSOToken.MAC_DOMAIN, payload(2, System.currentTimeMillis() - TOKEN_MAX_AGE + 1000, 0, UUID.randomUUID()));
+		SSOToken read = new SSOToken(token);
+		Assert.assertFalse(read.isExpired());
+		DecodedTokenCache.put(token, read);
+
+		Thread.sleep(1100);
+		SSOToken cached = DecodedTokenCache.get(token, SSOToken.class);
+		Assert.assertSame(read, cached);
+		// The caller has to check, and read the token again, which rejects it
+		Assert.assertTrue(cached.isExpired());
+		try
+		{
+			new SSOToken(token);
+			Assert.fail("An expired token was read");
+		}
+		catch (SecurityException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testCoordinatesTokenRejected() throws Exception
+	{
+		// The coordinates tokens are signed with the same secret, and start with a version byte and a time, like an SSO token does
+		ByteArrayDataBuffer buffer = new ByteArrayDataBuffer(64);
+		buffer.putByte((byte) 2);
+		buffer.putLong(System.currentTimeMillis());
+		buffer.putInt(-2147483000);
+		buffer.putByte((byte) 1);
+		buffer.putInt(1);
+		buffer.putInt(-2147482000);
+		buffer.putInt(2);
+		buffer.putByte((byte) 0);
+		buffer.putByte((byte) 1);
+		buffer.trimToSize();
+		byte[] coordinates = buffer.getData();
+		Assert.assertTrue(coordinates.length >= 29);
+
+		try
+		{
+			new SSOToken(TokenHmac.sign(secret, CoordinatesToken.MAC_DOMAIN, coordinates));
+			Assert.fail("A coordinates token was read as an SSO token");
+		}
+		catch (SecurityException e)
+		{
+			// expected
+		}
+		// Nor is the same payload accepted under the SSO label, as it isn't the length of an SSO token
+		try
+		{
+			new SSOToken(TokenHmac.sign(secret, SSOToken.MAC_DOMAIN, coordinates));
+			Assert.fail("A token of the wrong length was read");
+		}
+		catch (SecurityException e)
+		{
+			// expected
+		}
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testTrailingBytesRejected() throws Exception
+	{
+		byte[] payload = payload(2, System.currentTimeMillis(), 0, UUID.randomUUID());
+		byte[] longer = new byte[payload.length + 4];
+		System.arraycopy(payload, 0, longer, 0, payload.length);
+		new SSOToken(TokenHmac.sign(secret, SSOToken.MAC_DOMAIN, longer));
+	}
+}
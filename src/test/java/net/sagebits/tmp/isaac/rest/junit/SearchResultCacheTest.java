@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.session.SearchResultCache;
+import sh.isaac.api.index.ComponentSearchResult;
+import sh.isaac.api.index.SearchResult;
+
+/**
+ * {@link SearchResultCacheTest}
+ */
+public class SearchResultCacheTest
+{
+	/**
+	 * A query over the nids 0 .. total - 1, which records the size of each fetch
+	 */
+	private static class CountingQuery implements SearchResultCache.PagedQuery
+	{
+		private final int total;
+		private final List<Integer> fetches = new ArrayList<>();
+
+		private CountingQuery(int total)
+		{
+			this.total = total;
+		}
+
+		@Override
+		public List<SearchResult> query(int pageNum, int maxPageSize)
+		{
+			fetches.add(maxPageSize);
+			List<SearchResult> results = new ArrayList<>();
+			for (int i = (pageNum - 1) * maxPageSize; i < Math.min(total, pageNum * maxPageSize); i++)
+			{
+				results.add(new ComponentSearchResult(i, 1));
+			}
+			return results;
+		}
+	}
+
+	private static List<Integer> nids(List<SearchResult> results)
+	{
+		return results.stream().map(sr -> sr.getNid()).collect(Collectors.toList());
+	}
+
+	private static List<Integer> range(int from, int to)
+	{
+		List<Integer> result = new ArrayList<>();
+		for (int i = from; i < to; i++)
+		{
+			result.add(i);
+		}
+		return result;
+	}
+
+	private static final Object[] KEY = new Object[] {"test", "query", new int[] {1, 2}};
+
+	@Test
+	public void testFirstPagesServedFromOneFetch()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(5000);
+		Assert.assertEquals(range(0, 10), nids(cache.getPage(KEY, 1, 10, query)));
+		Assert.assertEquals(range(10, 20), nids(cache.getPage(KEY, 2, 10, query)));
+		Assert.assertEquals(range(90, 100), nids(cache.getPage(KEY, 10, 10, query)));
+		Assert.assertEquals(1, query.fetches.size());
+		Assert.assertEquals(SearchResultCache.MIN_FETCH, query.fetches.get(0).intValue());
+	}
+
+	@Test
+	public void testSlicePastMinFetch()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(5000);
+		cache.getPage(KEY, 1, 25, query);
+		// page 5 ends past the first fetch, so the entry is extended, and the slice still starts at the right place
+		Assert.assertEquals(range(100, 125), nids(cache.getPage(KEY, 5, 25, query)));
+		Assert.assertEquals(2, query.fetches.size());
+		Assert.assertTrue(query.fetches.get(1) >= 125);
+		// and the earlier pages are still served from the extended entry
+		Assert.assertEquals(range(25, 50), nids(cache.getPage(KEY, 2, 25, query)));
+		Assert.assertEquals(range(125, 150), nids(cache.getPage(KEY, 6, 25, query)));
+		Assert.assertEquals(2, query.fetches.size());
+	}
+
+	@Test
+	public void testPastMaxResultsPassesThrough()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(5000);
+		int pageSize = 100;
+		int pageNum = SearchResultCache.MAX_RESULTS / pageSize + 1;
+		Assert.assertEquals(range((pageNum - 1) * pageSize, pageNum * pageSize), nids(cache.getPage(KEY, pageNum, pageSize, query)));
+		Assert.assertEquals(pageSize, query.fetches.get(0).intValue());
+	}
+
+	@Test
+	public void testShortResults()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(37);
+		Assert.assertEquals(range(30, 37), nids(cache.getPage(KEY, 4, 10, query)));
+		// the results are known to be complete, so a page past the end is empty, without another query
+		Assert.assertTrue(cache.getPage(KEY, 20, 10, query).isEmpty());
+		Assert.assertEquals(1, query.fetches.size());
+	}
+
+	@Test
+	public void testKeysCompareArraysByContent()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(5000);
+		cache.getPage(KEY, 1, 10, query);
+		cache.getPage(new Object[] {"test", "query", new int[] {1, 2}}, 2, 10, query);
+		Assert.assertEquals(1, query.fetches.size());
+		cache.getPage(new Object[] {"test", "query", new int[] {1, 3}}, 1, 10, query);
+		Assert.assertEquals(2, query.fetches.size());
+	}
+
+	@Test
+	public void testInvalidatedMidQuery()
+	{
+		SearchResultCache cache = new SearchResultCache(10);
+		CountingQuery query = new CountingQuery(500);
+		// A commit lands while the first query runs
+		SearchResultCache.PagedQuery racing = (pageNum, maxPageSize) -> 
+		{
+			List<SearchResult> results = query.query(pageNum, maxPageSize);
+			cache.invalidateAll();
+			return results;
+		};
+
+		Assert.assertEquals(range(0, 10), nids(cache.getPage(KEY, 1, 10, racing)));
+		Assert.assertEquals(1, query.fetches.size());
+		// The results from before the commit were not kept
+		Assert.assertEquals(range(10, 20), nids(cache.getPage(KEY, 2, 10, query)));
+		Assert.assertEquals(2, query.fetches.size());
+		// but the results of a query that didn't overlap an invalidation are
+		Assert.assertEquals(range(20, 30), nids(cache.getPage(KEY, 3, 10, query)));
+		Assert.assertEquals(2, query.fetches.size());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.uts.auth.data.TokenHmac;
+
+/**
+ * {@link TokenHmacTest}
+ */
+public class TokenHmacTest
+{
+	private static final byte[] SECRET = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+	private static final String DOMAIN = "test";
+
+	@Test
+	public void testSignRoundTrip() throws Exception
+	{
+		byte[] payload = new byte[] { 2, 0, 0, 0, 42, -1, 127 };
+		String token = TokenHmac.sign(SECRET, DOMAIN, payload);
+		Assert.assertTrue(TokenHmac.isSigned(token));
+		Assert.assertArrayEquals(payload, TokenHmac.verify(SECRET, DOMAIN, token));
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testTamperedPayload() throws Exception
+	{
+		String token = TokenHmac.sign(SECRET, DOMAIN, new byte[] { 2, 0, 0, 0, 42 });
+		String other = TokenHmac.sign(SECRET, DOMAIN, new byte[] { 2, 0, 0, 0, 43 });
+		// payload of one token, mac of the other
+		TokenHmac.verify(SECRET, DOMAIN, other.substring(0, other.indexOf('.')) + token.substring(token.indexOf('.')));
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testWrongSecret() throws Exception
+	{
+		String token = TokenHmac.sign(SECRET, DOMAIN, new byte[] { 2, 0, 0, 0, 42 });
+		TokenHmac.verify(new byte[] { 9, 9, 9 }, DOMAIN, token);
+	}
+
+	@Test(expected = SecurityException.class)
+	public void testWrongDomain() throws Exception
+	{
+		String token = TokenHmac.sign(SECRET, DOMAIN, new byte[] { 2, 0, 0, 0, 42 });
+		TokenHmac.verify(SECRET, "other", token);
+	}
+
+	@Test
+	public void testLegacyFormatNotSigned()
+	{
+		Assert.assertFalse(TokenHmac.isSigned("ab3Xz_-9Qw1=AQAAAAAAAAA="));
+	}
+}
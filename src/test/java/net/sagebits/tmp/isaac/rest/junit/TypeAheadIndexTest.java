@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.session.TypeAheadIndexService;
+import net.sagebits.tmp.isaac.rest.session.TypeAheadIndexService.TermIndex;
+
+/**
+ * {@link TypeAheadIndexTest}
+ */
+public class TypeAheadIndexTest
+{
+	private static String[] t(String text)
+	{
+		return TypeAheadIndexService.tokenize(text);
+	}
+
+	@Test
+	public void testTokenize()
+	{
+		Assert.assertArrayEquals(new String[] {"heart", "attack"}, t("Heart attack"));
+		Assert.assertArrayEquals(new String[] {"sjogren", "s", "syndrome"}, t("  Sjögren's-syndrome"));
+		Assert.assertArrayEquals(new String[] {"type", "2", "diabetes", "mellitus", "disorder"}, t("Type 2 diabetes mellitus (disorder)"));
+		Assert.assertArrayEquals(new String[] {"cafe", "creme"}, t("CAFÉ crème"));
+		Assert.assertArrayEquals(new String[0], t(""));
+		Assert.assertArrayEquals(new String[0], t(" -- "));
+	}
+
+	@Test
+	public void testMatchPrefix()
+	{
+		String[] text = t("Myocardial infarction of the heart");
+		Assert.assertTrue(TypeAheadIndexService.matches(text, t("myo"), true));
+		Assert.assertTrue(TypeAheadIndexService.matches(text, t("heart myo"), true));
+		Assert.assertTrue(TypeAheadIndexService.matches(text, t("infarction he"), true));
+		Assert.assertFalse(TypeAheadIndexService.matches(text, t("infarction xyz"), true));
+		// only the last token is a prefix
+		Assert.assertFalse(TypeAheadIndexService.matches(text, t("myo heart"), true));
+	}
+
+	@Test
+	public void testMatchExact()
+	{
+		String[] text = t("Myocardial infarction of the heart");
+		Assert.assertFalse(TypeAheadIndexService.matches(text, t("myo"), false));
+		Assert.assertTrue(TypeAheadIndexService.matches(text, t("myocardial"), false));
+		Assert.assertTrue(TypeAheadIndexService.matches(text, t("heart of"), false));
+		Assert.assertFalse(TypeAheadIndexService.matches(t(""), t("heart"), true));
+	}
+
+	private static List<String> terms(TermIndex index, int[] range)
+	{
+		List<String> result = new ArrayList<>();
+		for (int i = range[0]; i < range[1]; i++)
+		{
+			result.add(index.getTerm(i));
+		}
+		return result;
+	}
+
+	private static TermIndex index()
+	{
+		Map<Integer, String> texts = new HashMap<>();
+		texts.put(-10, "Heart attack");
+		texts.put(-11, "Heart");
+		texts.put(-12, "Heartburn after eating");
+		texts.put(-13, "Hearing loss");
+		texts.put(-14, "Attack of the heart");
+		return TermIndex.fromText(texts);
+	}
+
+	@Test
+	public void testRangePrefix()
+	{
+		TermIndex index = index();
+		Assert.assertEquals(List.of("hearing", "heart", "heartburn"), terms(index, index.range("hear", true)));
+		Assert.assertEquals(List.of("heart", "heartburn"), terms(index, index.range("heart", true)));
+		Assert.assertEquals(List.of("after", "attack"), terms(index, index.range("a", true)));
+		Assert.assertTrue(terms(index, index.range("zebra", true)).isEmpty());
+		Assert.assertTrue(terms(index, index.range("aaa", true)).isEmpty());
+	}
+
+	@Test
+	public void testRangeExact()
+	{
+		TermIndex index = index();
+		Assert.assertEquals(List.of("heart"), terms(index, index.range("heart", false)));
+		Assert.assertTrue(terms(index, index.range("hear", false)).isEmpty());
+		Assert.assertTrue(terms(index, index.range("zzz", false)).isEmpty());
+	}
+
+	@Test
+	public void testPostingsShortestFirst()
+	{
+		TermIndex index = index();
+		int[] range = index.range("heart", false);
+		// "Heart" (5), "Heart attack" (12), "Attack of the heart" (19)
+		Assert.assertArrayEquals(new int[] {-11, -10, -14}, index.getNids(range[0]));
+	}
+
+	@Test
+	public void testEmptyIndex()
+	{
+		TermIndex index = TermIndex.fromText(new HashMap<>());
+		int[] range = index.range("a", true);
+		Assert.assertEquals(range[0], range[1]);
+	}
+}
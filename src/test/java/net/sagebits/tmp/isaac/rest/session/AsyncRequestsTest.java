@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+import javax.annotation.Priority;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.ApplicationConfig;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.IsaacExceptionMapper;
+import net.sagebits.tmp.isaac.rest.jerseyConfig.ResponseFormatFilter;
+import net.sagebits.tmp.isaac.rest.session.filters.ThreadLocalCleanupContainerResponseFilter;
+
+/**
+ * {@link AsyncRequestsTest}
+ * 
+ * Async calls whose work is already complete when the resource method returns - so Jersey writes the response on the container thread, 
+ * which the {@link RequestInfo} was detached from.
+ */
+public class AsyncRequestsTest extends JerseyTest
+{
+	private static final String AUTH_FAIL_HEADER = "X-Auth-Fail";
+
+	private static Field instanceField;
+	private static Object priorInstance;
+
+	/**
+	 * Written with the auth fail reason of the RequestInfo bound to the writing thread
+	 */
+	public static class Marker
+	{
+	}
+
+	public static class MarkerWriter implements MessageBodyWriter<Marker>
+	{
+		@Override
+		public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+		{
+			return Marker.class.equals(type);
+		}
+
+		@Override
+		public void writeTo(Marker marker, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+				MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException
+		{
+			entityStream.write(String.valueOf(RequestInfo.get().getAuthFailReason()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Starts the RequestInfo of each request, as the RestContainerRequestFilter does
+	 */
+	public static class BeginFilter implements ContainerRequestFilter
+	{
+		@Override
+		public void filter(ContainerRequestContext requestContext) throws IOException
+		{
+			RequestInfo.begin(requestContext);
+		}
+	}
+
+	/**
+	 * Reports the auth fail reason that the response side sees.  Response filters run from the highest priority down, so this runs after 
+	 * the cleanup filter has ended the request.
+	 */
+	@Priority(1)
+	public static class RecordFilter implements ContainerResponseFilter
+	{
+		@Override
+		public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException
+		{
+			responseContext.getHeaders().putSingle(AUTH_FAIL_HEADER, String.valueOf(RequestInfo.get(requestContext).getAuthFailReason()));
+		}
+	}
+
+	@Path("async")
+	public static class AsyncResource
+	{
+		@GET
+		@Path("done")
+		@Produces(MediaType.TEXT_PLAIN)
+		public CompletionStage<Marker> done()
+		{
+			RequestInfo.get().setAuthFail("set before the handoff");
+			CompletionStage<Marker> stage = AsyncRequests.supply(AsyncResource.class, () -> new Marker());
+			stage.toCompletableFuture().join();
+			return stage;
+		}
+
+		@GET
+		@Path("fail")
+		@Produces(MediaType.TEXT_PLAIN)
+		public CompletionStage<Marker> fail()
+		{
+			CompletionStage<Marker> stage = AsyncRequests.supply(AsyncResource.class, () -> 
+			{
+				throw new SecurityException("denied in the work");
+			});
+			stage.toCompletableFuture().handle((result, e) -> null).join();
+			return stage;
+		}
+	}
+
+	@BeforeClass
+	public static void setApplicationConfig() throws Exception
+	{
+		// RequestInfo reads the debug setting of the application, which isn't started here
+		instanceField = ApplicationConfig.class.getDeclaredField("instance_");
+		instanceField.setAccessible(true);
+		priorInstance = instanceField.get(null);
+		if (priorInstance == null)
+		{
+			instanceField.set(null, new ApplicationConfig());
+		}
+	}
+
+	@AfterClass
+	public static void clearApplicationConfig() throws Exception
+	{
+		instanceField.set(null, priorInstance);
+	}
+
+	@Override
+	protected Application configure()
+	{
+		return new ResourceConfig(AsyncResource.class, MarkerWriter.class, BeginFilter.class, RecordFilter.class, ResponseFormatFilter.class, 
+				IsaacExceptionMapper.class, ThreadLocalCleanupContainerResponseFilter.class);
+	}
+
+	@Test
+	public void testCompletedBeforeReturn()
+	{
+		Assert.assertTrue(RestConfig.getInstance().isRequestPoolsEnabled());
+		for (int i = 0; i < 5; i++)
+		{
+			Response response = target("async/done").request().get();
+			Assert.assertEquals(200, response.getStatus());
+			Assert.assertEquals("set before the handoff", response.getHeaderString(AUTH_FAIL_HEADER));
+			Assert.assertEquals("set before the handoff", response.readEntity(String.class));
+		}
+	}
+
+	@Test
+	public void testFailedBeforeReturn()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			Response response = target("async/fail").request().get();
+			Assert.assertEquals(401, response.getStatus());
+			Assert.assertEquals("denied in the work", response.getHeaderString(AUTH_FAIL_HEADER));
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import net.sagebits.tmp.isaac.rest.api.exceptions.RestException;
+import net.sagebits.uts.auth.data.User;
+import net.sagebits.uts.auth.rest.api1.data.RestUser;
+import sh.isaac.api.chronicle.Chronology;
+
+/**
+ * {@link AuthorNidServiceTest}
+ */
+public class AuthorNidServiceTest
+{
+	private static final UUID DB_ID = UUID.randomUUID();
+
+	/**
+	 * Hands out nids like the identifier service - the same nid for the same user id, even after a cancel
+	 */
+	private static class FakeStore implements AuthorNidService.AuthorStore
+	{
+		final ConcurrentHashMap<UUID, Integer> nids = new ConcurrentHashMap<>();
+		final ConcurrentHashMap<UUID, Integer> committed = new ConcurrentHashMap<>();
+		final ConcurrentHashMap<UUID, Integer> uncommitted = new ConcurrentHashMap<>();
+		final ConcurrentHashMap<UUID, AtomicInteger> builds = new ConcurrentHashMap<>();
+		final AtomicInteger nextNid = new AtomicInteger(-2000000000);
+		final AtomicInteger commits = new AtomicInteger();
+		final AtomicInteger cancels = new AtomicInteger();
+		volatile CountDownLatch buildGate = new CountDownLatch(0);
+		volatile boolean failCommit = false;
+
+		@Override
+		public Integer find(UUID userId)
+		{
+			return committed.get(userId);
+		}
+
+		@Override
+		public int build(RestUser user, List<Chronology> created)
+		{
+			builds.computeIfAbsent(user.userId, userId -> new AtomicInteger()).incrementAndGet();
+			try
+			{
+				buildGate.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			int nid = nids.computeIfAbsent(user.userId, userId -> nextNid.getAndIncrement());
+			uncommitted.put(user.userId, nid);
+			return nid;
+		}
+
+		@Override
+		public void commit(int count) throws RestException
+		{
+			commits.incrementAndGet();
+			if (failCommit)
+			{
+				throw new RestException("Internal commit failure");
+			}
+			committed.putAll(uncommitted);
+			uncommitted.clear();
+		}
+
+		@Override
+		public void cancel(List<Chronology> created)
+		{
+			cancels.incrementAndGet();
+			uncommitted.clear();
+		}
+
+		int builds(RestUser user)
+		{
+			AtomicInteger count = builds.get(user.userId);
+			return count == null ? 0 : count.get();
+		}
+	}
+
+	private final FakeStore store = new FakeStore();
+	private final AtomicReference<ScheduledExecutorService> scheduler = new AtomicReference<>();
+	private ExecutorService callers;
+	private AuthorNidService service;
+
+	private static RestUser user(String name)
+	{
+		return new RestUser(new User(UUID.randomUUID(), name, name, null, null), DB_ID, false);
+	}
+
+	@Before
+	public void createService()
+	{
+		scheduler.set(Executors.newSingleThreadScheduledExecutor());
+		callers = Executors.newCachedThreadPool();
+		service = new AuthorNidService(store, () -> scheduler.get());
+	}
+
+	@After
+	public void stopService()
+	{
+		store.buildGate.countDown();
+		callers.shutdownNow();
+		scheduler.get().shutdownNow();
+	}
+
+	private int getAuthorNid(RestUser user) throws Exception
+	{
+		return callers.submit(() -> service.getAuthorNid(user)).get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testSingleFlightPerUser() throws Exception
+	{
+		RestUser first = user("first");
+		RestUser second = user("second");
+		store.buildGate = new CountDownLatch(1);
+
+		List<Future<Integer>> firstNids = new ArrayList<>();
+		List<Future<Integer>> secondNids = new ArrayList<>();
+		for (int i = 0; i < 16; i++)
+		{
+			service.ensureAuthorConcept(first);
+			firstNids.add(callers.submit(() -> service.getAuthorNid(first)));
+			secondNids.add(callers.submit(() -> service.getAuthorNid(second)));
+			service.ensureAuthorConcept(second);
+		}
+		store.buildGate.countDown();
+
+		int firstNid = firstNids.get(0).get(10, TimeUnit.SECONDS);
+		int secondNid = secondNids.get(0).get(10, TimeUnit.SECONDS);
+		Assert.assertNotEquals(firstNid, secondNid);
+		for (int i = 0; i < 16; i++)
+		{
+			Assert.assertEquals(firstNid, (int) firstNids.get(i).get(10, TimeUnit.SECONDS));
+			Assert.assertEquals(secondNid, (int) secondNids.get(i).get(10, TimeUnit.SECONDS));
+		}
+		Assert.assertEquals(1, store.builds(first));
+		Assert.assertEquals(1, store.builds(second));
+
+		// Now cached, without building again
+		Assert.assertEquals(firstNid, getAuthorNid(first));
+		service.ensureAuthorConcept(second);
+		Assert.assertEquals(1, store.builds(first));
+		Assert.assertEquals(1, store.builds(second));
+	}
+
+	@Test
+	public void testCommitFailure() throws Exception
+	{
+		RestUser user = user("user");
+		store.failCommit = true;
+		try
+		{
+			getAuthorNid(user);
+			Assert.fail("The commit failure should reach the caller");
+		}
+		catch (ExecutionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof RuntimeException);
+			Assert.assertTrue(e.getCause().getCause() instanceof RestException);
+		}
+		Assert.assertEquals(1, store.cancels.get());
+		Assert.assertTrue(store.uncommitted.isEmpty());
+
+		// Not cached - the next request builds it again
+		store.failCommit = false;
+		int nid = getAuthorNid(user);
+		Assert.assertEquals(store.nids.get(user.userId).intValue(), nid);
+		Assert.assertEquals(2, store.builds(user));
+		Assert.assertEquals(nid, getAuthorNid(user));
+		Assert.assertEquals(2, store.builds(user));
+	}
+
+	@Test
+	public void testScheduleFailure() throws Exception
+	{
+		ScheduledExecutorService working = scheduler.get();
+		ScheduledExecutorService stopped = Executors.newSingleThreadScheduledExecutor();
+		stopped.shutdown();
+		scheduler.set(stopped);
+
+		// Built on the request thread instead
+		RestUser first = user("first");
+		int firstNid = getAuthorNid(first);
+		Assert.assertEquals(1, store.builds(first));
+
+		// The schedule flag was not left set, so the next user is scheduled
+		scheduler.set(working);
+		RestUser second = user("second");
+		Assert.assertNotEquals(firstNid, getAuthorNid(second));
+		Assert.assertEquals(1, store.builds(second));
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.tmp.isaac.rest.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import net.sagebits.uts.auth.rest.api1.data.RestUser;
+import net.sagebits.uts.auth.rest.session.AuthRequestParameters;
+
+/**
+ * {@link RestUserServiceAuthIntegratedTest}
+ * 
+ * Reads users from a stub auth server, which can hold its responses, to check which reads share a request, and which reads wait for one.
+ */
+public class RestUserServiceAuthIntegratedTest extends JerseyTest
+{
+	private static final long ROLE_MAX_AGE = 1000l * 60l * 5l;
+	private static final int REFRESH_AHEAD_SECONDS = 60;
+	private static final int STALE_SECONDS = 60;
+	private static final UUID USER_ID = UUID.randomUUID();
+
+	private static final AtomicInteger requests = new AtomicInteger();
+	private static final Semaphore arrived = new Semaphore(0);
+	private static volatile CountDownLatch gate = new CountDownLatch(0);
+
+	private final AtomicLong now = new AtomicLong(1000000);
+	private ExecutorService callers;
+	private ExecutorService background;
+	private RestUserServiceAuthIntegrated service;
+
+	/**
+	 * Returns a user with a new sso token on each read, numbered in the order the reads arrived, once the gate is open
+	 */
+	@Path("1/auth/user")
+	public static class StubAuthResource
+	{
+		@GET
+		@Produces(MediaType.APPLICATION_JSON)
+		public String read() throws InterruptedException
+		{
+			int read = requests.incrementAndGet();
+			arrived.release();
+			gate.await(10, TimeUnit.SECONDS);
+			return "{\"@class\":\"" + RestUser.class.getName() + "\",\"userName\":\"test\",\"ssoToken\":\"renewed-" + read + "\",\"userId\":\"" 
+					+ USER_ID + "\"}";
+		}
+	}
+
+	@Override
+	protected Application configure()
+	{
+		return new ResourceConfig(StubAuthResource.class);
+	}
+
+	@Before
+	public void createService()
+	{
+		requests.set(0);
+		arrived.drainPermits();
+		gate = new CountDownLatch(0);
+		callers = Executors.newCachedThreadPool();
+		background = Executors.newCachedThreadPool();
+		service = new RestUserServiceAuthIntegrated(null, getBaseUri().toString(), REFRESH_AHEAD_SECONDS, STALE_SECONDS, () -> client(), background, 
+				() -> now.get())
+		{
+			@Override
+			public void ensureAuthorConcept(RestUser user)
+			{
+				// No database
+			}
+		};
+	}
+
+	@After
+	public void stopService()
+	{
+		// Let any held read finish
+		gate.countDown();
+		callers.shutdownNow();
+		background.shutdownNow();
+	}
+
+	private Future<Optional<RestUser>> read(String tokenType, String token)
+	{
+		Map<String, List<String>> parameters = Collections.singletonMap(tokenType, Collections.singletonList(token));
+		return callers.submit(() -> service.getUser(parameters, null, cookieName -> Optional.empty()));
+	}
+
+	private String readSsoToken(String token) throws Exception
+	{
+		return read(AuthRequestParameters.ssoToken, token).get(5, TimeUnit.SECONDS).get().ssoToken;
+	}
+
+	@Test
+	public void testConcurrentReadsShareARequest() throws Exception
+	{
+		gate = new CountDownLatch(1);
+		List<Future<Optional<RestUser>>> reads = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+		{
+			reads.add(read(AuthRequestParameters.ssoToken, "t1"));
+		}
+		Assert.assertTrue(arrived.tryAcquire(10, TimeUnit.SECONDS));
+		// Give the other reads time to join the held one - any that come later are answered from the cache
+		Thread.sleep(200);
+		gate.countDown();
+		for (Future<Optional<RestUser>> read : reads)
+		{
+			Assert.assertEquals("renewed-1", read.get(10, TimeUnit.SECONDS).get().ssoToken);
+		}
+		Assert.assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testTokenTypesAreSeparateReads() throws Exception
+	{
+		gate = new CountDownLatch(1);
+		Future<Optional<RestUser>> sso = read(AuthRequestParameters.ssoToken, "same");
+		Future<Optional<RestUser>> byService = read(AuthRequestParameters.serviceToken, "same");
+		// Both reach the auth server, while the first is still held
+		Assert.assertTrue(arrived.tryAcquire(2, 10, TimeUnit.SECONDS));
+		gate.countDown();
+		Assert.assertTrue(sso.get(10, TimeUnit.SECONDS).isPresent());
+		Assert.assertTrue(byService.get(10, TimeUnit.SECONDS).isPresent());
+		Assert.assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testRefreshAhead() throws Exception
+	{
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		arrived.drainPermits();
+
+		// Not yet due
+		now.addAndGet(ROLE_MAX_AGE - (REFRESH_AHEAD_SECONDS * 1000l) - 1000);
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		Assert.assertEquals(1, requests.get());
+
+		// Due - the cached roles are returned while the auth server holds the background read, and only one read is started
+		now.addAndGet(2000);
+		gate = new CountDownLatch(1);
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		Assert.assertTrue(arrived.tryAcquire(10, TimeUnit.SECONDS));
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		Assert.assertEquals(2, requests.get());
+		gate.countDown();
+	}
+
+	@Test
+	public void testStaleWindow() throws Exception
+	{
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		Assert.assertEquals("renewed-2", readSsoToken("t2"));
+		arrived.drainPermits();
+
+		// Expired, but within the stale window - the cached roles are returned, while they are read again in the background
+		now.addAndGet(ROLE_MAX_AGE + (STALE_SECONDS * 1000l) / 2);
+		gate = new CountDownLatch(1);
+		Assert.assertEquals("renewed-1", readSsoToken("t1"));
+		Assert.assertTrue(arrived.tryAcquire(10, TimeUnit.SECONDS));
+		gate.countDown();
+
+		// Past the stale window - the request waits for a new read
+		now.addAndGet(STALE_SECONDS * 1000l);
+		Assert.assertEquals("renewed-4", readSsoToken("t2"));
+		Assert.assertEquals(4, requests.get());
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2018 VetsEZ Inc, Sagebits LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Contributions from 2015-2017 where performed either by US government
+ * employees, or under US Veterans Health Administration contracts.
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government
+ * employees are USGovWork (17USC §105). Not subject to copyright.
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ */
+
+package net.sagebits.uts.auth.users;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import net.sagebits.uts.auth.data.User;
+import net.sagebits.uts.auth.data.UserRole;
+
+/**
+ * {@link UserServiceTest}
+ * 
+ * Reads the local user store back through new instances, as a restart would, and checks the lookup indexes as users change.
+ */
+public class UserServiceTest
+{
+	private final List<File> dirs_ = new ArrayList<>();
+
+	@Before
+	public void clearImport()
+	{
+		System.clearProperty(UserService.AUTH_USER_IMPORT);
+	}
+
+	@After
+	public void deleteDirs() throws IOException
+	{
+		for (File dir : dirs_)
+		{
+			try (Stream<Path> paths = Files.walk(dir.toPath()))
+			{
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	private File newDir() throws IOException
+	{
+		File dir = Files.createTempDirectory("UserServiceTest").toFile();
+		dirs_.add(dir);
+		return dir;
+	}
+
+	private static User newUser(String name, UserRole ... roles)
+	{
+		return new User(UUID.randomUUID(), name, name + " display", roles, null);
+	}
+
+	private static void assertUser(UserService us, User expected)
+	{
+		User found = us.getUser(expected.getId()).orElse(null);
+		Assert.assertNotNull("missing " + expected.getUserName(), found);
+		Assert.assertEquals(expected.getUserName(), found.getUserName());
+		Assert.assertEquals(expected.getDisplayName(), found.getDisplayName());
+		Assert.assertEquals(expected.getGlobalRoles(), found.getGlobalRoles());
+	}
+
+	@Test
+	public void testSnapshotAndLogReplay() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		User a = newUser("a", UserRole.READ);
+		User b = newUser("b", UserRole.EDITOR);
+		us.addOrUpdate(a);
+		us.addOrUpdate(b);
+		us.compact(true);
+
+		//changes after the snapshot are only in the log
+		User c = newUser("c", UserRole.READ);
+		us.addOrUpdate(c);
+		b.setDisplayName("b renamed");
+		us.addOrUpdate(b);
+		us.removeUser(a.getId());
+		Assert.assertTrue(new File(dir, "users.log").isFile());
+
+		UserService reread = new UserService(dir, false);
+		Assert.assertFalse(reread.getUser(a.getId()).isPresent());
+		assertUser(reread, b);
+		assertUser(reread, c);
+		Assert.assertEquals(us.getUsers(), reread.getUsers());
+	}
+
+	@Test
+	public void testTornLastLine() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		User a = newUser("a", UserRole.READ);
+		us.addOrUpdate(a);
+
+		//as if we stopped in the middle of writing an entry
+		Files.write(new File(dir, "users.log").toPath(), "U {\"@type\":\"net.sagebits.uts.auth.da".getBytes(StandardCharsets.UTF_8), 
+				StandardOpenOption.APPEND);
+
+		UserService second = new UserService(dir, false);
+		assertUser(second, a);
+		User b = newUser("b", UserRole.READ);
+		second.addOrUpdate(b);
+
+		//the entry written after the torn one must not have been lost along with it
+		UserService third = new UserService(dir, false);
+		assertUser(third, a);
+		assertUser(third, b);
+	}
+
+	@Test
+	public void testStaleBinarySnapshot() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		User a = newUser("a", UserRole.READ);
+		us.addOrUpdate(a);
+		us.compact(true);
+		Assert.assertTrue(new File(dir, "users.bin").isFile());
+
+		File otherDir = newDir();
+		UserService other = new UserService(otherDir, false);
+		User b = newUser("b", UserRole.READ);
+		other.addOrUpdate(b);
+		other.compact(true);
+
+		//As a git pull would - the json changes, the binary copy doesn't
+		File json = new File(dir, "users.json");
+		long binaryFor = json.lastModified();
+		Files.copy(new File(otherDir, "users.json").toPath(), json.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		json.setLastModified(binaryFor - 10000);
+
+		UserService reread = new UserService(dir, false);
+		Assert.assertFalse(reread.getUser(a.getId()).isPresent());
+		assertUser(reread, b);
+	}
+
+	@Test
+	public void testCompaction() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		for (int i = 0; i < 20; i++)
+		{
+			us.addOrUpdate(newUser("user" + i, UserRole.READ));
+		}
+		Assert.assertTrue(new File(dir, "users.log").isFile());
+
+		us.compact(true);
+		Assert.assertFalse(new File(dir, "users.log").exists());
+		Assert.assertFalse(new File(dir, "users.log.sealed").exists());
+		Assert.assertTrue(new File(dir, "users.json").isFile());
+		Assert.assertTrue(new File(dir, "users.bin").isFile());
+
+		//once from the binary copy, and once from the json alone
+		UserService fromBinary = new UserService(dir, false);
+		Assert.assertEquals(us.getUsers(), fromBinary.getUsers());
+		Assert.assertTrue(new File(dir, "users.bin").delete());
+		UserService fromJson = new UserService(dir, false);
+		Assert.assertEquals(us.getUsers(), fromJson.getUsers());
+		for (UUID id : us.getUsers())
+		{
+			assertUser(fromJson, us.getUser(id).get());
+		}
+	}
+
+	@Test
+	public void testSealedLogReplay() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		User a = newUser("a", UserRole.READ);
+		us.addOrUpdate(a);
+		us.compact(true);
+		User b = newUser("b", UserRole.READ);
+		us.addOrUpdate(b);
+
+		//As if a compaction sealed the log, and stopped before its snapshot was written
+		Files.move(new File(dir, "users.log").toPath(), new File(dir, "users.log.sealed").toPath());
+		User c = newUser("c", UserRole.READ);
+		us.addOrUpdate(c);
+		User renamed = us.getUser(b.getId()).get();
+		renamed.setDisplayName("b renamed");
+		us.addOrUpdate(renamed);
+
+		UserService reread = new UserService(dir, false);
+		assertUser(reread, a);
+		assertUser(reread, renamed);
+		assertUser(reread, c);
+
+		reread.compact(true);
+		Assert.assertFalse(new File(dir, "users.log.sealed").exists());
+		Assert.assertFalse(new File(dir, "users.log").exists());
+		UserService compacted = new UserService(dir, false);
+		Assert.assertEquals(us.getUsers(), compacted.getUsers());
+		assertUser(compacted, renamed);
+	}
+
+	private static Set<UUID> idsWithRole(UserService us, UserRole role)
+	{
+		return us.getUsersWithGlobalRole(role).stream().map(User::getId).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void testRoleIndex() throws IOException
+	{
+		File dir = newDir();
+		UserService us = new UserService(dir, false);
+		User a = newUser("a", UserRole.SYSTEM_MANAGER);
+		User b = newUser("b", UserRole.EDITOR);
+		us.addOrUpdate(a);
+		us.addOrUpdate(b);
+		Assert.assertEquals(Set.of(a.getId()), idsWithRole(us, UserRole.SYSTEM_MANAGER));
+		Assert.assertEquals(Set.of(a.getId()), us.getSystemAdmins().stream().map(User::getId).collect(Collectors.toSet()));
+		Assert.assertTrue(idsWithRole(us, UserRole.EDITOR).contains(b.getId()));
+
+		//Roles change by replacing the user
+		us.addOrUpdate(new User(a.getId(), "a", "a display", new UserRole[] {UserRole.EDITOR}, null));
+		Assert.assertTrue(idsWithRole(us, UserRole.SYSTEM_MANAGER).isEmpty());
+		Assert.assertTrue(idsWithRole(us, UserRole.EDITOR).containsAll(Set.of(a.getId(), b.getId())));
+
+		us.removeUser(b.getId());
+		Assert.assertFalse(idsWithRole(us, UserRole.EDITOR).contains(b.getId()));
+		Assert.assertTrue(idsWithRole(us, UserRole.EDITOR).contains(a.getId()));
+
+		//and the index is rebuilt on a reload
+		us.compact(true);
+		UserService reread = new UserService(dir, false);
+		Assert.assertEquals(idsWithRole(us, UserRole.EDITOR), idsWithRole(reread, UserRole.EDITOR));
+		Assert.assertTrue(idsWithRole(reread, UserRole.SYSTEM_MANAGER).isEmpty());
+	}
+
+	@Test
+	public void testServiceTokenIndexAfterTokenChange() throws IOException
+	{
+		UserService us = new UserService(newDir(), false);
+		User a = newUser("a", UserRole.READ);
+		String first = a.assignServiceToken();
+		us.addOrUpdate(a);
+
+		//The second lookup is answered from the index
+		Assert.assertEquals(a.getId(), us.getUser(first).get().getId());
+		Assert.assertEquals(a.getId(), us.getUser(first).get().getId());
+
+		User changed = us.getUser(a.getId()).get();
+		String second = changed.assignServiceToken();
+		us.addOrUpdate(changed);
+		Assert.assertFalse(us.getUser(first).isPresent());
+		Assert.assertEquals(a.getId(), us.getUser(second).get().getId());
+		Assert.assertEquals(a.getId(), us.getUser(second).get().getId());
+
+		User cleared = us.getUser(a.getId()).get();
+		cleared.setServiceToken(null);
+		us.addOrUpdate(cleared);
+		Assert.assertFalse(us.getUser(second).isPresent());
+	}
+
+	@Test
+	public void testServiceTokenIndexAfterDisable() throws IOException
+	{
+		UserService us = new UserService(newDir(), false);
+		User a = newUser("a", UserRole.READ);
+		String token = a.assignServiceToken();
+		us.addOrUpdate(a);
+		Assert.assertTrue(us.getUser(token).isPresent());
+
+		User disabled = us.getUser(a.getId()).get();
+		disabled.setEnabled(false);
+		us.addOrUpdate(disabled);
+		Assert.assertFalse(us.getUser(token).isPresent());
+		Assert.assertFalse(us.getUser(token).isPresent());
+
+		User enabled = us.getUser(a.getId()).get();
+		enabled.setEnabled(true);
+		us.addOrUpdate(enabled);
+		Assert.assertEquals(a.getId(), us.getUser(token).get().getId());
+
+		us.removeUser(a.getId());
+		Assert.assertFalse(us.getUser(token).isPresent());
+	}
+}